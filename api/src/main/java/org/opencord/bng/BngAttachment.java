@@ -18,14 +18,20 @@ package org.opencord.bng;
 
 import com.google.common.base.MoreObjects;
 import org.onlab.packet.IpAddress;
+import org.onlab.packet.IpPrefix;
 import org.onlab.packet.MacAddress;
 import org.onlab.packet.VlanId;
 import org.onosproject.core.ApplicationId;
 import org.onosproject.net.ConnectPoint;
 import org.onosproject.net.behaviour.BngProgrammable;
 
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+
 /**
- * Abstract implementation of an attachment.
+ * Abstract implementation of an attachment. Attachments are immutable and
+ * compared by value.
  */
 public abstract class BngAttachment implements BngProgrammable.Attachment {
     private final ApplicationId appId;
@@ -37,6 +43,10 @@ public abstract class BngAttachment implements BngProgrammable.Attachment {
     private final ConnectPoint oltConnectPoint;
     private final String onuSerial;
     private final short qinqTpid;
+    private final IpAddress ipv6Address;
+    private final IpPrefix delegatedPrefix;
+    // Cached hash code, 0 if not computed yet
+    private transient int hash;
 
     /**
      * Creates a new attachment.
@@ -50,11 +60,15 @@ public abstract class BngAttachment implements BngProgrammable.Attachment {
      * @param oltConnectPoint The connect point of the OLT (UNI port)
      * @param onuSerial       The serial string of the ONU
      * @param qinqTpid        The QinQ Tpid for the packets
+     * @param ipv6Address     The IPv6 address of the attachment, or null
+     * @param delegatedPrefix The IPv6 prefix delegated to the attachment, or
+     *                        null
      */
     BngAttachment(ApplicationId appId, VlanId sTag, VlanId cTag,
                   MacAddress macAddress, IpAddress ipAddress,
                   boolean lineActivated, ConnectPoint oltConnectPoint,
-                  String onuSerial, short qinqTpid) {
+                  String onuSerial, short qinqTpid,
+                  IpAddress ipv6Address, IpPrefix delegatedPrefix) {
         this.appId = appId;
         this.sTag = sTag;
         this.cTag = cTag;
@@ -64,6 +78,8 @@ public abstract class BngAttachment implements BngProgrammable.Attachment {
         this.oltConnectPoint = oltConnectPoint;
         this.onuSerial = onuSerial;
         this.qinqTpid = qinqTpid;
+        this.ipv6Address = ipv6Address;
+        this.delegatedPrefix = delegatedPrefix;
     }
 
     /**
@@ -93,6 +109,26 @@ public abstract class BngAttachment implements BngProgrammable.Attachment {
         return this.qinqTpid;
     }
 
+    /**
+     * Returns the IPv6 address of a dual-stack attachment, i.e. the link-local
+     * address built from the interface identifier negotiated with IPv6CP.
+     *
+     * @return The IPv6 address, null if IPv6 is not enabled
+     */
+    public IpAddress ipv6Address() {
+        return this.ipv6Address;
+    }
+
+    /**
+     * Returns the IPv6 prefix delegated to a dual-stack attachment (e.g., with
+     * DHCPv6-PD).
+     *
+     * @return The delegated prefix, null if no prefix has been delegated
+     */
+    public IpPrefix delegatedPrefix() {
+        return this.delegatedPrefix;
+    }
+
     @Override
     public ApplicationId appId() {
         return appId;
@@ -123,6 +159,81 @@ public abstract class BngAttachment implements BngProgrammable.Attachment {
         return lineActivated;
     }
 
+    /**
+     * Returns the fields whose value differs between this attachment and the
+     * given one.
+     *
+     * @param other The attachment to compare with
+     * @return The set of changed fields, empty if the attachments are equal
+     */
+    public Set<Field> diff(BngAttachment other) {
+        Set<Field> changed = EnumSet.noneOf(Field.class);
+        if (type() != other.type()) {
+            changed.add(Field.TYPE);
+        }
+        if (!Objects.equals(appId, other.appId)) {
+            changed.add(Field.APP_ID);
+        }
+        if (!Objects.equals(sTag, other.sTag)) {
+            changed.add(Field.S_TAG);
+        }
+        if (!Objects.equals(cTag, other.cTag)) {
+            changed.add(Field.C_TAG);
+        }
+        if (!Objects.equals(macAddress, other.macAddress)) {
+            changed.add(Field.MAC_ADDRESS);
+        }
+        if (!Objects.equals(ipAddress, other.ipAddress)) {
+            changed.add(Field.IP_ADDRESS);
+        }
+        if (lineActivated != other.lineActivated) {
+            changed.add(Field.LINE_ACTIVE);
+        }
+        if (!Objects.equals(oltConnectPoint, other.oltConnectPoint)) {
+            changed.add(Field.OLT_CONNECT_POINT);
+        }
+        if (!Objects.equals(onuSerial, other.onuSerial)) {
+            changed.add(Field.ONU_SERIAL);
+        }
+        if (qinqTpid != other.qinqTpid) {
+            changed.add(Field.QINQ_TPID);
+        }
+        if (!Objects.equals(ipv6Address, other.ipv6Address)) {
+            changed.add(Field.IPV6_ADDRESS);
+        }
+        if (!Objects.equals(delegatedPrefix, other.delegatedPrefix)) {
+            changed.add(Field.DELEGATED_PREFIX);
+        }
+        if (pppoeSessionId() != other.pppoeSessionId()) {
+            changed.add(Field.PPPOE_SESSION_ID);
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        BngAttachment other = (BngAttachment) obj;
+        return hashCode() == other.hashCode() && diff(other).isEmpty();
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = Objects.hash(type(), appId, sTag, cTag, macAddress, ipAddress, lineActivated,
+                             oltConnectPoint, onuSerial, qinqTpid, ipv6Address, delegatedPrefix,
+                             pppoeSessionId());
+            hash = h;
+        }
+        return h;
+    }
+
     MoreObjects.ToStringHelper toStringHelper() {
         return MoreObjects.toStringHelper(this)
                 .add("appId", appId)
@@ -133,7 +244,28 @@ public abstract class BngAttachment implements BngProgrammable.Attachment {
                 .add("lineActivated", lineActivated)
                 .add("oltConnectPoint", oltConnectPoint)
                 .add("onuSerial", onuSerial)
-                .add("qinqTpid", qinqTpid);
+                .add("qinqTpid", qinqTpid)
+                .add("ipv6Address", ipv6Address)
+                .add("delegatedPrefix", delegatedPrefix);
+    }
+
+    /**
+     * Fields of an attachment, as reported by {@link #diff(BngAttachment)}.
+     */
+    public enum Field {
+        TYPE,
+        APP_ID,
+        S_TAG,
+        C_TAG,
+        MAC_ADDRESS,
+        IP_ADDRESS,
+        LINE_ACTIVE,
+        OLT_CONNECT_POINT,
+        ONU_SERIAL,
+        QINQ_TPID,
+        IPV6_ADDRESS,
+        DELEGATED_PREFIX,
+        PPPOE_SESSION_ID
     }
 
     /**
@@ -149,6 +281,8 @@ public abstract class BngAttachment implements BngProgrammable.Attachment {
         ConnectPoint oltconnectPoint;
         String onuSerial;
         short qinqTpid;
+        IpAddress ipv6Address;
+        IpPrefix delegatedPrefix;
 
         BngBuilder() {
             // Hide constructor
@@ -243,6 +377,28 @@ public abstract class BngAttachment implements BngProgrammable.Attachment {
             return this;
         }
 
+        /**
+         * Sets the attachment IPv6 address.
+         *
+         * @param ipv6Address The IPv6 address
+         * @return self
+         */
+        public BngBuilder withIpv6Address(IpAddress ipv6Address) {
+            this.ipv6Address = ipv6Address;
+            return this;
+        }
+
+        /**
+         * Sets the IPv6 prefix delegated to the attachment.
+         *
+         * @param delegatedPrefix The delegated prefix
+         * @return self
+         */
+        public BngBuilder withDelegatedPrefix(IpPrefix delegatedPrefix) {
+            this.delegatedPrefix = delegatedPrefix;
+            return this;
+        }
+
         /**
          * Sets the QinQ tpid.
          *
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Summary of a latency distribution. Percentiles are approximated.
+ */
+public final class BngLatencyStats {
+
+    private final long count;
+    private final long p50Nanos;
+    private final long p90Nanos;
+    private final long p99Nanos;
+    private final long maxNanos;
+
+    /**
+     * Creates a new latency summary.
+     *
+     * @param count    Number of recorded values
+     * @param p50Nanos 50th percentile, in nanoseconds
+     * @param p90Nanos 90th percentile, in nanoseconds
+     * @param p99Nanos 99th percentile, in nanoseconds
+     * @param maxNanos Maximum recorded value, in nanoseconds
+     */
+    public BngLatencyStats(long count, long p50Nanos, long p90Nanos,
+                           long p99Nanos, long maxNanos) {
+        this.count = count;
+        this.p50Nanos = p50Nanos;
+        this.p90Nanos = p90Nanos;
+        this.p99Nanos = p99Nanos;
+        this.maxNanos = maxNanos;
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return The number of values
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Returns the 50th percentile (median).
+     *
+     * @return The latency in nanoseconds
+     */
+    public long p50Nanos() {
+        return p50Nanos;
+    }
+
+    /**
+     * Returns the 90th percentile.
+     *
+     * @return The latency in nanoseconds
+     */
+    public long p90Nanos() {
+        return p90Nanos;
+    }
+
+    /**
+     * Returns the 99th percentile.
+     *
+     * @return The latency in nanoseconds
+     */
+    public long p99Nanos() {
+        return p99Nanos;
+    }
+
+    /**
+     * Returns the maximum recorded value.
+     *
+     * @return The latency in nanoseconds
+     */
+    public long maxNanos() {
+        return maxNanos;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("count", count)
+                .add("p50Nanos", p50Nanos)
+                .add("p90Nanos", p90Nanos)
+                .add("p99Nanos", p99Nanos)
+                .add("maxNanos", maxNanos)
+                .toString();
+    }
+}
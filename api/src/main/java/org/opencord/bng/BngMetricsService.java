@@ -0,0 +1,36 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Service to export the BNG app metrics.
+ */
+public interface BngMetricsService {
+
+    /**
+     * Writes the current BNG metrics to the given writer using the OpenMetrics
+     * text format. The metrics are written incrementally, the caller is in
+     * charge of closing the writer.
+     *
+     * @param writer The writer where to write the metrics
+     * @throws IOException if the metrics cannot be written
+     */
+    void writeMetrics(Writer writer) throws IOException;
+}
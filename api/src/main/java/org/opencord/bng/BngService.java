@@ -19,6 +19,7 @@ package org.opencord.bng;
 import org.onosproject.net.DeviceId;
 
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Service for managing attachments.
@@ -26,6 +27,7 @@ import java.util.Map;
 public interface BngService {
 
     String ONU_ANNOTATION = "onu";
+    String DELEGATED_PREFIX_ANNOTATION = "delegatedPrefix";
 
     /**
      * Sets up the given attachment with the given attachemtn key in the BNG
@@ -66,6 +68,25 @@ public interface BngService {
      * Returns the BNG device ID currently used.
      *
      * @return The BNG device ID.
+     * @deprecated several BNG devices can be used, use getBngDeviceIds() or
+     * getBngDeviceId(String) instead
      */
+    @Deprecated
     DeviceId getBngDeviceId();
+
+    /**
+     * Returns the IDs of the BNG devices attachments are assigned to.
+     *
+     * @return The BNG device IDs, empty if not configured
+     */
+    Set<DeviceId> getBngDeviceIds();
+
+    /**
+     * Returns the ID of the BNG device the given attachment is assigned to.
+     *
+     * @param attachmentKey The attachment ID
+     * @return The BNG device ID, null if the attachment is not registered or
+     * not assigned to any device
+     */
+    DeviceId getBngDeviceId(String attachmentKey);
 }
\ No newline at end of file
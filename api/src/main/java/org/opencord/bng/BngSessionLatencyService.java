@@ -0,0 +1,97 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng;
+
+import org.onosproject.net.DeviceId;
+
+import java.util.Map;
+
+/**
+ * Service to record and retrieve the time spent in each phase of the setup of
+ * subscriber sessions.
+ */
+public interface BngSessionLatencyService {
+
+    /**
+     * Phases of the setup of a subscriber session.
+     */
+    enum Phase {
+        /**
+         * From the discovery initiation (PADI) to the session confirmation
+         * (PADS).
+         */
+        DISCOVERY,
+
+        /**
+         * From the session confirmation to the successful authentication.
+         */
+        AUTHENTICATION,
+
+        /**
+         * From the successful authentication to the IPCP configuration
+         * acknowledge.
+         */
+        IPCP,
+
+        /**
+         * From the IPCP configuration acknowledge to the attachment
+         * programmed on the BNG user plane.
+         */
+        PROGRAMMING
+    }
+
+    /**
+     * Records the duration of a phase of a session setup. It is meant to be
+     * called on the packet processing path, and does not allocate memory.
+     *
+     * @param phase       The setup phase
+     * @param oltDeviceId The OLT the subscriber is connected to
+     * @param nanos       The duration of the phase, in nanoseconds
+     */
+    void record(Phase phase, DeviceId oltDeviceId, long nanos);
+
+    /**
+     * Signals that the IPCP configuration of an attachment has been
+     * acknowledged, starting the PROGRAMMING phase of the attachment.
+     *
+     * @param attachmentKey The attachment key
+     * @param oltDeviceId   The OLT the subscriber is connected to
+     */
+    void ipcpAcknowledged(String attachmentKey, DeviceId oltDeviceId);
+
+    /**
+     * Signals that an attachment has been programmed on the BNG user plane,
+     * completing its PROGRAMMING phase.
+     *
+     * @param attachmentKey The attachment key
+     */
+    void attachmentProgrammed(String attachmentKey);
+
+    /**
+     * Returns the latency statistics of each setup phase, for all the OLTs.
+     *
+     * @return The map of phases and latency statistics
+     */
+    Map<Phase, BngLatencyStats> getLatencies();
+
+    /**
+     * Returns the latency statistics of each setup phase, per OLT.
+     *
+     * @return The map of OLTs and latency statistics per phase
+     */
+    Map<DeviceId, Map<Phase, BngLatencyStats>> getLatenciesPerOlt();
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableMap;
+import org.onosproject.net.behaviour.BngProgrammable.BngCounterType;
+import org.onosproject.net.pi.runtime.PiCounterCellData;
+
+import java.util.Map;
+
+/**
+ * Attachment-level statistics sampled at a given point in time.
+ */
+public final class BngStatsSample {
+
+    private final long timestamp;
+    private final ImmutableMap<BngCounterType, PiCounterCellData> stats;
+
+    /**
+     * Creates a new sample of attachment-level statistics.
+     *
+     * @param timestamp The time the statistics were read, in milliseconds
+     *                  since epoch
+     * @param stats     The attachment statistics
+     */
+    public BngStatsSample(long timestamp, Map<BngCounterType, PiCounterCellData> stats) {
+        this.timestamp = timestamp;
+        this.stats = ImmutableMap.copyOf(stats);
+    }
+
+    /**
+     * Returns the time the statistics were read.
+     *
+     * @return The time in milliseconds since epoch
+     */
+    public long timestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns the attachment statistics.
+     *
+     * @return The map of counter types and statistics
+     */
+    public Map<BngCounterType, PiCounterCellData> stats() {
+        return stats;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("timestamp", timestamp)
+                .add("stats", stats)
+                .toString();
+    }
+}
@@ -20,6 +20,7 @@ import org.onosproject.event.ListenerService;
 import org.onosproject.net.behaviour.BngProgrammable;
 import org.onosproject.net.pi.runtime.PiCounterCellData;
 
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -51,4 +52,27 @@ public interface BngStatsService
      */
     PiCounterCellData getControlStats();
 
+    /**
+     * Returns the attachment-level statistics collected by the last run of the
+     * statistics monitor, without querying the ASG device.
+     *
+     * @return A map with the attachment keys and the associated statistics.
+     * Empty map if no statistics has been collected yet.
+     */
+    Map<String, Map<BngProgrammable.BngCounterType, PiCounterCellData>> getLastStats();
+
+    /**
+     * Returns the attachment-level statistics recorded in the statistics
+     * journal for the given attachment and time range.
+     *
+     * @param bngAttachmentKey The attachment Key
+     * @param fromMillis       Start of the time range, in milliseconds since
+     *                         epoch
+     * @param toMillis         End of the time range, in milliseconds since
+     *                         epoch
+     * @return The samples sorted by time. Empty list if the journal is
+     * disabled or no sample is found.
+     */
+    List<BngStatsSample> getStatsHistory(String bngAttachmentKey, long fromMillis, long toMillis);
+
 }
@@ -17,6 +17,7 @@
 package org.opencord.bng;
 
 import org.onlab.packet.IpAddress;
+import org.onlab.packet.IpPrefix;
 import org.onlab.packet.MacAddress;
 import org.onlab.packet.VlanId;
 import org.onosproject.core.ApplicationId;
@@ -34,9 +35,9 @@ public final class PppoeBngAttachment extends BngAttachment {
     private PppoeBngAttachment(ApplicationId appId, VlanId sTag, VlanId cTag,
                                MacAddress macAddress, IpAddress ipAddress, boolean lineActivated,
                                short pppoeSessionId, ConnectPoint oltConnectPoint, String onuSerial,
-                               short qinqTpid) {
+                               short qinqTpid, IpAddress ipv6Address, IpPrefix delegatedPrefix) {
         super(appId, sTag, cTag, macAddress, ipAddress, lineActivated,
-              oltConnectPoint, onuSerial, qinqTpid);
+              oltConnectPoint, onuSerial, qinqTpid, ipv6Address, delegatedPrefix);
         this.pppoeSessionId = pppoeSessionId;
     }
 
@@ -103,7 +104,9 @@ public final class PppoeBngAttachment extends BngAttachment {
                                           this.pppoeSessionId,
                                           this.oltconnectPoint,
                                           this.onuSerial,
-                                          this.qinqTpid);
+                                          this.qinqTpid,
+                                          this.ipv6Address,
+                                          this.delegatedPrefix);
         }
     }
 }
@@ -18,9 +18,113 @@ package org.opencord.bng;
 
 import org.onosproject.event.ListenerService;
 
+import java.util.List;
+import java.util.Map;
+
 /**
  * BNG control packet service for PPPoE protocol.
  */
 public interface PppoeBngControlHandler
         extends ListenerService<PppoeEvent, PppoeEventListener> {
+
+    /**
+     * Returns the number of PPPoE packets relayed so far, grouped by PPPoE
+     * code (e.g., "padi", "pado", "session").
+     *
+     * @return The map of PPPoE code names and relayed packets
+     */
+    Map<String, Long> getPacketCounters();
+
+    /**
+     * Returns the number of PPPoE events generated so far, grouped by event
+     * type.
+     *
+     * @return The map of event types and generated events
+     */
+    Map<PppoeEvent.EventType, Long> getEventCounters();
+
+    /**
+     * Returns the hit rate of the internal caches of the handler, between 0
+     * and 1.
+     *
+     * @return The map of cache names and hit rates
+     */
+    Map<String, Double> getCacheHitRates();
+
+    /**
+     * Returns the number of items currently waiting in the internal queues of
+     * the handler.
+     *
+     * @return The map of queue names and queue depths
+     */
+    Map<String, Long> getQueueDepths();
+
+    /**
+     * Returns the number of control packets handled locally by the handler
+     * instead of being relayed (e.g., LCP echo replies), and of the sessions
+     * terminated by the handler.
+     *
+     * @return The map of offload counter names and values
+     */
+    Map<String, Long> getOffloadCounters();
+
+    /**
+     * Terminates the PPPoE session of the given attachment on its behalf. The
+     * listeners are notified with a SESSION_TERMINATION event, unless the
+     * session was already terminated. Optionally a PADT is sent to the PPPoE
+     * server the session is relayed to, if the session and its PPPoE server
+     * are known.
+     *
+     * @param attachment The attachment whose session is terminated
+     * @param sendPadt   True to send a PADT to the PPPoE server
+     */
+    void terminateSession(BngAttachment attachment, boolean sendPadt);
+
+    /**
+     * Returns the version of the relay configuration in use, increased each
+     * time the configuration is reloaded.
+     *
+     * @return The configuration version, 0 if not configured
+     */
+    long getConfigVersion();
+
+    /**
+     * Returns the time taken by the last reload of the relay configuration,
+     * including the wait for the packets processed with the old one.
+     *
+     * @return The duration of the last reload in nanoseconds
+     */
+    long getLastConfigReloadNanos();
+
+    /**
+     * Returns the health and load statistics of each PPPoE server, keyed by
+     * server connect point.
+     *
+     * @return The map of PPPoE server connect points and statistics
+     */
+    Map<String, PppoeServerStats> getPppoeServerStats();
+
+    /**
+     * Returns the statistics about the delivery of PPPoE events to each
+     * registered listener.
+     *
+     * @return The map of listener names and delivery statistics
+     */
+    Map<String, PppoeEventListenerStats> getEventListenerStats();
+
+    /**
+     * Returns the statistics of each processing stage of the PPPoE packets
+     * (e.g., "parse", "emit"), in processing order.
+     *
+     * @return The map of stage names and statistics
+     */
+    Map<String, PppoeRelayStageStats> getStageStats();
+
+    /**
+     * Returns the key fields of the last relayed PPPoE frames, from the oldest
+     * to the most recent.
+     *
+     * @return The list of frame traces
+     */
+    List<PppoePacketTrace> getPacketTrace();
 }
@@ -64,6 +64,18 @@ public final class PppoeEvent extends
          */
         IPCP_CONF_REQUEST,
 
+        /**
+         * Signals an IPv6CP configuration acknowledge event, i.e. IPv6 has
+         * been enabled on the session.
+         */
+        IPV6CP_CONF_ACK,
+
+        /**
+         * Signals that an IPv6 prefix has been delegated to the attachment
+         * (e.g., with DHCPv6-PD).
+         */
+        IPV6_PREFIX_DELEGATION,
+
         /**
          * Authentication initiated.
          */
@@ -18,8 +18,22 @@ package org.opencord.bng;
 
 import org.onosproject.event.EventListener;
 
+import java.util.List;
+
 /**
  * Listener for PPPoE attachment level events.
  */
 public interface PppoeEventListener extends EventListener<PppoeEvent> {
+
+    /**
+     * Reacts to a batch of events. Events are delivered in the order they
+     * have been generated and have already been filtered using
+     * {@link #isRelevant(Object)}. By default, each event is passed to
+     * {@link #event(org.onosproject.event.Event)}.
+     *
+     * @param events the batch of events
+     */
+    default void eventBatch(List<PppoeEvent> events) {
+        events.forEach(this::event);
+    }
 }
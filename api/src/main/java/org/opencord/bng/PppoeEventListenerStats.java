@@ -0,0 +1,108 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Statistics about the delivery of PPPoE events to a listener.
+ */
+public final class PppoeEventListenerStats {
+
+    private final long queued;
+    private final long delivered;
+    private final long dropped;
+    private final long lastLagMillis;
+    private final long maxLagMillis;
+
+    /**
+     * Creates new PPPoE event delivery statistics.
+     *
+     * @param queued        Number of events waiting to be delivered
+     * @param delivered     Number of events delivered so far
+     * @param dropped       Number of events dropped because the queue was full
+     * @param lastLagMillis Delay between generation and delivery of the last
+     *                      delivered event
+     * @param maxLagMillis  Maximum delay between generation and delivery of
+     *                      an event
+     */
+    public PppoeEventListenerStats(long queued, long delivered, long dropped,
+                                   long lastLagMillis, long maxLagMillis) {
+        this.queued = queued;
+        this.delivered = delivered;
+        this.dropped = dropped;
+        this.lastLagMillis = lastLagMillis;
+        this.maxLagMillis = maxLagMillis;
+    }
+
+    /**
+     * Returns the number of events waiting to be delivered.
+     *
+     * @return The number of queued events
+     */
+    public long queued() {
+        return queued;
+    }
+
+    /**
+     * Returns the number of events delivered so far.
+     *
+     * @return The number of delivered events
+     */
+    public long delivered() {
+        return delivered;
+    }
+
+    /**
+     * Returns the number of events dropped because the queue was full.
+     *
+     * @return The number of dropped events
+     */
+    public long dropped() {
+        return dropped;
+    }
+
+    /**
+     * Returns the delay between generation and delivery of the last delivered
+     * event.
+     *
+     * @return The delay in milliseconds
+     */
+    public long lastLagMillis() {
+        return lastLagMillis;
+    }
+
+    /**
+     * Returns the maximum delay between generation and delivery of an event.
+     *
+     * @return The delay in milliseconds
+     */
+    public long maxLagMillis() {
+        return maxLagMillis;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("queued", queued)
+                .add("delivered", delivered)
+                .add("dropped", dropped)
+                .add("lastLagMillis", lastLagMillis)
+                .add("maxLagMillis", maxLagMillis)
+                .toString();
+    }
+}
@@ -18,10 +18,14 @@ package org.opencord.bng;
 
 import com.google.common.base.MoreObjects;
 import org.onlab.packet.IpAddress;
+import org.onlab.packet.IpPrefix;
 import org.onlab.packet.MacAddress;
 import org.onlab.packet.VlanId;
 import org.onosproject.net.ConnectPoint;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 /**
  * Subject for a PPPoE attachment level events.
  */
@@ -34,6 +38,11 @@ public final class PppoeEventSubject {
     private final short sessionId;
     private final VlanId sTag;
     private final VlanId cTag;
+    private final IpAddress ipv6Address;
+    private final IpPrefix delegatedPrefix;
+    // Username bytes as seen in the authentication packet, decoded on demand
+    private final ByteBuffer usernameBytes;
+    private String username;
 
     /**
      * Creates a PPPoE attachment event subject.
@@ -53,6 +62,65 @@ public final class PppoeEventSubject {
                              short sessionId,
                              VlanId sTag,
                              VlanId cTag) {
+        this(oltConnectPoint, ipAddress, macAddress, onuSerialNumber, sessionId, sTag, cTag, null);
+    }
+
+    /**
+     * Creates a PPPoE attachment event subject with the username used in the
+     * authentication.
+     *
+     * @param oltConnectPoint The connect point of the OLT (UNI port)
+     * @param ipAddress       The IP Address that has been assigned
+     * @param macAddress      The MAC address of the attachment
+     * @param onuSerialNumber The serial number of the ONU
+     * @param sessionId       The PPPoE session ID
+     * @param sTag            The VLAN S-Tag
+     * @param cTag            The VLan C-Tag
+     * @param usernameBytes   The UTF-8 encoded username, null if not known.
+     *                        Decoded only if requested.
+     */
+    public PppoeEventSubject(ConnectPoint oltConnectPoint,
+                             IpAddress ipAddress,
+                             MacAddress macAddress,
+                             String onuSerialNumber,
+                             short sessionId,
+                             VlanId sTag,
+                             VlanId cTag,
+                             ByteBuffer usernameBytes) {
+        this(oltConnectPoint, ipAddress, macAddress, onuSerialNumber, sessionId, sTag, cTag,
+             usernameBytes, null, null);
+    }
+
+    /**
+     * Creates a PPPoE attachment event subject for a dual-stack attachment.
+     *
+     * @param oltConnectPoint The connect point of the OLT (UNI port)
+     * @param ipAddress       The IP Address that has been assigned
+     * @param macAddress      The MAC address of the attachment
+     * @param onuSerialNumber The serial number of the ONU
+     * @param sessionId       The PPPoE session ID
+     * @param sTag            The VLAN S-Tag
+     * @param cTag            The VLan C-Tag
+     * @param usernameBytes   The UTF-8 encoded username, null if not known.
+     *                        Decoded only if requested.
+     * @param ipv6Address     The IPv6 address of the attachment, null if IPv6
+     *                        is not enabled
+     * @param delegatedPrefix The IPv6 prefix delegated to the attachment,
+     *                        null if not delegated
+     */
+    public PppoeEventSubject(ConnectPoint oltConnectPoint,
+                             IpAddress ipAddress,
+                             MacAddress macAddress,
+                             String onuSerialNumber,
+                             short sessionId,
+                             VlanId sTag,
+                             VlanId cTag,
+                             ByteBuffer usernameBytes,
+                             IpAddress ipv6Address,
+                             IpPrefix delegatedPrefix) {
+        this.ipv6Address = ipv6Address;
+        this.delegatedPrefix = delegatedPrefix;
+        this.usernameBytes = usernameBytes != null ? usernameBytes.asReadOnlyBuffer() : null;
         this.oltConnectPoint = oltConnectPoint;
         this.ipAddress = ipAddress;
         this.macAddress = macAddress;
@@ -126,6 +194,36 @@ public final class PppoeEventSubject {
         return cTag;
     }
 
+    /**
+     * Returns the IPv6 address of the attachment (if any).
+     *
+     * @return The IPv6 address, null if IPv6 is not enabled
+     */
+    public IpAddress getIpv6Address() {
+        return ipv6Address;
+    }
+
+    /**
+     * Returns the IPv6 prefix delegated to the attachment (if any).
+     *
+     * @return The delegated prefix, null if not delegated
+     */
+    public IpPrefix getDelegatedPrefix() {
+        return delegatedPrefix;
+    }
+
+    /**
+     * Returns the username used in the authentication (if known).
+     *
+     * @return The username, null if not known
+     */
+    public String getUsername() {
+        if (username == null && usernameBytes != null) {
+            username = StandardCharsets.UTF_8.decode(usernameBytes.duplicate()).toString();
+        }
+        return username;
+    }
+
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(this)
@@ -136,6 +234,9 @@ public final class PppoeEventSubject {
                 .add("sessionId", sessionId)
                 .add("STag", sTag)
                 .add("CTag", cTag)
+                .add("ipv6Address", ipv6Address)
+                .add("delegatedPrefix", delegatedPrefix)
+                .add("username", getUsername())
                 .toString();
     }
 }
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng;
+
+import com.google.common.base.MoreObjects;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+
+/**
+ * Key fields of a PPPoE frame relayed by the PPPoE handler.
+ */
+public final class PppoePacketTrace {
+
+    private final long timestamp;
+    private final boolean upstream;
+    private final MacAddress srcMac;
+    private final MacAddress dstMac;
+    private final VlanId sTag;
+    private final VlanId cTag;
+    private final String code;
+    private final short sessionId;
+    private final String pppProtocol;
+
+    /**
+     * Creates a new trace of a relayed PPPoE frame.
+     *
+     * @param timestamp   Time the frame has been received, in milliseconds
+     * @param upstream    True if the frame is from the attachment to the
+     *                    PPPoE server
+     * @param srcMac      Source MAC address of the received frame
+     * @param dstMac      Destination MAC address of the received frame
+     * @param sTag        S-Tag of the received frame
+     * @param cTag        C-Tag of the received frame
+     * @param code        PPPoE code of the frame (e.g., "padi")
+     * @param sessionId   PPPoE session ID
+     * @param pppProtocol PPP protocol carried by the frame (e.g., "lcp")
+     */
+    public PppoePacketTrace(long timestamp, boolean upstream, MacAddress srcMac, MacAddress dstMac,
+                            VlanId sTag, VlanId cTag, String code, short sessionId, String pppProtocol) {
+        this.timestamp = timestamp;
+        this.upstream = upstream;
+        this.srcMac = srcMac;
+        this.dstMac = dstMac;
+        this.sTag = sTag;
+        this.cTag = cTag;
+        this.code = code;
+        this.sessionId = sessionId;
+        this.pppProtocol = pppProtocol;
+    }
+
+    /**
+     * Returns the time the frame has been received.
+     *
+     * @return The time in milliseconds since epoch
+     */
+    public long timestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns whether the frame is from the attachment to the PPPoE server.
+     *
+     * @return True if upstream, false if downstream
+     */
+    public boolean upstream() {
+        return upstream;
+    }
+
+    /**
+     * Returns the source MAC address of the received frame.
+     *
+     * @return The MAC address
+     */
+    public MacAddress srcMac() {
+        return srcMac;
+    }
+
+    /**
+     * Returns the destination MAC address of the received frame.
+     *
+     * @return The MAC address
+     */
+    public MacAddress dstMac() {
+        return dstMac;
+    }
+
+    /**
+     * Returns the S-Tag of the received frame.
+     *
+     * @return The S-Tag
+     */
+    public VlanId sTag() {
+        return sTag;
+    }
+
+    /**
+     * Returns the C-Tag of the received frame.
+     *
+     * @return The C-Tag
+     */
+    public VlanId cTag() {
+        return cTag;
+    }
+
+    /**
+     * Returns the PPPoE code of the frame.
+     *
+     * @return The PPPoE code name
+     */
+    public String code() {
+        return code;
+    }
+
+    /**
+     * Returns the PPPoE session ID.
+     *
+     * @return The session ID
+     */
+    public short sessionId() {
+        return sessionId;
+    }
+
+    /**
+     * Returns the PPP protocol carried by the frame.
+     *
+     * @return The PPP protocol name
+     */
+    public String pppProtocol() {
+        return pppProtocol;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("timestamp", timestamp)
+                .add("upstream", upstream)
+                .add("srcMac", srcMac)
+                .add("dstMac", dstMac)
+                .add("sTag", sTag)
+                .add("cTag", cTag)
+                .add("code", code)
+                .add("sessionId", sessionId)
+                .add("pppProtocol", pppProtocol)
+                .toString();
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Statistics of a processing stage of the PPPoE relay. Every execution of
+ * the stage is counted, while only a sample of the executions is timed.
+ */
+public final class PppoeRelayStageStats {
+
+    private final long count;
+    private final long samples;
+    private final long sampledNanos;
+
+    /**
+     * Creates new statistics of a processing stage.
+     *
+     * @param count        Number of executions of the stage
+     * @param samples      Number of timed executions
+     * @param sampledNanos Total time of the timed executions, in nanoseconds
+     */
+    public PppoeRelayStageStats(long count, long samples, long sampledNanos) {
+        this.count = count;
+        this.samples = samples;
+        this.sampledNanos = sampledNanos;
+    }
+
+    /**
+     * Returns the number of executions of the stage.
+     *
+     * @return The number of executions
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Returns the number of timed executions of the stage.
+     *
+     * @return The number of timed executions
+     */
+    public long samples() {
+        return samples;
+    }
+
+    /**
+     * Returns the total time of the timed executions.
+     *
+     * @return The time in nanoseconds
+     */
+    public long sampledNanos() {
+        return sampledNanos;
+    }
+
+    /**
+     * Returns the average time of an execution of the stage.
+     *
+     * @return The time in nanoseconds, 0 if no execution has been timed
+     */
+    public long meanNanos() {
+        return samples == 0 ? 0 : sampledNanos / samples;
+    }
+
+    /**
+     * Returns the estimated total time spent in the stage.
+     *
+     * @return The time in nanoseconds
+     */
+    public long estimatedTotalNanos() {
+        return meanNanos() * count;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("count", count)
+                .add("samples", samples)
+                .add("sampledNanos", sampledNanos)
+                .toString();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng;
+
+import com.google.common.base.MoreObjects;
+import org.onlab.packet.MacAddress;
+
+/**
+ * Health and load statistics of a PPPoE server the relay forwards to.
+ */
+public final class PppoeServerStats {
+
+    private final MacAddress macAddress;
+    private final boolean available;
+    private final long offers;
+    private final long timeouts;
+    private final long padoLatencyMicros;
+
+    /**
+     * Creates new PPPoE server statistics.
+     *
+     * @param macAddress        MAC address learned for the server, null if
+     *                          not learned yet
+     * @param available         Whether new sessions are assigned to the
+     *                          server
+     * @param offers            Number of PADO received from the server
+     * @param timeouts          Number of PADI not answered by the server in
+     *                          time
+     * @param padoLatencyMicros Average delay between a PADI and the PADO of
+     *                          the server
+     */
+    public PppoeServerStats(MacAddress macAddress, boolean available, long offers,
+                            long timeouts, long padoLatencyMicros) {
+        this.macAddress = macAddress;
+        this.available = available;
+        this.offers = offers;
+        this.timeouts = timeouts;
+        this.padoLatencyMicros = padoLatencyMicros;
+    }
+
+    /**
+     * Returns the MAC address learned for the server.
+     *
+     * @return The MAC address, null if not learned yet
+     */
+    public MacAddress macAddress() {
+        return macAddress;
+    }
+
+    /**
+     * Returns whether new sessions are assigned to the server.
+     *
+     * @return True if the server is considered healthy, false otherwise
+     */
+    public boolean available() {
+        return available;
+    }
+
+    /**
+     * Returns the number of PADO received from the server.
+     *
+     * @return The number of offers
+     */
+    public long offers() {
+        return offers;
+    }
+
+    /**
+     * Returns the number of PADI not answered by the server in time.
+     *
+     * @return The number of timeouts
+     */
+    public long timeouts() {
+        return timeouts;
+    }
+
+    /**
+     * Returns the average delay between a PADI and the PADO of the server.
+     *
+     * @return The delay in microseconds
+     */
+    public long padoLatencyMicros() {
+        return padoLatencyMicros;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("macAddress", macAddress)
+                .add("available", available)
+                .add("offers", offers)
+                .add("timeouts", timeouts)
+                .add("padoLatencyMicros", padoLatencyMicros)
+                .toString();
+    }
+}
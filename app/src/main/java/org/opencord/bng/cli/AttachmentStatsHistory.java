@@ -0,0 +1,67 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.cli;
+
+import org.apache.karaf.shell.api.action.Argument;
+import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.Completion;
+import org.apache.karaf.shell.api.action.Option;
+import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.onosproject.cli.AbstractShellCommand;
+import org.opencord.bng.BngStatsSample;
+import org.opencord.bng.BngStatsService;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Map.Entry.comparingByKey;
+
+@Service
+@Command(scope = "bng", name = "attachment-stats-history",
+        description = "Get the stats history of an attachment from the statistics journal")
+public class AttachmentStatsHistory extends AbstractShellCommand {
+
+    @Argument(index = 0, name = "attachmentKey", description = "Attachment Key",
+            required = true)
+    @Completion(AttachmentKeyCompleter.class)
+    String attachmentKey = null;
+
+    @Option(name = "-l", aliases = "--last",
+            description = "Time range to print, in minutes (default: 60)")
+    long lastMinutes = 60;
+
+    @Override
+    protected void doExecute() throws Exception {
+        BngStatsService bngStatsService = AbstractShellCommand.get(BngStatsService.class);
+        long now = System.currentTimeMillis();
+        List<BngStatsSample> samples = bngStatsService.getStatsHistory(
+                attachmentKey, now - TimeUnit.MINUTES.toMillis(lastMinutes), now);
+        if (samples.isEmpty()) {
+            print("No statistics found for %s", attachmentKey);
+            return;
+        }
+        samples.forEach(sample -> {
+            print(Instant.ofEpochMilli(sample.timestamp()).toString());
+            sample.stats().entrySet().stream().sorted(comparingByKey())
+                    .forEach(entry -> print("\t%s\tPackets: %d\tBytes: %d",
+                                            BngCliUtils.niceCounterName(entry.getKey()),
+                                            entry.getValue().packets(),
+                                            entry.getValue().bytes()));
+        });
+    }
+}
@@ -66,6 +66,8 @@ public class EnableAttachment extends AbstractShellCommand {
                 .withCTag(attachment.cTag())
                 .withSTag(attachment.sTag())
                 .withIpAddress(attachment.ipAddress())
+                .withIpv6Address(attachment.ipv6Address())
+                .withDelegatedPrefix(attachment.delegatedPrefix())
                 .withOltConnectPoint(attachment.oltConnectPoint())
                 .withOnuSerial(attachment.onuSerial())
                 .lineActivated(!disable)
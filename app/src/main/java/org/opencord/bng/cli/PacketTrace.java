@@ -0,0 +1,53 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.cli;
+
+import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.Option;
+import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.onosproject.cli.AbstractShellCommand;
+import org.opencord.bng.PppoeBngControlHandler;
+import org.opencord.bng.PppoePacketTrace;
+
+import java.time.Instant;
+import java.util.List;
+
+@Service
+@Command(scope = "bng", name = "packet-trace",
+        description = "Dump the last PPPoE frames relayed by the PPPoE handler")
+public class PacketTrace extends AbstractShellCommand {
+
+    private static final String FORMAT = "%-24s %-4s %-17s %-17s %6s %6s %-8s %7s %s";
+
+    @Option(name = "-n", aliases = "--count",
+            description = "Number of frames to print, the most recent ones (default: all)")
+    int count = 0;
+
+    @Override
+    protected void doExecute() throws Exception {
+        PppoeBngControlHandler pppoeHandler = AbstractShellCommand.get(PppoeBngControlHandler.class);
+        List<PppoePacketTrace> traces = pppoeHandler.getPacketTrace();
+        if (count > 0 && traces.size() > count) {
+            traces = traces.subList(traces.size() - count, traces.size());
+        }
+        print(FORMAT, "TIME", "DIR", "SRC MAC", "DST MAC", "S_TAG", "C_TAG", "CODE", "SESSION", "PROTOCOL");
+        traces.forEach(trace -> print(FORMAT, Instant.ofEpochMilli(trace.timestamp()),
+                                      trace.upstream() ? "UP" : "DOWN",
+                                      trace.srcMac(), trace.dstMac(), trace.sTag(), trace.cTag(),
+                                      trace.code(), trace.sessionId(), trace.pppProtocol()));
+    }
+}
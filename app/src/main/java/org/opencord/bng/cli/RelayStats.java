@@ -0,0 +1,61 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.cli;
+
+import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.onosproject.cli.AbstractShellCommand;
+import org.opencord.bng.PppoeBngControlHandler;
+
+@Service
+@Command(scope = "bng", name = "relay-stats",
+        description = "Get the processing statistics of the PPPoE relay")
+public class RelayStats extends AbstractShellCommand {
+
+    private static final String FORMAT = "%-18s %12s %10s %12s %14s";
+
+    @Override
+    protected void doExecute() throws Exception {
+        PppoeBngControlHandler pppoeHandler = AbstractShellCommand.get(PppoeBngControlHandler.class);
+
+        print("PROCESSING STAGES");
+        print(FORMAT, "STAGE", "COUNT", "SAMPLES", "MEAN (us)", "EST. TOTAL (ms)");
+        pppoeHandler.getStageStats().forEach(
+                (stage, stats) -> print(FORMAT, stage, stats.count(), stats.samples(),
+                                        String.format("%.3f", stats.meanNanos() / 1_000.0),
+                                        String.format("%.3f", stats.estimatedTotalNanos() / 1_000_000.0)));
+
+        print("PACKETS");
+        pppoeHandler.getPacketCounters().forEach((code, packets) -> print("\t%s: %d", code, packets));
+
+        print("OFFLOAD");
+        pppoeHandler.getOffloadCounters().forEach((counter, value) -> print("\t%s: %d", counter, value));
+
+        print("SERVERS");
+        pppoeHandler.getPppoeServerStats().forEach(
+                (server, stats) -> print("\t%s: mac=%s, available=%s, offers=%d, timeouts=%d, padoLatency (us)=%d",
+                                         server, stats.macAddress(), stats.available(), stats.offers(),
+                                         stats.timeouts(), stats.padoLatencyMicros()));
+
+        print("CONFIG");
+        print("\tversion: %d", pppoeHandler.getConfigVersion());
+        print("\tlastReload (us): %.3f", pppoeHandler.getLastConfigReloadNanos() / 1_000.0);
+
+        print("QUEUES");
+        pppoeHandler.getQueueDepths().forEach((queue, depth) -> print("\t%s: %d", queue, depth));
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.cli;
+
+import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.Option;
+import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.onosproject.cli.AbstractShellCommand;
+import org.opencord.bng.BngLatencyStats;
+import org.opencord.bng.BngSessionLatencyService;
+
+import java.util.Map;
+
+@Service
+@Command(scope = "bng", name = "session-latency",
+        description = "Get the latency of each phase of the subscriber session setup")
+public class SessionLatency extends AbstractShellCommand {
+
+    private static final String FORMAT = "%-16s %10s %10s %10s %10s %10s";
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    @Option(name = "-o", aliases = "--olt",
+            description = "Print the latency of each OLT")
+    boolean perOlt = false;
+
+    @Override
+    protected void doExecute() throws Exception {
+        BngSessionLatencyService latencyService = AbstractShellCommand.get(BngSessionLatencyService.class);
+        if (perOlt) {
+            latencyService.getLatenciesPerOlt().forEach((oltDeviceId, latencies) -> {
+                print("OLT: %s", oltDeviceId);
+                printLatencies(latencies);
+            });
+        } else {
+            printLatencies(latencyService.getLatencies());
+        }
+    }
+
+    private void printLatencies(Map<BngSessionLatencyService.Phase, BngLatencyStats> latencies) {
+        print(FORMAT, "PHASE", "COUNT", "P50 (ms)", "P90 (ms)", "P99 (ms)", "MAX (ms)");
+        latencies.forEach((phase, stats) -> print(FORMAT, phase, stats.count(),
+                                                  millis(stats.p50Nanos()), millis(stats.p90Nanos()),
+                                                  millis(stats.p99Nanos()), millis(stats.maxNanos())));
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.3f", nanos / NANOS_PER_MILLI);
+    }
+}
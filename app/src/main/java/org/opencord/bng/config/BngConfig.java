@@ -16,21 +16,75 @@
 
 package org.opencord.bng.config;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.Sets;
 import org.onosproject.core.ApplicationId;
 import org.onosproject.net.DeviceId;
 import org.onosproject.net.config.Config;
 
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+
 /**
- * Configuration of the BNG app.
+ * Configuration of the BNG app. The BNG user plane devices are given either
+ * as a single device in "bnguDeviceId" or as a list in "bnguDeviceIds".
  */
 public class BngConfig extends Config<ApplicationId> {
     public static final String KEY = "bng";
 
     private static final String BNGU_DEVICE_ID = "bnguDeviceId";
+    private static final String BNGU_DEVICE_IDS = "bnguDeviceIds";
+    private static final String ATTACHMENT_PLACEMENT = "attachmentPlacement";
+
+    /**
+     * Policy assigning the attachments to the BNG user plane devices.
+     */
+    public enum AttachmentPlacement {
+        /**
+         * Attachments are assigned to the BNG user plane device their OLT is
+         * connected to.
+         */
+        TOPOLOGY,
+        /**
+         * Attachments are spread over the BNG user plane devices by
+         * consistent hashing of the attachment key. All the devices must be
+         * able to reach every attachment.
+         */
+        CONSISTENT_HASH
+    }
 
     @Override
     public boolean isValid() {
-        return hasOnlyFields(BNGU_DEVICE_ID) && hasField(BNGU_DEVICE_ID);
+        if (!hasOnlyFields(BNGU_DEVICE_ID, BNGU_DEVICE_IDS, ATTACHMENT_PLACEMENT)) {
+            return false;
+        }
+        if (hasField(ATTACHMENT_PLACEMENT) &&
+                !isValidPlacement(object.path(ATTACHMENT_PLACEMENT).asText())) {
+            return false;
+        }
+        if (!hasField(BNGU_DEVICE_IDS)) {
+            return hasField(BNGU_DEVICE_ID);
+        }
+        JsonNode deviceIds = object.path(BNGU_DEVICE_IDS);
+        if (!deviceIds.isArray() || deviceIds.size() == 0) {
+            return false;
+        }
+        for (JsonNode deviceId : deviceIds) {
+            if (!deviceId.isTextual()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isValidPlacement(String placement) {
+        for (AttachmentPlacement value : AttachmentPlacement.values()) {
+            if (value.name().equalsIgnoreCase(placement)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -41,4 +95,38 @@ public class BngConfig extends Config<ApplicationId> {
     public DeviceId getBnguDeviceId() {
         return DeviceId.deviceId(object.path(BNGU_DEVICE_ID).asText());
     }
+
+    /**
+     * Gets all the BNG user plane devices.
+     *
+     * @return BNG user plane device IDs, in configuration order
+     */
+    public Set<DeviceId> getBnguDeviceIds() {
+        Set<DeviceId> deviceIds = Sets.newLinkedHashSet();
+        if (hasField(BNGU_DEVICE_ID)) {
+            deviceIds.add(getBnguDeviceId());
+        }
+        object.path(BNGU_DEVICE_IDS).forEach(deviceId -> deviceIds.add(DeviceId.deviceId(deviceId.asText())));
+        return deviceIds;
+    }
+
+    /**
+     * Gets the policy assigning the attachments to the BNG user plane devices.
+     *
+     * @return The attachment placement policy, TOPOLOGY if not configured
+     * @throws IllegalArgumentException if the configured policy is unknown
+     */
+    public AttachmentPlacement getAttachmentPlacement() {
+        if (!hasField(ATTACHMENT_PLACEMENT)) {
+            return AttachmentPlacement.TOPOLOGY;
+        }
+        String placement = object.path(ATTACHMENT_PLACEMENT).asText();
+        try {
+            return AttachmentPlacement.valueOf(placement.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown " + ATTACHMENT_PLACEMENT + " \"" + placement +
+                                                       "\", expected one of " +
+                                                       Arrays.toString(AttachmentPlacement.values()), e);
+        }
+    }
 }
\ No newline at end of file
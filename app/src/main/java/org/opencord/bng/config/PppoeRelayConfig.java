@@ -16,27 +16,70 @@
 
 package org.opencord.bng.config;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.onosproject.core.ApplicationId;
 import org.onosproject.net.ConnectPoint;
 import org.onosproject.net.config.Config;
 
+import java.util.List;
+import java.util.Map;
+
 /**
- * Configuration for the PPPoE control packet relay service.
+ * Configuration for the PPPoE control packet relay service. The OLT-facing
+ * connect points and the PPPoE server connect points they are relayed to are
+ * given either as a single pair or as a list in "relayPorts". Each entry of
+ * the list relays to a single PPPoE server or to a pool of PPPoE servers
+ * given in "pppoeServerConnectPoints".
  */
 public class PppoeRelayConfig extends Config<ApplicationId> {
     public static final String KEY = "pppoerelay";
 
     private static final String PPPOE_SERVER_CONNECT_POINT = "pppoeServerConnectPoint";
     private static final String OLT_CONNECT_POINT = "oltConnectPoint";
+    private static final String PPPOE_SERVER_CONNECT_POINTS = "pppoeServerConnectPoints";
+    private static final String RELAY_PORTS = "relayPorts";
 
     @Override
     public boolean isValid() {
-        return hasOnlyFields(PPPOE_SERVER_CONNECT_POINT, OLT_CONNECT_POINT) &&
-                hasFields(PPPOE_SERVER_CONNECT_POINT, OLT_CONNECT_POINT);
+        if (!hasOnlyFields(PPPOE_SERVER_CONNECT_POINT, OLT_CONNECT_POINT, RELAY_PORTS)) {
+            return false;
+        }
+        if (!hasField(RELAY_PORTS)) {
+            return hasFields(PPPOE_SERVER_CONNECT_POINT, OLT_CONNECT_POINT);
+        }
+        if (hasField(PPPOE_SERVER_CONNECT_POINT) != hasField(OLT_CONNECT_POINT)) {
+            return false;
+        }
+        JsonNode relayPorts = object.path(RELAY_PORTS);
+        if (!relayPorts.isArray() || relayPorts.size() == 0) {
+            return false;
+        }
+        for (JsonNode relayPort : relayPorts) {
+            if (relayPort.size() != 2 || !relayPort.path(OLT_CONNECT_POINT).isTextual() ||
+                    !(relayPort.path(PPPOE_SERVER_CONNECT_POINT).isTextual() ||
+                            isValidServerPool(relayPort.path(PPPOE_SERVER_CONNECT_POINTS)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isValidServerPool(JsonNode serverPool) {
+        if (!serverPool.isArray() || serverPool.size() == 0) {
+            return false;
+        }
+        for (JsonNode server : serverPool) {
+            if (!server.isTextual()) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
-     * Gets the PPPoE server connect point.
+     * Gets the PPPoE server connect point of the single pair configuration.
      *
      * @return PPPoE server connect point
      */
@@ -45,12 +88,44 @@ public class PppoeRelayConfig extends Config<ApplicationId> {
     }
 
     /**
-     * Gets the connect point where the OLT is connected to the ASG.
+     * Gets the connect point where the OLT is connected to the ASG, of the
+     * single pair configuration.
      *
      * @return ASG to OLT connect point
      */
     public ConnectPoint getAsgToOltConnectPoint() {
         return ConnectPoint.deviceConnectPoint(object.path(OLT_CONNECT_POINT).asText());
     }
+
+    /**
+     * Gets all the connect points where OLTs are connected to the ASGs, with
+     * the PPPoE server connect points the packets of each one are relayed to.
+     *
+     * @return Map of ASG to OLT connect points and pools of PPPoE server
+     * connect points
+     * @throws IllegalArgumentException if a connect point is not valid or an
+     *                                  OLT connect point is given twice
+     */
+    public Map<ConnectPoint, List<ConnectPoint>> getOltToServerConnectPoints() {
+        Map<ConnectPoint, List<ConnectPoint>> connectPoints = Maps.newLinkedHashMap();
+        if (hasField(OLT_CONNECT_POINT)) {
+            connectPoints.put(getAsgToOltConnectPoint(), List.of(getPppoeServerConnectPoint()));
+        }
+        for (JsonNode relayPort : object.path(RELAY_PORTS)) {
+            ConnectPoint oltConnectPoint = ConnectPoint.deviceConnectPoint(
+                    relayPort.path(OLT_CONNECT_POINT).asText());
+            List<ConnectPoint> serverConnectPoints = Lists.newArrayList();
+            if (relayPort.has(PPPOE_SERVER_CONNECT_POINT)) {
+                serverConnectPoints.add(ConnectPoint.deviceConnectPoint(
+                        relayPort.path(PPPOE_SERVER_CONNECT_POINT).asText()));
+            }
+            relayPort.path(PPPOE_SERVER_CONNECT_POINTS).forEach(
+                    server -> serverConnectPoints.add(ConnectPoint.deviceConnectPoint(server.asText())));
+            if (connectPoints.put(oltConnectPoint, List.copyOf(serverConnectPoints)) != null) {
+                throw new IllegalArgumentException("Duplicate OLT connect point " + oltConnectPoint);
+            }
+        }
+        return connectPoints;
+    }
 }
 
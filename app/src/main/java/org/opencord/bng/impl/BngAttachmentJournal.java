@@ -0,0 +1,526 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.impl;
+
+import com.google.common.collect.Maps;
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.IpPrefix;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.onosproject.core.ApplicationId;
+import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.behaviour.BngProgrammable;
+import org.opencord.bng.BngAttachment;
+import org.opencord.bng.PppoeBngAttachment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+import static org.onlab.util.Tools.groupedThreads;
+
+/**
+ * Persistent state of the registered attachments, used to restore them when
+ * the application restarts. Each mutation is appended to a journal file,
+ * which is compacted into a snapshot file of all the attachments once it
+ * holds enough records. Records are framed with their length and CRC, so
+ * that a torn tail left by a crash is detected and ignored. Files are written
+ * by a dedicated thread and loaded decoding the records in parallel. A marker
+ * file records that the journal has been stopped cleanly: without it the
+ * last mutations may have been lost.
+ */
+final class BngAttachmentJournal {
+
+    // Journal records exceeding the attachments in the snapshot by this
+    // number trigger a compaction
+    static final int COMPACTION_THRESHOLD = 10000;
+
+    private static final int MAGIC = 0x42414a31;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int FRAME_HEADER_SIZE = 8;
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final String SNAPSHOT_FILE = "attachments.snapshot";
+    private static final String JOURNAL_FILE = "attachments.journal";
+    private static final String CLEAN_FILE = "attachments.clean";
+    private static final long STOP_TIMEOUT_SECONDS = 5;
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final Path directory;
+    private final Supplier<Map<String, BngAttachment>> attachments;
+    private final Queue<byte[]> pendingRecords = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+    private volatile ExecutorService writer;
+
+    // State of the journal file, accessed by the writer thread only
+    private OutputStream journal;
+    private long journalRecords;
+    private long snapshotRecords;
+
+    /**
+     * Creates a new attachment journal.
+     *
+     * @param directory   Directory where to store the journal files
+     * @param attachments Supplier of the registered attachments, read when
+     *                    compacting the journal
+     */
+    BngAttachmentJournal(Path directory, Supplier<Map<String, BngAttachment>> attachments) {
+        this.directory = directory;
+        this.attachments = attachments;
+    }
+
+    /**
+     * Loads the attachments from the snapshot and journal files.
+     *
+     * @param appIds Function resolving the application IDs by name
+     * @return The attachments by attachment key
+     */
+    Map<String, BngAttachment> load(Function<String, ApplicationId> appIds) {
+        Map<String, BngAttachment> loaded = Maps.newConcurrentMap();
+        // Snapshot keys are unique, so they are applied in any order
+        read(directory.resolve(SNAPSHOT_FILE), appIds).parallelStream()
+                .filter(record -> record.attachment != null)
+                .forEach(record -> loaded.put(record.key, record.attachment));
+        for (Record record : read(directory.resolve(JOURNAL_FILE), appIds)) {
+            if (record.attachment != null) {
+                loaded.put(record.key, record.attachment);
+            } else {
+                loaded.remove(record.key);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Returns whether the journal has been stopped cleanly, with all the
+     * mutations written. To be called before starting the journal.
+     *
+     * @return True if the journal has been stopped cleanly, false otherwise
+     * or if there is no journal
+     */
+    boolean stoppedCleanly() {
+        return Files.exists(directory.resolve(CLEAN_FILE));
+    }
+
+    /**
+     * Starts the journal writer. The journal starts with a snapshot of the
+     * current attachments.
+     *
+     * @throws IOException if the journal directory cannot be created
+     */
+    void start() throws IOException {
+        Files.createDirectories(directory);
+        // Until stopped cleanly again
+        Files.deleteIfExists(directory.resolve(CLEAN_FILE));
+        writer = Executors.newSingleThreadExecutor(groupedThreads("onos/bng", "attachment-journal", log));
+        writer.execute(this::compact);
+    }
+
+    /**
+     * Stops the journal writer, compacting the journal. The journal is
+     * closed by the writer thread, which could outlive this call if the
+     * final compaction takes too long.
+     */
+    void stop() {
+        shutdown(this::finish);
+    }
+
+    /**
+     * Stops the journal writer, writing the pending mutations without
+     * marking the journal as stopped cleanly.
+     */
+    void abort() {
+        shutdown(() -> {
+            drain();
+            closeJournal();
+        });
+    }
+
+    private void shutdown(Runnable lastTask) {
+        ExecutorService oldWriter = writer;
+        if (oldWriter == null) {
+            return;
+        }
+        // Mutations from now on are captured by the last task
+        writer = null;
+        oldWriter.execute(lastTask);
+        oldWriter.shutdown();
+        try {
+            if (!oldWriter.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Attachment journal still being written");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes the final snapshot and closes the journal, marking it as
+     * stopped cleanly if the snapshot has been written.
+     */
+    private void finish() {
+        if (compact()) {
+            try {
+                Files.createFile(directory.resolve(CLEAN_FILE));
+            } catch (IOException e) {
+                log.warn("Unable to mark the attachment journal as stopped: {}", e.getMessage());
+            }
+        }
+        closeJournal();
+    }
+
+    /**
+     * Records that the given attachment has been registered or updated.
+     *
+     * @param attachmentKey The attachment key
+     * @param attachment    The attachment
+     */
+    void put(String attachmentKey, BngAttachment attachment) {
+        if (attachment.type() != BngProgrammable.Attachment.AttachmentType.PPPoE) {
+            return;
+        }
+        append(encode(attachmentKey, attachment));
+    }
+
+    /**
+     * Records that the given attachment has been removed.
+     *
+     * @param attachmentKey The attachment key
+     */
+    void remove(String attachmentKey) {
+        append(encode(attachmentKey, null));
+    }
+
+    /**
+     * Waits for the records submitted so far to be written.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     * @throws ExecutionException   if the writer failed
+     */
+    void awaitWrites() throws InterruptedException, ExecutionException {
+        ExecutorService currentWriter = writer;
+        if (currentWriter != null) {
+            currentWriter.submit(this::drain).get();
+        }
+    }
+
+    /**
+     * Removes the journal files from the given directory.
+     *
+     * @param directory Directory of the journal files
+     */
+    static void delete(Path directory) {
+        try {
+            Files.deleteIfExists(directory.resolve(JOURNAL_FILE));
+            Files.deleteIfExists(directory.resolve(SNAPSHOT_FILE));
+            Files.deleteIfExists(directory.resolve(CLEAN_FILE));
+        } catch (IOException e) {
+            LoggerFactory.getLogger(BngAttachmentJournal.class)
+                    .warn("Unable to delete the attachment journal: {}", e.getMessage());
+        }
+    }
+
+    private void append(byte[] record) {
+        ExecutorService currentWriter = writer;
+        if (currentWriter == null) {
+            return;
+        }
+        pendingRecords.add(record);
+        if (drainScheduled.compareAndSet(false, true)) {
+            try {
+                currentWriter.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // Stopped in the meantime, the final snapshot has the mutation
+                log.debug("Attachment journal stopped, record not written");
+            }
+        }
+    }
+
+    /**
+     * Writes the pending records to the journal file, all at once.
+     */
+    private void drain() {
+        drainScheduled.set(false);
+        if (journal == null) {
+            return;
+        }
+        try {
+            byte[] record;
+            while ((record = pendingRecords.poll()) != null) {
+                journal.write(record);
+                journalRecords++;
+            }
+            journal.flush();
+        } catch (IOException e) {
+            log.error("Unable to write the attachment journal: {}", e.getMessage());
+        }
+        if (journalRecords > snapshotRecords + COMPACTION_THRESHOLD) {
+            compact();
+        }
+    }
+
+    /**
+     * Writes a snapshot of the current attachments and starts a new journal.
+     * The snapshot is read after the records already written to the journal
+     * have been applied to the attachments, and replaying the newer records
+     * on top of it gives the same attachments.
+     *
+     * @return True if the snapshot has been written, false otherwise
+     */
+    private boolean compact() {
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        Path tmp = directory.resolve(SNAPSHOT_FILE + TMP_SUFFIX);
+        closeJournal();
+        try {
+            long records = 0;
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                        StandardOpenOption.TRUNCATE_EXISTING);
+                 OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel))) {
+                writeHeader(out);
+                for (var attachment : attachments.get().entrySet()) {
+                    if (attachment.getValue().type() == BngProgrammable.Attachment.AttachmentType.PPPoE) {
+                        out.write(encode(attachment.getKey(), attachment.getValue()));
+                        records++;
+                    }
+                }
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            snapshotRecords = records;
+            journal = new BufferedOutputStream(Files.newOutputStream(
+                    directory.resolve(JOURNAL_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING));
+            writeHeader(journal);
+            journal.flush();
+            journalRecords = 0;
+            log.debug("Attachment journal compacted, {} attachments", records);
+            return true;
+        } catch (IOException e) {
+            log.error("Unable to compact the attachment journal: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void closeJournal() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            log.warn("Unable to close the attachment journal: {}", e.getMessage());
+        }
+        journal = null;
+    }
+
+    private static void writeHeader(OutputStream out) throws IOException {
+        out.write(ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).array());
+    }
+
+    /**
+     * Reads the records of the given file, up to the first invalid one.
+     */
+    private List<Record> read(Path path, Function<String, ApplicationId> appIds) {
+        List<Record> records = new ArrayList<>();
+        if (!Files.exists(path)) {
+            return records;
+        }
+        byte[] data;
+        try {
+            data = Files.readAllBytes(path);
+        } catch (IOException e) {
+            log.warn("Unable to read the attachment journal {}: {}", path, e.getMessage());
+            return records;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        if (data.length < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            log.warn("Ignoring attachment journal {} with unknown format", path);
+            return records;
+        }
+        // Frames are located sequentially, then decoded in parallel
+        List<int[]> frames = new ArrayList<>();
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= FRAME_HEADER_SIZE) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                break;
+            }
+            crc.reset();
+            crc.update(data, buffer.position(), length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            frames.add(new int[]{buffer.position(), length});
+            buffer.position(buffer.position() + length);
+        }
+        if (buffer.hasRemaining()) {
+            log.warn("Ignoring {} bytes of truncated or corrupted records in {}", buffer.remaining(), path);
+        }
+        return frames.parallelStream()
+                .map(frame -> decode(data, frame[0], frame[1], appIds))
+                .filter(record -> record != null)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Encodes a framed record, removing the attachment if null.
+     */
+    private static byte[] encode(String attachmentKey, BngAttachment attachment) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0);
+            out.writeInt(0);
+            out.writeByte(attachment != null ? OP_PUT : OP_REMOVE);
+            out.writeUTF(attachmentKey);
+            if (attachment != null) {
+                writeString(out, attachment.appId() != null ? attachment.appId().name() : null);
+                out.writeShort(attachment.sTag().toShort());
+                out.writeShort(attachment.cTag().toShort());
+                out.writeLong(attachment.macAddress().toLong());
+                writeIp(out, attachment.ipAddress());
+                out.writeBoolean(attachment.lineActive());
+                writeString(out, attachment.oltConnectPoint() != null ?
+                        attachment.oltConnectPoint().toString() : null);
+                writeString(out, attachment.onuSerial());
+                out.writeShort(attachment.qinqTpid());
+                writeIp(out, attachment.ipv6Address());
+                writeIp(out, attachment.delegatedPrefix() != null ?
+                        attachment.delegatedPrefix().address() : null);
+                out.writeByte(attachment.delegatedPrefix() != null ?
+                                      attachment.delegatedPrefix().prefixLength() : 0);
+                out.writeShort(attachment.pppoeSessionId());
+            }
+        } catch (IOException e) {
+            // Not thrown when writing to memory
+            throw new IllegalStateException(e);
+        }
+        byte[] record = bytes.toByteArray();
+        int length = record.length - FRAME_HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        crc.update(record, FRAME_HEADER_SIZE, length);
+        ByteBuffer.wrap(record).putInt(length).putInt((int) crc.getValue());
+        return record;
+    }
+
+    private Record decode(byte[] data, int offset, int length, Function<String, ApplicationId> appIds) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, offset, length))) {
+            byte op = in.readByte();
+            String attachmentKey = in.readUTF();
+            if (op == OP_REMOVE) {
+                return new Record(attachmentKey, null);
+            }
+            String appName = readString(in);
+            PppoeBngAttachment.Builder builder = PppoeBngAttachment.builder();
+            builder.withApplicationId(appName != null ? appIds.apply(appName) : null)
+                    .withSTag(VlanId.vlanId(in.readShort()))
+                    .withCTag(VlanId.vlanId(in.readShort()))
+                    .withMacAddress(MacAddress.valueOf(in.readLong()))
+                    .withIpAddress(readIp(in))
+                    .lineActivated(in.readBoolean());
+            String oltConnectPoint = readString(in);
+            builder.withOltConnectPoint(oltConnectPoint != null ?
+                                                ConnectPoint.deviceConnectPoint(oltConnectPoint) : null)
+                    .withOnuSerial(readString(in))
+                    .withQinqTpid(in.readShort())
+                    .withIpv6Address(readIp(in));
+            IpAddress prefixAddress = readIp(in);
+            int prefixLength = in.readByte();
+            builder.withDelegatedPrefix(prefixAddress != null ? IpPrefix.valueOf(prefixAddress, prefixLength) : null);
+            return new Record(attachmentKey, builder.withPppoeSessionId(in.readShort()).build());
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Skipping undecodable attachment record: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeIp(DataOutputStream out, IpAddress address) throws IOException {
+        if (address == null) {
+            out.writeByte(0);
+            return;
+        }
+        byte[] bytes = address.toOctets();
+        out.writeByte(bytes.length);
+        out.write(bytes);
+    }
+
+    private static IpAddress readIp(DataInputStream in) throws IOException {
+        int length = in.readByte();
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return IpAddress.valueOf(length == IpAddress.INET_BYTE_LENGTH ?
+                                         IpAddress.Version.INET : IpAddress.Version.INET6, bytes);
+    }
+
+    /**
+     * Decoded record, with a null attachment for a removal.
+     */
+    private static final class Record {
+        private final String key;
+        private final BngAttachment attachment;
+
+        private Record(String key, BngAttachment attachment) {
+            this.key = key;
+            this.attachment = attachment;
+        }
+    }
+}
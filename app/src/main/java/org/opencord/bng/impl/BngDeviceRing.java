@@ -0,0 +1,71 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.impl;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.onosproject.net.DeviceId;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Consistent hash ring of the BNG user plane devices. Each device is placed
+ * on the ring several times, so that adding or removing a device moves only
+ * the attachments of its share of the ring.
+ */
+final class BngDeviceRing {
+
+    private static final int VIRTUAL_NODES = 64;
+    private static final HashFunction HASH = Hashing.murmur3_32();
+
+    private final NavigableMap<Integer, DeviceId> ring = new TreeMap<>();
+
+    /**
+     * Creates a ring of the given devices.
+     *
+     * @param deviceIds The BNG user plane devices
+     */
+    BngDeviceRing(Collection<DeviceId> deviceIds) {
+        for (DeviceId deviceId : deviceIds) {
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                ring.put(hash(deviceId + "#" + i), deviceId);
+            }
+        }
+    }
+
+    /**
+     * Returns the device the given attachment is assigned to.
+     *
+     * @param attachmentKey The attachment key
+     * @return The BNG user plane device, null if the ring is empty
+     */
+    DeviceId lookup(String attachmentKey) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Integer, DeviceId> entry = ring.ceilingEntry(hash(attachmentKey));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    private static int hash(String key) {
+        return HASH.hashString(key, StandardCharsets.UTF_8).asInt();
+    }
+}
@@ -17,12 +17,18 @@
 package org.opencord.bng.impl;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.apache.commons.lang3.tuple.Pair;
 import org.onlab.packet.EthType;
 import org.onlab.packet.IpAddress;
+import org.onlab.packet.IpPrefix;
 import org.onlab.packet.MacAddress;
 import org.onlab.packet.VlanId;
+import org.onlab.util.SharedExecutors;
+import org.onlab.util.Tools;
+import org.onosproject.cfg.ComponentConfigService;
 import org.onosproject.core.ApplicationId;
 import org.onosproject.core.CoreService;
 import org.onosproject.net.ConnectPoint;
@@ -49,36 +55,83 @@ import org.onosproject.net.host.HostProviderService;
 import org.onosproject.net.link.LinkService;
 import org.onosproject.net.provider.ProviderId;
 import org.opencord.bng.BngAttachment;
+import org.opencord.bng.BngAttachment.Field;
 import org.opencord.bng.BngService;
+import org.opencord.bng.BngSessionLatencyService;
 import org.opencord.bng.PppoeBngAttachment;
+import org.opencord.bng.PppoeBngControlHandler;
 import org.opencord.bng.config.BngConfig;
+import org.opencord.bng.config.BngConfig.AttachmentPlacement;
+import org.osgi.service.component.ComponentConstants;
+import org.osgi.service.component.ComponentContext;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Dictionary;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Properties;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import static org.onlab.util.Tools.groupedThreads;
 import static org.onosproject.net.config.basics.SubjectFactories.APP_SUBJECT_FACTORY;
+import static org.opencord.bng.impl.OsgiPropertyConstants.ATTACHMENT_JOURNAL_ENABLED;
+import static org.opencord.bng.impl.OsgiPropertyConstants.ATTACHMENT_JOURNAL_ENABLED_DEFAULT;
+import static org.opencord.bng.impl.OsgiPropertyConstants.PORT_DOWN_PADT;
+import static org.opencord.bng.impl.OsgiPropertyConstants.PORT_DOWN_PADT_DEFAULT;
 
 /**
  * Implements the network level BNG service API to manage attachments.
  */
-@Component(immediate = true)
+@Component(immediate = true,
+        property = {
+                PORT_DOWN_PADT + ":Boolean=" + PORT_DOWN_PADT_DEFAULT,
+                ATTACHMENT_JOURNAL_ENABLED + ":Boolean=" + ATTACHMENT_JOURNAL_ENABLED_DEFAULT,
+        }
+)
 public class BngManager implements HostProvider, BngService {
     public static final String BNG_APP = "org.opencord.bng";
 
     private static final ProviderId PROVIDER_ID = new ProviderId("bngapp", BngManager.BNG_APP);
 
     private final Logger log = LoggerFactory.getLogger(getClass());
-    private final AtomicBoolean bnguInitialized = new AtomicBoolean(false);
+    // BNG-U devices set up, by device ID
+    private final Map<DeviceId, BngProgrammable> bngProgrammables = Maps.newConcurrentMap();
+    // Serializes the setup and the clean-up of each BNG-U device
+    private final Map<DeviceId, Object> bnguLocks = Maps.newConcurrentMap();
+    // Attachments removed by a single task when an OLT port goes down
+    private static final int TEARDOWN_BATCH_SIZE = 64;
+    private static final int TEARDOWN_THREADS = 4;
+    private static final long TEARDOWN_TIMEOUT_MS = 5000;
+    // Fields identifying the line of an attachment in the BNG-U tables
+    private static final Set<Field> LINE_FIELDS = Sets.immutableEnumSet(Field.S_TAG, Field.C_TAG);
+    // Fields whose change is applied by setting up the attachment again: the
+    // line state overwrites the entries of the line, the others are not part
+    // of the BNG-U entries. Any other change leaves stale entries behind
+    // (e.g. the old IP address or PPPoE session ID), the old attachment is
+    // removed first.
+    private static final Set<Field> IN_PLACE_FIELDS = Sets.immutableEnumSet(
+            Field.LINE_ACTIVE, Field.OLT_CONNECT_POINT, Field.ONU_SERIAL);
+    // Fields part of the host description of an attachment
+    private static final Set<Field> HOST_FIELDS = Sets.immutableEnumSet(
+            Field.S_TAG, Field.C_TAG, Field.MAC_ADDRESS, Field.IP_ADDRESS, Field.IPV6_ADDRESS,
+            Field.DELEGATED_PREFIX, Field.OLT_CONNECT_POINT, Field.ONU_SERIAL);
 
     @Reference(cardinality = ReferenceCardinality.MANDATORY)
     protected LinkService linkService;
@@ -95,6 +148,33 @@ public class BngManager implements HostProvider, BngService {
     @Reference(cardinality = ReferenceCardinality.MANDATORY)
     protected HostProviderRegistry providerRegistry;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY)
+    protected BngSessionLatencyService latencyService;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY)
+    protected PppoeBngControlHandler pppoeHandler;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY)
+    protected ComponentConfigService componentConfigService;
+
+    /**
+     * Send a PADT to the PPPoE server on behalf of the attachments removed
+     * because their OLT port went down.
+     */
+    private boolean portDownPadt = PORT_DOWN_PADT_DEFAULT;
+    /**
+     * Store the registered attachments in a local journal, to restore them
+     * and keep the BNG-U state when the application bundle is stopped, e.g.
+     * on upgrade or ONOS restart. Disable it before deactivating the
+     * application to clean up the BNG-Us; disabling it deletes the journal.
+     */
+    private boolean attachmentJournalEnabled = ATTACHMENT_JOURNAL_ENABLED_DEFAULT;
+    private volatile BngAttachmentJournal attachmentJournal;
+    // BNG-U devices whose state is kept and reconciled with the attachments
+    // restored from the journal, on their first setup after activation
+    private final Set<DeviceId> warmDevices = Sets.newConcurrentHashSet();
+    private volatile boolean warmStart;
+
     private ConfigFactory<ApplicationId, BngConfig> cfgFactory = new ConfigFactory<>(
             APP_SUBJECT_FACTORY,
             BngConfig.class,
@@ -104,22 +184,45 @@ public class BngManager implements HostProvider, BngService {
             return new BngConfig();
         }
     };
-    private BngProgrammable bngProgrammable;
-    private DeviceId bngDeviceId;
+    private volatile Set<DeviceId> bngDeviceIds = ImmutableSet.of();
+    private volatile AttachmentPlacement attachmentPlacement = AttachmentPlacement.TOPOLOGY;
+    private volatile BngDeviceRing bngDeviceRing = new BngDeviceRing(ImmutableSet.of());
     private InternalDeviceListener deviceListener;
     private InternalConfigListener cfgListener;
     private HostProviderService hostProviderService;
     // TODO: add support for other attachment type
     private Map<String, Pair<BngAttachment, HostId>> registeredAttachment;
+    // BNG-U device each registered attachment is assigned to
+    private Map<String, DeviceId> attachmentDevices;
+    // Keys of the registered attachments behind each OLT connect point
+    private Map<ConnectPoint, Set<String>> oltAttachmentKeys;
+    // OLT connect points with attachments seen going down, until enabled again
+    private final Set<ConnectPoint> disabledOltPorts = Sets.newConcurrentHashSet();
+    private ExecutorService teardownExecutor;
     private ApplicationId appId;
 
     @Activate
-    protected void activate() {
+    protected void activate(ComponentContext context) {
         appId = coreService.registerApplication(BNG_APP);
+        componentConfigService.registerProperties(getClass());
         hostProviderService = providerRegistry.register(this);
-        registeredAttachment = Maps.newHashMap();
-        bngProgrammable = null;
-        bngDeviceId = null;
+        registeredAttachment = Maps.newConcurrentMap();
+        attachmentDevices = Maps.newConcurrentMap();
+        oltAttachmentKeys = Maps.newConcurrentMap();
+        disabledOltPorts.clear();
+        teardownExecutor = Executors.newFixedThreadPool(
+                TEARDOWN_THREADS, groupedThreads("onos/bng", "attachment-teardown-%d", log));
+        warmDevices.clear();
+        warmStart = false;
+        // Restores the attachments before any BNG-U is set up
+        modified(context);
+        if (!attachmentJournalEnabled) {
+            // Left behind by a run with the journal enabled, the BNG-Us are
+            // cleaned up at setup and the journal would restore stale attachments
+            BngAttachmentJournal.delete(journalDirectory());
+        }
+        bngProgrammables.clear();
+        bngDeviceIds = ImmutableSet.of();
         deviceListener = new InternalDeviceListener();
         cfgListener = new InternalConfigListener();
         cfgService.addListener(cfgListener);
@@ -133,34 +236,121 @@ public class BngManager implements HostProvider, BngService {
         log.info("BNG app activated");
     }
 
-    @Deactivate
-    protected void deactivate() {
-        providerRegistry.unregister(this);
-        if (bngProgrammableAvailable()) {
-            try {
-                bngProgrammable.cleanUp(appId);
-            } catch (BngProgrammableException e) {
-                log.error("Error cleaning-up the BNG-U, {}", e.getMessage());
+    @Modified
+    protected void modified(ComponentContext context) {
+        Dictionary<?, ?> properties = context != null ? context.getProperties() : new Properties();
+        Boolean padt = Tools.isPropertyEnabled(properties, PORT_DOWN_PADT);
+        portDownPadt = padt != null ? padt : PORT_DOWN_PADT_DEFAULT;
+        Boolean journalEnabled = Tools.isPropertyEnabled(properties, ATTACHMENT_JOURNAL_ENABLED);
+        attachmentJournalEnabled = journalEnabled != null ? journalEnabled : ATTACHMENT_JOURNAL_ENABLED_DEFAULT;
+        if (attachmentJournalEnabled && attachmentJournal == null) {
+            startJournal();
+        } else if (!attachmentJournalEnabled && attachmentJournal != null) {
+            stopJournal();
+            // A journal left behind would restore stale attachments later on
+            BngAttachmentJournal.delete(journalDirectory());
+        }
+    }
+
+    private static Path journalDirectory() {
+        String dataDir = System.getProperty("karaf.data", System.getProperty("java.io.tmpdir"));
+        return Paths.get(dataDir, "bng", "attachments");
+    }
+
+    /**
+     * Restores the attachments stored in the journal, if none is registered,
+     * and starts journaling the attachment mutations. The BNG-U state is kept
+     * only if the journal has been stopped cleanly, otherwise it could hold
+     * attachments missing from the journal.
+     */
+    private void startJournal() {
+        BngAttachmentJournal journal = new BngAttachmentJournal(
+                journalDirectory(), () -> Maps.transformValues(registeredAttachment, Pair::getLeft));
+        if (registeredAttachment.isEmpty()) {
+            long start = System.nanoTime();
+            Map<String, BngAttachment> restored = journal.load(coreService::getAppId);
+            restored.forEach((attachmentKey, attachment) -> {
+                registeredAttachment.put(attachmentKey, Pair.of(
+                        attachment, HostId.hostId(attachment.macAddress(), attachment.sTag())));
+                indexAttachment(attachmentKey, attachment);
+            });
+            boolean clean = journal.stoppedCleanly();
+            warmStart = clean && !restored.isEmpty();
+            log.info("Restored {} attachments in {} ms", restored.size(),
+                     TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            if (!clean && !restored.isEmpty()) {
+                log.warn("BNG attachment journal not stopped cleanly, " +
+                                 "BNG-Us will be cleaned up and the attachments set up again");
             }
         }
+        try {
+            journal.start();
+            attachmentJournal = journal;
+            log.info("BNG attachment journal started");
+        } catch (IOException e) {
+            log.error("Unable to start the BNG attachment journal: {}", e.getMessage());
+        }
+    }
+
+    private void stopJournal() {
+        BngAttachmentJournal journal = attachmentJournal;
+        attachmentJournal = null;
+        if (journal != null) {
+            journal.stop();
+            log.info("BNG attachment journal stopped");
+        }
+    }
+
+    @Deactivate
+    protected void deactivate(int reason) {
+        componentConfigService.unregisterProperties(getClass(), false);
+        providerRegistry.unregister(this);
         deviceService.removeListener(deviceListener);
         cfgService.removeListener(cfgListener);
         cfgService.unregisterConfigFactory(cfgFactory);
+        // The teardown batches use the attachment maps, nulled below
+        teardownExecutor.shutdownNow();
+        try {
+            if (!teardownExecutor.awaitTermination(TEARDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                log.warn("Attachment teardown still running");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        boolean restarting = reason == ComponentConstants.DEACTIVATION_REASON_BUNDLE_STOPPED ||
+                reason == ComponentConstants.DEACTIVATION_REASON_REFERENCE;
+        if (attachmentJournal != null && restarting) {
+            // Keep the BNG-U state, the attachments are restored on the next activation
+            stopJournal();
+            bngProgrammables.clear();
+        } else {
+            // The journal, if any, is kept but not stopped cleanly: the
+            // BNG-Us are cleaned up on the next activation
+            BngAttachmentJournal journal = attachmentJournal;
+            attachmentJournal = null;
+            if (journal != null) {
+                journal.abort();
+            }
+            bngProgrammables.keySet().forEach(this::unsetBngDevice);
+        }
+        bngDeviceIds = ImmutableSet.of();
         registeredAttachment = null;
-        bnguInitialized.set(false);
+        attachmentDevices = null;
+        oltAttachmentKeys = null;
         log.info("BNG app deactivated");
     }
 
     @Override
     public void setupAttachment(String attachmentKey, BngAttachment attachment) {
-        // FIXME: the update case is not completely clear. Should the programAttachment method clean up the counters?
         assert attachment.type().equals(BngProgrammable.Attachment.AttachmentType.PPPoE);
         boolean updating = false;
+        Set<Field> changes = null;
         var alreadyRegAttachment = registeredAttachment.get(attachmentKey);
         if (alreadyRegAttachment == null) {
             log.info("Registering a new attachment: {}", attachment.toString());
         } else if (!attachment.equals(alreadyRegAttachment.getLeft())) {
-            log.info("Updating the attachment: {}", attachment.toString());
+            changes = attachment.diff(alreadyRegAttachment.getLeft());
+            log.info("Updating {} of the attachment: {}", changes, attachment.toString());
             updating = true;
         } else {
             log.info("Attachment already registered: {}", attachment.toString());
@@ -178,23 +368,172 @@ public class BngManager implements HostProvider, BngService {
         final HostDescription hostDescription = createHostDescription(
                 attachment.cTag(), attachment.sTag(),
                 attachment.macAddress(), attachment.ipAddress(),
+                attachment.ipv6Address(), attachment.delegatedPrefix(),
                 asgConnectPoint, pppoeAttachment.oltConnectPoint(), pppoeAttachment.onuSerial());
 
-        // Make sure that bngProgrammable is available and if so that the attachment is connected to the bngProgrammable
-        if (bngProgrammableAvailable() && isCorrectlyConnected(asgConnectPoint)) {
+        final DeviceId bngDeviceId = placeAttachment(attachmentKey, asgConnectPoint);
+        final DeviceId programmedDeviceId = attachmentDevices.get(attachmentKey);
+        if (updating) {
+            // The update could move the attachment to another BNG user plane
+            unprogramIfMoved(attachmentKey, alreadyRegAttachment.getLeft(), bngDeviceId);
+        }
+        // Make sure that the BNG user plane of the attachment is available
+        final BngProgrammable bngProgrammable = bngDeviceId != null ? bngProgrammables.get(bngDeviceId) : null;
+        if (bngProgrammable != null) {
             try {
-                programAttachment(attachment, hostId, hostDescription, updating);
+                if (updating && bngDeviceId.equals(programmedDeviceId)) {
+                    updateAttachment(bngProgrammable, alreadyRegAttachment, attachment, changes,
+                                     hostId, hostDescription);
+                } else {
+                    programAttachment(bngProgrammable, attachment, hostId, hostDescription, false);
+                }
+                latencyService.attachmentProgrammed(attachmentKey);
             } catch (BngProgrammableException ex) {
                 log.error("Attachment not created: " + ex.getMessage());
             }
         } else {
             // If the BNG user plane is not available, or the attachment is not connected to
-            // the correct BNG user plane, accept anyway the attachment.
+            // a BNG user plane, accept anyway the attachment.
             // Check if the attachment is correctly connected to the BNG user plane when that device will show up.
             log.info("BNG user plane not available, attachment accepted but not programmed");
         }
         log.info("PPPoE Attachment created/updated: {}", pppoeAttachment);
         registeredAttachment.put(attachmentKey, Pair.of(pppoeAttachment, hostId));
+        BngAttachmentJournal journal = attachmentJournal;
+        if (journal != null) {
+            journal.put(attachmentKey, pppoeAttachment);
+        }
+        if (updating) {
+            unindexAttachment(attachmentKey, alreadyRegAttachment.getLeft());
+        }
+        indexAttachment(attachmentKey, pppoeAttachment);
+        if (bngDeviceId != null) {
+            attachmentDevices.put(attachmentKey, bngDeviceId);
+        } else {
+            attachmentDevices.remove(attachmentKey);
+        }
+    }
+
+    /**
+     * Returns the BNG user plane device the given attachment is assigned to,
+     * according to the attachment placement policy.
+     *
+     * @param attachmentKey   The attachment key
+     * @param asgConnectPoint Attachment connect point from the ASG switch
+     *                        perspective
+     * @return The BNG user plane device ID, null if none is suitable
+     */
+    private DeviceId placeAttachment(String attachmentKey, ConnectPoint asgConnectPoint) {
+        if (attachmentPlacement == AttachmentPlacement.CONSISTENT_HASH) {
+            return bngDeviceRing.lookup(attachmentKey);
+        }
+        return bngDeviceIds.contains(asgConnectPoint.deviceId()) ? asgConnectPoint.deviceId() : null;
+    }
+
+    /**
+     * Removes the attachment from the BNG user plane it is programmed on, if
+     * it is not the given one.
+     *
+     * @param attachmentKey The attachment key
+     * @param attachment    The attachment as programmed
+     * @param bngDeviceId   The BNG user plane the attachment is now assigned to
+     */
+    private void unprogramIfMoved(String attachmentKey, BngAttachment attachment, DeviceId bngDeviceId) {
+        DeviceId oldDeviceId = attachmentDevices.get(attachmentKey);
+        if (oldDeviceId == null || oldDeviceId.equals(bngDeviceId)) {
+            return;
+        }
+        BngProgrammable oldBngProgrammable = bngProgrammables.get(oldDeviceId);
+        if (oldBngProgrammable != null) {
+            try {
+                oldBngProgrammable.removeAttachment(attachment);
+            } catch (BngProgrammableException ex) {
+                log.error("Exception when removing the attachment from {}: {}", oldDeviceId, ex.getMessage());
+            }
+        }
+        log.info("Attachment {} moved from BNG-U {} to {}", attachmentKey, oldDeviceId, bngDeviceId);
+    }
+
+    private void indexAttachment(String attachmentKey, BngAttachment attachment) {
+        oltAttachmentKeys.compute(attachment.oltConnectPoint(), (cp, keys) -> {
+            Set<String> attachmentKeys = keys != null ? keys : Sets.newConcurrentHashSet();
+            attachmentKeys.add(attachmentKey);
+            return attachmentKeys;
+        });
+    }
+
+    private void unindexAttachment(String attachmentKey, BngAttachment attachment) {
+        oltAttachmentKeys.computeIfPresent(attachment.oltConnectPoint(), (cp, keys) -> {
+            keys.remove(attachmentKey);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    /**
+     * Handles the port events of the devices other than the BNG-Us. The
+     * attachments behind an OLT connect point are removed when the port is
+     * removed or goes down, once until it is enabled again.
+     *
+     * @param event The port event
+     */
+    private void oltPortChanged(DeviceEvent event) {
+        ConnectPoint oltConnectPoint = new ConnectPoint(event.subject().id(), event.port().number());
+        if (event.type() == DeviceEvent.Type.PORT_UPDATED && event.port().isEnabled()) {
+            disabledOltPorts.remove(oltConnectPoint);
+            return;
+        }
+        Map<ConnectPoint, Set<String>> index = oltAttachmentKeys;
+        if (index == null || !index.containsKey(oltConnectPoint)) {
+            return;
+        }
+        if (event.type() == DeviceEvent.Type.PORT_REMOVED) {
+            disabledOltPorts.remove(oltConnectPoint);
+            tearDownAttachments(oltConnectPoint);
+        } else if (event.type() == DeviceEvent.Type.PORT_UPDATED && disabledOltPorts.add(oltConnectPoint)) {
+            tearDownAttachments(oltConnectPoint);
+        }
+    }
+
+    /**
+     * Removes the attachments behind an OLT connect point that went down,
+     * without waiting for the PPPoE server to terminate their sessions. The
+     * attachments are removed in batches from the teardown executor.
+     *
+     * @param oltConnectPoint The OLT connect point
+     */
+    private void tearDownAttachments(ConnectPoint oltConnectPoint) {
+        Map<ConnectPoint, Set<String>> index = oltAttachmentKeys;
+        Set<String> keys = index != null ? index.get(oltConnectPoint) : null;
+        if (keys == null || keys.isEmpty()) {
+            return;
+        }
+        List<String> attachmentKeys = List.copyOf(keys);
+        log.info("OLT port {} down, removing {} attachments", oltConnectPoint, attachmentKeys.size());
+        try {
+            Lists.partition(attachmentKeys, TEARDOWN_BATCH_SIZE).forEach(
+                    batch -> teardownExecutor.execute(() -> tearDownBatch(oltConnectPoint, batch)));
+        } catch (RejectedExecutionException e) {
+            log.debug("BNG app deactivated, attachments of {} not removed", oltConnectPoint);
+        }
+    }
+
+    private void tearDownBatch(ConnectPoint oltConnectPoint, List<String> attachmentKeys) {
+        for (String attachmentKey : attachmentKeys) {
+            Map<String, Pair<BngAttachment, HostId>> attachments = registeredAttachment;
+            if (attachments == null || Thread.currentThread().isInterrupted()) {
+                // Deactivated in the meantime
+                return;
+            }
+            Pair<BngAttachment, HostId> regAttachment = attachments.get(attachmentKey);
+            // The attachment could have been removed or moved in the meantime
+            if (regAttachment == null ||
+                    !oltConnectPoint.equals(regAttachment.getLeft().oltConnectPoint())) {
+                continue;
+            }
+            // Lets the attachment event handlers forget about the attachment
+            pppoeHandler.terminateSession(regAttachment.getLeft(), portDownPadt);
+            removeAttachment(attachmentKey);
+        }
     }
 
     private Optional<ConnectPoint> getAsgConnectPoint(ConnectPoint oltConnectPoint) {
@@ -212,19 +551,18 @@ public class BngManager implements HostProvider, BngService {
     }
 
     /**
-     * Setup of an attachment. Before calling this method, make sure that BNG
-     * programmable is available.
+     * Setup of an attachment on the given BNG user plane.
      *
+     * @param bngProgrammable
      * @param attachment
      * @param hostId
      * @param hostDescription
      * @param update
      * @throws BngProgrammableException
      */
-    private void programAttachment(BngAttachment attachment, HostId hostId,
+    private void programAttachment(BngProgrammable bngProgrammable, BngAttachment attachment, HostId hostId,
                                    HostDescription hostDescription, boolean update)
             throws BngProgrammableException {
-        assert bngProgrammableAvailable();
         bngProgrammable.setupAttachment(attachment);
         if (!update) {
             bngProgrammable.resetCounters(attachment);
@@ -233,6 +571,42 @@ public class BngManager implements HostProvider, BngService {
         hostProviderService.hostDetected(hostId, hostDescription, true);
     }
 
+    /**
+     * Applies the changes of an attachment already programmed on the given
+     * BNG user plane. The old attachment is removed first, unless only fields
+     * overwritten in place changed. The counters are kept unless the
+     * attachment moved to another line, and the host is updated only if its
+     * description changed.
+     *
+     * @param bngProgrammable The BNG user plane
+     * @param oldAttachment   The attachment as programmed and its host
+     * @param attachment      The updated attachment
+     * @param changes         The fields changed by the update
+     * @param hostId          The host ID of the updated attachment
+     * @param hostDescription The host description of the updated attachment
+     * @throws BngProgrammableException if the BNG user plane rejects the
+     *                                  update
+     */
+    private void updateAttachment(BngProgrammable bngProgrammable, Pair<BngAttachment, HostId> oldAttachment,
+                                  BngAttachment attachment, Set<Field> changes, HostId hostId,
+                                  HostDescription hostDescription)
+            throws BngProgrammableException {
+        boolean newLine = !Sets.intersection(changes, LINE_FIELDS).isEmpty();
+        if (!IN_PLACE_FIELDS.containsAll(changes)) {
+            bngProgrammable.removeAttachment(oldAttachment.getLeft());
+        }
+        bngProgrammable.setupAttachment(attachment);
+        if (newLine) {
+            bngProgrammable.resetCounters(attachment);
+        }
+        if (!Sets.intersection(changes, HOST_FIELDS).isEmpty()) {
+            if (!hostId.equals(oldAttachment.getRight())) {
+                hostProviderService.hostVanished(oldAttachment.getRight());
+            }
+            hostProviderService.hostDetected(hostId, hostDescription, true);
+        }
+    }
+
     /**
      * Create an host description from the attachment information.
      *
@@ -240,6 +614,8 @@ public class BngManager implements HostProvider, BngService {
      * @param sTag            Vlan S-TAG.
      * @param hostMac         MAC address of the attachment.
      * @param hostIp          IP address of the attachment.
+     * @param hostIpv6        IPv6 address of the attachment, or null.
+     * @param delegatedPrefix IPv6 prefix delegated to the attachment, or null.
      * @param asgConnectPoint Attachment connect point from the ASG switch
      *                        perspective.
      * @param oltConnectPoint Attachment connect point from the OLT
@@ -250,6 +626,8 @@ public class BngManager implements HostProvider, BngService {
     private HostDescription createHostDescription(VlanId cTag, VlanId sTag,
                                                   MacAddress hostMac,
                                                   IpAddress hostIp,
+                                                  IpAddress hostIpv6,
+                                                  IpPrefix delegatedPrefix,
                                                   ConnectPoint asgConnectPoint,
                                                   ConnectPoint oltConnectPoint,
                                                   String onuSerialNumber) {
@@ -260,14 +638,21 @@ public class BngManager implements HostProvider, BngService {
                                                                 asgConnectPoint.port(),
                                                                 System.currentTimeMillis()));
         var annotations = DefaultAnnotations.builder()
-                .set(ONU_ANNOTATION, onuSerialNumber)
-                .build();
-        Set<IpAddress> ips = hostIp != null
-                ? ImmutableSet.of(hostIp) : ImmutableSet.of();
+                .set(ONU_ANNOTATION, onuSerialNumber);
+        if (delegatedPrefix != null) {
+            annotations.set(DELEGATED_PREFIX_ANNOTATION, delegatedPrefix.toString());
+        }
+        ImmutableSet.Builder<IpAddress> ips = ImmutableSet.builder();
+        if (hostIp != null) {
+            ips.add(hostIp);
+        }
+        if (hostIpv6 != null) {
+            ips.add(hostIpv6);
+        }
         return new DefaultHostDescription(hostMac, sTag,
                                           hostLocation, auxLocation,
-                                          ips, cTag, EthType.EtherType.QINQ.ethType(),
-                                          false, annotations);
+                                          ips.build(), cTag, EthType.EtherType.QINQ.ethType(),
+                                          false, annotations.build());
     }
 
     @Override
@@ -281,9 +666,16 @@ public class BngManager implements HostProvider, BngService {
 
         final HostId hostToBeRemoved = HostId.hostId(regAttachment.macAddress(), regAttachment.sTag());
         registeredAttachment.remove(attachmentKey);
+        BngAttachmentJournal journal = attachmentJournal;
+        if (journal != null) {
+            journal.remove(attachmentKey);
+        }
+        unindexAttachment(attachmentKey, regAttachment);
+        final DeviceId bngDeviceId = attachmentDevices.remove(attachmentKey);
         // Try to remove host even if the BNG user plane is not available
         hostProviderService.hostVanished(hostToBeRemoved);
-        if (bngProgrammableAvailable()) {
+        final BngProgrammable bngProgrammable = bngDeviceId != null ? bngProgrammables.get(bngDeviceId) : null;
+        if (bngProgrammable != null) {
             try {
                 bngProgrammable.removeAttachment(regAttachment);
             } catch (BngProgrammableException ex) {
@@ -309,71 +701,71 @@ public class BngManager implements HostProvider, BngService {
     }
 
     /**
-     * Check if the given connect point is part of the BNG user plane device.
-     * Before calling this method, make sure that bngProgrammable is available.
-     *
-     * @param asgConnectPoint The connect point to check
-     * @return
-     */
-    private boolean isCorrectlyConnected(ConnectPoint asgConnectPoint) {
-        assert bngProgrammableAvailable();
-        return asgConnectPoint.deviceId().equals(bngProgrammable.data().deviceId());
-    }
-
-    /**
-     * Setup of the BNG user plane device. This method will cleanup the BNG
-     * pipeline, initialize it and then submit all the attachment already
-     * registered.
+     * Setup of a BNG user plane device. This method will cleanup the BNG
+     * pipeline, initialize it and then submit all the registered attachments
+     * assigned to the device.
      *
      * @param deviceId BNG user plane device ID
      */
     private void setBngDevice(DeviceId deviceId) {
-        synchronized (bnguInitialized) {
-            if (bnguInitialized.get()) {
+        synchronized (bnguLock(deviceId)) {
+            if (bngProgrammables.containsKey(deviceId)) {
                 log.debug("BNG-U {} already initialized", deviceId);
                 return;
             }
+            if (!bngDeviceIds.contains(deviceId)) {
+                log.debug("{} is no longer a BNG-U, skip setup", deviceId);
+                return;
+            }
             if (!deviceService.isAvailable(deviceId)) {
-                log.info("BNG-U is currently unavailable, skip setup");
+                log.info("BNG-U {} is currently unavailable, skip setup", deviceId);
                 return;
             }
             if (!isBngProgrammable(deviceId)) {
                 log.warn("{} is not BNG-U", deviceId);
                 return;
             }
-            if (bngProgrammable != null && !bngProgrammable.data().deviceId().equals(deviceId)) {
-                log.error("Change of the BNG-U while BNG-U device is available is not supported!");
-                return;
-            }
 
-            bngProgrammable = deviceService.getDevice(deviceId).as(BngProgrammable.class);
+            BngProgrammable bngProgrammable = deviceService.getDevice(deviceId).as(BngProgrammable.class);
             log.info("Setup BNG-U: {}", deviceId);
 
             // Initialize behavior
             try {
-                bngProgrammable.cleanUp(appId);
+                // After a warm restart the state of the previous run is kept
+                // and the restored attachments are submitted on top of it
+                boolean reconcile = warmStart && warmDevices.add(deviceId);
+                if (!reconcile) {
+                    bngProgrammable.cleanUp(appId);
+                }
                 bngProgrammable.init(appId);
+                // Attachments set up from now on are programmed directly
+                bngProgrammables.put(deviceId, bngProgrammable);
                 // FIXME: we can improve this re-registration, keeping track of which attachment
                 //  already has the flow rules submitted in the flow rule subsystem.
                 //  In this way we do not need to cleanUp the bngProgrammable every time it come back online.
                 //  If there is any already registered attachment, try to re-setup their attachment.
-                resubmitRegisteredAttachment();
-                bnguInitialized.set(true);
-                log.info("BNG-U setup successful!");
+                resubmitRegisteredAttachment(deviceId, bngProgrammable, reconcile);
+                log.info("BNG-U {} setup successful!", deviceId);
             } catch (BngProgrammableException e) {
-                log.error("Error setup BNG-U, {}", e.getMessage());
+                bngProgrammables.remove(deviceId);
+                log.error("Error setup BNG-U {}, {}", deviceId, e.getMessage());
             }
         }
     }
 
     /**
-     * Resubmit all the attachments to the BNG user plane device. Before calling
-     * this method, make sure that bngProgrammable is available
+     * Resubmit to the given BNG user plane device all the attachments
+     * assigned to it.
      *
+     * @param deviceId        BNG user plane device ID
+     * @param bngProgrammable BNG user plane device behaviour
+     * @param reconcile       True if the device kept the attachments of the
+     *                        previous run, whose counters are preserved
      * @throws BngProgrammableException when error in BNG user plane device.
      */
-    private void resubmitRegisteredAttachment() throws BngProgrammableException {
-        assert bngProgrammableAvailable();
+    private void resubmitRegisteredAttachment(DeviceId deviceId, BngProgrammable bngProgrammable,
+                                              boolean reconcile)
+            throws BngProgrammableException {
         for (var registeredAttachemnt : registeredAttachment.entrySet()) {
             var attachment = registeredAttachemnt.getValue().getLeft();
             var host = registeredAttachemnt.getValue().getRight();
@@ -383,38 +775,89 @@ public class BngManager implements HostProvider, BngService {
                 log.info("Unsupported attachment: {}", attachentKey);
                 continue;
             }
-            if (asgConnectPoint.isPresent() && isCorrectlyConnected(asgConnectPoint.orElseThrow())) {
+            if (asgConnectPoint.isPresent() &&
+                    deviceId.equals(placeAttachment(attachentKey, asgConnectPoint.orElseThrow()))) {
                 HostDescription hostDescription = createHostDescription(
                         attachment.cTag(), attachment.sTag(),
                         attachment.macAddress(), attachment.ipAddress(),
+                        attachment.ipv6Address(), attachment.delegatedPrefix(),
                         asgConnectPoint.orElseThrow(), attachment.oltConnectPoint(),
                         attachment.onuSerial());
                 // When resubmitting registered attachment act as the attachment is being setting up.
-                programAttachment(attachment, host, hostDescription, false);
-            } else {
+                programAttachment(bngProgrammable, attachment, host, hostDescription, reconcile);
+                attachmentDevices.put(attachentKey, deviceId);
+            } else if (asgConnectPoint.isEmpty()) {
                 log.info("Attachment is not connected to a valid BNG user plane: {}", attachment);
             }
         }
     }
 
     /**
-     * Unset the BNG user plane device. If available it will be cleaned-up.
+     * Moves the registered attachments to the BNG user plane devices they are
+     * assigned to after a change of the devices or of the placement policy.
+     * Attachments assigned to a device not yet set up are programmed when the
+     * device is set up.
      */
-    private void unsetBngDevice() {
-        synchronized (bnguInitialized) {
+    private void rebalanceAttachments() {
+        for (var registeredAttachemnt : registeredAttachment.entrySet()) {
+            var attachentKey = registeredAttachemnt.getKey();
+            var attachment = registeredAttachemnt.getValue().getLeft();
+            var asgConnectPoint = getAsgConnectPoint(attachment.oltConnectPoint());
+            if (asgConnectPoint.isEmpty()) {
+                continue;
+            }
+            DeviceId deviceId = placeAttachment(attachentKey, asgConnectPoint.orElseThrow());
+            if (Objects.equals(deviceId, attachmentDevices.get(attachentKey))) {
+                continue;
+            }
+            unprogramIfMoved(attachentKey, attachment, deviceId);
+            if (deviceId == null) {
+                attachmentDevices.remove(attachentKey);
+                continue;
+            }
+            attachmentDevices.put(attachentKey, deviceId);
+            BngProgrammable bngProgrammable = bngProgrammables.get(deviceId);
+            if (bngProgrammable == null) {
+                continue;
+            }
+            try {
+                HostDescription hostDescription = createHostDescription(
+                        attachment.cTag(), attachment.sTag(),
+                        attachment.macAddress(), attachment.ipAddress(),
+                        attachment.ipv6Address(), attachment.delegatedPrefix(),
+                        asgConnectPoint.orElseThrow(), attachment.oltConnectPoint(),
+                        attachment.onuSerial());
+                programAttachment(bngProgrammable, attachment, registeredAttachemnt.getValue().getRight(),
+                                  hostDescription, false);
+            } catch (BngProgrammableException e) {
+                log.error("Attachment {} not moved to {}: {}", attachentKey, deviceId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Unset a BNG user plane device. If available it will be cleaned-up.
+     *
+     * @param deviceId BNG user plane device ID
+     */
+    private void unsetBngDevice(DeviceId deviceId) {
+        synchronized (bnguLock(deviceId)) {
+            BngProgrammable bngProgrammable = bngProgrammables.remove(deviceId);
             if (bngProgrammable != null) {
-                log.info("BNG-U cleanup");
+                log.info("BNG-U {} cleanup", deviceId);
                 try {
                     bngProgrammable.cleanUp(appId);
                 } catch (BngProgrammableException e) {
-                    log.error("Error in BNG-U, {}", e.getMessage());
+                    log.error("Error in BNG-U {}, {}", deviceId, e.getMessage());
                 }
-                bngProgrammable = null;
-                bnguInitialized.set(false);
             }
         }
     }
 
+    private Object bnguLock(DeviceId deviceId) {
+        return bnguLocks.computeIfAbsent(deviceId, k -> new Object());
+    }
+
     /**
      * Check if the device is registered and is BNG user plane.
      *
@@ -426,26 +869,53 @@ public class BngManager implements HostProvider, BngService {
         return device != null && device.is(BngProgrammable.class);
     }
 
-    /**
-     * Check if the BNG user plane is available.
-     *
-     * @return
-     * @throws BngProgrammableException
-     */
-    private boolean bngProgrammableAvailable() {
-        return bngProgrammable != null;
+    private synchronized void bngUpdateConfig(BngConfig config) {
+        if (!config.isValid()) {
+            log.error("Invalid BNG app config, keeping the previous one: {}", config);
+            return;
+        }
+        AttachmentPlacement newAttachmentPlacement;
+        try {
+            newAttachmentPlacement = config.getAttachmentPlacement();
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid BNG app config, keeping the previous one: {}", e.getMessage());
+            return;
+        }
+        Set<DeviceId> newBngDeviceIds = ImmutableSet.copyOf(config.getBnguDeviceIds());
+        Set<DeviceId> removedDeviceIds = ImmutableSet.copyOf(Sets.difference(bngDeviceIds, newBngDeviceIds));
+        bngDeviceIds = newBngDeviceIds;
+        attachmentPlacement = newAttachmentPlacement;
+        bngDeviceRing = new BngDeviceRing(newBngDeviceIds);
+        removedDeviceIds.forEach(this::unsetBngDevice);
+        rebalanceAttachments();
+        // Each device is set up independently of the others
+        newBngDeviceIds.forEach(deviceId -> SharedExecutors.getPoolThreadExecutor()
+                .execute(() -> setBngDevice(deviceId)));
     }
 
-    private void bngUpdateConfig(BngConfig config) {
-        if (config.isValid()) {
-            bngDeviceId = config.getBnguDeviceId();
-            setBngDevice(bngDeviceId);
-        }
+    private synchronized void bngRemoveConfig() {
+        Set<DeviceId> removedDeviceIds = bngDeviceIds;
+        bngDeviceIds = ImmutableSet.of();
+        bngDeviceRing = new BngDeviceRing(ImmutableSet.of());
+        removedDeviceIds.forEach(this::unsetBngDevice);
+        attachmentDevices.clear();
     }
 
     @Override
+    @Deprecated
     public DeviceId getBngDeviceId() {
-        return bngDeviceId;
+        Set<DeviceId> deviceIds = bngDeviceIds;
+        return deviceIds.isEmpty() ? null : deviceIds.iterator().next();
+    }
+
+    @Override
+    public Set<DeviceId> getBngDeviceIds() {
+        return bngDeviceIds;
+    }
+
+    @Override
+    public DeviceId getBngDeviceId(String attachmentKey) {
+        return attachmentDevices.get(attachmentKey);
     }
 
     /**
@@ -469,35 +939,39 @@ public class BngManager implements HostProvider, BngService {
     }
 
     /**
-     * React to new devices. The first device recognized to have BNG-U
-     * functionality is taken as BNG-U device.
+     * React to the events of the configured BNG-U devices and to the ports
+     * of the OLT devices going down.
      */
     private class InternalDeviceListener implements DeviceListener {
         @Override
         public void event(DeviceEvent event) {
             DeviceId deviceId = event.subject().id();
-            if (deviceId.equals(bngDeviceId)) {
-                switch (event.type()) {
-                    case DEVICE_ADDED:
-                    case DEVICE_UPDATED:
-                    case DEVICE_AVAILABILITY_CHANGED:
-                        if (deviceService.isAvailable(deviceId)) {
-                            log.debug("Event: {}, setting BNG-U", event.type());
-                            setBngDevice(deviceId);
-                        }
-                        break;
-                    case DEVICE_REMOVED:
-                    case DEVICE_SUSPENDED:
-                        unsetBngDevice();
-                        break;
-                    case PORT_ADDED:
-                    case PORT_UPDATED:
-                    case PORT_REMOVED:
-                    case PORT_STATS_UPDATED:
-                        break;
-                    default:
-                        log.warn("Unknown device event type {}", event.type());
+            if (!bngDeviceIds.contains(deviceId)) {
+                if (event.port() != null) {
+                    oltPortChanged(event);
                 }
+                return;
+            }
+            switch (event.type()) {
+                case DEVICE_ADDED:
+                case DEVICE_UPDATED:
+                case DEVICE_AVAILABILITY_CHANGED:
+                    if (deviceService.isAvailable(deviceId)) {
+                        log.debug("Event: {}, setting BNG-U", event.type());
+                        setBngDevice(deviceId);
+                    }
+                    break;
+                case DEVICE_REMOVED:
+                case DEVICE_SUSPENDED:
+                    unsetBngDevice(deviceId);
+                    break;
+                case PORT_ADDED:
+                case PORT_UPDATED:
+                case PORT_REMOVED:
+                case PORT_STATS_UPDATED:
+                    break;
+                default:
+                    log.warn("Unknown device event type {}", event.type());
             }
         }
     }
@@ -519,7 +993,7 @@ public class BngManager implements HostProvider, BngService {
                     break;
                 case CONFIG_REMOVED:
                     event.prevConfig().ifPresent(config -> {
-                        unsetBngDevice();
+                        bngRemoveConfig();
                         log.info("{} removed", config.getClass().getSimpleName());
                     });
                     break;
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.impl;
+
+import org.onosproject.net.behaviour.BngProgrammable.BngCounterType;
+import org.onosproject.net.pi.runtime.PiCounterCellData;
+import org.opencord.bng.BngMetricsService;
+import org.opencord.bng.BngService;
+import org.opencord.bng.BngStatsService;
+import org.opencord.bng.PppoeBngControlHandler;
+import org.opencord.bng.PppoeEvent;
+import org.opencord.bng.PppoeEventListenerStats;
+import org.opencord.bng.PppoeServerStats;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.opencord.bng.impl.OpenMetricsWriter.COUNTER;
+import static org.opencord.bng.impl.OpenMetricsWriter.GAUGE;
+
+/**
+ * Exports the BNG app metrics (attachment counters, control plane counters and
+ * PPPoE relay health) using the OpenMetrics text format.
+ */
+@Component(immediate = true)
+public class BngMetricsManager implements BngMetricsService {
+
+    private static final String ATTACHMENTS = "bng_attachments";
+    private static final String ATTACHMENT_PACKETS = "bng_attachment_packets";
+    private static final String ATTACHMENT_BYTES = "bng_attachment_bytes";
+    private static final String CONTROL_PACKETS = "bng_control_plane_packets";
+    private static final String CONTROL_BYTES = "bng_control_plane_bytes";
+    private static final String RELAY_PACKETS = "bng_pppoe_relay_packets";
+    private static final String RELAY_EVENTS = "bng_pppoe_events";
+    private static final String CACHE_HIT_RATIO = "bng_cache_hit_ratio";
+    private static final String QUEUE_DEPTH = "bng_queue_depth";
+    private static final String RELAY_OFFLOAD = "bng_pppoe_relay_offload";
+    private static final String RELAY_CONFIG_VERSION = "bng_pppoe_relay_config_version";
+    private static final String RELAY_CONFIG_RELOAD = "bng_pppoe_relay_config_reload_seconds";
+    private static final String SERVER_UP = "bng_pppoe_server_up";
+    private static final String SERVER_OFFERS = "bng_pppoe_server_offers";
+    private static final String SERVER_TIMEOUTS = "bng_pppoe_server_timeouts";
+    private static final String SERVER_PADO_LATENCY = "bng_pppoe_server_pado_latency_seconds";
+    private static final String LISTENER_DROPPED = "bng_pppoe_listener_dropped_events";
+    private static final String LISTENER_LAG = "bng_pppoe_listener_lag_seconds";
+
+    // Label values pre-computed to avoid building strings for each sample
+    private static final String[] COUNTER_LABELS = labels(BngCounterType.values());
+    private static final String[] EVENT_LABELS = labels(PppoeEvent.EventType.values());
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    // Reused across the scrapes, access is serialized
+    private final OpenMetricsWriter metricsWriter = new OpenMetricsWriter();
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY)
+    protected BngService bngService;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY)
+    protected BngStatsService bngStatsService;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY)
+    protected PppoeBngControlHandler pppoeHandler;
+
+    @Activate
+    protected void activate() {
+        log.info("BNG Metrics manager activated");
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        log.info("BNG Metrics manager deactivated");
+    }
+
+    @Override
+    public void writeMetrics(Writer writer) throws IOException {
+        synchronized (metricsWriter) {
+            OpenMetricsWriter metrics = metricsWriter.start(writer);
+            writeAttachmentMetrics(metrics);
+            writeControlMetrics(metrics);
+            writeRelayMetrics(metrics);
+            metrics.finish();
+        }
+    }
+
+    private void writeAttachmentMetrics(OpenMetricsWriter metrics) throws IOException {
+        metrics.family(ATTACHMENTS, GAUGE, "Number of registered attachments")
+                .gauge(ATTACHMENTS).value(bngService.getAttachments().size());
+
+        var lastStats = bngStatsService.getLastStats();
+        metrics.family(ATTACHMENT_PACKETS, COUNTER,
+                       "Packets counted by the BNG user plane for each attachment");
+        for (var attachmentStats : lastStats.entrySet()) {
+            for (var counter : attachmentStats.getValue().entrySet()) {
+                metrics.counter(ATTACHMENT_PACKETS)
+                        .label("attachment", attachmentStats.getKey())
+                        .label("counter", COUNTER_LABELS[counter.getKey().ordinal()])
+                        .value(counter.getValue().packets());
+            }
+        }
+        // Samples of the same family must be contiguous, iterate again for bytes
+        metrics.family(ATTACHMENT_BYTES, COUNTER,
+                       "Bytes counted by the BNG user plane for each attachment");
+        for (var attachmentStats : lastStats.entrySet()) {
+            for (var counter : attachmentStats.getValue().entrySet()) {
+                metrics.counter(ATTACHMENT_BYTES)
+                        .label("attachment", attachmentStats.getKey())
+                        .label("counter", COUNTER_LABELS[counter.getKey().ordinal()])
+                        .value(counter.getValue().bytes());
+            }
+        }
+    }
+
+    private void writeControlMetrics(OpenMetricsWriter metrics) throws IOException {
+        PiCounterCellData controlStats = bngStatsService.getControlStats();
+        if (controlStats == null) {
+            return;
+        }
+        metrics.family(CONTROL_PACKETS, COUNTER,
+                       "Control plane packets of not registered attachments")
+                .counter(CONTROL_PACKETS).value(controlStats.packets());
+        metrics.family(CONTROL_BYTES, COUNTER,
+                       "Control plane bytes of not registered attachments")
+                .counter(CONTROL_BYTES).value(controlStats.bytes());
+    }
+
+    private void writeRelayMetrics(OpenMetricsWriter metrics) throws IOException {
+        metrics.family(RELAY_PACKETS, COUNTER, "PPPoE packets relayed, per PPPoE code");
+        for (Map.Entry<String, Long> entry : pppoeHandler.getPacketCounters().entrySet()) {
+            metrics.counter(RELAY_PACKETS).label("code", entry.getKey()).value(entry.getValue());
+        }
+        metrics.family(RELAY_EVENTS, COUNTER, "PPPoE events generated, per event type");
+        for (Map.Entry<PppoeEvent.EventType, Long> entry : pppoeHandler.getEventCounters().entrySet()) {
+            metrics.counter(RELAY_EVENTS)
+                    .label("type", EVENT_LABELS[entry.getKey().ordinal()])
+                    .value(entry.getValue());
+        }
+        metrics.family(CACHE_HIT_RATIO, GAUGE, "Hit ratio of the PPPoE relay caches");
+        for (Map.Entry<String, Double> entry : pppoeHandler.getCacheHitRates().entrySet()) {
+            metrics.gauge(CACHE_HIT_RATIO).label("cache", entry.getKey()).value(entry.getValue());
+        }
+        metrics.family(QUEUE_DEPTH, GAUGE, "Items waiting in the PPPoE relay queues");
+        for (Map.Entry<String, Long> entry : pppoeHandler.getQueueDepths().entrySet()) {
+            metrics.gauge(QUEUE_DEPTH).label("queue", entry.getKey()).value(entry.getValue());
+        }
+        metrics.family(RELAY_OFFLOAD, COUNTER, "PPPoE control packets and sessions handled by the relay");
+        for (Map.Entry<String, Long> entry : pppoeHandler.getOffloadCounters().entrySet()) {
+            metrics.counter(RELAY_OFFLOAD).label("type", entry.getKey()).value(entry.getValue());
+        }
+        metrics.family(RELAY_CONFIG_VERSION, GAUGE, "Version of the PPPoE relay configuration in use")
+                .gauge(RELAY_CONFIG_VERSION).value(pppoeHandler.getConfigVersion());
+        metrics.family(RELAY_CONFIG_RELOAD, GAUGE, "Duration of the last PPPoE relay configuration reload")
+                .gauge(RELAY_CONFIG_RELOAD).value(pppoeHandler.getLastConfigReloadNanos() / 1e9);
+        var serverStats = pppoeHandler.getPppoeServerStats();
+        metrics.family(SERVER_UP, GAUGE, "Whether new PPPoE sessions are assigned to the server");
+        for (Map.Entry<String, PppoeServerStats> entry : serverStats.entrySet()) {
+            metrics.gauge(SERVER_UP).label("server", entry.getKey()).value(entry.getValue().available() ? 1 : 0);
+        }
+        metrics.family(SERVER_OFFERS, COUNTER, "PADO received from the PPPoE server");
+        for (Map.Entry<String, PppoeServerStats> entry : serverStats.entrySet()) {
+            metrics.counter(SERVER_OFFERS).label("server", entry.getKey()).value(entry.getValue().offers());
+        }
+        metrics.family(SERVER_TIMEOUTS, COUNTER, "PADI not answered in time by the PPPoE server");
+        for (Map.Entry<String, PppoeServerStats> entry : serverStats.entrySet()) {
+            metrics.counter(SERVER_TIMEOUTS).label("server", entry.getKey()).value(entry.getValue().timeouts());
+        }
+        metrics.family(SERVER_PADO_LATENCY, GAUGE, "Average delay between a PADI and the PADO of the PPPoE server");
+        for (Map.Entry<String, PppoeServerStats> entry : serverStats.entrySet()) {
+            metrics.gauge(SERVER_PADO_LATENCY).label("server", entry.getKey())
+                    .value(entry.getValue().padoLatencyMicros() / 1e6);
+        }
+        var listenerStats = pppoeHandler.getEventListenerStats();
+        metrics.family(LISTENER_DROPPED, COUNTER, "PPPoE events dropped because the listener queue was full");
+        for (Map.Entry<String, PppoeEventListenerStats> entry : listenerStats.entrySet()) {
+            metrics.counter(LISTENER_DROPPED).label("listener", entry.getKey()).value(entry.getValue().dropped());
+        }
+        metrics.family(LISTENER_LAG, GAUGE, "Delay between generation and delivery of the last PPPoE event");
+        for (Map.Entry<String, PppoeEventListenerStats> entry : listenerStats.entrySet()) {
+            metrics.gauge(LISTENER_LAG).label("listener", entry.getKey())
+                    .value(entry.getValue().lastLagMillis() / 1000.0);
+        }
+    }
+
+    private static String[] labels(Enum<?>[] values) {
+        String[] labels = new String[values.length];
+        for (Enum<?> value : values) {
+            labels[value.ordinal()] = value.name().toLowerCase(Locale.ROOT);
+        }
+        return labels;
+    }
+}
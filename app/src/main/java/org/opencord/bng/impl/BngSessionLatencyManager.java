@@ -0,0 +1,132 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
+import org.onosproject.net.DeviceId;
+import org.opencord.bng.BngLatencyStats;
+import org.opencord.bng.BngSessionLatencyService;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the histograms of the duration of each phase of the subscriber
+ * session setup, for all the OLTs and per OLT.
+ */
+@Component(immediate = true)
+public class BngSessionLatencyManager implements BngSessionLatencyService {
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final LatencyHistogram[] histograms = newHistograms();
+    private final Map<DeviceId, LatencyHistogram[]> oltHistograms = new ConcurrentHashMap<>();
+
+    /**
+     * Attachments waiting to be programmed, with the OLT and the time their
+     * IPCP configuration has been acknowledged.
+     */
+    private final Cache<String, PendingAttachment> pendingAttachments = CacheBuilder.newBuilder()
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .build();
+
+    @Activate
+    protected void activate() {
+        log.info("BNG Session Latency manager activated");
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        pendingAttachments.invalidateAll();
+        log.info("BNG Session Latency manager deactivated");
+    }
+
+    @Override
+    public void record(Phase phase, DeviceId oltDeviceId, long nanos) {
+        histograms[phase.ordinal()].record(nanos);
+        if (oltDeviceId != null) {
+            LatencyHistogram[] perOlt = oltHistograms.get(oltDeviceId);
+            if (perOlt == null) {
+                perOlt = oltHistograms.computeIfAbsent(oltDeviceId, k -> newHistograms());
+            }
+            perOlt[phase.ordinal()].record(nanos);
+        }
+    }
+
+    @Override
+    public void ipcpAcknowledged(String attachmentKey, DeviceId oltDeviceId) {
+        pendingAttachments.put(attachmentKey, new PendingAttachment(oltDeviceId, System.nanoTime()));
+    }
+
+    @Override
+    public void attachmentProgrammed(String attachmentKey) {
+        PendingAttachment pending = pendingAttachments.getIfPresent(attachmentKey);
+        if (pending != null) {
+            pendingAttachments.invalidate(attachmentKey);
+            record(Phase.PROGRAMMING, pending.oltDeviceId, System.nanoTime() - pending.startNanos);
+        }
+    }
+
+    @Override
+    public Map<Phase, BngLatencyStats> getLatencies() {
+        return stats(histograms);
+    }
+
+    @Override
+    public Map<DeviceId, Map<Phase, BngLatencyStats>> getLatenciesPerOlt() {
+        Map<DeviceId, Map<Phase, BngLatencyStats>> latencies = Maps.newHashMap();
+        oltHistograms.forEach((oltDeviceId, perOlt) -> latencies.put(oltDeviceId, stats(perOlt)));
+        return latencies;
+    }
+
+    private static Map<Phase, BngLatencyStats> stats(LatencyHistogram[] phaseHistograms) {
+        Map<Phase, BngLatencyStats> stats = new EnumMap<>(Phase.class);
+        for (Phase phase : PHASES) {
+            stats.put(phase, phaseHistograms[phase.ordinal()].stats());
+        }
+        return stats;
+    }
+
+    private static LatencyHistogram[] newHistograms() {
+        LatencyHistogram[] phaseHistograms = new LatencyHistogram[PHASES.length];
+        for (int i = 0; i < PHASES.length; i++) {
+            phaseHistograms[i] = new LatencyHistogram();
+        }
+        return phaseHistograms;
+    }
+
+    private static final class PendingAttachment {
+        private final DeviceId oltDeviceId;
+        private final long startNanos;
+
+        private PendingAttachment(DeviceId oltDeviceId, long startNanos) {
+            this.oltDeviceId = oltDeviceId;
+            this.startNanos = startNanos;
+        }
+    }
+}
@@ -0,0 +1,418 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.impl;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+import org.onosproject.net.behaviour.BngProgrammable.BngCounterType;
+import org.onosproject.net.pi.runtime.PiCounterCellData;
+import org.opencord.bng.BngStatsSample;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.onlab.util.Tools.groupedThreads;
+
+/**
+ * Persistent journal of attachment-level statistics. Samples are stored in
+ * fixed-size records in one memory-mapped ring file per day (UTC). Each file
+ * keeps a block index with the time range of every block of records, used to
+ * skip the blocks not overlapping the queried time range. Records are written
+ * sequentially, directly in the mapped file, by a dedicated thread.
+ */
+final class BngStatsJournal {
+
+    static final int BLOCK_RECORDS = 1024;
+
+    private static final int MAGIC = 0x42534a31;
+    private static final int VERSION = 1;
+    private static final BngCounterType[] COUNTER_TYPES = BngCounterType.values();
+    // Timestamp, attachment key hash and packets/bytes for each counter type
+    static final int RECORD_SIZE = 16 + COUNTER_TYPES.length * 16;
+    private static final int HEADER_SIZE = 64;
+    private static final int INDEX_ENTRY_SIZE = 16;
+    private static final int MAX_CAPACITY =
+            (Integer.MAX_VALUE - HEADER_SIZE) / (RECORD_SIZE + INDEX_ENTRY_SIZE) /
+                    BLOCK_RECORDS * BLOCK_RECORDS;
+
+    // Header fields offsets
+    private static final int HDR_MAGIC = 0;
+    private static final int HDR_VERSION = 4;
+    private static final int HDR_RECORD_SIZE = 8;
+    private static final int HDR_CAPACITY = 12;
+    private static final int HDR_COUNT = 16;
+
+    private static final long NO_VALUE = -1;
+    private static final String FILE_PREFIX = "bng-stats-";
+    private static final String FILE_SUFFIX = ".journal";
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final Path directory;
+    private final int capacity;
+    private final int retentionDays;
+    private final AtomicBoolean writePending = new AtomicBoolean(false);
+    private final AtomicLong droppedSamples = new AtomicLong();
+    private ExecutorService writer;
+
+    // State of the file of the current day, guarded by this
+    private LocalDate currentDay;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private JournalFile currentFile;
+
+    /**
+     * Creates a new statistics journal.
+     *
+     * @param directory     Directory where to store the journal files
+     * @param capacity      Maximum number of records in each daily file
+     * @param retentionDays Number of daily files to keep
+     */
+    BngStatsJournal(Path directory, int capacity, int retentionDays) {
+        this.directory = directory;
+        int blocks = Math.max(1, (capacity + BLOCK_RECORDS - 1) / BLOCK_RECORDS);
+        this.capacity = Math.min(blocks * BLOCK_RECORDS, MAX_CAPACITY);
+        this.retentionDays = Math.max(1, retentionDays);
+    }
+
+    /**
+     * Starts the journal writer.
+     *
+     * @throws IOException if the journal directory cannot be created
+     */
+    void start() throws IOException {
+        Files.createDirectories(directory);
+        writer = Executors.newSingleThreadExecutor(groupedThreads("onos/bng", "stats-journal", log));
+    }
+
+    /**
+     * Stops the journal writer and releases the journal file.
+     */
+    void stop() {
+        if (writer != null) {
+            writer.shutdown();
+            try {
+                writer.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writer = null;
+        }
+        synchronized (this) {
+            closeCurrent();
+        }
+    }
+
+    /**
+     * Submits the given statistics to be appended to the journal. It never
+     * blocks the caller: if the previous submission is still being written,
+     * the statistics are discarded.
+     *
+     * @param timestamp Time the statistics were read, in milliseconds
+     * @param stats     The statistics of each attachment
+     * @return True if the statistics are accepted, false otherwise
+     */
+    boolean append(long timestamp,
+                   Map<String, Map<BngCounterType, PiCounterCellData>> stats) {
+        if (writer == null || !writePending.compareAndSet(false, true)) {
+            droppedSamples.addAndGet(stats.size());
+            return false;
+        }
+        writer.execute(() -> {
+            try {
+                write(timestamp, stats);
+            } catch (IOException e) {
+                log.error("Unable to write the statistics journal: {}", e.getMessage());
+            } finally {
+                writePending.set(false);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Returns the number of samples discarded because the writer was busy.
+     *
+     * @return The number of discarded samples
+     */
+    long droppedSamples() {
+        return droppedSamples.get();
+    }
+
+    /**
+     * Writes the given statistics in the file of the day.
+     *
+     * @param timestamp Time the statistics were read, in milliseconds
+     * @param stats     The statistics of each attachment
+     * @throws IOException if the journal file cannot be opened
+     */
+    synchronized void write(long timestamp,
+                            Map<String, Map<BngCounterType, PiCounterCellData>> stats)
+            throws IOException {
+        LocalDate day = dayOf(timestamp);
+        if (!day.equals(currentDay)) {
+            roll(day);
+        }
+        for (var attachmentStats : stats.entrySet()) {
+            if (!attachmentStats.getValue().isEmpty()) {
+                writeRecord(timestamp, keyHash(attachmentStats.getKey()), attachmentStats.getValue());
+            }
+        }
+        buffer.putLong(HDR_COUNT, currentFile.count);
+    }
+
+    /**
+     * Returns the samples of the given attachment in the given time range.
+     *
+     * @param attachmentKey The attachment key
+     * @param fromMillis    Start of the time range, in milliseconds
+     * @param toMillis      End of the time range, in milliseconds
+     * @return The samples sorted by time
+     */
+    synchronized List<BngStatsSample> query(String attachmentKey, long fromMillis, long toMillis) {
+        List<BngStatsSample> samples = Lists.newArrayList();
+        if (fromMillis > toMillis) {
+            return samples;
+        }
+        long hash = keyHash(attachmentKey);
+        for (LocalDate day = dayOf(fromMillis); !day.isAfter(dayOf(toMillis)); day = day.plusDays(1)) {
+            if (day.equals(currentDay)) {
+                currentFile.scan(hash, fromMillis, toMillis, samples);
+                continue;
+            }
+            Path path = pathOf(day);
+            if (!Files.exists(path)) {
+                continue;
+            }
+            try (FileChannel readChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+                var readBuffer = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+                JournalFile file = JournalFile.open(readBuffer);
+                if (file != null) {
+                    file.scan(hash, fromMillis, toMillis, samples);
+                }
+            } catch (IOException e) {
+                log.warn("Unable to read the statistics journal {}: {}", path, e.getMessage());
+            }
+        }
+        samples.sort(Comparator.comparingLong(BngStatsSample::timestamp));
+        return samples;
+    }
+
+    private void writeRecord(long timestamp, long hash,
+                             Map<BngCounterType, PiCounterCellData> counters) {
+        JournalFile file = currentFile;
+        int slot = (int) (file.count % file.capacity);
+        int position = file.recordPosition(slot);
+        buffer.putLong(position, timestamp);
+        buffer.putLong(position + 8, hash);
+        position += 16;
+        for (BngCounterType type : COUNTER_TYPES) {
+            PiCounterCellData data = counters.get(type);
+            buffer.putLong(position, data == null ? NO_VALUE : data.packets());
+            buffer.putLong(position + 8, data == null ? NO_VALUE : data.bytes());
+            position += 16;
+        }
+        // Keep track of the time range of each block. When overwriting an old
+        // block, its records not overwritten yet are the oldest of the block,
+        // the first of them starts the range.
+        int indexPosition = HEADER_SIZE + (slot / BLOCK_RECORDS) * INDEX_ENTRY_SIZE;
+        int blockStart = slot - slot % BLOCK_RECORDS;
+        boolean wrapped = file.count >= file.capacity;
+        if (wrapped && slot + 1 < blockStart + BLOCK_RECORDS) {
+            buffer.putLong(indexPosition, buffer.getLong(file.recordPosition(slot + 1)));
+        } else if (wrapped || slot == blockStart) {
+            buffer.putLong(indexPosition, buffer.getLong(file.recordPosition(blockStart)));
+        }
+        buffer.putLong(indexPosition + 8, timestamp);
+        file.count++;
+    }
+
+    private void roll(LocalDate day) throws IOException {
+        closeCurrent();
+        Path path = pathOf(day);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                                   StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() > 0) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            currentFile = JournalFile.open(buffer);
+        }
+        if (currentFile == null) {
+            // New file, or a file written with a different layout
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, JournalFile.size(capacity));
+            buffer.putInt(HDR_MAGIC, MAGIC);
+            buffer.putInt(HDR_VERSION, VERSION);
+            buffer.putInt(HDR_RECORD_SIZE, RECORD_SIZE);
+            buffer.putInt(HDR_CAPACITY, capacity);
+            buffer.putLong(HDR_COUNT, 0);
+            currentFile = new JournalFile(buffer, capacity, 0);
+        }
+        currentDay = day;
+        log.info("Statistics journal {} opened", path);
+        purgeOldFiles(day);
+    }
+
+    private void closeCurrent() {
+        if (buffer != null) {
+            buffer.force();
+            buffer = null;
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Unable to close the statistics journal: {}", e.getMessage());
+            }
+            channel = null;
+        }
+        currentFile = null;
+        currentDay = null;
+    }
+
+    private void purgeOldFiles(LocalDate today) {
+        LocalDate oldestDay = today.minusDays(retentionDays - 1);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    LocalDate day = LocalDate.parse(
+                            name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()),
+                            DAY_FORMAT);
+                    if (day.isBefore(oldestDay)) {
+                        Files.delete(file);
+                        log.info("Statistics journal {} removed", file);
+                    }
+                } catch (DateTimeParseException e) {
+                    log.debug("Skipping unknown file {}", file);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Unable to purge the statistics journal: {}", e.getMessage());
+        }
+    }
+
+    private Path pathOf(LocalDate day) {
+        return directory.resolve(FILE_PREFIX + DAY_FORMAT.format(day) + FILE_SUFFIX);
+    }
+
+    private static LocalDate dayOf(long timestamp) {
+        return Instant.ofEpochMilli(timestamp).atOffset(ZoneOffset.UTC).toLocalDate();
+    }
+
+    private static long keyHash(String attachmentKey) {
+        return Hashing.murmur3_128().hashString(attachmentKey, StandardCharsets.UTF_8).asLong();
+    }
+
+    /**
+     * Layout of a daily journal file: header, block index and records.
+     */
+    private static final class JournalFile {
+        private final ByteBuffer buffer;
+        private final int capacity;
+        private long count;
+
+        private JournalFile(ByteBuffer buffer, int capacity, long count) {
+            this.buffer = buffer;
+            this.capacity = capacity;
+            this.count = count;
+        }
+
+        /**
+         * Returns the file for the given buffer, null if the buffer does not
+         * contain a valid journal.
+         */
+        static JournalFile open(ByteBuffer buffer) {
+            if (buffer.capacity() < HEADER_SIZE ||
+                    buffer.getInt(HDR_MAGIC) != MAGIC ||
+                    buffer.getInt(HDR_VERSION) != VERSION ||
+                    buffer.getInt(HDR_RECORD_SIZE) != RECORD_SIZE) {
+                return null;
+            }
+            int capacity = buffer.getInt(HDR_CAPACITY);
+            if (capacity <= 0 || capacity % BLOCK_RECORDS != 0 || buffer.capacity() < size(capacity)) {
+                return null;
+            }
+            return new JournalFile(buffer, capacity, buffer.getLong(HDR_COUNT));
+        }
+
+        static long size(int capacity) {
+            return HEADER_SIZE + (long) (capacity / BLOCK_RECORDS) * INDEX_ENTRY_SIZE +
+                    (long) capacity * RECORD_SIZE;
+        }
+
+        int recordPosition(int slot) {
+            return HEADER_SIZE + (capacity / BLOCK_RECORDS) * INDEX_ENTRY_SIZE + slot * RECORD_SIZE;
+        }
+
+        void scan(long hash, long fromMillis, long toMillis, List<BngStatsSample> samples) {
+            int used = (int) Math.min(count, capacity);
+            int blocks = (used + BLOCK_RECORDS - 1) / BLOCK_RECORDS;
+            for (int block = 0; block < blocks; block++) {
+                int indexPosition = HEADER_SIZE + block * INDEX_ENTRY_SIZE;
+                if (buffer.getLong(indexPosition + 8) < fromMillis ||
+                        buffer.getLong(indexPosition) > toMillis) {
+                    continue;
+                }
+                int lastSlot = Math.min(used, (block + 1) * BLOCK_RECORDS);
+                for (int slot = block * BLOCK_RECORDS; slot < lastSlot; slot++) {
+                    int position = recordPosition(slot);
+                    long timestamp = buffer.getLong(position);
+                    if (buffer.getLong(position + 8) != hash ||
+                            timestamp < fromMillis || timestamp > toMillis) {
+                        continue;
+                    }
+                    samples.add(new BngStatsSample(timestamp, readCounters(position + 16)));
+                }
+            }
+        }
+
+        private Map<BngCounterType, PiCounterCellData> readCounters(int position) {
+            Map<BngCounterType, PiCounterCellData> counters = Maps.newEnumMap(BngCounterType.class);
+            for (BngCounterType type : COUNTER_TYPES) {
+                long packets = buffer.getLong(position);
+                long bytes = buffer.getLong(position + 8);
+                if (packets != NO_VALUE) {
+                    counters.put(type, new PiCounterCellData(packets, bytes));
+                }
+                position += 16;
+            }
+            return counters;
+        }
+    }
+}
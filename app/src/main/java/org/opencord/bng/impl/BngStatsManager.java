@@ -16,7 +16,9 @@
 
 package org.opencord.bng.impl;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import org.onlab.util.SharedExecutors;
 import org.onlab.util.SharedScheduledExecutors;
 import org.onlab.util.Tools;
 import org.onosproject.cfg.ComponentConfigService;
@@ -32,6 +34,7 @@ import org.opencord.bng.BngService;
 import org.opencord.bng.BngStatsEvent;
 import org.opencord.bng.BngStatsEventListener;
 import org.opencord.bng.BngStatsEventSubject;
+import org.opencord.bng.BngStatsSample;
 import org.opencord.bng.BngStatsService;
 import org.osgi.service.component.ComponentContext;
 import org.osgi.service.component.annotations.Activate;
@@ -43,18 +46,35 @@ import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.Dictionary;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import static org.opencord.bng.impl.OsgiPropertyConstants.BNG_STATISTICS_PROBE_RATE;
 import static org.opencord.bng.impl.OsgiPropertyConstants.BNG_STATISTICS_PROBE_RATE_DEFAULT;
+import static org.opencord.bng.impl.OsgiPropertyConstants.BNG_STATS_JOURNAL_CAPACITY;
+import static org.opencord.bng.impl.OsgiPropertyConstants.BNG_STATS_JOURNAL_CAPACITY_DEFAULT;
+import static org.opencord.bng.impl.OsgiPropertyConstants.BNG_STATS_JOURNAL_ENABLED;
+import static org.opencord.bng.impl.OsgiPropertyConstants.BNG_STATS_JOURNAL_ENABLED_DEFAULT;
+import static org.opencord.bng.impl.OsgiPropertyConstants.BNG_STATS_JOURNAL_PERIOD;
+import static org.opencord.bng.impl.OsgiPropertyConstants.BNG_STATS_JOURNAL_PERIOD_DEFAULT;
+import static org.opencord.bng.impl.OsgiPropertyConstants.BNG_STATS_JOURNAL_RETENTION_DAYS;
+import static org.opencord.bng.impl.OsgiPropertyConstants.BNG_STATS_JOURNAL_RETENTION_DAYS_DEFAULT;
 
 @Component(immediate = true,
         property = {
                 BNG_STATISTICS_PROBE_RATE + ":Long=" + BNG_STATISTICS_PROBE_RATE_DEFAULT,
+                BNG_STATS_JOURNAL_ENABLED + ":Boolean=" + BNG_STATS_JOURNAL_ENABLED_DEFAULT,
+                BNG_STATS_JOURNAL_PERIOD + ":Long=" + BNG_STATS_JOURNAL_PERIOD_DEFAULT,
+                BNG_STATS_JOURNAL_RETENTION_DAYS + ":Integer=" + BNG_STATS_JOURNAL_RETENTION_DAYS_DEFAULT,
+                BNG_STATS_JOURNAL_CAPACITY + ":Integer=" + BNG_STATS_JOURNAL_CAPACITY_DEFAULT,
         }
 )
 public class BngStatsManager
@@ -81,11 +101,35 @@ public class BngStatsManager
      */
     private long bngStatisticsProbeRate = BNG_STATISTICS_PROBE_RATE_DEFAULT;
     private ScheduledFuture<?> timeout;
+    /**
+     * Whether to store the attachment-level statistics in the journal.
+     */
+    private boolean bngStatsJournalEnabled = BNG_STATS_JOURNAL_ENABLED_DEFAULT;
+    /**
+     * Minimum interval between two samples stored in the journal.
+     */
+    private long bngStatsJournalPeriod = BNG_STATS_JOURNAL_PERIOD_DEFAULT;
+    /**
+     * Number of days of statistics kept in the journal.
+     */
+    private int bngStatsJournalRetentionDays = BNG_STATS_JOURNAL_RETENTION_DAYS_DEFAULT;
+    /**
+     * Maximum number of samples stored in the journal for each day.
+     */
+    private int bngStatsJournalCapacity = BNG_STATS_JOURNAL_CAPACITY_DEFAULT;
+    private volatile BngStatsJournal journal;
+    private long lastJournalAppend;
+    /**
+     * The attachment-level statistics read during the last monitor run.
+     */
+    private volatile Map<String, Map<BngProgrammable.BngCounterType, PiCounterCellData>>
+            lastStats = Collections.emptyMap();
 
     @Activate
-    protected void activate() {
+    protected void activate(ComponentContext context) {
         eventDispatcher.addSink(BngStatsEvent.class, listenerRegistry);
         componentConfigService.registerProperties(getClass());
+        modified(context);
         appId = coreService.getAppId(BngManager.BNG_APP);
         start();
         log.info("BNG Statistics manager activated");
@@ -98,11 +142,35 @@ public class BngStatsManager
         if (probeRate != null) {
             bngStatisticsProbeRate = probeRate;
         }
+        Boolean journalEnabled = Tools.isPropertyEnabled(properties, BNG_STATS_JOURNAL_ENABLED);
+        if (journalEnabled != null) {
+            bngStatsJournalEnabled = journalEnabled;
+        }
+        Long journalPeriod = Tools.getLongProperty(properties, BNG_STATS_JOURNAL_PERIOD);
+        if (journalPeriod != null) {
+            bngStatsJournalPeriod = journalPeriod;
+        }
+        int retentionDays = Tools.getIntegerProperty(properties, BNG_STATS_JOURNAL_RETENTION_DAYS,
+                                                     BNG_STATS_JOURNAL_RETENTION_DAYS_DEFAULT);
+        int capacity = Tools.getIntegerProperty(properties, BNG_STATS_JOURNAL_CAPACITY,
+                                                BNG_STATS_JOURNAL_CAPACITY_DEFAULT);
+        boolean journalChanged = retentionDays != bngStatsJournalRetentionDays ||
+                capacity != bngStatsJournalCapacity;
+        bngStatsJournalRetentionDays = retentionDays;
+        bngStatsJournalCapacity = capacity;
+        if (!bngStatsJournalEnabled || journalChanged) {
+            stopJournal();
+        }
+        if (bngStatsJournalEnabled && journal == null) {
+            startJournal();
+        }
     }
 
     @Deactivate
     protected void deactivate() {
         shutdown();
+        stopJournal();
+        lastStats = Collections.emptyMap();
         componentConfigService.unregisterProperties(getClass(), false);
         eventDispatcher.removeSink(BngStatsEvent.class);
         log.info("BNG Statistics manager deactivated");
@@ -133,19 +201,77 @@ public class BngStatsManager
         }
     }
 
+    /**
+     * Opens the statistics journal in the Karaf data directory.
+     */
+    private void startJournal() {
+        String dataDir = System.getProperty("karaf.data", System.getProperty("java.io.tmpdir"));
+        BngStatsJournal newJournal = new BngStatsJournal(Paths.get(dataDir, "bng", "stats"),
+                                                         bngStatsJournalCapacity,
+                                                         bngStatsJournalRetentionDays);
+        try {
+            newJournal.start();
+            journal = newJournal;
+            log.info("BNG statistics journal started");
+        } catch (IOException e) {
+            log.error("Unable to start the BNG statistics journal: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Closes the statistics journal, if open.
+     */
+    private void stopJournal() {
+        BngStatsJournal oldJournal = journal;
+        journal = null;
+        if (oldJournal != null) {
+            oldJournal.stop();
+            log.info("BNG statistics journal stopped");
+        }
+    }
+
+    /**
+     * Reads the statistics of the given attachments. The counters of each BNG
+     * user plane device are read in parallel.
+     *
+     * @param attachments The attachments
+     * @return The statistics of the attachments on an available device
+     */
     private Map<String, Map<BngProgrammable.BngCounterType, PiCounterCellData>> getStats(
             Map<String, BngAttachment> attachments) {
+        Map<DeviceId, List<String>> attachmentsByDevice = Maps.newHashMap();
+        attachments.keySet().forEach(key -> {
+            DeviceId deviceId = bngService.getBngDeviceId(key);
+            if (deviceId != null) {
+                attachmentsByDevice.computeIfAbsent(deviceId, k -> Lists.newArrayList()).add(key);
+            }
+        });
+        List<CompletableFuture<Map<String, Map<BngProgrammable.BngCounterType, PiCounterCellData>>>>
+                deviceStats = Lists.newArrayList();
+        attachmentsByDevice.forEach((deviceId, keys) -> {
+            BngProgrammable bngProgrammable = getBngProgrammable(deviceId);
+            if (bngProgrammable != null) {
+                deviceStats.add(CompletableFuture.supplyAsync(
+                        () -> getStats(bngProgrammable, keys, attachments),
+                        SharedExecutors.getPoolThreadExecutor()));
+            }
+        });
         Map<String, Map<BngProgrammable.BngCounterType, PiCounterCellData>>
                 stats = Maps.newHashMap();
-        attachments.forEach((key, value) -> stats.put(key, getStats(key)));
+        deviceStats.forEach(future -> stats.putAll(future.join()));
         return stats;
     }
 
-    @Override
-    public Map<BngProgrammable.BngCounterType, PiCounterCellData> getStats(
-            String bngAttachmentKey) {
-        BngProgrammable bngProgrammable = getBngProgrammable(bngService.getBngDeviceId());
-        BngAttachment attachment = bngService.getAttachment(bngAttachmentKey);
+    private Map<String, Map<BngProgrammable.BngCounterType, PiCounterCellData>> getStats(
+            BngProgrammable bngProgrammable, List<String> keys, Map<String, BngAttachment> attachments) {
+        Map<String, Map<BngProgrammable.BngCounterType, PiCounterCellData>>
+                stats = Maps.newHashMap();
+        keys.forEach(key -> stats.put(key, getStats(bngProgrammable, key, attachments.get(key))));
+        return stats;
+    }
+
+    private Map<BngProgrammable.BngCounterType, PiCounterCellData> getStats(
+            BngProgrammable bngProgrammable, String bngAttachmentKey, BngAttachment attachment) {
         if (bngProgrammable != null && attachment != null) {
             try {
                 return bngProgrammable.readCounters(attachment);
@@ -156,17 +282,47 @@ public class BngStatsManager
         return Maps.newHashMap();
     }
 
+    @Override
+    public Map<BngProgrammable.BngCounterType, PiCounterCellData> getStats(
+            String bngAttachmentKey) {
+        BngProgrammable bngProgrammable = getBngProgrammable(bngService.getBngDeviceId(bngAttachmentKey));
+        return getStats(bngProgrammable, bngAttachmentKey, bngService.getAttachment(bngAttachmentKey));
+    }
+
     @Override
     public PiCounterCellData getControlStats() {
-        BngProgrammable bngProgrammable = getBngProgrammable(bngService.getBngDeviceId());
-        if (bngProgrammable != null) {
+        long packets = 0;
+        long bytes = 0;
+        boolean available = false;
+        for (DeviceId deviceId : bngService.getBngDeviceIds()) {
+            BngProgrammable bngProgrammable = getBngProgrammable(deviceId);
+            if (bngProgrammable == null) {
+                continue;
+            }
             try {
-                return bngProgrammable.readControlTrafficCounter();
+                PiCounterCellData controlStats = bngProgrammable.readControlTrafficCounter();
+                packets += controlStats.packets();
+                bytes += controlStats.bytes();
+                available = true;
             } catch (BngProgrammable.BngProgrammableException e) {
-                log.error("Error control plane packets statistics");
+                log.error("Error control plane packets statistics of {}", deviceId);
             }
         }
-        return null;
+        return available ? new PiCounterCellData(packets, bytes) : null;
+    }
+
+    @Override
+    public Map<String, Map<BngProgrammable.BngCounterType, PiCounterCellData>> getLastStats() {
+        return lastStats;
+    }
+
+    @Override
+    public List<BngStatsSample> getStatsHistory(String bngAttachmentKey, long fromMillis, long toMillis) {
+        BngStatsJournal currentJournal = journal;
+        if (currentJournal == null) {
+            return Collections.emptyList();
+        }
+        return currentJournal.query(bngAttachmentKey, fromMillis, toMillis);
     }
 
     private BngProgrammable getBngProgrammable(DeviceId deviceId) {
@@ -179,11 +335,12 @@ public class BngStatsManager
     private class BngStatisticsMonitor implements Runnable {
         @Override
         public void run() {
-            BngProgrammable bngProgrammable = getBngProgrammable(bngService.getBngDeviceId());
-            if (bngProgrammable != null) {
+            if (bngService.getBngDeviceIds().stream().anyMatch(deviceService::isAvailable)) {
                 var attachments = bngService.getAttachments();
                 Map<String, Map<BngProgrammable.BngCounterType, PiCounterCellData>>
                         attachmentsStats = getStats(attachments);
+                lastStats = Collections.unmodifiableMap(attachmentsStats);
+                appendToJournal(lastStats);
                 // Create an event for each attachment statistics
                 attachmentsStats.forEach((attachmentKey, stats) -> {
                     BngStatsEventSubject evInfo =
@@ -194,6 +351,7 @@ public class BngStatsManager
                 });
             } else {
                 log.debug("BngProgrammable not available");
+                lastStats = Collections.emptyMap();
             }
             synchronized (this) {
                 if (timeout != null) {
@@ -201,6 +359,16 @@ public class BngStatsManager
                 }
             }
         }
+
+        private void appendToJournal(
+                Map<String, Map<BngProgrammable.BngCounterType, PiCounterCellData>> attachmentsStats) {
+            BngStatsJournal currentJournal = journal;
+            long now = System.currentTimeMillis();
+            if (currentJournal != null && now - lastJournalAppend >= bngStatsJournalPeriod &&
+                    currentJournal.append(now, attachmentsStats)) {
+                lastJournalAppend = now;
+            }
+        }
     }
 }
 
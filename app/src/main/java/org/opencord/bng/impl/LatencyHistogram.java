@@ -0,0 +1,109 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.impl;
+
+import org.opencord.bng.BngLatencyStats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies with log-linear buckets: each power of two
+ * is split in a fixed number of linear sub-buckets, giving a bounded relative
+ * error (12.5%) over the whole range of long values. Recording does not
+ * allocate memory.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a value. Negative values are ignored.
+     *
+     * @param value The value to record
+     */
+    void record(long value) {
+        if (value < 0) {
+            return;
+        }
+        counts.incrementAndGet(bucketIndex(value));
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Returns a summary of the recorded values. Percentiles are the upper
+     * bound of the bucket they fall in, capped to the maximum value.
+     *
+     * @return The latency summary
+     */
+    BngLatencyStats stats() {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        long maxValue = max.get();
+        return new BngLatencyStats(count,
+                                   percentile(snapshot, count, 0.50, maxValue),
+                                   percentile(snapshot, count, 0.90, maxValue),
+                                   percentile(snapshot, count, 0.99, maxValue),
+                                   maxValue);
+    }
+
+    private static long percentile(long[] snapshot, long count, double quantile, long maxValue) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lowerBound = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+}
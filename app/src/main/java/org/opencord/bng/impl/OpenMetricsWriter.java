@@ -0,0 +1,224 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.impl;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Renders metrics using the OpenMetrics text format. Metric families and
+ * samples are appended to a reusable buffer that is flushed to the underlying
+ * writer every time it grows over a threshold, so that the whole exposition
+ * is never kept in memory. Not thread safe.
+ */
+final class OpenMetricsWriter {
+
+    static final String COUNTER = "counter";
+    static final String GAUGE = "gauge";
+
+    private static final int DEFAULT_FLUSH_THRESHOLD = 16 * 1024;
+    private static final String TOTAL_SUFFIX = "_total";
+
+    private final StringBuilder buffer;
+    private final int flushThreshold;
+    private char[] chunk;
+    private Writer out;
+    private int labels;
+
+    /**
+     * Creates a new writer with the default flush threshold.
+     */
+    OpenMetricsWriter() {
+        this(DEFAULT_FLUSH_THRESHOLD);
+    }
+
+    /**
+     * Creates a new writer.
+     *
+     * @param flushThreshold Number of buffered characters that triggers a
+     *                       flush to the underlying writer
+     */
+    OpenMetricsWriter(int flushThreshold) {
+        this.flushThreshold = flushThreshold;
+        this.buffer = new StringBuilder(flushThreshold + 256);
+        this.chunk = new char[flushThreshold + 256];
+    }
+
+    /**
+     * Starts a new exposition towards the given writer. Any content left in
+     * the buffer by a previous exposition is discarded.
+     *
+     * @param writer The underlying writer
+     * @return self
+     */
+    OpenMetricsWriter start(Writer writer) {
+        this.out = writer;
+        this.buffer.setLength(0);
+        this.labels = 0;
+        return this;
+    }
+
+    /**
+     * Starts a new metric family. All the samples of the family must be
+     * written right after this call.
+     *
+     * @param name The metric family name
+     * @param type The metric family type, e.g., counter or gauge
+     * @param help The description of the metric family
+     * @return self
+     * @throws IOException if the buffer cannot be flushed
+     */
+    OpenMetricsWriter family(String name, String type, String help) throws IOException {
+        buffer.append("# TYPE ").append(name).append(' ').append(type).append('\n')
+                .append("# HELP ").append(name).append(' ').append(help).append('\n');
+        return maybeFlush();
+    }
+
+    /**
+     * Starts a new sample of a counter family, the name is suffixed with
+     * "_total".
+     *
+     * @param family The counter family name
+     * @return self
+     */
+    OpenMetricsWriter counter(String family) {
+        buffer.append(family).append(TOTAL_SUFFIX);
+        labels = 0;
+        return this;
+    }
+
+    /**
+     * Starts a new sample of a gauge family.
+     *
+     * @param family The gauge family name
+     * @return self
+     */
+    OpenMetricsWriter gauge(String family) {
+        buffer.append(family);
+        labels = 0;
+        return this;
+    }
+
+    /**
+     * Adds a label to the current sample.
+     *
+     * @param name  The label name
+     * @param value The label value, escaped if needed
+     * @return self
+     */
+    OpenMetricsWriter label(String name, String value) {
+        buffer.append(labels == 0 ? '{' : ',').append(name).append("=\"");
+        appendEscaped(value);
+        buffer.append('"');
+        labels++;
+        return this;
+    }
+
+    /**
+     * Terminates the current sample with the given value.
+     *
+     * @param value The sample value
+     * @return self
+     * @throws IOException if the buffer cannot be flushed
+     */
+    OpenMetricsWriter value(long value) throws IOException {
+        closeLabels();
+        buffer.append(' ').append(value).append('\n');
+        return maybeFlush();
+    }
+
+    /**
+     * Terminates the current sample with the given value.
+     *
+     * @param value The sample value
+     * @return self
+     * @throws IOException if the buffer cannot be flushed
+     */
+    OpenMetricsWriter value(double value) throws IOException {
+        closeLabels();
+        buffer.append(' ');
+        if (Double.isNaN(value)) {
+            buffer.append("NaN");
+        } else if (Double.isInfinite(value)) {
+            buffer.append(value > 0 ? "+Inf" : "-Inf");
+        } else {
+            buffer.append(value);
+        }
+        buffer.append('\n');
+        return maybeFlush();
+    }
+
+    /**
+     * Terminates the exposition and flushes the remaining content to the
+     * underlying writer. The underlying writer is not closed.
+     *
+     * @throws IOException if the buffer cannot be flushed
+     */
+    void finish() throws IOException {
+        buffer.append("# EOF\n");
+        flush();
+        out.flush();
+        out = null;
+    }
+
+    private void closeLabels() {
+        if (labels > 0) {
+            buffer.append('}');
+            labels = 0;
+        }
+    }
+
+    private OpenMetricsWriter maybeFlush() throws IOException {
+        if (buffer.length() >= flushThreshold) {
+            flush();
+        }
+        return this;
+    }
+
+    private void flush() throws IOException {
+        int length = buffer.length();
+        if (chunk.length < length) {
+            // A single sample bigger than the threshold, e.g., very long labels
+            chunk = new char[length];
+        }
+        buffer.getChars(0, length, chunk, 0);
+        out.write(chunk, 0, length);
+        buffer.setLength(0);
+    }
+
+    private void appendEscaped(String value) {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    buffer.append("\\\\");
+                    break;
+                case '"':
+                    buffer.append("\\\"");
+                    break;
+                case '\n':
+                    buffer.append("\\n");
+                    break;
+                default:
+                    buffer.append(c);
+            }
+        }
+    }
+}
@@ -20,8 +20,38 @@ public final class OsgiPropertyConstants {
 
     public static final String ENABLE_LOCAL_EVENT_HANDLER = "enableLocalEventHandler";
     public static final boolean ENABLE_LOCAL_EVENT_HANDLER_DEFAULT = true;
+    public static final String ATTACHMENT_COALESCING_WINDOW = "attachmentCoalescingWindow";
+    public static final long ATTACHMENT_COALESCING_WINDOW_DEFAULT = 500;
     public static final String BNG_STATISTICS_PROBE_RATE = "bngStatisticsProbeRate";
     public static final long BNG_STATISTICS_PROBE_RATE_DEFAULT = 5000;
+    public static final String BNG_STATS_JOURNAL_ENABLED = "bngStatsJournalEnabled";
+    public static final boolean BNG_STATS_JOURNAL_ENABLED_DEFAULT = false;
+    public static final String BNG_STATS_JOURNAL_PERIOD = "bngStatsJournalPeriod";
+    public static final long BNG_STATS_JOURNAL_PERIOD_DEFAULT = 60000;
+    public static final String BNG_STATS_JOURNAL_RETENTION_DAYS = "bngStatsJournalRetentionDays";
+    public static final int BNG_STATS_JOURNAL_RETENTION_DAYS_DEFAULT = 7;
+    public static final String BNG_STATS_JOURNAL_CAPACITY = "bngStatsJournalCapacity";
+    public static final int BNG_STATS_JOURNAL_CAPACITY_DEFAULT = 1048576;
+    public static final String PACKET_TRACE_SIZE = "packetTraceSize";
+    public static final int PACKET_TRACE_SIZE_DEFAULT = 1024;
+    public static final String PACKET_TRACE_SAMPLING_RATE = "packetTraceSamplingRate";
+    public static final int PACKET_TRACE_SAMPLING_RATE_DEFAULT = 1;
+    public static final String LCP_ECHO_OFFLOAD = "lcpEchoOffload";
+    public static final boolean LCP_ECHO_OFFLOAD_DEFAULT = false;
+    public static final String LCP_ECHO_DEAD_PEER_TIMEOUT = "lcpEchoDeadPeerTimeout";
+    public static final long LCP_ECHO_DEAD_PEER_TIMEOUT_DEFAULT = 60000;
+    public static final String PADI_FAN_OUT = "padiFanOut";
+    public static final boolean PADI_FAN_OUT_DEFAULT = false;
+    public static final String LOCAL_PADO_RESPONDER = "localPadoResponder";
+    public static final boolean LOCAL_PADO_RESPONDER_DEFAULT = false;
+    public static final String PADO_AC_NAME = "padoAcName";
+    public static final String PADO_AC_NAME_DEFAULT = "onos-bng";
+    public static final String PADO_SERVICE_NAME = "padoServiceName";
+    public static final String PADO_SERVICE_NAME_DEFAULT = "";
+    public static final String PORT_DOWN_PADT = "portDownPadt";
+    public static final boolean PORT_DOWN_PADT_DEFAULT = false;
+    public static final String ATTACHMENT_JOURNAL_ENABLED = "attachmentJournalEnabled";
+    public static final boolean ATTACHMENT_JOURNAL_ENABLED_DEFAULT = false;
 
     private OsgiPropertyConstants() {
     }
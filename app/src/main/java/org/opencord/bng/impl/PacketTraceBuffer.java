@@ -0,0 +1,142 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.impl;
+
+import com.google.common.collect.Lists;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.opencord.bng.PppoePacketTrace;
+import org.opencord.bng.packets.PppProtocolType;
+import org.opencord.bng.packets.Pppoe;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Ring buffer with the key fields of the last relayed PPPoE frames. Fields
+ * are stored in primitive arrays, so recording a frame does not allocate
+ * memory nor format strings; traces are built only when the buffer is
+ * dumped. Only one frame out of the sampling rate is recorded.
+ * <p>
+ * Each slot carries the sequence number of the frame it holds, set to -1
+ * while the slot is being written: slots overwritten while being read are
+ * skipped by {@link #dump()}.
+ */
+final class PacketTraceBuffer {
+
+    private static final Pppoe.PppoeType[] PPPOE_TYPES = Pppoe.PppoeType.values();
+
+    private final int capacity;
+    private final int samplingRate;
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLongArray sequences;
+    private final long[] timestamps;
+    private final long[] srcMacs;
+    private final long[] dstMacs;
+    private final short[] sTags;
+    private final short[] cTags;
+    private final short[] sessionIds;
+    private final short[] pppProtocols;
+    private final byte[] codes;
+    private final boolean[] upstream;
+
+    /**
+     * Creates a new packet trace buffer.
+     *
+     * @param capacity     Number of frames kept in the buffer
+     * @param samplingRate Record one frame out of this number
+     */
+    PacketTraceBuffer(int capacity, int samplingRate) {
+        this.capacity = Math.max(1, capacity);
+        this.samplingRate = Math.max(1, samplingRate);
+        sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            sequences.set(i, -1);
+        }
+        timestamps = new long[this.capacity];
+        srcMacs = new long[this.capacity];
+        dstMacs = new long[this.capacity];
+        sTags = new short[this.capacity];
+        cTags = new short[this.capacity];
+        sessionIds = new short[this.capacity];
+        pppProtocols = new short[this.capacity];
+        codes = new byte[this.capacity];
+        upstream = new boolean[this.capacity];
+    }
+
+    /**
+     * Records a relayed frame, if sampled.
+     *
+     * @param isUpstream  True if the frame is from the attachment to the server
+     * @param srcMac      Source MAC address
+     * @param dstMac      Destination MAC address
+     * @param sTag        S-Tag
+     * @param cTag        C-Tag
+     * @param type        PPPoE code
+     * @param sessionId   PPPoE session ID
+     * @param pppProtocol PPP protocol number
+     */
+    void record(boolean isUpstream, MacAddress srcMac, MacAddress dstMac, short sTag, short cTag,
+                Pppoe.PppoeType type, short sessionId, short pppProtocol) {
+        if (samplingRate > 1 && received.getAndIncrement() % samplingRate != 0) {
+            return;
+        }
+        long sequence = recorded.getAndIncrement();
+        int slot = (int) (sequence % capacity);
+        sequences.set(slot, -1);
+        timestamps[slot] = System.currentTimeMillis();
+        upstream[slot] = isUpstream;
+        srcMacs[slot] = srcMac.toLong();
+        dstMacs[slot] = dstMac.toLong();
+        sTags[slot] = sTag;
+        cTags[slot] = cTag;
+        codes[slot] = (byte) type.ordinal();
+        sessionIds[slot] = sessionId;
+        pppProtocols[slot] = pppProtocol;
+        sequences.set(slot, sequence);
+    }
+
+    /**
+     * Returns the frames in the buffer, from the oldest to the most recent.
+     *
+     * @return The list of frame traces
+     */
+    List<PppoePacketTrace> dump() {
+        long last = recorded.get();
+        long first = Math.max(0, last - capacity);
+        List<PppoePacketTrace> traces = Lists.newArrayListWithCapacity((int) (last - first));
+        for (long sequence = first; sequence < last; sequence++) {
+            int slot = (int) (sequence % capacity);
+            if (sequences.get(slot) != sequence) {
+                continue;
+            }
+            PppoePacketTrace trace = new PppoePacketTrace(
+                    timestamps[slot], upstream[slot],
+                    MacAddress.valueOf(srcMacs[slot]), MacAddress.valueOf(dstMacs[slot]),
+                    VlanId.vlanId(sTags[slot]), VlanId.vlanId(cTags[slot]),
+                    PPPOE_TYPES[codes[slot]].type(), sessionIds[slot],
+                    PppProtocolType.lookup(pppProtocols[slot]).type());
+            // Skip the slot if overwritten in the meantime
+            if (sequences.get(slot) == sequence) {
+                traces.add(trace);
+            }
+        }
+        return traces;
+    }
+}
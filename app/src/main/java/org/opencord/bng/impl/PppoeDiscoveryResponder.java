@@ -0,0 +1,121 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.impl;
+
+import org.opencord.bng.packets.Pppoe;
+import org.opencord.bng.packets.PppoeTlvTag;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Builds the PADO answering the PADI of the attachments on behalf of the
+ * PPPoE servers. The AC-Name and AC-Cookie TAGs are the ones of the last
+ * PADO sent by the server, which has to accept them in the PADR of any
+ * attachment. The Service-Name TAG is built once.
+ */
+final class PppoeDiscoveryResponder {
+
+    private static final byte PPPOE_VERSION = 1;
+    private static final byte PPPOE_TYPE = 1;
+    private static final int TAG_HEADER_LENGTH = 4;
+
+    private final PppoeTlvTag acName;
+    private final PppoeTlvTag serviceName;
+
+    /**
+     * Creates a new discovery responder.
+     *
+     * @param acName      The AC-Name advertised in the PADO when the server
+     *                    has not sent one
+     * @param serviceName The Service-Name offered, empty for any service
+     */
+    PppoeDiscoveryResponder(String acName, String serviceName) {
+        this.acName = tag(PppoeTlvTag.PPPOED_TAGTYPE_ACNAME, acName.getBytes(StandardCharsets.UTF_8));
+        this.serviceName = tag(PppoeTlvTag.PPPOED_TAGTYPE_SERVICENAME,
+                               serviceName.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Builds the PADO answering the given PADI on behalf of a server. The
+     * Host-Uniq and Relay-Session-Id TAGs of the PADI are echoed as required
+     * by RFC 2516.
+     *
+     * @param padi       The PADI of the attachment
+     * @param serverTags The TAGs of the last PADO sent by the server
+     * @return The PADO, null if the PADI asks for a service that is not
+     * offered
+     */
+    Pppoe pado(Pppoe padi, ServerTags serverTags) {
+        PppoeTlvTag requestedService = padi.getServiceName();
+        if (requestedService != null && requestedService.getLength() > 0 &&
+                !Arrays.equals(requestedService.getValue(), serviceName.getValue())) {
+            return null;
+        }
+        PppoeTlvTag serverAcName = serverTags.acName != null ? serverTags.acName : acName;
+        Pppoe pado = new Pppoe()
+                .setVersion(PPPOE_VERSION)
+                .setTypeId(PPPOE_TYPE)
+                .setPacketType(Pppoe.PppoeType.PADO)
+                .setSessionId((short) 0)
+                .setAcName(serverAcName)
+                .setServiceName(serviceName);
+        int payloadLength = length(serverAcName) + length(serviceName);
+        if (serverTags.acCookie != null) {
+            pado.addTag(serverTags.acCookie);
+            payloadLength += length(serverTags.acCookie);
+        }
+        for (short echoed : new short[]{PppoeTlvTag.PPPOED_TAGTYPE_HOSTUNIQ,
+                PppoeTlvTag.PPPOED_TAGTYPE_RELAYSESSIONID}) {
+            PppoeTlvTag tlv = padi.getTag(echoed);
+            if (tlv != null) {
+                pado.addTag(tlv);
+                payloadLength += length(tlv);
+            }
+        }
+        return pado.setPayloadLength((short) payloadLength);
+    }
+
+    /**
+     * AC-Name and AC-Cookie TAGs of a PADO sent by a PPPoE server.
+     */
+    static final class ServerTags {
+        private final PppoeTlvTag acName;
+        private final PppoeTlvTag acCookie;
+
+        /**
+         * Creates the TAGs of the given PADO.
+         *
+         * @param pado The PADO sent by the server
+         */
+        ServerTags(Pppoe pado) {
+            this.acName = pado.getAcName();
+            this.acCookie = pado.getTag(PppoeTlvTag.PPPOED_TAGTYPE_ACCOOKIE);
+        }
+    }
+
+    private static PppoeTlvTag tag(short type, byte[] value) {
+        return new PppoeTlvTag()
+                .setTagType(type)
+                .setLength((short) value.length)
+                .setValue(value);
+    }
+
+    private static int length(PppoeTlvTag tlv) {
+        return TAG_HEADER_LENGTH + tlv.getLength();
+    }
+}
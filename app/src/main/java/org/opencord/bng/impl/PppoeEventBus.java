@@ -0,0 +1,267 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.impl;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.opencord.bng.PppoeEvent;
+import org.opencord.bng.PppoeEventListener;
+import org.opencord.bng.PppoeEventListenerStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.onlab.util.Tools.groupedThreads;
+
+/**
+ * Delivers PPPoE events to the registered listeners, off the packet processing
+ * and the ONOS event dispatcher threads. Each listener has its own bounded
+ * queue, drained in batches by at most one worker at a time: events are
+ * delivered to a listener in the order they are posted, so the ordering of
+ * the events of an attachment is preserved. When the queue of a listener is
+ * full the new events for that listener are dropped, without affecting the
+ * other listeners.
+ */
+final class PppoeEventBus {
+
+    static final int DEFAULT_QUEUE_SIZE = 4096;
+    static final int DEFAULT_BATCH_SIZE = 64;
+    private static final int WORKERS = 2;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final Map<PppoeEventListener, ListenerQueue> queues = new ConcurrentHashMap<>();
+    private final int queueSize;
+    private final int batchSize;
+    // Null when stopped
+    private volatile ExecutorService workers;
+
+    /**
+     * Creates a new event bus with default queue and batch size.
+     */
+    PppoeEventBus() {
+        this(DEFAULT_QUEUE_SIZE, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a new event bus.
+     *
+     * @param queueSize Maximum number of events queued for each listener
+     * @param batchSize Maximum number of events delivered at once
+     */
+    PppoeEventBus(int queueSize, int batchSize) {
+        this.queueSize = queueSize;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Starts the delivery of the events.
+     */
+    void start() {
+        if (workers == null) {
+            workers = Executors.newFixedThreadPool(WORKERS, groupedThreads("onos/bng", "pppoe-event-%d", log));
+        }
+        // Deliver the events posted while stopped
+        queues.values().forEach(ListenerQueue::schedule);
+    }
+
+    /**
+     * Registers a listener.
+     *
+     * @param listener The listener
+     */
+    void addListener(PppoeEventListener listener) {
+        queues.computeIfAbsent(listener, l -> new ListenerQueue(l, uniqueName(l)));
+    }
+
+    /**
+     * Unregisters a listener. Events not yet delivered to the listener are
+     * discarded.
+     *
+     * @param listener The listener
+     */
+    void removeListener(PppoeEventListener listener) {
+        ListenerQueue queue = queues.remove(listener);
+        if (queue != null) {
+            queue.events.clear();
+        }
+    }
+
+    /**
+     * Posts an event to all the registered listeners. It never blocks.
+     *
+     * @param event The event
+     */
+    void post(PppoeEvent event) {
+        queues.values().forEach(queue -> queue.offer(event));
+    }
+
+    /**
+     * Stops the delivery of the events and unregisters all the listeners.
+     */
+    void stop() {
+        queues.clear();
+        ExecutorService oldWorkers = workers;
+        workers = null;
+        if (oldWorkers != null) {
+            oldWorkers.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the number of events waiting to be delivered to each listener.
+     *
+     * @return The map of listener names and queued events
+     */
+    Map<String, Long> queueDepths() {
+        Map<String, Long> depths = Maps.newHashMap();
+        queues.values().forEach(queue -> depths.put(queue.name, (long) queue.events.size()));
+        return depths;
+    }
+
+    /**
+     * Returns the delivery statistics of each listener.
+     *
+     * @return The map of listener names and delivery statistics
+     */
+    Map<String, PppoeEventListenerStats> stats() {
+        Map<String, PppoeEventListenerStats> stats = Maps.newHashMap();
+        queues.values().forEach(queue -> stats.put(queue.name, queue.stats()));
+        return stats;
+    }
+
+    private String uniqueName(PppoeEventListener listener) {
+        String name = listener.getClass().getName();
+        String uniqueName = name;
+        int index = 1;
+        while (nameInUse(uniqueName)) {
+            uniqueName = name + "-" + ++index;
+        }
+        return uniqueName;
+    }
+
+    private boolean nameInUse(String name) {
+        return queues.values().stream().anyMatch(queue -> queue.name.equals(name));
+    }
+
+    /**
+     * Queue of the events for a single listener.
+     */
+    private final class ListenerQueue implements Runnable {
+        private final PppoeEventListener listener;
+        private final String name;
+        private final BlockingQueue<PppoeEvent> events = new ArrayBlockingQueue<>(queueSize);
+        // Whether a worker is draining, or is going to drain, this queue
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+        private final AtomicLong delivered = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        // Whether the queue is full, to log once for each sequence of drops
+        private final AtomicBoolean full = new AtomicBoolean(false);
+        private volatile long lastLagMillis;
+        private volatile long maxLagMillis;
+
+        private ListenerQueue(PppoeEventListener listener, String name) {
+            this.listener = listener;
+            this.name = name;
+        }
+
+        private void offer(PppoeEvent event) {
+            if (!events.offer(event)) {
+                long totalDropped = dropped.incrementAndGet();
+                if (full.compareAndSet(false, true)) {
+                    log.warn("Event queue of {} is full, dropping events ({} dropped so far)",
+                             name, totalDropped);
+                }
+                return;
+            }
+            full.set(false);
+            schedule();
+        }
+
+        private void schedule() {
+            ExecutorService executor = workers;
+            if (executor == null || events.isEmpty() || !scheduled.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                // Stopped in the meantime
+                scheduled.set(false);
+            }
+        }
+
+        @Override
+        public void run() {
+            List<PppoeEvent> batch = Lists.newArrayListWithCapacity(batchSize);
+            try {
+                events.drainTo(batch, batchSize);
+                deliver(batch);
+            } finally {
+                scheduled.set(false);
+            }
+            // Events might have been queued after the drain, or more than a
+            // batch might be waiting: reschedule to yield to other listeners.
+            schedule();
+        }
+
+        private void deliver(List<PppoeEvent> batch) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            long lag = now - batch.get(0).time();
+            lastLagMillis = now - batch.get(batch.size() - 1).time();
+            if (lag > maxLagMillis) {
+                maxLagMillis = lag;
+            }
+            batch.removeIf(event -> !isRelevant(event));
+            if (batch.isEmpty()) {
+                return;
+            }
+            delivered.addAndGet(batch.size());
+            try {
+                listener.eventBatch(batch);
+            } catch (Exception e) {
+                log.warn("Listener {} failed to process PPPoE events", name, e);
+            }
+        }
+
+        private boolean isRelevant(PppoeEvent event) {
+            try {
+                return listener.isRelevant(event);
+            } catch (Exception e) {
+                log.warn("Listener {} failed to evaluate the relevance of {}", name, event.type(), e);
+                return false;
+            }
+        }
+
+        private PppoeEventListenerStats stats() {
+            return new PppoeEventListenerStats(events.size(), delivered.get(), dropped.get(),
+                                               lastLagMillis, maxLagMillis);
+        }
+    }
+}
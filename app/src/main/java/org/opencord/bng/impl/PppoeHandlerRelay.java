@@ -16,30 +16,40 @@
 
 package org.opencord.bng.impl;
 
+import com.google.common.base.Strings;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import org.apache.commons.lang3.tuple.ImmutableTriple;
+import org.onlab.packet.DHCP6;
 import org.onlab.packet.Data;
 import org.onlab.packet.DeserializationException;
 import org.onlab.packet.Ethernet;
+import org.onlab.packet.IPv6;
 import org.onlab.packet.IpAddress;
+import org.onlab.packet.IpPrefix;
 import org.onlab.packet.MacAddress;
+import org.onlab.packet.UDP;
 import org.onlab.packet.VlanId;
+import org.onlab.packet.dhcp.Dhcp6IaPdOption;
+import org.onlab.packet.dhcp.Dhcp6IaPrefixOption;
 import org.onlab.util.ItemNotFoundException;
 import org.onlab.util.SharedExecutors;
+import org.onlab.util.SharedScheduledExecutors;
+import org.onlab.util.Tools;
+import org.onosproject.cfg.ComponentConfigService;
 import org.onosproject.core.ApplicationId;
 import org.onosproject.core.CoreService;
-import org.onosproject.event.AbstractListenerManager;
 import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.DeviceId;
 import org.onosproject.net.config.ConfigFactory;
 import org.onosproject.net.config.NetworkConfigEvent;
 import org.onosproject.net.config.NetworkConfigListener;
 import org.onosproject.net.config.NetworkConfigRegistry;
 import org.onosproject.net.device.DeviceService;
 import org.onosproject.net.driver.DriverService;
-import org.onosproject.net.flow.DefaultTrafficTreatment;
 import org.onosproject.net.flow.TrafficTreatment;
 import org.onosproject.net.intf.Interface;
 import org.onosproject.net.intf.InterfaceService;
@@ -50,45 +60,118 @@ import org.onosproject.net.packet.PacketContext;
 import org.onosproject.net.packet.PacketProcessor;
 import org.onosproject.net.packet.PacketService;
 import org.opencord.bng.BngAttachment;
+import org.opencord.bng.BngSessionLatencyService;
 import org.opencord.bng.PppoeBngAttachment;
 import org.opencord.bng.PppoeBngControlHandler;
 import org.opencord.bng.PppoeEvent;
 import org.opencord.bng.PppoeEventListener;
+import org.opencord.bng.PppoeEventListenerStats;
+import org.opencord.bng.PppoeServerStats;
 import org.opencord.bng.PppoeEventSubject;
+import org.opencord.bng.PppoePacketTrace;
+import org.opencord.bng.PppoeRelayStageStats;
 import org.opencord.bng.config.PppoeRelayConfig;
-import org.opencord.bng.packets.GenericPpp;
+import org.opencord.bng.impl.RelayStageStats.Stage;
+import org.opencord.bng.packets.Chap;
 import org.opencord.bng.packets.Ipcp;
+import org.opencord.bng.packets.Ipv6cp;
+import org.opencord.bng.packets.Lcp;
+import org.opencord.bng.packets.Pap;
 import org.opencord.bng.packets.PppProtocolType;
 import org.opencord.bng.packets.Pppoe;
 import org.opencord.sadis.SadisService;
+import org.osgi.service.component.ComponentContext;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.ByteBuffer;
+import java.util.Dictionary;
+import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
+import static org.onlab.util.Tools.groupedThreads;
 import static org.onosproject.net.config.basics.SubjectFactories.APP_SUBJECT_FACTORY;
-
-@Component(immediate = true)
-public class PppoeHandlerRelay
-        extends AbstractListenerManager<PppoeEvent, PppoeEventListener>
-        implements PppoeBngControlHandler {
+import static org.opencord.bng.impl.OsgiPropertyConstants.PACKET_TRACE_SAMPLING_RATE;
+import static org.opencord.bng.impl.OsgiPropertyConstants.LCP_ECHO_DEAD_PEER_TIMEOUT;
+import static org.opencord.bng.impl.OsgiPropertyConstants.LCP_ECHO_DEAD_PEER_TIMEOUT_DEFAULT;
+import static org.opencord.bng.impl.OsgiPropertyConstants.LCP_ECHO_OFFLOAD;
+import static org.opencord.bng.impl.OsgiPropertyConstants.LCP_ECHO_OFFLOAD_DEFAULT;
+import static org.opencord.bng.impl.OsgiPropertyConstants.LOCAL_PADO_RESPONDER;
+import static org.opencord.bng.impl.OsgiPropertyConstants.LOCAL_PADO_RESPONDER_DEFAULT;
+import static org.opencord.bng.impl.OsgiPropertyConstants.PADO_AC_NAME;
+import static org.opencord.bng.impl.OsgiPropertyConstants.PADO_AC_NAME_DEFAULT;
+import static org.opencord.bng.impl.OsgiPropertyConstants.PADO_SERVICE_NAME;
+import static org.opencord.bng.impl.OsgiPropertyConstants.PADO_SERVICE_NAME_DEFAULT;
+import static org.opencord.bng.impl.OsgiPropertyConstants.PACKET_TRACE_SAMPLING_RATE_DEFAULT;
+import static org.opencord.bng.impl.OsgiPropertyConstants.PADI_FAN_OUT;
+import static org.opencord.bng.impl.OsgiPropertyConstants.PADI_FAN_OUT_DEFAULT;
+import static org.opencord.bng.impl.OsgiPropertyConstants.PACKET_TRACE_SIZE;
+import static org.opencord.bng.impl.OsgiPropertyConstants.PACKET_TRACE_SIZE_DEFAULT;
+
+@Component(immediate = true,
+        property = {
+                PACKET_TRACE_SIZE + ":Integer=" + PACKET_TRACE_SIZE_DEFAULT,
+                PACKET_TRACE_SAMPLING_RATE + ":Integer=" + PACKET_TRACE_SAMPLING_RATE_DEFAULT,
+                LCP_ECHO_OFFLOAD + ":Boolean=" + LCP_ECHO_OFFLOAD_DEFAULT,
+                LCP_ECHO_DEAD_PEER_TIMEOUT + ":Long=" + LCP_ECHO_DEAD_PEER_TIMEOUT_DEFAULT,
+                PADI_FAN_OUT + ":Boolean=" + PADI_FAN_OUT_DEFAULT,
+                LOCAL_PADO_RESPONDER + ":Boolean=" + LOCAL_PADO_RESPONDER_DEFAULT,
+                PADO_AC_NAME + "=" + PADO_AC_NAME_DEFAULT,
+                PADO_SERVICE_NAME + "=" + PADO_SERVICE_NAME_DEFAULT,
+        }
+)
+public class PppoeHandlerRelay implements PppoeBngControlHandler {
 
     private static final IpAddress IP_ADDRESS_ZERO = IpAddress.valueOf(0);
+    private static final String OLT_CP_CACHE = "oltConnectPoint";
+    private static final String PACKET_QUEUE = "packetProcessing";
+    private static final String EVENT_QUEUE_PREFIX = "pppoeEvents/";
+    // Sessions not established and idle for this time are removed
+    private static final long SESSION_IDLE_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final long SESSION_EVICTION_PERIOD_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final long DEAD_PEER_CHECK_PERIOD_MS = TimeUnit.SECONDS.toMillis(5);
+    private static final String LCP_ECHO_REPLIES = "lcpEchoReplies";
+    private static final String LCP_DEAD_PEERS = "lcpDeadPeers";
+    private static final String PADO_SUPPRESSED = "padoSuppressed";
+    private static final String PADO_OFFLOADED = "padoOffloaded";
+    private static final String PADT_SENT = "padtSent";
+    // Packets processed with a replaced configuration are waited at most this time
+    private static final long CONFIG_DRAIN_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(5);
+    // A PPPoE server not answering a PADI within this time is timed out
+    private static final long PADO_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(2);
+    // A PPPoE server timed out this many consecutive times is not selected
+    // for new sessions, and probed again after the retry interval
+    private static final int PPPOE_SERVER_MAX_TIMEOUTS = 3;
+    private static final long PPPOE_SERVER_RETRY_MS = TimeUnit.SECONDS.toMillis(30);
 
     private final Logger log = LoggerFactory.getLogger(getClass());
     private final InternalConfigListener cfgListener = new InternalConfigListener();
+    private final PppoeEventBus eventBus = new PppoeEventBus();
+    private final PppoeSessionTable sessionTable = new PppoeSessionTable();
+    private final RelayStageStats stageStats = new RelayStageStats();
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY)
+    protected ComponentConfigService componentConfigService;
 
     @Reference(cardinality = ReferenceCardinality.MANDATORY)
     protected NetworkConfigRegistry cfgService;
@@ -114,6 +197,9 @@ public class PppoeHandlerRelay
     @Reference(cardinality = ReferenceCardinality.MANDATORY)
     protected DriverService driverService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY)
+    protected BngSessionLatencyService latencyService;
+
     private ConfigFactory<ApplicationId, PppoeRelayConfig> cfgFactory = new ConfigFactory<>(
             APP_SUBJECT_FACTORY,
             PppoeRelayConfig.class,
@@ -125,24 +211,97 @@ public class PppoeHandlerRelay
     };
     private ApplicationId appId;
     private InternalPacketProcessor internalPacketProcessor;
-    private PppoeRelayConfig pppoeRelayConfig;
-    private MacAddress macPppoeServer;
+    /**
+     * Compiled relay configuration, replaced as a whole on configuration
+     * events.
+     */
+    private volatile RelayConfigSnapshot relayConfig;
+    private long configVersion;
+    private volatile long lastConfigReloadNanos;
+    // Waits for the packets processed with the replaced configurations
+    private ExecutorService configRetirement;
+    private final PppoeServerPool serverPool =
+            new PppoeServerPool(PPPOE_SERVER_MAX_TIMEOUTS, PPPOE_SERVER_RETRY_MS);
+    private ScheduledFuture<?> sessionEvictionTask;
+    private ScheduledFuture<?> deadPeerTask;
+
+    /**
+     * Number of frames kept in the packet trace.
+     */
+    private int packetTraceSize = PACKET_TRACE_SIZE_DEFAULT;
+    /**
+     * Record one frame out of this number in the packet trace.
+     */
+    private int packetTraceSamplingRate = PACKET_TRACE_SAMPLING_RATE_DEFAULT;
+    private volatile PacketTraceBuffer packetTrace =
+            new PacketTraceBuffer(PACKET_TRACE_SIZE_DEFAULT, PACKET_TRACE_SAMPLING_RATE_DEFAULT);
+    /**
+     * Answer the LCP echo requests of the attachments instead of relaying
+     * them to the PPPoE server.
+     */
+    private volatile boolean lcpEchoOffload = LCP_ECHO_OFFLOAD_DEFAULT;
+    /**
+     * Terminate the sessions whose LCP echo requests have been answered by
+     * the relay and stopped for this time, in milliseconds. 0 disables the
+     * dead-peer detection.
+     */
+    private volatile long lcpEchoDeadPeerTimeout = LCP_ECHO_DEAD_PEER_TIMEOUT_DEFAULT;
+    private final LongAdder lcpEchoReplies = new LongAdder();
+    private final LongAdder lcpDeadPeers = new LongAdder();
+    /**
+     * Relay the PADI to all the PPPoE servers of the pool, forwarding only
+     * the first PADO to the attachment.
+     */
+    private volatile boolean padiFanOut = PADI_FAN_OUT_DEFAULT;
+    private final LongAdder padoSuppressed = new LongAdder();
+    /**
+     * Answer the PADI of the attachments with a PADO built by the relay
+     * instead of relaying it to the PPPoE servers. The PADO echoes the
+     * AC-Name and AC-Cookie of the last PADO of the selected server, which
+     * must accept them in the PADR of any attachment: servers binding the
+     * AC-Cookie to the attachment are not supported.
+     */
+    private boolean localPadoResponder = LOCAL_PADO_RESPONDER_DEFAULT;
+    /** AC-Name advertised in the PADO built by the relay, if the server PADO has none. */
+    private String padoAcName = PADO_AC_NAME_DEFAULT;
+    /** Service-Name offered in the PADO built by the relay, empty for any service. */
+    private String padoServiceName = PADO_SERVICE_NAME_DEFAULT;
+    // Null if the discovery is relayed to the PPPoE servers
+    private volatile PppoeDiscoveryResponder discoveryResponder;
+    private final LongAdder padoOffloaded = new LongAdder();
+    private final LongAdder padtSent = new LongAdder();
 
     /**
      * Ephemeral internal map to trace the attachment information. This map is
      * mainly used to modify the packet towards the PPPoE server or towards the
      * attachment.
-     * FIXME: this map should be cleaned after some time.
+     * Entries are removed together with the stale PPPoE sessions.
      * FIXME: consider the case of user that moves around
      */
     private Map<MacAddress, BngAttachment> mapSrcMacToAttInfo;
 
+    /**
+     * Counters of the relayed packets, indexed by PPPoE type ordinal.
+     */
+    private final LongAdder[] packetCounters = newCounters(Pppoe.PppoeType.values().length);
+
+    /**
+     * Counters of the generated events, indexed by event type ordinal.
+     */
+    private final LongAdder[] eventCounters = newCounters(PppoeEvent.EventType.values().length);
+
+    /**
+     * Number of packets submitted for processing but not yet processed.
+     */
+    private final AtomicLong pendingPackets = new AtomicLong();
+
     /**
      * Cache to cache Sadis results during PPPoE connection establishment.
      */
     private final LoadingCache<ImmutableTriple<VlanId, VlanId, ConnectPoint>, ConnectPoint>
             oltCpCache = CacheBuilder.newBuilder()
             .expireAfterWrite(30, TimeUnit.SECONDS)
+            .recordStats()
             .build(new CacheLoader<>() {
                 @Override
                 public ConnectPoint load(ImmutableTriple<VlanId, VlanId, ConnectPoint> key) throws Exception {
@@ -151,110 +310,298 @@ public class PppoeHandlerRelay
             });
 
     @Activate
-    protected void activate() {
+    protected void activate(ComponentContext context) {
         mapSrcMacToAttInfo = Maps.newConcurrentMap();
+        eventBus.start();
         appId = coreService.getAppId(BngManager.BNG_APP);
+        componentConfigService.registerProperties(getClass());
+        modified(context);
         cfgService.addListener(cfgListener);
         cfgService.registerConfigFactory(cfgFactory);
-
-        eventDispatcher.addSink(PppoeEvent.class, listenerRegistry);
+        configRetirement = Executors.newSingleThreadExecutor(
+                groupedThreads("onos/bng", "relay-config-retirement", log));
 
         updateConfig();
 
         internalPacketProcessor = new InternalPacketProcessor();
         packetService.addProcessor(internalPacketProcessor, PacketProcessor.director(0));
 
+        sessionEvictionTask = SharedScheduledExecutors.getPoolThreadExecutor().scheduleAtFixedRate(
+                this::evictStaleSessions, SESSION_EVICTION_PERIOD_MS,
+                SESSION_EVICTION_PERIOD_MS, TimeUnit.MILLISECONDS);
+        deadPeerTask = SharedScheduledExecutors.getPoolThreadExecutor().scheduleAtFixedRate(
+                this::terminateDeadPeers, DEAD_PEER_CHECK_PERIOD_MS,
+                DEAD_PEER_CHECK_PERIOD_MS, TimeUnit.MILLISECONDS);
+
         log.info("PPPoE Handler Relay activated");
     }
 
+    @Modified
+    protected void modified(ComponentContext context) {
+        Dictionary<?, ?> properties = context != null ? context.getProperties() : new Properties();
+        int traceSize = Tools.getIntegerProperty(properties, PACKET_TRACE_SIZE, PACKET_TRACE_SIZE_DEFAULT);
+        int traceSamplingRate = Tools.getIntegerProperty(properties, PACKET_TRACE_SAMPLING_RATE,
+                                                         PACKET_TRACE_SAMPLING_RATE_DEFAULT);
+        if (traceSize != packetTraceSize || traceSamplingRate != packetTraceSamplingRate) {
+            packetTraceSize = traceSize;
+            packetTraceSamplingRate = traceSamplingRate;
+            packetTrace = new PacketTraceBuffer(packetTraceSize, packetTraceSamplingRate);
+        }
+        Boolean echoOffload = Tools.isPropertyEnabled(properties, LCP_ECHO_OFFLOAD);
+        lcpEchoOffload = echoOffload != null ? echoOffload : LCP_ECHO_OFFLOAD_DEFAULT;
+        Long deadPeerTimeout = Tools.getLongProperty(properties, LCP_ECHO_DEAD_PEER_TIMEOUT);
+        lcpEchoDeadPeerTimeout = deadPeerTimeout != null && deadPeerTimeout >= 0 ?
+                deadPeerTimeout : LCP_ECHO_DEAD_PEER_TIMEOUT_DEFAULT;
+        Boolean fanOut = Tools.isPropertyEnabled(properties, PADI_FAN_OUT);
+        padiFanOut = fanOut != null ? fanOut : PADI_FAN_OUT_DEFAULT;
+        Boolean localPado = Tools.isPropertyEnabled(properties, LOCAL_PADO_RESPONDER);
+        localPadoResponder = localPado != null ? localPado : LOCAL_PADO_RESPONDER_DEFAULT;
+        String acName = Tools.get(properties, PADO_AC_NAME);
+        padoAcName = Strings.isNullOrEmpty(acName) ? PADO_AC_NAME_DEFAULT : acName;
+        String serviceName = Tools.get(properties, PADO_SERVICE_NAME);
+        padoServiceName = serviceName != null ? serviceName : PADO_SERVICE_NAME_DEFAULT;
+        discoveryResponder = localPadoResponder ?
+                new PppoeDiscoveryResponder(padoAcName, padoServiceName) : null;
+    }
+
     @Deactivate
     protected void deactivate() {
-        eventDispatcher.removeSink(PppoeEvent.class);
+        // No config event past this point, they would reach the retirement executor shut down below
+        cfgService.removeListener(cfgListener);
+        componentConfigService.unregisterProperties(getClass(), false);
         packetService.removeProcessor(internalPacketProcessor);
+        sessionEvictionTask.cancel(false);
+        deadPeerTask.cancel(false);
+        eventBus.stop();
         cfgService.unregisterConfigFactory(cfgFactory);
+        configRetirement.shutdownNow();
         oltCpCache.invalidateAll();
-        pppoeRelayConfig = null;
+        relayConfig = null;
         mapSrcMacToAttInfo = null;
         internalPacketProcessor = null;
-        macPppoeServer = null;
+        serverPool.retain(Set.of());
 
         log.info("PPPoE Handler Relay deactivated");
     }
 
 
     private void updateConfig() {
-        PppoeRelayConfig newPppoeRelayConfig = cfgService.getConfig(appId, PppoeRelayConfig.class);
+        updateConfig(cfgService.getConfig(appId, PppoeRelayConfig.class));
+    }
+
+    /**
+     * Compiles the given relay configuration and makes it visible to the
+     * packet processing at once. The wait for the packets still processed
+     * with the previous configuration is done on the retirement thread, not
+     * to block the network configuration events. The PPPoE sessions and the
+     * known attachments are kept across the reload.
+     *
+     * @param newPppoeRelayConfig The new configuration, null if removed
+     */
+    private synchronized void updateConfig(PppoeRelayConfig newPppoeRelayConfig) {
         log.info("{}", newPppoeRelayConfig);
-        if (this.pppoeRelayConfig == null &&
-                newPppoeRelayConfig != null &&
-                newPppoeRelayConfig.isValid()) {
-            // TODO: what happens if this is triggered in the middle of a session auth/packet relay?
-            this.pppoeRelayConfig = newPppoeRelayConfig;
+        long reloadStart = System.nanoTime();
+        RelayConfigSnapshot newConfig = null;
+        if (newPppoeRelayConfig != null) {
+            if (!newPppoeRelayConfig.isValid()) {
+                log.warn("Invalid PPPoE relay config, keeping the previous one");
+                return;
+            }
+            try {
+                newConfig = RelayConfigSnapshot.compile(newPppoeRelayConfig, configVersion + 1);
+            } catch (IllegalArgumentException e) {
+                log.warn("Invalid PPPoE relay config, keeping the previous one: {}", e.getMessage());
+                return;
+            }
+            configVersion = newConfig.version();
+        }
+        RelayConfigSnapshot oldConfig = relayConfig;
+        relayConfig = newConfig;
+        if (newConfig != null) {
+            serverPool.retain(newConfig.pppoeServerConnectPoints());
+        }
+        if (oldConfig == null) {
+            configApplied(newConfig, reloadStart);
+            return;
+        }
+        RelayConfigSnapshot appliedConfig = newConfig;
+        try {
+            configRetirement.execute(() -> retireConfig(oldConfig, appliedConfig, reloadStart));
+        } catch (RejectedExecutionException e) {
+            log.debug("PPPoE relay deactivated, not waiting for config version {}", oldConfig.version());
+        }
+    }
+
+    /**
+     * Waits for the packets still processed with a replaced configuration.
+     *
+     * @param oldConfig   The replaced configuration
+     * @param newConfig   The configuration that replaced it, null if removed
+     * @param reloadStart Time the reload started at, in nanoseconds
+     */
+    private void retireConfig(RelayConfigSnapshot oldConfig, RelayConfigSnapshot newConfig,
+                              long reloadStart) {
+        try {
+            if (!oldConfig.awaitDrained(CONFIG_DRAIN_TIMEOUT_MS)) {
+                log.warn("{} packets still processed with PPPoE relay config version {}",
+                         oldConfig.inFlight(), oldConfig.version());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        configApplied(newConfig, reloadStart);
+    }
+
+    private void configApplied(RelayConfigSnapshot newConfig, long reloadStart) {
+        lastConfigReloadNanos = System.nanoTime() - reloadStart;
+        log.info("PPPoE relay config version {} applied in {} us",
+                 newConfig != null ? newConfig.version() : "none",
+                 TimeUnit.NANOSECONDS.toMicros(lastConfigReloadNanos));
+    }
+
+    /**
+     * Returns the current relay configuration, accounting the caller as a
+     * packet in flight on it. The caller must call exit() on the returned
+     * snapshot once done.
+     *
+     * @return The current relay configuration, null if not configured
+     */
+    private RelayConfigSnapshot enterConfig() {
+        while (true) {
+            RelayConfigSnapshot config = relayConfig;
+            if (config == null) {
+                return null;
+            }
+            config.enter();
+            // Re-check, the configuration could have been replaced and drained in between
+            if (config == relayConfig) {
+                return config;
+            }
+            config.exit();
+        }
+    }
+
+    /**
+     * Removes the PPPoE sessions that are terminated or that did not complete
+     * the setup in time, together with their attachment information.
+     */
+    private void evictStaleSessions() {
+        int evicted = sessionTable.evict(System.currentTimeMillis() - SESSION_IDLE_TIMEOUT_MS,
+                                         mac -> mapSrcMacToAttInfo.remove(mac));
+        if (evicted > 0) {
+            log.debug("Removed {} stale PPPoE sessions, {} left", evicted, sessionTable.size());
+        }
+    }
+
+    private void terminateDeadPeers() {
+        if (!lcpEchoOffload || lcpEchoDeadPeerTimeout == 0) {
+            return;
+        }
+        int terminated = sessionTable.terminateDeadPeers(
+                System.currentTimeMillis() - lcpEchoDeadPeerTimeout, this::deadPeer);
+        if (terminated > 0) {
+            log.info("Terminated {} PPPoE sessions with no LCP echo for {} ms",
+                     terminated, lcpEchoDeadPeerTimeout);
+        }
+    }
+
+    private void deadPeer(MacAddress mac, PppoeSessionTable.PppoeSession session) {
+        lcpDeadPeers.increment();
+        // Let the server release the session of the silent attachment
+        sendPadt(mac, session, session.pppoeSessionId());
+        BngAttachment attInfo = mapSrcMacToAttInfo.get(mac);
+        if (attInfo == null) {
+            return;
         }
+        generateEventPppoe(PppoeEvent.EventType.SESSION_TERMINATION, attInfo, session.pppoeSessionId(),
+                           IpAddress.valueOf(session.ipAddress()), session);
     }
 
     private void processPppoePacket(PacketContext context) {
-        if (!isConfigured()) {
+        RelayConfigSnapshot config = enterConfig();
+        if (config == null) {
             log.warn("Missing BNG PPPoE handler relay config. Abort packet processing");
             return;
         }
+        try {
+            processPppoePacket(context, config);
+        } finally {
+            config.exit();
+        }
+    }
+
+    private void processPppoePacket(PacketContext context, RelayConfigSnapshot config) {
         Ethernet eth = context.inPacket().parsed();
         log.debug("Parsing the PPPoE header");
         //FIXME: PPPoE and above headers are extracted from the ethernet
         // payload. In case we want to modify the PPPoE/upper-layer header, remember to
         // serialize it back on the Ethernet payload.
+        long stageStart = stageStats.start();
         Pppoe pppoe = parsePppoeHeader(eth);
+        stageStats.stop(Stage.PARSE, stageStart);
         if (pppoe == null) {
             return;
         }
+        packetCounters[pppoe.getPacketType().ordinal()].increment();
 
         log.debug("Processing PPPoE header");
 
         // Check from where the packet is received and if the interface is configured
+        stageStart = stageStats.start();
         ConnectPoint heardOn = context.inPacket().receivedFrom();
-        if (!heardOn.equals(pppoeRelayConfig.getPppoeServerConnectPoint()) &&
-                !heardOn.equals(pppoeRelayConfig.getAsgToOltConnectPoint()) &&
-                !interfaceService.getInterfacesByPort(heardOn).isEmpty()) {
+        Set<Interface> heardOnInterfaces = interfaceService.getInterfacesByPort(heardOn);
+        if (!config.isRelayConnectPoint(heardOn) || heardOnInterfaces.isEmpty()) {
+            stageStats.stop(Stage.VALIDATION, stageStart);
             log.info("PPPoE packet from unregistered port {}", heardOn);
             return;
         }
 
         // Retrieve the MAC address of the device that intercepted the packet.
         // This MAC address is the actual PPPoE server MAC address seen by the attachment
-        MacAddress bnguMac = interfaceService.getInterfacesByPort(heardOn).iterator().next().mac();
+        MacAddress bnguMac = heardOnInterfaces.iterator().next().mac();
+        stageStats.stop(Stage.VALIDATION, stageStart);
+
+        boolean downstream = config.isPppoeServerConnectPoint(heardOn);
+        // Keepalives of established sessions are answered before any other processing
+        if (!downstream && lcpEchoOffload && replyToLcpEcho(config, heardOn, eth, pppoe, bnguMac)) {
+            return;
+        }
 
         VlanId cTag = VlanId.vlanId(eth.getVlanID());
         VlanId sTag = VlanId.vlanId(eth.getQinQVID());
 
+        packetTrace.record(!downstream, eth.getSourceMAC(), eth.getDestinationMAC(),
+                           eth.getQinQVID(), eth.getVlanID(), pppoe.getPacketType(),
+                           pppoe.getSessionId(), pppoe.getPppProtocol());
+
         // --------------------------------------- DEBUG ----------------------------------------------
         if (Pppoe.isPPPoED(eth)) {
             log.info("Received {} packet from {}",
                      pppoe.getPacketType(),
                      heardOn);
         }
-
-        StringBuilder logPacketPppoes = new StringBuilder();
-        if (Pppoe.isPPPoES(eth)) {
-            logPacketPppoes.append("Received PPPoES ")
-                    .append(PppProtocolType.lookup(pppoe.getPppProtocol()).type())
-                    .append(" packet from ").append(heardOn).append(".");
-        }
-        if (logPacketPppoes.length() > 0) {
-            log.debug(logPacketPppoes.toString());
+        if (log.isDebugEnabled()) {
+            if (Pppoe.isPPPoES(eth)) {
+                log.debug("Received PPPoES {} packet from {}.",
+                          PppProtocolType.lookup(pppoe.getPppProtocol()).type(), heardOn);
+            }
+            log.debug("{}", eth);
         }
-        log.debug(eth.toString());
         // --------------------------------------------------------------------------------------------
 
-        if (heardOn.equals(pppoeRelayConfig.getPppoeServerConnectPoint())) {
+        if (downstream) {
             // DOWNSTREAM PACKET: from the PPPoE server to the attachment.
 
             // Learn the MAC address of the PPPoE server
-            if (macPppoeServer == null) {
-                macPppoeServer = eth.getSourceMAC();
+            serverPool.learn(heardOn, eth.getSourceMAC());
+            if (pppoe.getPacketType() == Pppoe.PppoeType.PADO) {
+                serverPool.learnOffer(heardOn, pppoe);
             }
 
             MacAddress dstMac = eth.getDestinationMAC();
             log.debug("Packet to the attachment: {}", eth);
+            stageStart = stageStats.start();
             if (!mapSrcMacToAttInfo.containsKey(dstMac)) {
                 BngAttachment newAttInfo = PppoeBngAttachment.builder()
                         .withMacAddress(dstMac)
@@ -266,17 +613,41 @@ public class PppoeHandlerRelay
             }
             // Retrieve the information about the attachment from the internal MAP
             BngAttachment attInfo = mapSrcMacToAttInfo.get(dstMac);
+            PppoeSessionTable.PppoeSession session = sessionTable.find(dstMac, attInfo.sTag(), attInfo.cTag());
+            // Replies go back out of the connect point the attachment is reached through
+            ConnectPoint oltConnectPoint = oltConnectPoint(config, session);
+            stageStats.stop(Stage.ATTACHMENT_LOOKUP, stageStart);
+            if (oltConnectPoint == null) {
+                log.warn("Unknown OLT connect point of attachment {}, dropping packet", dstMac);
+                return;
+            }
+            if (session != null && pppoe.getPacketType() == Pppoe.PppoeType.PADO) {
+                // The session sticks to the first server that answered the discovery
+                long latencyNanos = session.offered(heardOn, System.nanoTime());
+                serverPool.offered(heardOn, latencyNanos);
+                if (latencyNanos == PppoeSessionTable.OFFER_REJECTED) {
+                    log.debug("Suppressing PADO of {} to {}, already offered", heardOn, dstMac);
+                    padoSuppressed.increment();
+                    return;
+                }
+            }
+            if (session != null && pppoe.getPacketType() == Pppoe.PppoeType.PADS) {
+                session.confirmed(heardOn);
+            }
 
             // Generate the events for this attachment
             manageAttachmentStateDownstream(eth, pppoe, attInfo);
+            stageStart = stageStats.start();
             modPacketForAttachment(eth, attInfo, bnguMac);
+            stageStats.stop(Stage.REWRITE, stageStart);
 
             log.debug("Packet modified as: {}", eth);
             // Send out the packet towards the OLT
-            forwardPacket(pppoeRelayConfig.getAsgToOltConnectPoint(), eth);
+            forwardPacket(oltConnectPoint, config.treatment(oltConnectPoint), eth);
         } else {
             // UPSTREAM DIRECTION: from the attachment to the PPPoE server
             MacAddress srcMac = eth.getSourceMAC();
+            stageStart = stageStats.start();
             if (!mapSrcMacToAttInfo.containsKey(srcMac)) {
                 BngAttachment newAttInfo = PppoeBngAttachment.builder()
                         .withMacAddress(srcMac)
@@ -286,13 +657,40 @@ public class PppoeHandlerRelay
                         .build();
                 mapSrcMacToAttInfo.put(srcMac, newAttInfo);
             }
+            PppoeSessionTable.PppoeSession session = sessionTable.session(srcMac, sTag, cTag);
+            session.receivedFrom(heardOn);
+            List<ConnectPoint> pppoeServers = config.pppoeServerPool(heardOn);
+            boolean fanOut = padiFanOut && pppoeServers.size() > 1 &&
+                    pppoe.getPacketType() == Pppoe.PppoeType.PADI;
+            ConnectPoint serverConnectPoint = fanOut ? null : selectPppoeServer(pppoeServers, srcMac, pppoe, session);
+            stageStats.stop(Stage.ATTACHMENT_LOOKUP, stageStart);
 
             manageAttachmentStateUpstream(eth, pppoe);
 
-            modPacketForPPPoEServer(eth);
+            if (serverConnectPoint != null &&
+                    answerPadi(config, heardOn, eth, pppoe, session, serverConnectPoint, bnguMac)) {
+                return;
+            }
+            if (fanOut) {
+                session.fanningOut(System.nanoTime());
+                // The rewrite for each server sets all the fields it changes, so the packet is reused
+                for (ConnectPoint server : pppoeServers) {
+                    if (modPacketForPPPoEServer(server, eth)) {
+                        forwardPacket(server, config.treatment(server), eth);
+                    }
+                }
+                return;
+            }
+
+            stageStart = stageStats.start();
+            boolean rewritten = modPacketForPPPoEServer(serverConnectPoint, eth);
+            stageStats.stop(Stage.REWRITE, stageStart);
+            if (!rewritten) {
+                return;
+            }
             log.debug("Packet modified as: {}", eth);
             // Forward packet to the PPPoE server connect point
-            forwardPacket(pppoeRelayConfig.getPppoeServerConnectPoint(), eth);
+            forwardPacket(serverConnectPoint, config.treatment(serverConnectPoint), eth);
         }
     }
 
@@ -303,35 +701,100 @@ public class PppoeHandlerRelay
      * @param ip              IP Address if it has been assigned, otherwise
      *                        0.0.0.0
      * @param attInfo         Local attachment information
+     * @param session         The PPPoE session, providing the username and
+     *                        the IPv6 configuration
+     * @return The subject of the generated event, null if the event has not
+     * been generated
      */
-    private void generateEventPppoe(PppoeEvent.EventType bngAppEventType,
+    private PppoeEventSubject generateEventPppoe(PppoeEvent.EventType bngAppEventType,
                                     BngAttachment attInfo, short pppoeSessionId,
-                                    IpAddress ip) {
+                                    IpAddress ip, PppoeSessionTable.PppoeSession session) {
+        RelayConfigSnapshot config = relayConfig;
+        if (config == null) {
+            return null;
+        }
+        ConnectPoint asgToOltConnectPoint = oltConnectPoint(config, session);
+        if (asgToOltConnectPoint == null) {
+            log.error("Unknown OLT connect point of attachment {}", attInfo.macAddress());
+            return null;
+        }
         // Retrive the NNI connect point
         ConnectPoint oltConnectPoint;
+        long stageStart = stageStats.start();
         try {
             oltConnectPoint = oltCpCache.get(ImmutableTriple.of(attInfo.sTag(), attInfo.cTag(),
-                                                                pppoeRelayConfig.getAsgToOltConnectPoint()));
+                                                                asgToOltConnectPoint));
         } catch (ExecutionException e) {
+            stageStats.stop(Stage.OLT_RESOLUTION, stageStart);
             // If unable to retrieve the OLT Connect Point log error and return.
             // In this way we do NOT propagate the event and eventually create an
             // inconsistent BNG Attachment.
             log.error("Unable to retrieve the OLT Connect Point (\"NNI\" Connect Point)", e);
-            return;
+            return null;
         }
+        stageStats.stop(Stage.OLT_RESOLUTION, stageStart);
         log.info("Generating event of type {}", bngAppEventType);
-        post(new PppoeEvent(
-                     bngAppEventType,
-                     new PppoeEventSubject(
-                             oltConnectPoint,
-                             ip,
-                             attInfo.macAddress(),
-                             getPortNameAnnotation(oltConnectPoint),
-                             pppoeSessionId,
-                             attInfo.sTag(),
-                             attInfo.cTag())
-             )
-        );
+        eventCounters[bngAppEventType.ordinal()].increment();
+        PppoeEventSubject eventSubject = new PppoeEventSubject(
+                oltConnectPoint,
+                ip,
+                attInfo.macAddress(),
+                getPortNameAnnotation(oltConnectPoint),
+                pppoeSessionId,
+                attInfo.sTag(),
+                attInfo.cTag(),
+                session.username(),
+                session.ipv6Address(),
+                session.delegatedPrefix());
+        stageStart = stageStats.start();
+        eventBus.post(new PppoeEvent(bngAppEventType, eventSubject));
+        stageStats.stop(Stage.EVENT_POST, stageStart);
+        return eventSubject;
+    }
+
+    /**
+     * Selects the PPPoE server an upstream packet is relayed to. A PADI is
+     * relayed to the preferred available server of the attachment, failing
+     * over to another server if the previous PADI has not been answered in
+     * time. The other packets go to the server that answered the discovery.
+     *
+     * @param pool    The PPPoE server connect points of the ingress port
+     * @param srcMac  MAC address of the attachment
+     * @param pppoe   PPPoE header
+     * @param session The PPPoE session of the attachment
+     * @return The PPPoE server connect point
+     */
+    private ConnectPoint selectPppoeServer(List<ConnectPoint> pool, MacAddress srcMac, Pppoe pppoe,
+                                           PppoeSessionTable.PppoeSession session) {
+        long nowMillis = System.currentTimeMillis();
+        if (pppoe.getPacketType() == Pppoe.PppoeType.PADI) {
+            long nowNanos = System.nanoTime();
+            ConnectPoint timedOut = session.padiTimedOut(PADO_TIMEOUT_NANOS, nowNanos);
+            if (timedOut != null) {
+                log.info("PPPoE server {} did not answer the PADI of {}", timedOut, srcMac);
+                serverPool.timedOut(timedOut, nowMillis);
+            }
+            ConnectPoint server = serverPool.select(pool, srcMac, nowMillis);
+            session.discovering(server, nowNanos);
+            return server;
+        }
+        ConnectPoint server = session.pppoeServer();
+        return server != null && pool.contains(server) ? server : serverPool.select(pool, srcMac, nowMillis);
+    }
+
+    /**
+     * Returns the ASG connect point an attachment is reached through.
+     *
+     * @param config  The relay configuration
+     * @param session The PPPoE session of the attachment, if any
+     * @return The ASG to OLT connect point, null if not known
+     */
+    private ConnectPoint oltConnectPoint(RelayConfigSnapshot config, PppoeSessionTable.PppoeSession session) {
+        ConnectPoint oltConnectPoint = session != null ? session.oltConnectPoint() : null;
+        if (oltConnectPoint != null && config.isRelayConnectPoint(oltConnectPoint)) {
+            return oltConnectPoint;
+        }
+        return config.defaultOltConnectPoint();
     }
 
     /**
@@ -342,10 +805,12 @@ public class PppoeHandlerRelay
      */
     private void manageAttachmentStateUpstream(Ethernet eth, Pppoe pppoe) {
         PppoeEvent.EventType eventType = null;
+        PppoeSessionTable.State nextState = null;
         MacAddress srcMac = eth.getSourceMAC();
         VlanId cTag = VlanId.vlanId(eth.getVlanID());
         VlanId sTag = VlanId.vlanId(eth.getQinQVID());
         BngAttachment attInfo = mapSrcMacToAttInfo.get(srcMac);
+        ByteBuffer username = null;
         switch (PppProtocolType.lookup(pppoe.getPppProtocol())) {
             case IPCP:
                 // Attachment information should be already present
@@ -355,21 +820,152 @@ public class PppoeHandlerRelay
                     eventType = PppoeEvent.EventType.IPCP_CONF_REQUEST;
                 }
                 break;
+            case LCP:
+                Lcp lcp = (Lcp) pppoe.getPayload();
+                if (lcp.getCode() == Lcp.CONF_ACK) {
+                    // The attachment acknowledged the options of the server
+                    sessionTable.session(srcMac, sTag, cTag).serverOptionsAcked(lcp);
+                    nextState = PppoeSessionTable.State.LCP_UP;
+                }
+                break;
+            case CHAP:
+                Chap chap = (Chap) pppoe.getPayload();
+                if (chap.getCode() == Chap.RESPONSE) {
+                    username = chap.getNameBytes();
+                    eventType = PppoeEvent.EventType.AUTH_REQUEST;
+                }
+                break;
+            case PAP:
+                Pap pap = (Pap) pppoe.getPayload();
+                if (pap.isAuthRequest()) {
+                    username = pap.getPeerIdBytes();
+                    eventType = PppoeEvent.EventType.AUTH_REQUEST;
+                }
+                break;
             case NO_PROTOCOL:
-                if (Pppoe.isPPPoED(eth) &&
-                        pppoe.getPacketType() == Pppoe.PppoeType.PADI) {
-                    log.info("PADI received from attachment {}/{}. Saved in internal store",
-                             srcMac, sTag);
-                    eventType = PppoeEvent.EventType.SESSION_INIT;
+                if (Pppoe.isPPPoED(eth)) {
+                    switch (pppoe.getPacketType()) {
+                        case PADI:
+                            log.info("PADI received from attachment {}/{}. Saved in internal store",
+                                     srcMac, sTag);
+                            eventType = PppoeEvent.EventType.SESSION_INIT;
+                            nextState = PppoeSessionTable.State.INIT;
+                            break;
+                        case PADR:
+                            nextState = PppoeSessionTable.State.REQUESTED;
+                            break;
+                        default:
+                    }
                 }
                 break;
             default:
         }
-        if (eventType != null) {
-            generateEventPppoe(eventType, attInfo, pppoe.getSessionId(), IP_ADDRESS_ZERO);
+        if (eventType == null && nextState == null) {
+            return;
+        }
+        PppoeSessionTable.PppoeSession session = sessionTable.session(srcMac, sTag, cTag);
+        if (username != null) {
+            session.authenticating(username);
+        }
+        boolean changed = nextState != null ?
+                session.transition(nextState, System.nanoTime()) :
+                session.firstEvent(eventType);
+        if (!changed) {
+            log.debug("Duplicate {} packet from {}/{}/{}", pppoe.getPacketType(), srcMac, sTag, cTag);
+        } else if (eventType != null) {
+            generateEventPppoe(eventType, attInfo, pppoe.getSessionId(), IP_ADDRESS_ZERO, session);
         }
     }
 
+    /**
+     * Answers an LCP echo request of an attachment on behalf of the PPPoE
+     * server, suppressing it toward the server. Only established sessions with
+     * a known server magic number are answered, the other requests are
+     * relayed to the server.
+     *
+     * @param config  The relay configuration
+     * @param heardOn Connect point the echo request has been received from
+     * @param eth     The ethernet packet received from the attachment
+     * @param pppoe   PPPoE header
+     * @param bnguMac MAC address of the PPPoE server seen by the attachment
+     * @return True if the echo request has been answered, false otherwise
+     */
+    private boolean replyToLcpEcho(RelayConfigSnapshot config, ConnectPoint heardOn, Ethernet eth, Pppoe pppoe,
+                                   MacAddress bnguMac) {
+        if (!(pppoe.getPayload() instanceof Lcp) || !((Lcp) pppoe.getPayload()).isEchoRequest()) {
+            return false;
+        }
+        Lcp echoRequest = (Lcp) pppoe.getPayload();
+        MacAddress srcMac = eth.getSourceMAC();
+        PppoeSessionTable.PppoeSession session = sessionTable.find(
+                srcMac, VlanId.vlanId(eth.getQinQVID()), VlanId.vlanId(eth.getVlanID()));
+        // Echo requests of a previous or of an unknown session are left to the server
+        if (session == null || !session.isEstablished() || session.pppoeSessionId() != pppoe.getSessionId()) {
+            return false;
+        }
+        long serverMagicNumber = session.serverMagicNumber();
+        // Same magic number in the request may signal a looped-back link,
+        // let the server deal with it
+        if (serverMagicNumber == Lcp.NO_OPTION || serverMagicNumber == echoRequest.getMagicNumber()) {
+            return false;
+        }
+        session.echoAnswered(pppoe.getSessionId(), System.currentTimeMillis());
+        lcpEchoReplies.increment();
+        pppoe.setPayload(echoRequest.echoReply(serverMagicNumber));
+        eth.setPayload(new Data(pppoe.serialize()));
+        eth.setDestinationMACAddress(srcMac);
+        eth.setSourceMACAddress(bnguMac);
+        log.debug("Answering LCP echo request of {}", srcMac);
+        forwardPacket(heardOn, config.treatment(heardOn), eth);
+        return true;
+    }
+
+    /**
+     * Answers a PADI of an attachment with a PADO built by the relay, on
+     * behalf of the selected PPPoE server. The PADR of the attachment is then
+     * relayed to that server. The PADI is relayed to the server until its MAC
+     * address and the TAGs of its PADO have been learned, as the PADR could
+     * not reach it or be accepted.
+     *
+     * @param config  The relay configuration
+     * @param heardOn Connect point the PADI has been received from
+     * @param eth     The ethernet packet received from the attachment
+     * @param pppoe   PPPoE header
+     * @param session The PPPoE session of the attachment
+     * @param server  The PPPoE server selected for the attachment
+     * @param bnguMac MAC address of the PPPoE server seen by the attachment
+     * @return True if the PADI has been answered, false otherwise
+     */
+    private boolean answerPadi(RelayConfigSnapshot config, ConnectPoint heardOn, Ethernet eth, Pppoe pppoe,
+                               PppoeSessionTable.PppoeSession session, ConnectPoint server,
+                               MacAddress bnguMac) {
+        PppoeDiscoveryResponder responder = discoveryResponder;
+        if (responder == null || pppoe.getPacketType() != Pppoe.PppoeType.PADI ||
+                serverPool.macAddress(server) == null) {
+            return false;
+        }
+        PppoeDiscoveryResponder.ServerTags serverTags = serverPool.offerTags(server);
+        if (serverTags == null) {
+            return false;
+        }
+        Pppoe pado = responder.pado(pppoe, serverTags);
+        if (pado == null) {
+            // Service not offered by the relay, let the servers answer
+            return false;
+        }
+        MacAddress srcMac = eth.getSourceMAC();
+        long now = System.nanoTime();
+        session.offered(server, now);
+        session.transition(PppoeSessionTable.State.OFFERED, now);
+        padoOffloaded.increment();
+        eth.setPayload(new Data(pado.serialize()));
+        eth.setDestinationMACAddress(srcMac);
+        eth.setSourceMACAddress(bnguMac);
+        log.debug("Answering PADI of {} on behalf of {}", srcMac, server);
+        forwardPacket(heardOn, config.treatment(heardOn), eth);
+        return true;
+    }
+
     private String getPortNameAnnotation(ConnectPoint oltConnectPoint) {
         return deviceService.getPort(oltConnectPoint.deviceId(),
                                      oltConnectPoint.port()).annotations().value("portName");
@@ -385,26 +981,37 @@ public class PppoeHandlerRelay
     private void manageAttachmentStateDownstream(Ethernet eth, Pppoe pppoe,
                                                  BngAttachment attInfo) {
         PppoeEvent.EventType eventType = null;
+        PppoeSessionTable.State nextState = null;
         IpAddress assignedIpAddress = IP_ADDRESS_ZERO;
+        // The IP address object is built only if the event is generated
+        int assignedIp = 0;
         switch (PppProtocolType.lookup(pppoe.getPppProtocol())) {
             case IPCP:
                 Ipcp ipcp = (Ipcp) pppoe.getPayload();
                 if (ipcp.getCode() == Ipcp.ACK) {
-                    log.info("Received a IPCP ACK from Server. Assigned IP Address {}",
-                             ipcp.getIpAddress());
-                    assignedIpAddress = ipcp.getIpAddress();
+                    assignedIp = ipcp.getIpAddressAsInt();
                     eventType = PppoeEvent.EventType.IPCP_CONF_ACK;
+                    nextState = PppoeSessionTable.State.IPCP_UP;
                 }
                 break;
 
+            case IPV6CP:
+                manageIpv6cpDownstream(pppoe, attInfo);
+                return;
+
+            case IPv6:
+                snoopPrefixDelegation(pppoe, attInfo);
+                return;
+
             case CHAP:
                 // Check if server has correctly authenticated the attachment
-                GenericPpp chap = (GenericPpp) pppoe.getPayload();
-                if (chap.getCode() == GenericPpp.CHAP_CODE_SUCCESS) {
+                Chap chap = (Chap) pppoe.getPayload();
+                if (chap.getCode() == Chap.SUCCESS) {
                     log.info("CHAP authentication success: {}", attInfo.macAddress());
                     eventType = PppoeEvent.EventType.AUTH_SUCCESS;
+                    nextState = PppoeSessionTable.State.AUTH_OK;
                 }
-                if (chap.getCode() == GenericPpp.CHAP_CODE_FAILURE) {
+                if (chap.getCode() == Chap.FAILURE) {
                     log.info("CHAP authentication failed: {}", attInfo.macAddress());
                     eventType = PppoeEvent.EventType.AUTH_FAILURE;
                 }
@@ -412,22 +1019,30 @@ public class PppoeHandlerRelay
 
             case PAP:
                 // Check if server has correctly authenticated the attachment
-                GenericPpp pap = (GenericPpp) pppoe.getPayload();
-                if (pap.getCode() == GenericPpp.PAP_AUTH_ACK) {
+                Pap pap = (Pap) pppoe.getPayload();
+                if (pap.getCode() == Pap.AUTH_ACK) {
                     log.info("PAP authentication success: {}", attInfo.macAddress());
                     eventType = PppoeEvent.EventType.AUTH_SUCCESS;
+                    nextState = PppoeSessionTable.State.AUTH_OK;
                 }
-                if (pap.getCode() == GenericPpp.PAP_AUTH_NACK) {
+                if (pap.getCode() == Pap.AUTH_NAK) {
                     log.info("PAP authentication failed: {}", attInfo.macAddress());
                     eventType = PppoeEvent.EventType.AUTH_FAILURE;
                 }
                 break;
 
             case LCP:
-                GenericPpp lcp = (GenericPpp) pppoe.getPayload();
-                if (lcp.getCode() == GenericPpp.CODE_TERM_REQ) {
+                Lcp lcp = (Lcp) pppoe.getPayload();
+                if (lcp.getCode() == Lcp.CONF_ACK) {
+                    // The server acknowledged the options of the attachment
+                    sessionTable.session(attInfo.macAddress(), attInfo.sTag(), attInfo.cTag())
+                            .attachmentOptionsAcked(lcp);
+                    nextState = PppoeSessionTable.State.LCP_UP;
+                }
+                if (lcp.getCode() == Lcp.TERM_REQ) {
                     log.info("LCP Termination request from PPPoE server");
                     eventType = PppoeEvent.EventType.SESSION_TERMINATION;
+                    nextState = PppoeSessionTable.State.TERMINATED;
                     // When session termination push the correct IP in the event
                     assignedIpAddress = attInfo.ipAddress();
                 }
@@ -436,13 +1051,18 @@ public class PppoeHandlerRelay
             case NO_PROTOCOL:
                 if (Pppoe.isPPPoED(eth)) {
                     switch (pppoe.getPacketType()) {
+                        case PADO:
+                            nextState = PppoeSessionTable.State.OFFERED;
+                            break;
                         case PADS:
                             // Set the current PPPoE session ID
                             eventType = PppoeEvent.EventType.SESSION_CONFIRMATION;
+                            nextState = PppoeSessionTable.State.SESSION;
                             break;
                         case PADT:
                             log.info("PADT received from PPPoE server");
                             eventType = PppoeEvent.EventType.SESSION_TERMINATION;
+                            nextState = PppoeSessionTable.State.TERMINATED;
                             // When session termination push the correct IP in the event
                             assignedIpAddress = attInfo.ipAddress();
                             break;
@@ -452,9 +1072,142 @@ public class PppoeHandlerRelay
                 break;
             default:
         }
-        // Generate and event if needed
-        if (eventType != null) {
-            generateEventPppoe(eventType, attInfo, pppoe.getSessionId(), assignedIpAddress);
+        if (eventType == null && nextState == null) {
+            return;
+        }
+        // Generate and event if the session moved to a new state
+        PppoeSessionTable.PppoeSession session =
+                sessionTable.session(attInfo.macAddress(), attInfo.sTag(), attInfo.cTag());
+        boolean transitioned = false;
+        boolean changed;
+        if (nextState == PppoeSessionTable.State.SESSION) {
+            session.sessionConfirmed(pppoe.getSessionId());
+        }
+        if (nextState != null) {
+            transitioned = session.transition(nextState, System.nanoTime());
+            changed = transitioned;
+            if (nextState == PppoeSessionTable.State.IPCP_UP) {
+                changed = session.updateIpAddress(assignedIp) || transitioned;
+            }
+        } else {
+            changed = session.firstEvent(eventType);
+        }
+        if (!changed) {
+            log.debug("Duplicate {} packet to {}", pppoe.getPacketType(), attInfo.macAddress());
+            return;
+        }
+        if (eventType == null) {
+            return;
+        }
+        if (nextState == PppoeSessionTable.State.IPCP_UP) {
+            assignedIpAddress = IpAddress.valueOf(assignedIp);
+            log.info("Received a IPCP ACK from Server. Assigned IP Address {}", assignedIpAddress);
+        }
+        PppoeEventSubject eventSubject =
+                generateEventPppoe(eventType, attInfo, pppoe.getSessionId(), assignedIpAddress, session);
+        if (eventSubject != null && transitioned) {
+            recordSetupLatency(nextState, session, eventSubject);
+        }
+    }
+
+    /**
+     * Generates the IPv6CP event when the PPPoE server acknowledges the
+     * interface identifier of a dual-stack attachment.
+     *
+     * @param pppoe   PPPoE header
+     * @param attInfo Attachment info stored in the internal store
+     */
+    private void manageIpv6cpDownstream(Pppoe pppoe, BngAttachment attInfo) {
+        Ipv6cp ipv6cp = (Ipv6cp) pppoe.getPayload();
+        if (ipv6cp == null || ipv6cp.getCode() != Ipv6cp.ACK) {
+            return;
+        }
+        IpAddress ipv6Address = ipv6cp.getLinkLocalAddress();
+        if (ipv6Address == null) {
+            return;
+        }
+        PppoeSessionTable.PppoeSession session =
+                sessionTable.session(attInfo.macAddress(), attInfo.sTag(), attInfo.cTag());
+        if (!session.updateIpv6Address(ipv6Address)) {
+            log.debug("Duplicate IPv6CP ACK to {}", attInfo.macAddress());
+            return;
+        }
+        log.info("Received a IPv6CP ACK from Server. IPv6 address {}", ipv6Address);
+        generateEventPppoe(PppoeEvent.EventType.IPV6CP_CONF_ACK, attInfo, pppoe.getSessionId(),
+                           IpAddress.valueOf(session.ipAddress()), session);
+    }
+
+    /**
+     * Snoops the IPv6 prefix delegated to the attachment from the DHCPv6
+     * replies sent by the server inside the PPPoE session.
+     *
+     * @param pppoe   PPPoE header
+     * @param attInfo Attachment info stored in the internal store
+     */
+    private void snoopPrefixDelegation(Pppoe pppoe, BngAttachment attInfo) {
+        if (!(pppoe.getPayload() instanceof IPv6) ||
+                !(pppoe.getPayload().getPayload() instanceof UDP) ||
+                !(pppoe.getPayload().getPayload().getPayload() instanceof DHCP6)) {
+            return;
+        }
+        DHCP6 dhcp6 = (DHCP6) pppoe.getPayload().getPayload().getPayload();
+        if (dhcp6.getMsgType() != DHCP6.MsgType.REPLY.value()) {
+            return;
+        }
+        IpPrefix prefix = dhcp6.getOptions().stream()
+                .filter(Dhcp6IaPdOption.class::isInstance)
+                .flatMap(option -> ((Dhcp6IaPdOption) option).getOptions().stream())
+                .filter(Dhcp6IaPrefixOption.class::isInstance)
+                .map(option -> (Dhcp6IaPrefixOption) option)
+                .filter(option -> option.getValidLifetime() != 0)
+                .map(option -> IpPrefix.valueOf(option.getIp6Prefix(), option.getPrefixLength()))
+                .findFirst()
+                .orElse(null);
+        if (prefix == null) {
+            return;
+        }
+        PppoeSessionTable.PppoeSession session =
+                sessionTable.session(attInfo.macAddress(), attInfo.sTag(), attInfo.cTag());
+        if (!session.updateDelegatedPrefix(prefix)) {
+            log.debug("Duplicate delegated prefix {} to {}", prefix, attInfo.macAddress());
+            return;
+        }
+        log.info("Prefix {} delegated to {}", prefix, attInfo.macAddress());
+        generateEventPppoe(PppoeEvent.EventType.IPV6_PREFIX_DELEGATION, attInfo, pppoe.getSessionId(),
+                           IpAddress.valueOf(session.ipAddress()), session);
+    }
+
+    /**
+     * Records the duration of the session setup phase completed with the
+     * given state.
+     *
+     * @param state        The state reached by the session
+     * @param session      The PPPoE session
+     * @param eventSubject The subject of the event generated for the state
+     */
+    private void recordSetupLatency(PppoeSessionTable.State state,
+                                    PppoeSessionTable.PppoeSession session,
+                                    PppoeEventSubject eventSubject) {
+        DeviceId oltDeviceId = eventSubject.getOltConnectPoint().deviceId();
+        switch (state) {
+            case SESSION:
+                latencyService.record(BngSessionLatencyService.Phase.DISCOVERY, oltDeviceId,
+                                      session.elapsedNanos(PppoeSessionTable.State.INIT,
+                                                           PppoeSessionTable.State.SESSION));
+                break;
+            case AUTH_OK:
+                latencyService.record(BngSessionLatencyService.Phase.AUTHENTICATION, oltDeviceId,
+                                      session.elapsedNanos(PppoeSessionTable.State.SESSION,
+                                                           PppoeSessionTable.State.AUTH_OK));
+                break;
+            case IPCP_UP:
+                latencyService.record(BngSessionLatencyService.Phase.IPCP, oltDeviceId,
+                                      session.elapsedNanos(PppoeSessionTable.State.AUTH_OK,
+                                                           PppoeSessionTable.State.IPCP_UP));
+                latencyService.ipcpAcknowledged(BngUtils.calculateBngAttachmentKey(eventSubject),
+                                                oltDeviceId);
+                break;
+            default:
         }
     }
 
@@ -488,10 +1241,12 @@ public class PppoeHandlerRelay
     /**
      * Apply the modification to the packet to send it to the PPPoE Server.
      *
-     * @param eth Packet to be modified
+     * @param serverConnectPoint The PPPoE server connect point
+     * @param eth                Packet to be modified
+     * @return False if the packet cannot be sent to the server, true otherwise
      */
-    private void modPacketForPPPoEServer(Ethernet eth) {
-        Set<Interface> interfaces = interfaceService.getInterfacesByPort(pppoeRelayConfig.getPppoeServerConnectPoint());
+    private boolean modPacketForPPPoEServer(ConnectPoint serverConnectPoint, Ethernet eth) {
+        Set<Interface> interfaces = interfaceService.getInterfacesByPort(serverConnectPoint);
         if (interfaces != null &&
                 interfaces.iterator().hasNext() &&
                 interfaces.iterator().next().vlanTagged() != null &&
@@ -510,12 +1265,14 @@ public class PppoeHandlerRelay
         }
         // Modify DST Mac Address with the one of the PPPoE Server
         if (!eth.getDestinationMAC().isBroadcast()) {
+            MacAddress macPppoeServer = serverPool.macAddress(serverConnectPoint);
             if (macPppoeServer == null) {
                 log.warn("NO Mac address for PPPoE server available! Dropping packet");
-                return;
+                return false;
             }
             eth.setDestinationMACAddress(macPppoeServer);
         }
+        return true;
     }
 
     /**
@@ -586,24 +1343,175 @@ public class PppoeHandlerRelay
     /**
      * Send the specified packet, out to the specified connect point.
      *
-     * @param toPort Output port to send the packet
-     * @param packet Packet to be sent
+     * @param toPort          Output port to send the packet
+     * @param toPortTreatment Treatment sending the packet to the output port
+     * @param packet          Packet to be sent
      */
-    private void forwardPacket(ConnectPoint toPort, Ethernet packet) {
-        TrafficTreatment toPortTreatment = DefaultTrafficTreatment.builder()
-                .setOutput(toPort.port()).build();
+    private void forwardPacket(ConnectPoint toPort, TrafficTreatment toPortTreatment, Ethernet packet) {
+        long stageStart = stageStats.start();
+        ByteBuffer data = ByteBuffer.wrap(packet.serialize());
+        stageStats.stop(Stage.SERIALIZE, stageStart);
         OutboundPacket outboundPacket = new DefaultOutboundPacket(
-                toPort.deviceId(), toPortTreatment, ByteBuffer.wrap(packet.serialize()));
+                toPort.deviceId(), toPortTreatment, data);
+        stageStart = stageStats.start();
         packetService.emit(outboundPacket);
+        stageStats.stop(Stage.EMIT, stageStart);
+    }
+
+    @Override
+    public Map<String, Long> getPacketCounters() {
+        Map<String, Long> counters = Maps.newLinkedHashMap();
+        for (Pppoe.PppoeType type : Pppoe.PppoeType.values()) {
+            counters.put(type.type(), packetCounters[type.ordinal()].sum());
+        }
+        return counters;
+    }
+
+    @Override
+    public Map<PppoeEvent.EventType, Long> getEventCounters() {
+        Map<PppoeEvent.EventType, Long> counters = new EnumMap<>(PppoeEvent.EventType.class);
+        for (PppoeEvent.EventType type : PppoeEvent.EventType.values()) {
+            counters.put(type, eventCounters[type.ordinal()].sum());
+        }
+        return counters;
+    }
+
+    @Override
+    public Map<String, Double> getCacheHitRates() {
+        return Map.of(OLT_CP_CACHE, oltCpCache.stats().hitRate());
+    }
+
+    @Override
+    public Map<String, Long> getQueueDepths() {
+        Map<String, Long> depths = Maps.newHashMap();
+        depths.put(PACKET_QUEUE, pendingPackets.get());
+        eventBus.queueDepths().forEach((listener, depth) -> depths.put(EVENT_QUEUE_PREFIX + listener, depth));
+        return depths;
+    }
+
+    @Override
+    public Map<String, Long> getOffloadCounters() {
+        return ImmutableMap.of(LCP_ECHO_REPLIES, lcpEchoReplies.sum(),
+                               LCP_DEAD_PEERS, lcpDeadPeers.sum(),
+                               PADO_SUPPRESSED, padoSuppressed.sum(),
+                               PADO_OFFLOADED, padoOffloaded.sum(),
+                               PADT_SENT, padtSent.sum());
+    }
+
+    @Override
+    public void terminateSession(BngAttachment attachment, boolean sendPadt) {
+        if (!(attachment instanceof PppoeBngAttachment)) {
+            return;
+        }
+        short sessionId = ((PppoeBngAttachment) attachment).pppoeSessionId();
+        PppoeSessionTable.PppoeSession session = sessionTable.find(
+                attachment.macAddress(), attachment.sTag(), attachment.cTag());
+        if (session != null && !session.transition(PppoeSessionTable.State.TERMINATED, System.nanoTime())) {
+            // Already terminated, the listeners have been notified
+            return;
+        }
+        if (sendPadt && session != null) {
+            sendPadt(attachment.macAddress(), session, sessionId);
+        } else if (sendPadt) {
+            log.debug("Unknown PPPoE session of attachment {}, no PADT sent", attachment.macAddress());
+        }
+        // The session could be unknown to the relay, e.g. after a restart:
+        // the event is built from the attachment
+        eventCounters[PppoeEvent.EventType.SESSION_TERMINATION.ordinal()].increment();
+        eventBus.post(new PppoeEvent(PppoeEvent.EventType.SESSION_TERMINATION, new PppoeEventSubject(
+                attachment.oltConnectPoint(), attachment.ipAddress(), attachment.macAddress(),
+                attachment.onuSerial(), sessionId, attachment.sTag(), attachment.cTag())));
     }
 
     /**
-     * Check if the handler is correctly configured.
+     * Sends a PADT to the PPPoE server of the given session, on behalf of
+     * the attachment.
      *
-     * @return True if it is correctly configure, False otherwise
+     * @param mac       MAC address of the attachment
+     * @param session   The PPPoE session of the attachment
+     * @param sessionId The PPPoE session ID to terminate
      */
-    private boolean isConfigured() {
-        return pppoeRelayConfig != null;
+    private void sendPadt(MacAddress mac, PppoeSessionTable.PppoeSession session, short sessionId) {
+        RelayConfigSnapshot config = enterConfig();
+        if (config == null) {
+            return;
+        }
+        try {
+            ConnectPoint server = session.pppoeServer();
+            MacAddress serverMac = server != null ? serverPool.macAddress(server) : null;
+            if (serverMac == null || sessionId == 0) {
+                log.debug("Unknown PPPoE server or session of attachment {}, no PADT sent", mac);
+                return;
+            }
+            Pppoe padt = new Pppoe()
+                    .setVersion((byte) 1)
+                    .setTypeId((byte) 1)
+                    .setPacketType(Pppoe.PppoeType.PADT)
+                    .setSessionId(sessionId)
+                    .setPayloadLength((short) 0);
+            Ethernet eth = new Ethernet();
+            eth.setEtherType(Pppoe.TYPE_PPPOED);
+            eth.setSourceMACAddress(mac);
+            eth.setDestinationMACAddress(serverMac);
+            eth.setPayload(new Data(padt.serialize()));
+            if (!modPacketForPPPoEServer(server, eth)) {
+                return;
+            }
+            padtSent.increment();
+            log.debug("Sending PADT to {} on behalf of {}", server, mac);
+            forwardPacket(server, config.treatment(server), eth);
+        } finally {
+            config.exit();
+        }
+    }
+
+    @Override
+    public long getConfigVersion() {
+        RelayConfigSnapshot config = relayConfig;
+        return config != null ? config.version() : 0;
+    }
+
+    @Override
+    public long getLastConfigReloadNanos() {
+        return lastConfigReloadNanos;
+    }
+
+    @Override
+    public Map<String, PppoeServerStats> getPppoeServerStats() {
+        return serverPool.stats(System.currentTimeMillis());
+    }
+
+    @Override
+    public Map<String, PppoeEventListenerStats> getEventListenerStats() {
+        return eventBus.stats();
+    }
+
+    @Override
+    public Map<String, PppoeRelayStageStats> getStageStats() {
+        return stageStats.stats();
+    }
+
+    @Override
+    public List<PppoePacketTrace> getPacketTrace() {
+        return packetTrace.dump();
+    }
+
+    @Override
+    public void addListener(PppoeEventListener listener) {
+        eventBus.addListener(listener);
+    }
+
+    @Override
+    public void removeListener(PppoeEventListener listener) {
+        eventBus.removeListener(listener);
+    }
+
+    private static LongAdder[] newCounters(int size) {
+        LongAdder[] counters = new LongAdder[size];
+        for (int i = 0; i < size; i++) {
+            counters[i] = new LongAdder();
+        }
+        return counters;
     }
 
     /**
@@ -627,11 +1535,14 @@ public class PppoeHandlerRelay
             if (!Pppoe.isPPPoES(eth) && !Pppoe.isPPPoED(eth)) {
                 return;
             }
+            pendingPackets.incrementAndGet();
             SharedExecutors.getPoolThreadExecutor().submit(() -> {
                 try {
                     processPppoePacket(context);
                 } catch (Throwable e) {
                     log.error("Exception while processing packet", e);
+                } finally {
+                    pendingPackets.decrementAndGet();
                 }
             });
         }
@@ -645,17 +1556,19 @@ public class PppoeHandlerRelay
         public void event(NetworkConfigEvent event) {
             switch (event.type()) {
                 case CONFIG_ADDED:
-                    log.info("CONFIG_ADDED");
+                case CONFIG_UPDATED:
+                    log.info("{}", event.type());
                     event.config().ifPresent(config -> {
-                        pppoeRelayConfig = ((PppoeRelayConfig) config);
-                        log.info("{} added", config.getClass().getSimpleName());
+                        updateConfig((PppoeRelayConfig) config);
+                        log.info("{} applied", config.getClass().getSimpleName());
                     });
                     break;
-                // TODO: support at least updated and removed events
-                case CONFIG_UPDATED:
+                case CONFIG_REMOVED:
+                    log.info("CONFIG_REMOVED");
+                    updateConfig(null);
+                    break;
                 case CONFIG_REGISTERED:
                 case CONFIG_UNREGISTERED:
-                case CONFIG_REMOVED:
                 default:
                     log.warn("Unsupported event type {}", event.type());
                     break;
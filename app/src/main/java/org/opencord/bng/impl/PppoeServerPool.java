@@ -0,0 +1,261 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.impl;
+
+import com.google.common.collect.Maps;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.onlab.packet.MacAddress;
+import org.onosproject.net.ConnectPoint;
+import org.opencord.bng.PppoeServerStats;
+import org.opencord.bng.packets.Pppoe;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * State of the PPPoE servers the relay forwards to. The attachments are
+ * spread over the servers of a pool by weighted rendezvous hashing of their
+ * MAC address, skipping the servers that stopped answering to PADI. The
+ * weight of a server is inversely proportional to its average PADO latency,
+ * so that slower servers get fewer new discoveries.
+ */
+final class PppoeServerPool {
+
+    private static final HashFunction HASH = Hashing.murmur3_32();
+    // Weight of the last sample in the average PADO latency
+    private static final double LATENCY_WEIGHT = 0.125;
+    private static final double TWO_POW_32_PLUS_1 = 4294967297.0;
+
+    private final Map<ConnectPoint, PppoeServer> servers = new ConcurrentHashMap<>();
+    private final int maxTimeouts;
+    private final long retryMillis;
+
+    /**
+     * Creates a new PPPoE server pool.
+     *
+     * @param maxTimeouts Number of consecutive PADI timeouts after which a
+     *                    server is considered down
+     * @param retryMillis Time after which a server considered down is tried
+     *                    again
+     */
+    PppoeServerPool(int maxTimeouts, long retryMillis) {
+        this.maxTimeouts = maxTimeouts;
+        this.retryMillis = retryMillis;
+    }
+
+    /**
+     * Selects the server of the given pool an attachment starting the
+     * discovery is relayed to. The same server is selected for an attachment
+     * as long as it is available and the PADO latencies of the servers do
+     * not change much.
+     *
+     * @param pool      The PPPoE server connect points
+     * @param mac       MAC address of the attachment
+     * @param nowMillis Current time in milliseconds
+     * @return The PPPoE server connect point
+     */
+    ConnectPoint select(List<ConnectPoint> pool, MacAddress mac, long nowMillis) {
+        if (pool.size() == 1) {
+            return pool.get(0);
+        }
+        // Servers not answered yet are weighted as the fastest one
+        double minLatencyNanos = Double.MAX_VALUE;
+        for (ConnectPoint connectPoint : pool) {
+            double latencyNanos = server(connectPoint).padoLatencyNanos();
+            if (latencyNanos > 0 && latencyNanos < minLatencyNanos) {
+                minLatencyNanos = latencyNanos;
+            }
+        }
+        ConnectPoint best = null;
+        double bestScore = 0;
+        ConnectPoint bestAvailable = null;
+        double bestAvailableScore = 0;
+        for (ConnectPoint connectPoint : pool) {
+            int hash = HASH.newHasher()
+                    .putBytes(mac.toBytes())
+                    .putString(connectPoint.toString(), StandardCharsets.UTF_8)
+                    .hash().asInt();
+            double latencyNanos = server(connectPoint).padoLatencyNanos();
+            double weight = latencyNanos > 0 ? minLatencyNanos / latencyNanos : 1;
+            // Hash mapped to (0, 1), a higher weight gives a higher score
+            double score = -weight / Math.log((Integer.toUnsignedLong(hash) + 1) / TWO_POW_32_PLUS_1);
+            if (best == null || score > bestScore) {
+                best = connectPoint;
+                bestScore = score;
+            }
+            if ((bestAvailable == null || score > bestAvailableScore) &&
+                    server(connectPoint).isAvailable(nowMillis)) {
+                bestAvailable = connectPoint;
+                bestAvailableScore = score;
+            }
+        }
+        // When all the servers are down keep trying the preferred one
+        ConnectPoint selected = bestAvailable != null ? bestAvailable : best;
+        server(selected).probing(nowMillis);
+        return selected;
+    }
+
+    /**
+     * Records the source MAC address of a packet received from a server.
+     *
+     * @param connectPoint The PPPoE server connect point
+     * @param mac          The source MAC address
+     */
+    void learn(ConnectPoint connectPoint, MacAddress mac) {
+        server(connectPoint).learn(mac);
+    }
+
+    /**
+     * Returns the MAC address learned for a server.
+     *
+     * @param connectPoint The PPPoE server connect point
+     * @return The MAC address, null if not learned yet
+     */
+    MacAddress macAddress(ConnectPoint connectPoint) {
+        PppoeServer server = servers.get(connectPoint);
+        return server != null ? server.macAddress : null;
+    }
+
+    /**
+     * Records the TAGs of a PADO received from a server, to be echoed when
+     * answering a PADI on its behalf.
+     *
+     * @param connectPoint The PPPoE server connect point
+     * @param pado         The PADO
+     */
+    void learnOffer(ConnectPoint connectPoint, Pppoe pado) {
+        server(connectPoint).offerTags = new PppoeDiscoveryResponder.ServerTags(pado);
+    }
+
+    /**
+     * Returns the TAGs of the last PADO received from a server.
+     *
+     * @param connectPoint The PPPoE server connect point
+     * @return The TAGs, null if no PADO has been received yet
+     */
+    PppoeDiscoveryResponder.ServerTags offerTags(ConnectPoint connectPoint) {
+        PppoeServer server = servers.get(connectPoint);
+        return server != null ? server.offerTags : null;
+    }
+
+    /**
+     * Records a PADO received from a server.
+     *
+     * @param connectPoint The PPPoE server connect point
+     * @param latencyNanos Time since the PADI has been relayed to the server,
+     *                     not positive if not known
+     */
+    void offered(ConnectPoint connectPoint, long latencyNanos) {
+        server(connectPoint).offered(latencyNanos);
+    }
+
+    /**
+     * Records a PADI not answered in time by a server.
+     *
+     * @param connectPoint The PPPoE server connect point
+     * @param nowMillis    Current time in milliseconds
+     */
+    void timedOut(ConnectPoint connectPoint, long nowMillis) {
+        server(connectPoint).timedOut(nowMillis);
+    }
+
+    /**
+     * Forgets the servers not in the given ones.
+     *
+     * @param connectPoints The PPPoE server connect points
+     */
+    void retain(Collection<ConnectPoint> connectPoints) {
+        servers.keySet().retainAll(connectPoints);
+    }
+
+    /**
+     * Returns the statistics of each known server.
+     *
+     * @param nowMillis Current time in milliseconds
+     * @return The map of server connect points and statistics
+     */
+    Map<String, PppoeServerStats> stats(long nowMillis) {
+        Map<String, PppoeServerStats> stats = Maps.newTreeMap();
+        servers.forEach((connectPoint, server) -> stats.put(connectPoint.toString(), server.stats(nowMillis)));
+        return stats;
+    }
+
+    private PppoeServer server(ConnectPoint connectPoint) {
+        return servers.computeIfAbsent(connectPoint, k -> new PppoeServer());
+    }
+
+    private final class PppoeServer {
+        private volatile MacAddress macAddress;
+        private volatile PppoeDiscoveryResponder.ServerTags offerTags;
+        private long offers;
+        private long timeouts;
+        private int consecutiveTimeouts;
+        // Time the server has been considered down or last probed, 0 if up
+        private long downSinceMillis;
+        private long latencySamples;
+        private double padoLatencyNanos;
+
+        void learn(MacAddress mac) {
+            if (!mac.equals(macAddress)) {
+                macAddress = mac;
+            }
+        }
+
+        synchronized boolean isAvailable(long nowMillis) {
+            return downSinceMillis == 0 || nowMillis - downSinceMillis >= retryMillis;
+        }
+
+        synchronized void probing(long nowMillis) {
+            // A server down gets a single discovery until the next retry interval
+            if (downSinceMillis != 0 && nowMillis - downSinceMillis >= retryMillis) {
+                downSinceMillis = nowMillis;
+            }
+        }
+
+        synchronized void offered(long latencyNanos) {
+            offers++;
+            consecutiveTimeouts = 0;
+            downSinceMillis = 0;
+            if (latencyNanos > 0) {
+                padoLatencyNanos = latencySamples++ == 0 ? latencyNanos :
+                        padoLatencyNanos + LATENCY_WEIGHT * (latencyNanos - padoLatencyNanos);
+            }
+        }
+
+        synchronized double padoLatencyNanos() {
+            return padoLatencyNanos;
+        }
+
+        synchronized void timedOut(long nowMillis) {
+            timeouts++;
+            consecutiveTimeouts++;
+            if (consecutiveTimeouts >= maxTimeouts && downSinceMillis == 0) {
+                downSinceMillis = nowMillis;
+            }
+        }
+
+        synchronized PppoeServerStats stats(long nowMillis) {
+            return new PppoeServerStats(macAddress, isAvailable(nowMillis), offers, timeouts,
+                                        TimeUnit.NANOSECONDS.toMicros((long) padoLatencyNanos));
+        }
+    }
+}
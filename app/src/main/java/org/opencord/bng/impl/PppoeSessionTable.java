@@ -0,0 +1,591 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.impl;
+
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.IpPrefix;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.onosproject.net.ConnectPoint;
+import org.opencord.bng.PppoeEvent;
+import org.opencord.bng.packets.Lcp;
+import org.opencord.bng.packets.PppProtocolType;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Table of the PPPoE sessions seen by the relay, keyed by MAC address, S-Tag
+ * and C-Tag of the attachment. Each session tracks the phase it reached, so
+ * that retransmitted or duplicated control packets do not generate the same
+ * event twice.
+ */
+final class PppoeSessionTable {
+
+    /**
+     * Returned by the sessions for the offers of a PPPoE server other than
+     * the one already selected.
+     */
+    static final long OFFER_REJECTED = -1;
+
+    private final Map<SessionKey, PppoeSession> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the session of the given attachment, creating it if needed.
+     *
+     * @param mac  MAC address of the attachment
+     * @param sTag S-Tag of the attachment
+     * @param cTag C-Tag of the attachment
+     * @return The PPPoE session
+     */
+    PppoeSession session(MacAddress mac, VlanId sTag, VlanId cTag) {
+        return sessions.computeIfAbsent(new SessionKey(mac, sTag, cTag), k -> new PppoeSession());
+    }
+
+    /**
+     * Returns the session of the given attachment, if any.
+     *
+     * @param mac  MAC address of the attachment
+     * @param sTag S-Tag of the attachment
+     * @param cTag C-Tag of the attachment
+     * @return The PPPoE session, null if not present
+     */
+    PppoeSession find(MacAddress mac, VlanId sTag, VlanId cTag) {
+        return sessions.get(new SessionKey(mac, sTag, cTag));
+    }
+
+    /**
+     * Returns the number of sessions in the table.
+     *
+     * @return The number of sessions
+     */
+    int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Removes the sessions that are terminated, or that did not complete the
+     * setup, and did not see any packet since the given time. Established
+     * sessions are kept until they are terminated.
+     *
+     * @param idleSinceMillis Time before which a session is considered stale
+     * @param onEviction      Called with the MAC address of each removed session
+     * @return The number of removed sessions
+     */
+    int evict(long idleSinceMillis, Consumer<MacAddress> onEviction) {
+        int evicted = 0;
+        for (var entry : sessions.entrySet()) {
+            PppoeSession session = entry.getValue();
+            if (session.isStale(idleSinceMillis) && sessions.remove(entry.getKey(), session)) {
+                onEviction.accept(entry.getKey().mac);
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Terminates the established sessions whose attachment stopped sending
+     * LCP echo requests answered by the relay since the given time. Sessions
+     * whose echoes have never been answered are not considered.
+     *
+     * @param lastEchoBeforeMillis Time before which the last echo request
+     *                             signals a dead peer
+     * @param onDeadPeer           Called with the MAC address and the session
+     *                             of each terminated session
+     * @return The number of terminated sessions
+     */
+    int terminateDeadPeers(long lastEchoBeforeMillis, BiConsumer<MacAddress, PppoeSession> onDeadPeer) {
+        int terminated = 0;
+        for (var entry : sessions.entrySet()) {
+            PppoeSession session = entry.getValue();
+            if (session.terminateIfDeadPeer(lastEchoBeforeMillis)) {
+                onDeadPeer.accept(entry.getKey().mac, session);
+                terminated++;
+            }
+        }
+        return terminated;
+    }
+
+    /**
+     * Phases of a PPPoE session.
+     */
+    enum State {
+        INIT,
+        OFFERED,
+        REQUESTED,
+        SESSION,
+        LCP_UP,
+        AUTH_OK,
+        IPCP_UP,
+        TERMINATED
+    }
+
+    /**
+     * State of a single PPPoE session. Phases can only move forward, except
+     * for a new discovery (INIT) that restarts the session.
+     */
+    static final class PppoeSession {
+        private static final int NO_STATE = -1;
+        private static final State[] STATES = State.values();
+
+        private int state = NO_STATE;
+        // Time each phase has been reached, by state ordinal, from System.nanoTime()
+        private final long[] stateNanos = new long[STATES.length];
+        // Events generated outside of phase transitions, by event type ordinal
+        private int emittedEvents;
+        private int ipAddress;
+        // IPv6 configuration of dual-stack sessions
+        private IpAddress ipv6Address;
+        private IpPrefix delegatedPrefix;
+        // LCP options negotiated in this session
+        private int mru = Lcp.NO_OPTION;
+        private PppProtocolType authProtocol = PppProtocolType.NO_PROTOCOL;
+        private long serverMagicNumber = Lcp.NO_OPTION;
+        // PPPoE session ID and time of the last LCP echo request answered by the relay
+        private short pppoeSessionId;
+        private long lastEchoMillis;
+        // Username of the last authentication request, as a view on the packet
+        private ByteBuffer username;
+        private volatile long lastSeenMillis = System.currentTimeMillis();
+        // ASG connect point the attachment is reached through
+        private volatile ConnectPoint oltConnectPoint;
+        // PPPoE server the session is relayed to and time the last PADI has been relayed
+        private ConnectPoint pppoeServer;
+        private long padiSentNanos;
+
+        /**
+         * Moves the session to the given phase.
+         *
+         * @param target    The phase reached by the session
+         * @param nowNanos  Current time from System.nanoTime()
+         * @return True if the session changed phase, false if the transition
+         * is a duplicate
+         */
+        synchronized boolean transition(State target, long nowNanos) {
+            lastSeenMillis = System.currentTimeMillis();
+            if (target == State.INIT) {
+                if (state == State.INIT.ordinal()) {
+                    return false;
+                }
+                // New discovery, forget about the previous session
+                Arrays.fill(stateNanos, 0);
+                emittedEvents = 0;
+                ipAddress = 0;
+                ipv6Address = null;
+                delegatedPrefix = null;
+                mru = Lcp.NO_OPTION;
+                authProtocol = PppProtocolType.NO_PROTOCOL;
+                serverMagicNumber = Lcp.NO_OPTION;
+                lastEchoMillis = 0;
+                pppoeSessionId = 0;
+                username = null;
+            } else if (target.ordinal() <= state) {
+                return false;
+            }
+            state = target.ordinal();
+            stateNanos[state] = nowNanos;
+            return true;
+        }
+
+        /**
+         * Updates the IP address assigned to an established session (IPCP_UP
+         * phase). A renegotiation with a different IP address is not a
+         * duplicate.
+         *
+         * @param ip The IPv4 address assigned to the attachment
+         * @return True if the IP address changed, false otherwise or if the
+         * session is not established
+         */
+        synchronized boolean updateIpAddress(int ip) {
+            if (state != State.IPCP_UP.ordinal() || ip == ipAddress) {
+                return false;
+            }
+            ipAddress = ip;
+            return true;
+        }
+
+        /**
+         * Updates the IPv6 address of the attachment, negotiated with IPv6CP.
+         *
+         * @param address The IPv6 address
+         * @return True if the IPv6 address changed, false otherwise
+         */
+        synchronized boolean updateIpv6Address(IpAddress address) {
+            lastSeenMillis = System.currentTimeMillis();
+            if (Objects.equals(address, ipv6Address)) {
+                return false;
+            }
+            ipv6Address = address;
+            return true;
+        }
+
+        /**
+         * Updates the IPv6 prefix delegated to the attachment.
+         *
+         * @param prefix The delegated prefix
+         * @return True if the delegated prefix changed, false otherwise
+         */
+        synchronized boolean updateDelegatedPrefix(IpPrefix prefix) {
+            lastSeenMillis = System.currentTimeMillis();
+            if (Objects.equals(prefix, delegatedPrefix)) {
+                return false;
+            }
+            delegatedPrefix = prefix;
+            return true;
+        }
+
+        /**
+         * Returns the IPv6 address of the attachment.
+         *
+         * @return The IPv6 address, null if not negotiated
+         */
+        synchronized IpAddress ipv6Address() {
+            return ipv6Address;
+        }
+
+        /**
+         * Returns the IPv6 prefix delegated to the attachment.
+         *
+         * @return The delegated prefix, null if not delegated
+         */
+        synchronized IpPrefix delegatedPrefix() {
+            return delegatedPrefix;
+        }
+
+        /**
+         * Records an event not related to a phase transition (e.g., an
+         * authentication failure), once per session.
+         *
+         * @param eventType The event type
+         * @return True if the event has not been generated yet in this session
+         */
+        synchronized boolean firstEvent(PppoeEvent.EventType eventType) {
+            lastSeenMillis = System.currentTimeMillis();
+            int mask = 1 << eventType.ordinal();
+            if ((emittedEvents & mask) != 0) {
+                return false;
+            }
+            emittedEvents |= mask;
+            return true;
+        }
+
+        /**
+         * Records the options of the attachment acknowledged by the PPPoE
+         * server. Options not present are left unchanged.
+         *
+         * @param lcp The LCP Configure-Ack sent by the server
+         */
+        synchronized void attachmentOptionsAcked(Lcp lcp) {
+            int ackedMru = lcp.getMru();
+            if (ackedMru != Lcp.NO_OPTION) {
+                mru = ackedMru;
+            }
+        }
+
+        /**
+         * Records the options of the PPPoE server acknowledged by the
+         * attachment. Options not present are left unchanged.
+         *
+         * @param lcp The LCP Configure-Ack sent by the attachment
+         */
+        synchronized void serverOptionsAcked(Lcp lcp) {
+            PppProtocolType ackedAuthProtocol = lcp.getAuthProtocol();
+            if (ackedAuthProtocol != PppProtocolType.NO_PROTOCOL) {
+                authProtocol = ackedAuthProtocol;
+            }
+            long ackedMagicNumber = lcp.getMagicNumber();
+            if (ackedMagicNumber != Lcp.NO_OPTION) {
+                serverMagicNumber = ackedMagicNumber;
+            }
+        }
+
+        /**
+         * Records the username of an authentication request of the
+         * attachment.
+         *
+         * @param usernameBytes The UTF-8 encoded username
+         */
+        synchronized void authenticating(ByteBuffer usernameBytes) {
+            username = usernameBytes;
+        }
+
+        /**
+         * Returns the username of the last authentication request.
+         *
+         * @return The UTF-8 encoded username, null if not known
+         */
+        synchronized ByteBuffer username() {
+            return username;
+        }
+
+        /**
+         * Returns the MRU of the attachment negotiated in this session.
+         *
+         * @return The MRU, Lcp.NO_OPTION if not negotiated
+         */
+        synchronized int mru() {
+            return mru;
+        }
+
+        /**
+         * Returns the authentication protocol negotiated in this session.
+         *
+         * @return The authentication protocol, NO_PROTOCOL if not negotiated
+         */
+        synchronized PppProtocolType authProtocol() {
+            return authProtocol;
+        }
+
+        /**
+         * Returns the magic number of the PPPoE server in this session.
+         *
+         * @return The unsigned magic number, Lcp.NO_OPTION if not negotiated
+         */
+        synchronized long serverMagicNumber() {
+            return serverMagicNumber;
+        }
+
+        /**
+         * Checks if the session is established, i.e. an IP address has been
+         * assigned to the attachment and the session is not terminated.
+         *
+         * @return True if the session is established, false otherwise
+         */
+        synchronized boolean isEstablished() {
+            return state == State.IPCP_UP.ordinal();
+        }
+
+        /**
+         * Records the PPPoE session ID assigned by the server in the PADS.
+         *
+         * @param sessionId The PPPoE session ID
+         */
+        synchronized void sessionConfirmed(short sessionId) {
+            pppoeSessionId = sessionId;
+        }
+
+        /**
+         * Records an LCP echo request of the attachment answered by the relay.
+         *
+         * @param sessionId The PPPoE session ID of the echo request
+         * @param nowMillis Current time in milliseconds
+         */
+        synchronized void echoAnswered(short sessionId, long nowMillis) {
+            pppoeSessionId = sessionId;
+            lastEchoMillis = nowMillis;
+            lastSeenMillis = nowMillis;
+        }
+
+        /**
+         * Returns the PPPoE session ID assigned by the server, or of the last
+         * echo request answered by the relay.
+         *
+         * @return The PPPoE session ID, 0 if not known
+         */
+        synchronized short pppoeSessionId() {
+            return pppoeSessionId;
+        }
+
+        /**
+         * Records the ASG connect point the packets of the attachment are
+         * received from.
+         *
+         * @param connectPoint The ASG to OLT connect point
+         */
+        void receivedFrom(ConnectPoint connectPoint) {
+            if (!connectPoint.equals(oltConnectPoint)) {
+                oltConnectPoint = connectPoint;
+            }
+        }
+
+        /**
+         * Returns the ASG connect point the attachment is reached through.
+         *
+         * @return The ASG to OLT connect point, null if not known
+         */
+        ConnectPoint oltConnectPoint() {
+            return oltConnectPoint;
+        }
+
+        /**
+         * Records a PADI relayed to the given PPPoE server. Retransmissions
+         * to the same server do not restart the wait for the PADO.
+         *
+         * @param server   The PPPoE server connect point
+         * @param nowNanos Current time from System.nanoTime()
+         */
+        synchronized void discovering(ConnectPoint server, long nowNanos) {
+            if (padiSentNanos == 0 || !server.equals(pppoeServer)) {
+                padiSentNanos = nowNanos;
+            }
+            pppoeServer = server;
+        }
+
+        /**
+         * Returns the PPPoE server that did not answer the last PADI in the
+         * given time, if any. The timeout is reported only once.
+         *
+         * @param timeoutNanos Maximum time to wait for the PADO
+         * @param nowNanos     Current time from System.nanoTime()
+         * @return The PPPoE server connect point, null if not timed out
+         */
+        synchronized ConnectPoint padiTimedOut(long timeoutNanos, long nowNanos) {
+            if (padiSentNanos == 0 || nowNanos - padiSentNanos < timeoutNanos) {
+                return null;
+            }
+            padiSentNanos = 0;
+            return pppoeServer;
+        }
+
+        /**
+         * Records a PADI relayed to all the PPPoE servers at once. The first
+         * server answering is selected. Retransmissions do not restart the
+         * wait for the PADO.
+         *
+         * @param nowNanos Current time from System.nanoTime()
+         */
+        synchronized void fanningOut(long nowNanos) {
+            if (padiSentNanos == 0 || pppoeServer != null) {
+                padiSentNanos = nowNanos;
+            }
+            pppoeServer = null;
+        }
+
+        /**
+         * Records the offer of a PPPoE server. The session sticks to the first
+         * server answering the discovery, the offers of the other servers
+         * are rejected.
+         *
+         * @param server   The PPPoE server connect point
+         * @param nowNanos Current time from System.nanoTime()
+         * @return The time since the PADI has been relayed, 0 if no PADI was
+         * waiting for an answer, OFFER_REJECTED if another server has been
+         * selected
+         */
+        synchronized long offered(ConnectPoint server, long nowNanos) {
+            if (pppoeServer != null && !server.equals(pppoeServer)) {
+                return OFFER_REJECTED;
+            }
+            long latencyNanos = padiSentNanos != 0 ? nowNanos - padiSentNanos : 0;
+            padiSentNanos = 0;
+            pppoeServer = server;
+            return latencyNanos;
+        }
+
+        /**
+         * Records the PPPoE server that confirmed the session.
+         *
+         * @param server The PPPoE server connect point
+         */
+        synchronized void confirmed(ConnectPoint server) {
+            pppoeServer = server;
+            padiSentNanos = 0;
+        }
+
+        /**
+         * Returns the PPPoE server the session is relayed to.
+         *
+         * @return The PPPoE server connect point, null if not assigned yet
+         */
+        synchronized ConnectPoint pppoeServer() {
+            return pppoeServer;
+        }
+
+        /**
+         * Returns the IPv4 address assigned to the attachment.
+         *
+         * @return The IPv4 address, 0 if not assigned
+         */
+        synchronized int ipAddress() {
+            return ipAddress;
+        }
+
+        private synchronized boolean terminateIfDeadPeer(long lastEchoBeforeMillis) {
+            if (!isEstablished() || lastEchoMillis == 0 || lastEchoMillis >= lastEchoBeforeMillis) {
+                return false;
+            }
+            state = State.TERMINATED.ordinal();
+            stateNanos[state] = System.nanoTime();
+            return true;
+        }
+
+        /**
+         * Returns the current phase of the session.
+         *
+         * @return The phase, null if no phase has been reached yet
+         */
+        synchronized State state() {
+            return state == NO_STATE ? null : STATES[state];
+        }
+
+        /**
+         * Returns the time elapsed between two phases of the session.
+         *
+         * @param from The first phase
+         * @param to   The second phase
+         * @return The elapsed time in nanoseconds, -1 if any of the phases
+         * has not been reached in this session
+         */
+        synchronized long elapsedNanos(State from, State to) {
+            long fromNanos = stateNanos[from.ordinal()];
+            long toNanos = stateNanos[to.ordinal()];
+            return fromNanos == 0 || toNanos == 0 ? -1 : toNanos - fromNanos;
+        }
+
+        private synchronized boolean isStale(long idleSinceMillis) {
+            return state != State.IPCP_UP.ordinal() && lastSeenMillis < idleSinceMillis;
+        }
+    }
+
+    private static final class SessionKey {
+        private final MacAddress mac;
+        private final short sTag;
+        private final short cTag;
+        // Computed once, the key is hashed on every lookup of the packet path
+        private final int hash;
+
+        private SessionKey(MacAddress mac, VlanId sTag, VlanId cTag) {
+            this.mac = mac;
+            this.sTag = sTag.toShort();
+            this.cTag = cTag.toShort();
+            this.hash = 31 * (31 * mac.hashCode() + this.sTag) + this.cTag;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            SessionKey that = (SessionKey) o;
+            return hash == that.hash && sTag == that.sTag && cTag == that.cTag && mac.equals(that.mac);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
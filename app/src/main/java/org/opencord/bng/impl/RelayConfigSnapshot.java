@@ -0,0 +1,216 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.impl;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flow.TrafficTreatment;
+import org.opencord.bng.config.PppoeRelayConfig;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Immutable snapshot of the PPPoE relay configuration. The connect points
+ * are parsed and the egress treatments built once per configuration change,
+ * so that the packet processing does not touch the JSON configuration.
+ * The only mutable state is the number of packets being processed with the
+ * snapshot, used to drain them when the configuration is replaced.
+ */
+final class RelayConfigSnapshot {
+
+    private final long version;
+    private final AtomicLong inFlight = new AtomicLong();
+    // Pool of PPPoE server connect points of each OLT-facing connect point
+    private final Map<ConnectPoint, List<ConnectPoint>> serverConnectPoints;
+    // Output treatment of each relay connect point
+    private final Map<ConnectPoint, TrafficTreatment> treatments;
+    private final Set<ConnectPoint> pppoeServerConnectPoints;
+    private final ConnectPoint defaultOltConnectPoint;
+
+    RelayConfigSnapshot(Map<ConnectPoint, List<ConnectPoint>> oltToServerConnectPoints, long version) {
+        checkArgument(!oltToServerConnectPoints.isEmpty(), "No relay connect points");
+        this.version = version;
+        ImmutableMap.Builder<ConnectPoint, List<ConnectPoint>> pools = ImmutableMap.builder();
+        ImmutableSet.Builder<ConnectPoint> servers = ImmutableSet.builder();
+        oltToServerConnectPoints.forEach((oltConnectPoint, pool) -> {
+            checkArgument(!pool.isEmpty(), "No PPPoE server for %s", oltConnectPoint);
+            pools.put(oltConnectPoint, ImmutableList.copyOf(pool));
+            servers.addAll(pool);
+        });
+        this.serverConnectPoints = pools.build();
+        this.pppoeServerConnectPoints = servers.build();
+        checkArgument(Collections.disjoint(serverConnectPoints.keySet(), pppoeServerConnectPoints),
+                      "Connect points used both toward the OLT and the PPPoE server");
+        Map<ConnectPoint, TrafficTreatment> outputs = Maps.newHashMap();
+        for (ConnectPoint connectPoint : Sets.union(serverConnectPoints.keySet(), pppoeServerConnectPoints)) {
+            outputs.put(connectPoint, DefaultTrafficTreatment.builder().setOutput(connectPoint.port()).build());
+        }
+        this.treatments = ImmutableMap.copyOf(outputs);
+        this.defaultOltConnectPoint = serverConnectPoints.size() == 1 ?
+                serverConnectPoints.keySet().iterator().next() : null;
+    }
+
+    /**
+     * Compiles the given relay configuration.
+     *
+     * @param config  The relay configuration
+     * @param version The version of the configuration
+     * @return The configuration snapshot
+     * @throws IllegalArgumentException if a connect point is not valid
+     */
+    static RelayConfigSnapshot compile(PppoeRelayConfig config, long version) {
+        return new RelayConfigSnapshot(config.getOltToServerConnectPoints(), version);
+    }
+
+    /**
+     * Returns the version of the configuration, increased at each reload.
+     *
+     * @return The configuration version
+     */
+    long version() {
+        return version;
+    }
+
+    /**
+     * Marks the start of the processing of a packet with this snapshot.
+     */
+    void enter() {
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * Marks the end of the processing of a packet with this snapshot.
+     */
+    void exit() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * Returns the number of packets currently processed with this snapshot.
+     *
+     * @return The number of packets in flight
+     */
+    long inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Waits until no packet is processed with this snapshot anymore. The
+     * snapshot must not be visible to new packets when this is called.
+     *
+     * @param timeoutMs Maximum time to wait in milliseconds
+     * @return True if all the packets have been processed, false on timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    boolean awaitDrained(long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (inFlight.get() > 0) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the pool of PPPoE server connect points the packets received
+     * from the given OLT-facing connect point are relayed to.
+     *
+     * @param oltConnectPoint The ASG to OLT connect point
+     * @return The PPPoE server connect points, null if the connect point is
+     * not an OLT-facing relay connect point
+     */
+    List<ConnectPoint> pppoeServerPool(ConnectPoint oltConnectPoint) {
+        return serverConnectPoints.get(oltConnectPoint);
+    }
+
+    /**
+     * Returns all the PPPoE server connect points.
+     *
+     * @return The PPPoE server connect points
+     */
+    Set<ConnectPoint> pppoeServerConnectPoints() {
+        return pppoeServerConnectPoints;
+    }
+
+    /**
+     * Returns the only OLT-facing connect point, used when the connect point
+     * of an attachment is not known.
+     *
+     * @return The ASG to OLT connect point, null if more than one is
+     * configured
+     */
+    ConnectPoint defaultOltConnectPoint() {
+        return defaultOltConnectPoint;
+    }
+
+    /**
+     * Returns the treatment sending packets out of the given relay connect
+     * point.
+     *
+     * @param connectPoint The relay connect point
+     * @return The egress treatment, null if the connect point is not a relay
+     * connect point
+     */
+    TrafficTreatment treatment(ConnectPoint connectPoint) {
+        return treatments.get(connectPoint);
+    }
+
+    /**
+     * Checks if the given connect point is one of the connect points the
+     * relay receives packets from.
+     *
+     * @param connectPoint The connect point
+     * @return True if the relay is configured on the connect point
+     */
+    boolean isRelayConnectPoint(ConnectPoint connectPoint) {
+        return treatments.containsKey(connectPoint);
+    }
+
+    /**
+     * Checks if the given connect point is one of the PPPoE server connect
+     * points.
+     *
+     * @param connectPoint The connect point
+     * @return True for a PPPoE server connect point, false otherwise
+     */
+    boolean isPppoeServerConnectPoint(ConnectPoint connectPoint) {
+        return pppoeServerConnectPoints.contains(connectPoint);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("version", version)
+                .add("serverConnectPoints", serverConnectPoints)
+                .toString();
+    }
+}
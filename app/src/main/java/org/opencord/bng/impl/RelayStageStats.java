@@ -0,0 +1,105 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.impl;
+
+import com.google.common.collect.Maps;
+import org.opencord.bng.PppoeRelayStageStats;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Always-on counters and timers of the processing stages of the PPPoE relay.
+ * Every execution of a stage is counted, but only one execution out of
+ * {@link #SAMPLING_RATE} is timed, to keep the overhead of System.nanoTime()
+ * low. Counters are striped (LongAdder) to avoid contention between the
+ * packet processing threads.
+ */
+final class RelayStageStats {
+
+    /**
+     * Processing stages of a PPPoE packet.
+     */
+    enum Stage {
+        PARSE,
+        VALIDATION,
+        ATTACHMENT_LOOKUP,
+        OLT_RESOLUTION,
+        EVENT_POST,
+        REWRITE,
+        SERIALIZE,
+        EMIT
+    }
+
+    static final int SAMPLING_RATE = 64;
+    static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+    private static final Stage[] STAGES = Stage.values();
+
+    private final LongAdder[] counts = newAdders();
+    private final LongAdder[] samples = newAdders();
+    private final LongAdder[] sampledNanos = newAdders();
+
+    /**
+     * Starts a stage execution.
+     *
+     * @return The start time to pass to {@link #stop(Stage, long)}, or
+     * {@link #NOT_SAMPLED} if this execution is not timed
+     */
+    long start() {
+        return ThreadLocalRandom.current().nextInt(SAMPLING_RATE) == 0 ? System.nanoTime() : NOT_SAMPLED;
+    }
+
+    /**
+     * Completes a stage execution.
+     *
+     * @param stage     The stage
+     * @param startTime The value returned by {@link #start()}
+     */
+    void stop(Stage stage, long startTime) {
+        counts[stage.ordinal()].increment();
+        if (startTime != NOT_SAMPLED) {
+            sampledNanos[stage.ordinal()].add(System.nanoTime() - startTime);
+            samples[stage.ordinal()].increment();
+        }
+    }
+
+    /**
+     * Returns the statistics of each stage, in processing order.
+     *
+     * @return The map of stage names and statistics
+     */
+    Map<String, PppoeRelayStageStats> stats() {
+        Map<String, PppoeRelayStageStats> stats = Maps.newLinkedHashMap();
+        for (Stage stage : STAGES) {
+            int i = stage.ordinal();
+            stats.put(stage.name().toLowerCase(Locale.ROOT),
+                      new PppoeRelayStageStats(counts[i].sum(), samples[i].sum(), sampledNanos[i].sum()));
+        }
+        return stats;
+    }
+
+    private static LongAdder[] newAdders() {
+        LongAdder[] adders = new LongAdder[STAGES.length];
+        for (int i = 0; i < adders.length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
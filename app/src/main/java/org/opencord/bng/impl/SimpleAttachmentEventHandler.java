@@ -16,11 +16,14 @@
 
 package org.opencord.bng.impl;
 
-import org.glassfish.jersey.internal.guava.Sets;
+import org.onlab.util.SharedScheduledExecutors;
 import org.onlab.util.Tools;
 import org.onosproject.cfg.ComponentConfigService;
 import org.onosproject.core.ApplicationId;
 import org.onosproject.core.CoreService;
+import org.onosproject.store.serializers.KryoNamespaces;
+import org.onosproject.store.service.DistributedSet;
+import org.onosproject.store.service.Serializer;
 import org.onosproject.store.service.StorageService;
 import org.opencord.bng.BngAttachment;
 import org.opencord.bng.BngService;
@@ -40,9 +43,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Dictionary;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+import static org.opencord.bng.impl.OsgiPropertyConstants.ATTACHMENT_COALESCING_WINDOW;
+import static org.opencord.bng.impl.OsgiPropertyConstants.ATTACHMENT_COALESCING_WINDOW_DEFAULT;
 import static org.opencord.bng.impl.OsgiPropertyConstants.ENABLE_LOCAL_EVENT_HANDLER;
 import static org.opencord.bng.impl.OsgiPropertyConstants.ENABLE_LOCAL_EVENT_HANDLER_DEFAULT;
 
@@ -53,11 +62,13 @@ import static org.opencord.bng.impl.OsgiPropertyConstants.ENABLE_LOCAL_EVENT_HAN
 @Component(immediate = true,
         property = {
                 ENABLE_LOCAL_EVENT_HANDLER + ":Boolean=" + ENABLE_LOCAL_EVENT_HANDLER_DEFAULT,
+                ATTACHMENT_COALESCING_WINDOW + ":Long=" + ATTACHMENT_COALESCING_WINDOW_DEFAULT,
         }
 )
 public class SimpleAttachmentEventHandler {
 
     private static final String ATTACHMENT_ID_GENERATOR_NAME = "SIMPLE_ATTACHMENT_EVENT_HANDLER_ATTACHMENT_ID";
+    private static final String ADDED_ATTACHMENT_KEYS_NAME = "simple-attachment-event-handler-attachment-keys";
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     @Reference(cardinality = ReferenceCardinality.MANDATORY)
@@ -79,18 +90,37 @@ public class SimpleAttachmentEventHandler {
      * Whether to enable of not the local attachment event handler, for debugging/development.
      */
     private boolean enableLocalEventHandler = ENABLE_LOCAL_EVENT_HANDLER_DEFAULT;
+    /**
+     * Time window, in milliseconds, in which the attachment events of the same
+     * attachment are coalesced before updating the BNG service.
+     */
+    private long attachmentCoalescingWindow = ATTACHMENT_COALESCING_WINDOW_DEFAULT;
     private InternalPppoeEvent pppoeEventListener = new InternalPppoeEvent();
 
-    // Map to store the attachment that this component has submitted through the BNG Service
+    // Set of the attachments that this component has submitted through the
+    // BNG Service. The local copy is used on the event path, the distributed
+    // one survives restarts of the controller.
     private Set<String> addedAttachmentKeys;
+    private DistributedSet<String> storedAttachmentKeys;
+
+    // Last attachment event received for each attachment during the
+    // coalescing window
+    private final Map<String, PppoeEvent> pendingEvents = new ConcurrentHashMap<>();
 
     private ApplicationId appId;
 
     @Activate
-    protected void activate() {
+    protected void activate(ComponentContext context) {
         appId = coreService.getAppId(BngManager.BNG_APP);
-        addedAttachmentKeys = Sets.newHashSet();
+        storedAttachmentKeys = storageService.<String>setBuilder()
+                .withName(ADDED_ATTACHMENT_KEYS_NAME)
+                .withSerializer(Serializer.using(KryoNamespaces.BASIC))
+                .build()
+                .asDistributedSet();
+        addedAttachmentKeys = ConcurrentHashMap.newKeySet();
+        restoreAttachmentKeys();
         componentConfigService.registerProperties(getClass());
+        modified(context);
         pppoEHandlerRelay.addListener(pppoeEventListener);
         log.info("Simple Attachment Event Handler STARTED");
     }
@@ -103,16 +133,140 @@ public class SimpleAttachmentEventHandler {
         if (localEvent != null) {
             enableLocalEventHandler = localEvent;
         }
+        Long coalescingWindow = Tools.getLongProperty(properties, ATTACHMENT_COALESCING_WINDOW);
+        if (coalescingWindow != null) {
+            attachmentCoalescingWindow = coalescingWindow;
+        }
     }
 
     @Deactivate
     protected void deactivate() {
         pppoEHandlerRelay.removeListener(pppoeEventListener);
+        pendingEvents.clear();
         addedAttachmentKeys = null;
+        storedAttachmentKeys = null;
         componentConfigService.unregisterProperties(getClass(), false);
         log.info("Simple Attachment Event Handler STOPPED");
     }
 
+    /**
+     * Rebuilds the set of attachments submitted by this component, from the
+     * distributed store and from the attachments registered in the BNG
+     * Service by this application.
+     */
+    private void restoreAttachmentKeys() {
+        addedAttachmentKeys.addAll(storedAttachmentKeys);
+        bngService.getAttachments().forEach((attachmentKey, attachment) -> {
+            if (appId.equals(attachment.appId()) && addedAttachmentKeys.add(attachmentKey)) {
+                storedAttachmentKeys.add(attachmentKey);
+            }
+        });
+        log.info("Restored {} attachments", addedAttachmentKeys.size());
+    }
+
+    /**
+     * Buffers the given event for the coalescing window. Only the last event
+     * received for an attachment during the window is applied: repeated
+     * IPCP_CONF_ACK, the IPv4 and IPv6 configuration of dual-stack sessions or
+     * flapping sessions update the BNG service only once.
+     *
+     * @param attachmentKey The attachment key
+     * @param event         The attachment event
+     */
+    private void coalesce(String attachmentKey, PppoeEvent event) {
+        if (attachmentCoalescingWindow <= 0) {
+            applyEvent(attachmentKey, event);
+            return;
+        }
+        PppoeEvent previousEvent = pendingEvents.put(attachmentKey, event);
+        if (previousEvent == null) {
+            SharedScheduledExecutors.newTimeout(() -> flush(attachmentKey),
+                                                attachmentCoalescingWindow, TimeUnit.MILLISECONDS);
+        } else {
+            log.debug("Coalescing {} with {} for attachment {}",
+                      previousEvent.type(), event.type(), attachmentKey);
+        }
+    }
+
+    private void flush(String attachmentKey) {
+        PppoeEvent event = pendingEvents.remove(attachmentKey);
+        if (event != null) {
+            applyEvent(attachmentKey, event);
+        }
+    }
+
+    private synchronized void applyEvent(String attachmentKey, PppoeEvent event) {
+        if (addedAttachmentKeys == null) {
+            // Deactivated in the meantime
+            return;
+        }
+        PppoeEventSubject eventInfo = event.subject();
+        switch (event.type()) {
+            case IPCP_CONF_ACK:
+            case IPV6CP_CONF_ACK:
+            case IPV6_PREFIX_DELEGATION:
+                // The event carries the whole IPv4 and IPv6 configuration of
+                // the session, so that dual-stack attachments are set up at once
+                log.debug("Submit a new attachment: {}", eventInfo);
+                boolean newKey = addedAttachmentKeys.add(attachmentKey);
+                if (newKey) {
+                    storedAttachmentKeys.add(attachmentKey);
+                }
+                if (isSameAttachment(bngService.getAttachment(attachmentKey), eventInfo)) {
+                    log.debug("Attachment {} already submitted, skipping", attachmentKey);
+                    return;
+                }
+                BngAttachment newAttachment = PppoeBngAttachment.builder()
+                        .withPppoeSessionId(eventInfo.getSessionId())
+                        .withApplicationId(appId)
+                        .withCTag(eventInfo.getcTag())
+                        .withSTag(eventInfo.getsTag())
+                        .withIpAddress(eventInfo.getIpAddress())
+                        .withIpv6Address(eventInfo.getIpv6Address())
+                        .withDelegatedPrefix(eventInfo.getDelegatedPrefix())
+                        .withMacAddress(eventInfo.getMacAddress())
+                        .withOnuSerial(eventInfo.getOnuSerialNumber())
+                        .withOltConnectPoint(eventInfo.getOltConnectPoint())
+                        .lineActivated(true)
+                        .build();
+                if (!newKey) {
+                    log.warn("Attachment ID already present. Re-submit the attachment");
+                }
+                bngService.setupAttachment(attachmentKey, newAttachment);
+                break;
+
+            case SESSION_TERMINATION:
+                if (!addedAttachmentKeys.remove(attachmentKey)) {
+                    log.debug("Received SESSION_TERMINATION event, for attachment {} " +
+                                      "but attachment not present in local store", attachmentKey);
+                } else {
+                    log.debug("Received SESSION_TERMINATION event, remove the attachment {}",
+                              attachmentKey);
+                    storedAttachmentKeys.remove(attachmentKey);
+                    bngService.removeAttachment(attachmentKey);
+                }
+                break;
+            default:
+        }
+    }
+
+    /**
+     * Checks if the attachment registered in the BNG service matches the
+     * attachment information of the given event.
+     */
+    private boolean isSameAttachment(BngAttachment attachment, PppoeEventSubject eventInfo) {
+        if (!(attachment instanceof PppoeBngAttachment) || !attachment.lineActive()) {
+            return false;
+        }
+        return ((PppoeBngAttachment) attachment).pppoeSessionId() == eventInfo.getSessionId() &&
+                Objects.equals(attachment.macAddress(), eventInfo.getMacAddress()) &&
+                Objects.equals(attachment.ipAddress(), eventInfo.getIpAddress()) &&
+                Objects.equals(attachment.oltConnectPoint(), eventInfo.getOltConnectPoint()) &&
+                Objects.equals(attachment.onuSerial(), eventInfo.getOnuSerialNumber()) &&
+                Objects.equals(attachment.ipv6Address(), eventInfo.getIpv6Address()) &&
+                Objects.equals(attachment.delegatedPrefix(), eventInfo.getDelegatedPrefix());
+    }
+
     /**
      * Listener for BNG Attachment event for PPPoE attachments.
      */
@@ -123,37 +277,11 @@ public class SimpleAttachmentEventHandler {
             String attachmentKey = BngUtils.calculateBngAttachmentKey(eventInfo);
             switch (event.type()) {
                 case IPCP_CONF_ACK:
-                    log.debug("Received IPCP_CONF_ACK event, submit a new attachment");
-                    log.debug(eventInfo.toString());
-                    BngAttachment newAttachment = PppoeBngAttachment.builder()
-                            .withPppoeSessionId(eventInfo.getSessionId())
-                            .withApplicationId(appId)
-                            .withCTag(eventInfo.getcTag())
-                            .withSTag(eventInfo.getsTag())
-                            .withIpAddress(eventInfo.getIpAddress())
-                            .withMacAddress(eventInfo.getMacAddress())
-                            .withOnuSerial(eventInfo.getOnuSerialNumber())
-                            .withOltConnectPoint(eventInfo.getOltConnectPoint())
-                            .lineActivated(true)
-                            .build();
-                    if (!addedAttachmentKeys.add(attachmentKey)) {
-                        log.warn("Attachment ID already present. Re-submit the attachment");
-                    }
-                    bngService.setupAttachment(attachmentKey, newAttachment);
-                    break;
-
+                case IPV6CP_CONF_ACK:
+                case IPV6_PREFIX_DELEGATION:
                 case SESSION_TERMINATION:
-                    attachmentKey =  BngUtils.calculateBngAttachmentKey(eventInfo);
-                    log.debug("Received SESSION_TERMINATION event, remove the attachment {}",
-                              attachmentKey);
-                    if (!addedAttachmentKeys.remove(attachmentKey)) {
-                        log.debug("Received SESSION_TERMINATION event, for attachment {} " +
-                                          "but attachment not present in local store", attachmentKey);
-                    } else {
-                        log.debug("Received SESSION_TERMINATION event, remove the attachment {}",
-                                  attachmentKey);
-                        bngService.removeAttachment(attachmentKey);
-                    }
+                    log.debug("Received {} event for attachment {}", event.type(), attachmentKey);
+                    coalesce(attachmentKey, event);
                     break;
                 case AUTH_FAILURE:
                 case AUTH_REQUEST:
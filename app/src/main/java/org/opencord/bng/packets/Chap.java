@@ -0,0 +1,200 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.packets;
+
+import org.onlab.packet.DeserializationException;
+import org.onlab.packet.Deserializer;
+
+import java.nio.ByteBuffer;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static org.onlab.packet.PacketUtils.checkInput;
+
+/**
+ * Implements the Challenge-Handshake Authentication Protocol (CHAP) packet
+ * format (RFC 1994).
+ * <p>
+ * The packet keeps a reference to the deserialized bytes, the accessors
+ * return read-only views on them without copying.
+ */
+public class Chap extends Ppp {
+
+    public static final byte CHALLENGE = 0x01;
+    public static final byte RESPONSE = 0x02;
+    public static final byte SUCCESS = 0x03;
+    public static final byte FAILURE = 0x04;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    // Bytes following the header, shared with the deserialized packet
+    private byte[] buffer = EMPTY;
+    private int dataOffset;
+    private int dataLength;
+
+    Chap() {
+        super();
+    }
+
+    /**
+     * Checks if this is a Challenge or a Response packet, carrying a value
+     * and a name.
+     *
+     * @return True if this is a Challenge or a Response packet, false
+     * otherwise
+     */
+    public boolean hasValue() {
+        return code == CHALLENGE || code == RESPONSE;
+    }
+
+    /**
+     * Gets the size of the challenge or response value.
+     *
+     * @return the value size, 0 if this is not a Challenge or a Response
+     * packet
+     */
+    public int getValueSize() {
+        return hasValue() ? buffer[dataOffset] & 0xFF : 0;
+    }
+
+    /**
+     * Gets the challenge or response value.
+     *
+     * @return a read-only view of the value, empty if this is not a Challenge
+     * or a Response packet
+     */
+    public ByteBuffer getValue() {
+        return hasValue() ? view(buffer, dataOffset + 1, getValueSize()) : ByteBuffer.wrap(EMPTY);
+    }
+
+    /**
+     * Gets the name of the system transmitting the packet, i.e. the username
+     * of the peer in a Response packet.
+     *
+     * @return a read-only view of the name, empty if this is not a Challenge
+     * or a Response packet
+     */
+    public ByteBuffer getNameBytes() {
+        if (!hasValue()) {
+            return ByteBuffer.wrap(EMPTY);
+        }
+        int nameOffset = 1 + getValueSize();
+        return view(buffer, dataOffset + nameOffset, dataLength - nameOffset);
+    }
+
+    /**
+     * Gets the name of the system transmitting the packet, decoded.
+     *
+     * @return the name, empty if this is not a Challenge or a Response packet
+     */
+    public String getName() {
+        return decode(getNameBytes());
+    }
+
+    /**
+     * Gets the message of a Success or Failure packet.
+     *
+     * @return a read-only view of the message, empty if this is not a
+     * Success or Failure packet
+     */
+    public ByteBuffer getMessageBytes() {
+        return hasValue() ? ByteBuffer.wrap(EMPTY) : view(buffer, dataOffset, dataLength);
+    }
+
+    /**
+     * Gets the message of a Success or Failure packet, decoded.
+     *
+     * @return the message, empty if this is not a Success or Failure packet
+     */
+    public String getMessage() {
+        return decode(getMessageBytes());
+    }
+
+    @Override
+    public byte[] serialize() {
+        final byte[] packet = new byte[Math.max(length & 0xFFFF, MIN_HEADER_LENGTH + dataLength)];
+        final ByteBuffer bb = ByteBuffer.wrap(packet);
+        bb.put(this.code);
+        bb.put(this.identifier);
+        bb.putShort(this.length);
+        bb.put(buffer, dataOffset, dataLength);
+        return packet;
+    }
+
+    /**
+     * Deserializer function for CHAP packets.
+     *
+     * @return deserializer function
+     */
+    public static Deserializer<Chap> deserializer() {
+        return (data, offset, length) -> {
+            checkInput(data, offset, length, MIN_HEADER_LENGTH);
+            Chap chap = new Chap();
+            ByteBuffer bb = ByteBuffer.wrap(data, offset, length);
+            chap.code = bb.get();
+            chap.identifier = bb.get();
+            chap.length = bb.getShort();
+            int chapLength = chap.length & 0xFFFF;
+            if (chapLength < MIN_HEADER_LENGTH) {
+                throw new DeserializationException("Invalid CHAP length " + chapLength);
+            }
+            chap.buffer = data;
+            chap.dataOffset = bb.position();
+            // Ignore the padding after the CHAP packet
+            chap.dataLength = Math.min(bb.remaining(), chapLength - MIN_HEADER_LENGTH);
+            if (chap.hasValue() && (chap.dataLength < 1 || chap.getValueSize() >= chap.dataLength)) {
+                throw new DeserializationException("CHAP value exceeds the packet length");
+            }
+            return chap;
+        };
+    }
+
+    private ByteBuffer data() {
+        return view(buffer, dataOffset, dataLength);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * super.hashCode() + data().hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        if (!super.equals(obj)) {
+            return false;
+        }
+        final Chap other = (Chap) obj;
+        return data().equals(other.data());
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+                .add("code", code)
+                .add("identifier", identifier)
+                .add("length", length)
+                .add("valueSize", getValueSize())
+                .add("name", getName())
+                .add("message", getMessage())
+                .toString();
+    }
+}
@@ -25,7 +25,7 @@ import java.nio.ByteBuffer;
 import static org.onlab.packet.PacketUtils.checkInput;
 
 /**
- * Implements the Link Control Protocol (LCP) header.
+ * Implements a generic PPP control protocol header, with opaque data.
  */
 
 public class GenericPpp extends Ppp {
@@ -41,12 +41,14 @@ public class GenericPpp extends Ppp {
     public static final byte PAP_AUTH_ACK = 0x02;
     public static final byte PAP_AUTH_NACK = 0x03;
 
+    public static final byte CODE_CONF_REQ = 0x01;
+    public static final byte CODE_CONF_ACK = 0x02;
     public static final byte CODE_TERM_REQ = 0x05;
     public static final byte CODE_TERM_ACK = 0x06;
 
 
     /**
-     * Deserializer function for LCP packets.
+     * Deserializer function for generic PPP control packets.
      *
      * @return deserializer function
      */
@@ -23,14 +23,18 @@ import org.onlab.packet.Deserializer;
 import org.onlab.packet.IpAddress;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.List;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
-import static org.onlab.packet.PacketUtils.checkHeaderLength;
 import static org.onlab.packet.PacketUtils.checkInput;
 
 /**
  * Implements the IP Control Protocol (IPCP) packet format.
+ * <p>
+ * Deserialized packets keep a reference to the original bytes and decode the
+ * options into a flat array of (type, length, offset) entries. The TLV
+ * objects are built only if requested.
  */
 
 public class Ipcp extends Ppp {
@@ -39,13 +43,29 @@ public class Ipcp extends Ppp {
     public static final byte ACK = 0x02;
     public static final byte NAK = 0x03;
 
-    private PppTlv ipaddresstlv = null;
+    public static final byte OPTION_IP_ADDRESS = PppTlv.IPCPTLV_IP_ADDRESS;
+    public static final byte OPTION_PRIMARY_DNS = (byte) 0x81;
+    public static final byte OPTION_PRIMARY_NBNS = (byte) 0x82;
+    public static final byte OPTION_SECONDARY_DNS = (byte) 0x83;
+    public static final byte OPTION_SECONDARY_NBNS = (byte) 0x84;
+
+    private static final int OPTION_HEADER_LENGTH = 2;
+    private static final int IPV4_LENGTH = 4;
+    private static final int[] NO_OPTIONS = new int[0];
 
+    // Bytes following the header of a deserialized packet, and the options
+    // in there, each one packed as type << 24 | length << 16 | offset
+    private byte[] buffer;
+    private int dataOffset;
+    private int[] options = NO_OPTIONS;
+    private int optionCount;
+
+    // TLVs of packets built with the setters, or requested as objects
+    private PppTlv ipaddresstlv = null;
     private List<PppTlv> pppTlvList;
 
     Ipcp() {
         super();
-        pppTlvList = Lists.newLinkedList();
     }
 
     /**
@@ -54,6 +74,7 @@ public class Ipcp extends Ppp {
      * @return the IP Address TLV field if present, null otherwise
      */
     public PppTlv getIpAddressTlv() {
+        materialize();
         return this.ipaddresstlv;
     }
 
@@ -64,8 +85,52 @@ public class Ipcp extends Ppp {
      * 0 if no TLV address is present in the packet
      */
     public IpAddress getIpAddress() {
-        return IpAddress.valueOf(IpAddress.Version.INET,
-                                 this.getIpAddressTlv().getValue());
+        return IpAddress.valueOf(getIpAddressAsInt());
+    }
+
+    /**
+     * Gets the IP address option as an integer, without allocating.
+     *
+     * @return The IP address, 0 if not present in the packet
+     */
+    public int getIpAddressAsInt() {
+        return getIpv4Option(OPTION_IP_ADDRESS);
+    }
+
+    /**
+     * Gets the primary DNS server address option (RFC 1877) as an integer.
+     *
+     * @return The primary DNS address, 0 if not present in the packet
+     */
+    public int getPrimaryDnsAsInt() {
+        return getIpv4Option(OPTION_PRIMARY_DNS);
+    }
+
+    /**
+     * Gets the secondary DNS server address option (RFC 1877) as an integer.
+     *
+     * @return The secondary DNS address, 0 if not present in the packet
+     */
+    public int getSecondaryDnsAsInt() {
+        return getIpv4Option(OPTION_SECONDARY_DNS);
+    }
+
+    /**
+     * Gets the primary NBNS server address option (RFC 1877) as an integer.
+     *
+     * @return The primary NBNS address, 0 if not present in the packet
+     */
+    public int getPrimaryNbnsAsInt() {
+        return getIpv4Option(OPTION_PRIMARY_NBNS);
+    }
+
+    /**
+     * Gets the secondary NBNS server address option (RFC 1877) as an integer.
+     *
+     * @return The secondary NBNS address, 0 if not present in the packet
+     */
+    public int getSecondaryNbnsAsInt() {
+        return getIpv4Option(OPTION_SECONDARY_NBNS);
     }
 
     /**
@@ -75,6 +140,7 @@ public class Ipcp extends Ppp {
      * @return this
      */
     public Ipcp setIpAddressTlv(PppTlv ipaddresstlv) {
+        materialize();
         this.ipaddresstlv = ipaddresstlv;
         return this;
     }
@@ -85,9 +151,64 @@ public class Ipcp extends Ppp {
      * @return the IPCP TLV field list
      */
     public List<PppTlv> getIpcpTlvList() {
+        materialize();
         return this.pppTlvList;
     }
 
+    private int getIpv4Option(byte type) {
+        if (buffer == null) {
+            materialize();
+            PppTlv tlv = findTlv(type);
+            return tlv == null || tlv.getValue() == null || tlv.getValue().length != IPV4_LENGTH ?
+                    0 : ByteBuffer.wrap(tlv.getValue()).getInt();
+        }
+        for (int i = 0; i < optionCount; i++) {
+            int option = options[i];
+            if ((byte) (option >>> 24) == type &&
+                    ((option >>> 16) & 0xFF) == OPTION_HEADER_LENGTH + IPV4_LENGTH) {
+                int offset = dataOffset + (option & 0xFFFF) + OPTION_HEADER_LENGTH;
+                return (buffer[offset] & 0xFF) << 24 | (buffer[offset + 1] & 0xFF) << 16 |
+                        (buffer[offset + 2] & 0xFF) << 8 | (buffer[offset + 3] & 0xFF);
+            }
+        }
+        return 0;
+    }
+
+    private PppTlv findTlv(byte type) {
+        if (ipaddresstlv != null && ipaddresstlv.getType() == type) {
+            return ipaddresstlv;
+        }
+        return pppTlvList.stream().filter(tlv -> tlv.getType() == type).findFirst().orElse(null);
+    }
+
+    /**
+     * Builds the TLV objects from the original bytes, after that the packet
+     * is handled as built with the setters.
+     */
+    private void materialize() {
+        if (pppTlvList != null) {
+            return;
+        }
+        pppTlvList = Lists.newLinkedList();
+        for (int i = 0; i < optionCount; i++) {
+            int option = options[i];
+            int offset = dataOffset + (option & 0xFFFF);
+            int optionLength = (option >>> 16) & 0xFF;
+            PppTlv tlv = new PppTlv()
+                    .setType((byte) (option >>> 24))
+                    .setLength((byte) optionLength)
+                    .setValue(Arrays.copyOfRange(buffer, offset + OPTION_HEADER_LENGTH, offset + optionLength));
+            if (tlv.getType() == PppTlv.IPCPTLV_IP_ADDRESS) {
+                ipaddresstlv = tlv;
+            } else {
+                pppTlvList.add(tlv);
+            }
+        }
+        buffer = null;
+        options = NO_OPTIONS;
+        optionCount = 0;
+    }
+
     @Override
     public byte[] serialize() {
         // TODO: Can it have any payload?
@@ -96,6 +217,10 @@ public class Ipcp extends Ppp {
         bb.put(this.code);
         bb.put(this.identifier);
         bb.putShort(this.length);
+        if (buffer != null) {
+            bb.put(buffer, dataOffset, (length & 0xFFFF) - MIN_HEADER_LENGTH);
+            return data;
+        }
         if (ipaddresstlv != null) {
             bb.put(ipaddresstlv.serialize());
         }
@@ -120,27 +245,32 @@ public class Ipcp extends Ppp {
             ipcp.code = bb.get();
             ipcp.identifier = bb.get();
             ipcp.length = bb.getShort();
-            short currentIndex = MIN_HEADER_LENGTH;
-            PppTlv tlv;
-            while (currentIndex < ipcp.length) {
+            ipcp.buffer = data;
+            ipcp.dataOffset = bb.position();
+            int ipcpLength = ipcp.length & 0xFFFF;
+            int currentIndex = MIN_HEADER_LENGTH;
+            while (currentIndex < ipcpLength) {
                 // Each new TLV IPCP must be a minimum of 2 bytes
                 // (containing the type and length fields).
-                currentIndex += 2;
-                checkHeaderLength(length, currentIndex);
-
-                tlv = (new PppTlv()).deserialize(bb);
-                // if there was a failure to deserialize stop processing TLVs
-                if (tlv == null) {
+                if (currentIndex + OPTION_HEADER_LENGTH > length) {
+                    throw new DeserializationException("Not enough bytes to deserialize IPCP options");
+                }
+                int optionLength = data[offset + currentIndex + 1] & 0xFF;
+                if (optionLength <= OPTION_HEADER_LENGTH) {
                     break;
                 }
-                if (tlv.getType() == PppTlv.IPCPTLV_IP_ADDRESS) {
-                    ipcp.ipaddresstlv = tlv;
-                } else {
-                    ipcp.pppTlvList.add(tlv);
+                if (currentIndex + optionLength > length) {
+                    throw new DeserializationException(
+                            "Remaining bytes are less then the length of the IPCP option");
+                }
+                if (ipcp.optionCount == ipcp.options.length) {
+                    ipcp.options = Arrays.copyOf(ipcp.options, Math.max(4, ipcp.optionCount * 2));
                 }
-                currentIndex += tlv.getLength() - 2;
+                ipcp.options[ipcp.optionCount++] = (data[offset + currentIndex] & 0xFF) << 24 |
+                        optionLength << 16 | (currentIndex - MIN_HEADER_LENGTH);
+                currentIndex += optionLength;
             }
-            if (currentIndex != ipcp.length) {
+            if (currentIndex != ipcpLength) {
                 throw new DeserializationException("Length of packet do not correspond to IPCP TLVs options");
             }
             return ipcp;
@@ -149,7 +279,7 @@ public class Ipcp extends Ppp {
 
     @Override
     public int hashCode() {
-        return 31 * super.hashCode() + Objects.hashCode(ipaddresstlv);
+        return 31 * super.hashCode() + Objects.hashCode(getIpAddressAsInt());
     }
 
     @Override
@@ -164,7 +294,7 @@ public class Ipcp extends Ppp {
             return false;
         }
         final Ipcp other = (Ipcp) obj;
-        return Objects.equal(this.ipaddresstlv, other.ipaddresstlv);
+        return Objects.equal(this.getIpAddressTlv(), other.getIpAddressTlv());
     }
 
     @Override
@@ -173,8 +303,8 @@ public class Ipcp extends Ppp {
                 .add("code", code)
                 .add("identifier", identifier)
                 .add("length", length)
-                .add("pppTlvList", pppTlvList)
-                .add("ipaddresstlv", ipaddresstlv)
+                .add("pppTlvList", getIpcpTlvList())
+                .add("ipaddresstlv", getIpAddressTlv())
                 .toString();
     }
 }
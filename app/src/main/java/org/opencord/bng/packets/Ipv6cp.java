@@ -0,0 +1,189 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.packets;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+import org.onlab.packet.DeserializationException;
+import org.onlab.packet.Deserializer;
+import org.onlab.packet.Ip6Address;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static org.onlab.packet.PacketUtils.checkHeaderLength;
+import static org.onlab.packet.PacketUtils.checkInput;
+
+/**
+ * Implements the IPv6 Control Protocol (IPv6CP) packet format (RFC 5072).
+ */
+
+public class Ipv6cp extends Ppp {
+
+    public static final byte CONF_REQ = 0x01;
+    public static final byte ACK = 0x02;
+    public static final byte NAK = 0x03;
+
+    private static final int INTERFACE_ID_LENGTH = 8;
+    private static final byte[] LINK_LOCAL_PREFIX = {(byte) 0xfe, (byte) 0x80, 0, 0, 0, 0, 0, 0};
+
+    private PppTlv interfaceIdTlv = null;
+
+    private List<PppTlv> pppTlvList;
+
+    Ipv6cp() {
+        super();
+        pppTlvList = Lists.newLinkedList();
+    }
+
+    /**
+     * Gets the Interface-Identifier TLV field.
+     *
+     * @return the Interface-Identifier TLV field if present, null otherwise
+     */
+    public PppTlv getInterfaceIdTlv() {
+        return this.interfaceIdTlv;
+    }
+
+    /**
+     * Gets the IPv6 link-local address built from the Interface-Identifier
+     * TLV field.
+     *
+     * @return the link-local address, null if no valid Interface-Identifier
+     * is present in the packet
+     */
+    public Ip6Address getLinkLocalAddress() {
+        if (interfaceIdTlv == null || interfaceIdTlv.getValue() == null ||
+                interfaceIdTlv.getValue().length != INTERFACE_ID_LENGTH) {
+            return null;
+        }
+        return Ip6Address.valueOf(ByteBuffer.allocate(Ip6Address.BYTE_LENGTH)
+                                          .put(LINK_LOCAL_PREFIX)
+                                          .put(interfaceIdTlv.getValue())
+                                          .array());
+    }
+
+    /**
+     * Sets the Interface-Identifier TLV field.
+     *
+     * @param interfaceIdTlv the Interface-Identifier TLV to set
+     * @return this
+     */
+    public Ipv6cp setInterfaceIdTlv(PppTlv interfaceIdTlv) {
+        this.interfaceIdTlv = interfaceIdTlv;
+        return this;
+    }
+
+    /**
+     * Gets the TLV field list.
+     *
+     * @return the IPv6CP TLV field list
+     */
+    public List<PppTlv> getIpv6cpTlvList() {
+        return this.pppTlvList;
+    }
+
+    @Override
+    public byte[] serialize() {
+        final byte[] data = new byte[this.length];
+        final ByteBuffer bb = ByteBuffer.wrap(data);
+        bb.put(this.code);
+        bb.put(this.identifier);
+        bb.putShort(this.length);
+        if (interfaceIdTlv != null) {
+            bb.put(interfaceIdTlv.serialize());
+        }
+        if (this.pppTlvList != null) {
+            for (final PppTlv tlv : this.pppTlvList) {
+                bb.put(tlv.serialize());
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Deserializer function for IPv6CP packets.
+     *
+     * @return deserializer function
+     */
+    public static Deserializer<Ipv6cp> deserializer() {
+        return (data, offset, length) -> {
+            checkInput(data, offset, length, MIN_HEADER_LENGTH);
+            Ipv6cp ipv6cp = new Ipv6cp();
+            ByteBuffer bb = ByteBuffer.wrap(data, offset, length);
+            ipv6cp.code = bb.get();
+            ipv6cp.identifier = bb.get();
+            ipv6cp.length = bb.getShort();
+            short currentIndex = MIN_HEADER_LENGTH;
+            PppTlv tlv;
+            while (currentIndex < ipv6cp.length) {
+                // Each new TLV IPv6CP must be a minimum of 2 bytes
+                // (containing the type and length fields).
+                currentIndex += 2;
+                checkHeaderLength(length, currentIndex);
+
+                tlv = (new PppTlv()).deserialize(bb);
+                // if there was a failure to deserialize stop processing TLVs
+                if (tlv == null) {
+                    break;
+                }
+                if (tlv.getType() == PppTlv.IPV6CPTLV_INTERFACE_ID) {
+                    ipv6cp.interfaceIdTlv = tlv;
+                } else {
+                    ipv6cp.pppTlvList.add(tlv);
+                }
+                currentIndex += tlv.getLength() - 2;
+            }
+            if (currentIndex != ipv6cp.length) {
+                throw new DeserializationException("Length of packet do not correspond to IPv6CP TLVs options");
+            }
+            return ipv6cp;
+        };
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * super.hashCode() + Objects.hashCode(interfaceIdTlv);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        if (!super.equals(obj)) {
+            return false;
+        }
+        final Ipv6cp other = (Ipv6cp) obj;
+        return Objects.equal(this.interfaceIdTlv, other.interfaceIdTlv);
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+                .add("code", code)
+                .add("identifier", identifier)
+                .add("length", length)
+                .add("pppTlvList", pppTlvList)
+                .add("interfaceIdTlv", interfaceIdTlv)
+                .toString();
+    }
+}
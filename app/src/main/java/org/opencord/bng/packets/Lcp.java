@@ -0,0 +1,324 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.packets;
+
+import org.onlab.packet.DeserializationException;
+import org.onlab.packet.Deserializer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static org.onlab.packet.PacketUtils.checkInput;
+
+/**
+ * Implements the Link Control Protocol (LCP) packet format (RFC 1661).
+ * <p>
+ * The configuration options are parsed lazily, on first access, into a
+ * compact array of offsets, so that packets that are only relayed do not pay
+ * for the option parsing.
+ */
+public class Lcp extends Ppp {
+
+    public static final byte CONF_REQ = 0x01;
+    public static final byte CONF_ACK = 0x02;
+    public static final byte CONF_NAK = 0x03;
+    public static final byte CONF_REJ = 0x04;
+    public static final byte TERM_REQ = 0x05;
+    public static final byte TERM_ACK = 0x06;
+    public static final byte CODE_REJ = 0x07;
+    public static final byte PROTOCOL_REJ = 0x08;
+    public static final byte ECHO_REQ = 0x09;
+    public static final byte ECHO_REPLY = 0x0a;
+    public static final byte DISCARD_REQ = 0x0b;
+
+    public static final byte OPTION_MRU = 0x01;
+    public static final byte OPTION_AUTH_PROTOCOL = 0x03;
+    public static final byte OPTION_QUALITY_PROTOCOL = 0x04;
+    public static final byte OPTION_MAGIC_NUMBER = 0x05;
+    public static final byte OPTION_PFC = 0x07;
+    public static final byte OPTION_ACFC = 0x08;
+
+    /**
+     * Value returned when an option is not present in the packet.
+     */
+    public static final int NO_OPTION = -1;
+
+    private static final byte[] EMPTY = new byte[0];
+    private static final int MAGIC_NUMBER_LENGTH = 4;
+    private static final int OPTION_HEADER_LENGTH = 2;
+
+    // LCP data following the header: options or magic number and data
+    private byte[] data = EMPTY;
+    // Parsed options, each one packed as type << 24 | length << 16 | offset
+    // in data. Null until the options are accessed the first time.
+    private int[] options;
+
+    Lcp() {
+        super();
+    }
+
+    /**
+     * Gets the LCP data following the header, i.e. the configuration options
+     * or the magic number followed by the data of echo and discard packets.
+     *
+     * @return the LCP data
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * Checks if this is a configuration packet (Configure-Request, -Ack, -Nak
+     * or -Reject) carrying configuration options.
+     *
+     * @return True if this is a configuration packet, false otherwise
+     */
+    public boolean isConfiguration() {
+        return code >= CONF_REQ && code <= CONF_REJ;
+    }
+
+    /**
+     * Checks if this is an Echo-Request packet.
+     *
+     * @return True if this is an Echo-Request packet, false otherwise
+     */
+    public boolean isEchoRequest() {
+        return code == ECHO_REQ;
+    }
+
+    /**
+     * Checks if this is an Echo-Reply packet.
+     *
+     * @return True if this is an Echo-Reply packet, false otherwise
+     */
+    public boolean isEchoReply() {
+        return code == ECHO_REPLY;
+    }
+
+    /**
+     * Checks if this is a Terminate-Request or a Terminate-Ack packet.
+     *
+     * @return True if this is a terminate packet, false otherwise
+     */
+    public boolean isTerminate() {
+        return code == TERM_REQ || code == TERM_ACK;
+    }
+
+    /**
+     * Gets the number of configuration options in the packet.
+     *
+     * @return the number of options, 0 if this is not a configuration packet
+     */
+    public int getOptionCount() {
+        return options().length;
+    }
+
+    /**
+     * Gets the type of the option at the given position.
+     *
+     * @param index the position of the option
+     * @return the option type
+     */
+    public byte getOptionType(int index) {
+        return (byte) (options()[index] >>> 24);
+    }
+
+    /**
+     * Gets the value of the option at the given position.
+     *
+     * @param index the position of the option
+     * @return a copy of the option value, without the type and length fields
+     */
+    public byte[] getOptionValue(int index) {
+        int option = options()[index];
+        int offset = (option & 0xFFFF) + OPTION_HEADER_LENGTH;
+        return Arrays.copyOfRange(data, offset, offset + ((option >>> 16) & 0xFF) - OPTION_HEADER_LENGTH);
+    }
+
+    /**
+     * Gets the Maximum-Receive-Unit option.
+     *
+     * @return the MRU, NO_OPTION if the option is not present
+     */
+    public int getMru() {
+        int offset = findOption(OPTION_MRU, 2);
+        return offset < 0 ? NO_OPTION : ByteBuffer.wrap(data, offset, 2).getShort() & 0xFFFF;
+    }
+
+    /**
+     * Gets the protocol of the Authentication-Protocol option, e.g. PAP or
+     * CHAP.
+     *
+     * @return the authentication protocol, NO_PROTOCOL if the option is not
+     * present or the protocol is not known
+     */
+    public PppProtocolType getAuthProtocol() {
+        int offset = findOption(OPTION_AUTH_PROTOCOL, 2);
+        return offset < 0 ? PppProtocolType.NO_PROTOCOL :
+                PppProtocolType.lookup(ByteBuffer.wrap(data, offset, 2).getShort());
+    }
+
+    /**
+     * Gets the magic number. The magic number is carried as an option in the
+     * configuration packets, and as the first field of the data in echo and
+     * discard packets.
+     *
+     * @return the unsigned magic number, NO_OPTION if not present in the
+     * packet
+     */
+    public long getMagicNumber() {
+        int offset;
+        if (code == ECHO_REQ || code == ECHO_REPLY || code == DISCARD_REQ) {
+            offset = data.length >= MAGIC_NUMBER_LENGTH ? 0 : NO_OPTION;
+        } else {
+            offset = findOption(OPTION_MAGIC_NUMBER, MAGIC_NUMBER_LENGTH);
+        }
+        return offset < 0 ? NO_OPTION :
+                ByteBuffer.wrap(data, offset, MAGIC_NUMBER_LENGTH).getInt() & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Builds the Echo-Reply to this Echo-Request, carrying the same identifier
+     * and data, and the given magic number.
+     *
+     * @param magicNumber the magic number of the replying peer
+     * @return the Echo-Reply packet
+     */
+    public Lcp echoReply(long magicNumber) {
+        Lcp reply = new Lcp();
+        reply.code = ECHO_REPLY;
+        reply.identifier = identifier;
+        reply.data = Arrays.copyOf(data, Math.max(data.length, MAGIC_NUMBER_LENGTH));
+        reply.length = (short) Math.max(length & 0xFFFF, MIN_HEADER_LENGTH + reply.data.length);
+        ByteBuffer.wrap(reply.data).putInt((int) magicNumber);
+        return reply;
+    }
+
+    /**
+     * Returns the offset in data of the value of the first option of the
+     * given type, if its value is at least the given size.
+     */
+    private int findOption(byte type, int minValueLength) {
+        for (int option : options()) {
+            if ((byte) (option >>> 24) == type &&
+                    ((option >>> 16) & 0xFF) - OPTION_HEADER_LENGTH >= minValueLength) {
+                return (option & 0xFFFF) + OPTION_HEADER_LENGTH;
+            }
+        }
+        return NO_OPTION;
+    }
+
+    private int[] options() {
+        int[] parsed = options;
+        if (parsed == null) {
+            parsed = parseOptions();
+            options = parsed;
+        }
+        return parsed;
+    }
+
+    private int[] parseOptions() {
+        if (!isConfiguration()) {
+            return new int[0];
+        }
+        int[] parsed = new int[4];
+        int count = 0;
+        int offset = 0;
+        while (offset + OPTION_HEADER_LENGTH <= data.length) {
+            int optionLength = data[offset + 1] & 0xFF;
+            // Stop at the first malformed option
+            if (optionLength < OPTION_HEADER_LENGTH || offset + optionLength > data.length) {
+                break;
+            }
+            if (count == parsed.length) {
+                parsed = Arrays.copyOf(parsed, count * 2);
+            }
+            parsed[count++] = (data[offset] & 0xFF) << 24 | optionLength << 16 | offset;
+            offset += optionLength;
+        }
+        return count == parsed.length ? parsed : Arrays.copyOf(parsed, count);
+    }
+
+    @Override
+    public byte[] serialize() {
+        final byte[] packet = new byte[Math.max(length & 0xFFFF, MIN_HEADER_LENGTH + data.length)];
+        final ByteBuffer bb = ByteBuffer.wrap(packet);
+        bb.put(this.code);
+        bb.put(this.identifier);
+        bb.putShort(this.length);
+        bb.put(data);
+        return packet;
+    }
+
+    /**
+     * Deserializer function for LCP packets.
+     *
+     * @return deserializer function
+     */
+    public static Deserializer<Lcp> deserializer() {
+        return (data, offset, length) -> {
+            checkInput(data, offset, length, MIN_HEADER_LENGTH);
+            Lcp lcp = new Lcp();
+            ByteBuffer bb = ByteBuffer.wrap(data, offset, length);
+            lcp.code = bb.get();
+            lcp.identifier = bb.get();
+            lcp.length = bb.getShort();
+            int lcpLength = lcp.length & 0xFFFF;
+            if (lcpLength < MIN_HEADER_LENGTH) {
+                throw new DeserializationException("Invalid LCP length " + lcpLength);
+            }
+            // Ignore the padding after the LCP packet
+            int dataLength = Math.min(bb.remaining(), lcpLength - MIN_HEADER_LENGTH);
+            if (dataLength > 0) {
+                lcp.data = new byte[dataLength];
+                bb.get(lcp.data);
+            }
+            return lcp;
+        };
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * super.hashCode() + Arrays.hashCode(data);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        if (!super.equals(obj)) {
+            return false;
+        }
+        final Lcp other = (Lcp) obj;
+        return Arrays.equals(this.data, other.data);
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+                .add("code", code)
+                .add("identifier", identifier)
+                .add("length", length)
+                .add("optionCount", getOptionCount())
+                .toString();
+    }
+}
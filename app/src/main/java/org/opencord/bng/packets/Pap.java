@@ -0,0 +1,191 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.packets;
+
+import org.onlab.packet.DeserializationException;
+import org.onlab.packet.Deserializer;
+
+import java.nio.ByteBuffer;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static org.onlab.packet.PacketUtils.checkInput;
+
+/**
+ * Implements the Password Authentication Protocol (PAP) packet format
+ * (RFC 1334).
+ * <p>
+ * The packet keeps a reference to the deserialized bytes, the accessors
+ * return read-only views on them without copying. The password is not
+ * exposed.
+ */
+public class Pap extends Ppp {
+
+    public static final byte AUTH_REQ = 0x01;
+    public static final byte AUTH_ACK = 0x02;
+    public static final byte AUTH_NAK = 0x03;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    // Bytes following the header, shared with the deserialized packet
+    private byte[] buffer = EMPTY;
+    private int dataOffset;
+    private int dataLength;
+
+    Pap() {
+        super();
+    }
+
+    /**
+     * Checks if this is an Authenticate-Request packet.
+     *
+     * @return True if this is an Authenticate-Request packet, false otherwise
+     */
+    public boolean isAuthRequest() {
+        return code == AUTH_REQ;
+    }
+
+    /**
+     * Gets the peer ID, i.e. the username, of an Authenticate-Request packet.
+     *
+     * @return a read-only view of the peer ID, empty if this is not an
+     * Authenticate-Request packet
+     */
+    public ByteBuffer getPeerIdBytes() {
+        return isAuthRequest() ? lengthPrefixed(dataOffset) : ByteBuffer.wrap(EMPTY);
+    }
+
+    /**
+     * Gets the peer ID of an Authenticate-Request packet, decoded.
+     *
+     * @return the peer ID, empty if this is not an Authenticate-Request packet
+     */
+    public String getPeerId() {
+        return decode(getPeerIdBytes());
+    }
+
+    /**
+     * Gets the message of an Authenticate-Ack or Authenticate-Nak packet.
+     *
+     * @return a read-only view of the message, empty if this is an
+     * Authenticate-Request packet
+     */
+    public ByteBuffer getMessageBytes() {
+        return isAuthRequest() || dataLength == 0 ? ByteBuffer.wrap(EMPTY) : lengthPrefixed(dataOffset);
+    }
+
+    /**
+     * Gets the message of an Authenticate-Ack or Authenticate-Nak packet,
+     * decoded.
+     *
+     * @return the message, empty if this is an Authenticate-Request packet
+     */
+    public String getMessage() {
+        return decode(getMessageBytes());
+    }
+
+    private ByteBuffer lengthPrefixed(int fieldOffset) {
+        return view(buffer, fieldOffset + 1, buffer[fieldOffset] & 0xFF);
+    }
+
+    private boolean isWellFormed() {
+        int end = dataOffset + dataLength;
+        if (dataLength == 0) {
+            // Ack and Nak messages are optional
+            return !isAuthRequest();
+        }
+        int next = dataOffset + 1 + (buffer[dataOffset] & 0xFF);
+        if (isAuthRequest()) {
+            // Peer-ID followed by the password
+            return next < end && next + 1 + (buffer[next] & 0xFF) <= end;
+        }
+        return next <= end;
+    }
+
+    @Override
+    public byte[] serialize() {
+        final byte[] packet = new byte[Math.max(length & 0xFFFF, MIN_HEADER_LENGTH + dataLength)];
+        final ByteBuffer bb = ByteBuffer.wrap(packet);
+        bb.put(this.code);
+        bb.put(this.identifier);
+        bb.putShort(this.length);
+        bb.put(buffer, dataOffset, dataLength);
+        return packet;
+    }
+
+    /**
+     * Deserializer function for PAP packets.
+     *
+     * @return deserializer function
+     */
+    public static Deserializer<Pap> deserializer() {
+        return (data, offset, length) -> {
+            checkInput(data, offset, length, MIN_HEADER_LENGTH);
+            Pap pap = new Pap();
+            ByteBuffer bb = ByteBuffer.wrap(data, offset, length);
+            pap.code = bb.get();
+            pap.identifier = bb.get();
+            pap.length = bb.getShort();
+            int papLength = pap.length & 0xFFFF;
+            if (papLength < MIN_HEADER_LENGTH) {
+                throw new DeserializationException("Invalid PAP length " + papLength);
+            }
+            pap.buffer = data;
+            pap.dataOffset = bb.position();
+            // Ignore the padding after the PAP packet
+            pap.dataLength = Math.min(bb.remaining(), papLength - MIN_HEADER_LENGTH);
+            if (!pap.isWellFormed()) {
+                throw new DeserializationException("PAP fields exceed the packet length");
+            }
+            return pap;
+        };
+    }
+
+    private ByteBuffer data() {
+        return view(buffer, dataOffset, dataLength);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * super.hashCode() + data().hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        if (!super.equals(obj)) {
+            return false;
+        }
+        final Pap other = (Pap) obj;
+        return data().equals(other.data());
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+                .add("code", code)
+                .add("identifier", identifier)
+                .add("length", length)
+                .add("peerId", getPeerId())
+                .add("message", getMessage())
+                .toString();
+    }
+}
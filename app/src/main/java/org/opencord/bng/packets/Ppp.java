@@ -19,6 +19,9 @@ package org.opencord.bng.packets;
 import com.google.common.base.Objects;
 import org.onlab.packet.BasePacket;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 import static com.google.common.base.MoreObjects.toStringHelper;
 
 /**
@@ -87,6 +90,29 @@ public abstract class Ppp extends BasePacket {
         this.length = length;
     }
 
+    /**
+     * Returns a read-only view of a portion of the given array, without
+     * copying it.
+     *
+     * @param data   the array
+     * @param offset the offset of the portion
+     * @param length the length of the portion
+     * @return the read-only view
+     */
+    static ByteBuffer view(byte[] data, int offset, int length) {
+        return ByteBuffer.wrap(data, offset, length).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Decodes a text field (e.g., a name or a message) of a PPP packet.
+     *
+     * @param view the field
+     * @return the decoded text
+     */
+    static String decode(ByteBuffer view) {
+        return StandardCharsets.UTF_8.decode(view.duplicate()).toString();
+    }
+
     @Override
     public String toString() {
         return toStringHelper(getClass())
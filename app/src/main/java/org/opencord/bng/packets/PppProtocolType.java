@@ -22,6 +22,7 @@ package org.opencord.bng.packets;
 public enum PppProtocolType {
     LCP(0xc021, "lcp", true),
     IPCP(0x8021, "ipcp", true),
+    IPV6CP(0x8057, "ipv6cp", true),
     PAP(0xc023, "pap", true),
     CHAP(0xc223, "chap", true),
     IPv4(0x0021, "ipv4", false),
@@ -52,12 +53,7 @@ public enum PppProtocolType {
      * @return The PPPProtocol type
      */
     public static PppProtocolType lookup(short code) {
-        for (PppProtocolType type : PppProtocolType.values()) {
-            if (code == type.code()) {
-                return type;
-            }
-        }
-        return NO_PROTOCOL;
+        return Pppoe.PPP_PROTOCOLS[code & 0xFFFF].type;
     }
 
     /**
@@ -23,10 +23,11 @@ import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
- * Implements IPCP Type-Length-Value options.
+ * Implements IPCP and IPv6CP Type-Length-Value options.
  */
 public class PppTlv {
     public static final byte IPCPTLV_IP_ADDRESS = 0x03;
+    public static final byte IPV6CPTLV_INTERFACE_ID = 0x01;
     private byte type;
     private byte length; // Including the 2 byte of Minimum header
     private byte[] value;
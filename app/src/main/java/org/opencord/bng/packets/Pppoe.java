@@ -27,6 +27,7 @@ import org.onlab.packet.IPv4;
 import org.onlab.packet.IPv6;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -44,14 +45,17 @@ public class Pppoe extends BasePacket {
 
     static final ImmutableMap<Short, Deserializer<? extends IPacket>> PROTOCOL_DESERIALIZER_MAP =
             ImmutableMap.<Short, Deserializer<? extends IPacket>>builder()
-                    //FIXME: write the correct parser for LCP, PAP, and CHAP
-                    .put(PppProtocolType.LCP.code(), GenericPpp.deserializer())
-                    .put(PppProtocolType.PAP.code(), GenericPpp.deserializer())
-                    .put(PppProtocolType.CHAP.code(), GenericPpp.deserializer())
+                    .put(PppProtocolType.LCP.code(), Lcp.deserializer())
+                    .put(PppProtocolType.PAP.code(), Pap.deserializer())
+                    .put(PppProtocolType.CHAP.code(), Chap.deserializer())
                     .put(PppProtocolType.IPCP.code(), Ipcp.deserializer())
+                    .put(PppProtocolType.IPV6CP.code(), Ipv6cp.deserializer())
                     .put(PppProtocolType.IPv4.code(), IPv4.deserializer())
                     .put(PppProtocolType.IPv6.code(), IPv6.deserializer())
                     .build();
+    // PPP protocol type and payload deserializer indexed by the 16 bits
+    // PPP protocol code, resolved with a single array access when parsing
+    static final PppProtocolEntry[] PPP_PROTOCOLS = pppProtocols();
     // Account of PPPoE standard header
     static final int HEADER_LENGTH = 6;
     // Fields part of PPPoE
@@ -141,6 +145,53 @@ public class Pppoe extends BasePacket {
         return this;
     }
 
+    /**
+     * Get the Service-Name.
+     *
+     * @return the Service-Name
+     */
+    public PppoeTlvTag getServiceName() {
+        return this.serviceName;
+    }
+
+    /**
+     * Set the Service-Name.
+     *
+     * @param serviceName Service-Name to set
+     * @return this
+     */
+    public Pppoe setServiceName(final PppoeTlvTag serviceName) {
+        this.serviceName = serviceName;
+        return this;
+    }
+
+    /**
+     * Get the first TAG of the given type other than AC-Name and
+     * Service-Name.
+     *
+     * @param tagType The TAG type
+     * @return the TAG, null if not present
+     */
+    public PppoeTlvTag getTag(short tagType) {
+        for (PppoeTlvTag tlv : optionalTagTlvList) {
+            if (tlv.getTagType() == tagType) {
+                return tlv;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Add a TAG other than AC-Name and Service-Name.
+     *
+     * @param tlv The TAG to add
+     * @return this
+     */
+    public Pppoe addTag(final PppoeTlvTag tlv) {
+        this.optionalTagTlvList.add(tlv);
+        return this;
+    }
+
     /**
      * Get the PPPoE version field.
      *
@@ -219,7 +270,7 @@ public class Pppoe extends BasePacket {
         bb.put(this.packetType.code);
         bb.putShort(this.sessionId);
         bb.putShort(this.payloadLength);
-        if (this.packetType != PppoeType.SESSION) {
+        if (this.packetType == PppoeType.SESSION) {
             // Only session packet have PPP header
             bb.putShort(this.pppProtocol);
         } else {
@@ -265,16 +316,11 @@ public class Pppoe extends BasePacket {
             if (pppoe.packetType == PppoeType.SESSION) {
                 // Parse inner protocols
                 pppoe.pppProtocol = bb.getShort();
-                Deserializer<? extends IPacket> deserializer;
-                if (Pppoe.PROTOCOL_DESERIALIZER_MAP.containsKey(pppoe.pppProtocol)) {
-                    deserializer = PROTOCOL_DESERIALIZER_MAP.get(pppoe.pppProtocol);
-                } else {
-                    deserializer = Data.deserializer();
-                }
+                Deserializer<?> deserializer = PPP_PROTOCOLS[pppoe.pppProtocol & 0xFFFF].deserializer;
                 int remainingLength = bb.limit() - bb.position();
                 int bytesToRead = Math.min(pppoe.payloadLength - 2, remainingLength);
                 if (bytesToRead > 0) {
-                    pppoe.payload = deserializer.deserialize(data, bb.position(), bytesToRead);
+                    pppoe.payload = (IPacket) deserializer.deserialize(data, bb.position(), bytesToRead);
                     pppoe.payload.setParent(pppoe);
                 }
             } else {
@@ -321,6 +367,32 @@ public class Pppoe extends BasePacket {
         };
     }
 
+    private static PppProtocolEntry[] pppProtocols() {
+        PppProtocolEntry[] protocols = new PppProtocolEntry[1 << Short.SIZE];
+        // Unknown protocols share the same entry
+        Arrays.fill(protocols, new PppProtocolEntry(PppProtocolType.NO_PROTOCOL, Data.deserializer()));
+        for (PppProtocolType type : PppProtocolType.values()) {
+            if (type != PppProtocolType.NO_PROTOCOL) {
+                protocols[type.code() & 0xFFFF] = new PppProtocolEntry(
+                        type, PROTOCOL_DESERIALIZER_MAP.getOrDefault(type.code(), Data.deserializer()));
+            }
+        }
+        return protocols;
+    }
+
+    /**
+     * PPP protocol type with the deserializer of its payload.
+     */
+    static final class PppProtocolEntry {
+        final PppProtocolType type;
+        final Deserializer<?> deserializer;
+
+        private PppProtocolEntry(PppProtocolType type, Deserializer<?> deserializer) {
+            this.type = type;
+            this.deserializer = deserializer;
+        }
+    }
+
     @Override
     public String toString() {
         return toStringHelper(getClass())
@@ -389,13 +461,18 @@ public class Pppoe extends BasePacket {
             this.type = type;
         }
 
-        public static PppoeType lookup(byte code) {
-            for (PppoeType type : PppoeType.values()) {
-                if (code == type.code()) {
-                    return type;
-                }
+        // PPPoE types indexed by code
+        private static final PppoeType[] BY_CODE = new PppoeType[256];
+
+        static {
+            Arrays.fill(BY_CODE, UNKNOWN);
+            for (PppoeType type : values()) {
+                BY_CODE[type.code & 0xFF] = type;
             }
-            return UNKNOWN;
+        }
+
+        public static PppoeType lookup(byte code) {
+            return BY_CODE[code & 0xFF];
         }
 
         public byte code() {
@@ -30,6 +30,9 @@ public class PppoeTlvTag {
     public static final short PPPOED_TAGTYPE_EOL = 0;
     public static final short PPPOED_TAGTYPE_SERVICENAME = 0x0101;
     public static final short PPPOED_TAGTYPE_ACNAME = 0x0102;
+    public static final short PPPOED_TAGTYPE_HOSTUNIQ = 0x0103;
+    public static final short PPPOED_TAGTYPE_ACCOOKIE = 0x0104;
+    public static final short PPPOED_TAGTYPE_RELAYSESSIONID = 0x0110;
 
     private short tagType;
     private short length; // Length excluded the header (4 bytes minimum header)
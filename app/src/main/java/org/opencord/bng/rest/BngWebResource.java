@@ -0,0 +1,60 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.rest;
+
+import org.onosproject.rest.AbstractWebResource;
+import org.opencord.bng.BngMetricsService;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * BNG web resource.
+ */
+@Path("")
+public class BngWebResource extends AbstractWebResource {
+
+    static final String OPENMETRICS_TYPE =
+            "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    /**
+     * Gets the BNG app metrics using the OpenMetrics text format. The metrics
+     * include attachment-level counters, control plane counters and the PPPoE
+     * relay health.
+     *
+     * @return 200 OK with the metrics in the OpenMetrics text format
+     */
+    @GET
+    @Path("metrics")
+    @Produces(OPENMETRICS_TYPE)
+    public Response getMetrics() {
+        BngMetricsService metricsService = get(BngMetricsService.class);
+        // Stream the metrics to the client while they are rendered
+        StreamingOutput stream = output -> {
+            Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+            metricsService.writeMetrics(writer);
+            writer.flush();
+        };
+        return Response.ok(stream).build();
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.impl;
+
+import com.google.common.collect.Maps;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.IpPrefix;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.onosproject.core.ApplicationId;
+import org.onosproject.core.DefaultApplicationId;
+import org.onosproject.net.ConnectPoint;
+import org.opencord.bng.BngAttachment;
+import org.opencord.bng.PppoeBngAttachment;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BngAttachmentJournalTest {
+
+    private static final ApplicationId APP_ID = new DefaultApplicationId(1, BngManager.BNG_APP);
+    private static final ConnectPoint OLT_CP = ConnectPoint.deviceConnectPoint("of:0000000000000001/1");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+    private final Map<String, BngAttachment> attachments = Maps.newConcurrentMap();
+
+    @Before
+    public void setUp() {
+        directory = folder.getRoot().toPath();
+    }
+
+    @Test
+    public void testRestore() throws Exception {
+        BngAttachmentJournal journal = start();
+        for (int i = 0; i < 10; i++) {
+            put(journal, "key" + i, attachment(i));
+        }
+        attachments.remove("key3");
+        journal.remove("key3");
+        journal.stop();
+
+        Map<String, BngAttachment> restored = load();
+        assertEquals(attachments, restored);
+        assertEquals(9, restored.size());
+        assertEquals(IpPrefix.valueOf("2001:db8:0:1::/64"), restored.get("key1").delegatedPrefix());
+    }
+
+    @Test
+    public void testJournalReplay() throws Exception {
+        put(null, "key0", attachment(0));
+        BngAttachmentJournal journal = start();
+        put(journal, "key1", attachment(1));
+        attachments.remove("key0");
+        journal.remove("key0");
+        journal.awaitWrites();
+        // Simulate a crash in the middle of a record
+        Files.write(directory.resolve("attachments.journal"), new byte[]{0, 0, 0, 50, 1, 2},
+                    StandardOpenOption.APPEND);
+
+        // The snapshot still has key0, removed by the journal
+        assertEquals(Map.of("key1", attachment(1)), load());
+        journal.stop();
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        BngAttachmentJournal journal = start();
+        for (int i = 0; i <= BngAttachmentJournal.COMPACTION_THRESHOLD; i++) {
+            put(journal, "key", attachment(i % 100));
+        }
+        journal.awaitWrites();
+        long journalSize = Files.size(directory.resolve("attachments.journal"));
+        assertTrue("journal not compacted: " + journalSize, journalSize < 100 * 1024);
+        journal.stop();
+        assertEquals(attachments, load());
+    }
+
+    @Test
+    public void testStoppedCleanly() throws Exception {
+        BngAttachmentJournal journal = start();
+        put(journal, "key0", attachment(0));
+        assertFalse(journal.stoppedCleanly());
+        journal.stop();
+        assertTrue(journal.stoppedCleanly());
+
+        journal = start();
+        put(journal, "key1", attachment(1));
+        journal.abort();
+        // The mutations are written but the snapshot is not
+        assertFalse(journal.stoppedCleanly());
+        assertEquals(attachments, load());
+
+        BngAttachmentJournal.delete(directory);
+        assertFalse(journal.stoppedCleanly());
+        assertTrue(load().isEmpty());
+    }
+
+    private BngAttachmentJournal start() throws Exception {
+        BngAttachmentJournal journal = new BngAttachmentJournal(directory, () -> attachments);
+        journal.start();
+        return journal;
+    }
+
+    private Map<String, BngAttachment> load() {
+        return new BngAttachmentJournal(directory, () -> attachments).load(name -> APP_ID);
+    }
+
+    private void put(BngAttachmentJournal journal, String key, BngAttachment attachment) {
+        attachments.put(key, attachment);
+        if (journal != null) {
+            journal.put(key, attachment);
+        }
+    }
+
+    private static BngAttachment attachment(int i) {
+        return PppoeBngAttachment.builder()
+                .withPppoeSessionId((short) i)
+                .withApplicationId(APP_ID)
+                .withSTag(VlanId.vlanId((short) 10))
+                .withCTag(VlanId.vlanId((short) (100 + i)))
+                .withMacAddress(MacAddress.valueOf(i + 1))
+                .withIpAddress(IpAddress.valueOf(0x0a000000 + i))
+                .withIpv6Address(IpAddress.valueOf("fe80::" + Integer.toHexString(i + 1)))
+                .withDelegatedPrefix(IpPrefix.valueOf("2001:db8:0:" + Integer.toHexString(i) + "::/64"))
+                .withOltConnectPoint(OLT_CP)
+                .withOnuSerial("ONU" + i)
+                .withQinqTpid((short) 0x8100)
+                .lineActivated(true)
+                .build();
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.impl;
+
+import com.google.common.collect.Maps;
+import org.junit.Test;
+import org.onosproject.net.DeviceId;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BngDeviceRingTest {
+
+    private static final DeviceId DEVICE_1 = DeviceId.deviceId("device:asg1");
+    private static final DeviceId DEVICE_2 = DeviceId.deviceId("device:asg2");
+    private static final DeviceId DEVICE_3 = DeviceId.deviceId("device:asg3");
+    private static final int ATTACHMENTS = 3000;
+
+    @Test
+    public void testEmpty() {
+        assertNull(new BngDeviceRing(List.of()).lookup("attachment"));
+    }
+
+    @Test
+    public void testSpread() {
+        BngDeviceRing ring = new BngDeviceRing(List.of(DEVICE_1, DEVICE_2, DEVICE_3));
+        Map<DeviceId, Integer> counts = Maps.newHashMap();
+        for (int i = 0; i < ATTACHMENTS; i++) {
+            DeviceId deviceId = ring.lookup("attachment-" + i);
+            assertEquals(deviceId, ring.lookup("attachment-" + i));
+            counts.merge(deviceId, 1, Integer::sum);
+        }
+        assertEquals(3, counts.size());
+        // Each device gets a fair share of the attachments
+        counts.values().forEach(count -> assertTrue(count > ATTACHMENTS / 6));
+    }
+
+    @Test
+    public void testAddDevice() {
+        BngDeviceRing before = new BngDeviceRing(List.of(DEVICE_1, DEVICE_2));
+        BngDeviceRing after = new BngDeviceRing(List.of(DEVICE_1, DEVICE_2, DEVICE_3));
+        int moved = 0;
+        for (int i = 0; i < ATTACHMENTS; i++) {
+            DeviceId oldDevice = before.lookup("attachment-" + i);
+            DeviceId newDevice = after.lookup("attachment-" + i);
+            if (!oldDevice.equals(newDevice)) {
+                // Only moves to the new device
+                assertEquals(DEVICE_3, newDevice);
+                moved++;
+            }
+        }
+        assertTrue(moved > 0 && moved < ATTACHMENTS / 2);
+    }
+}
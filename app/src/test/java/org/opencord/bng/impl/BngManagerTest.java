@@ -0,0 +1,704 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.bng.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.onlab.packet.ChassisId;
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.IpPrefix;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.onosproject.cfg.ComponentConfigAdapter;
+import org.onosproject.core.ApplicationId;
+import org.onosproject.core.CoreServiceAdapter;
+import org.onosproject.core.DefaultApplicationId;
+import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.DefaultDevice;
+import org.onosproject.net.DefaultLink;
+import org.onosproject.net.DefaultPort;
+import org.onosproject.net.Device;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.HostId;
+import org.onosproject.net.Link;
+import org.onosproject.net.behaviour.BngProgrammable;
+import org.onosproject.net.config.Config;
+import org.onosproject.net.config.NetworkConfigEvent;
+import org.onosproject.net.config.NetworkConfigListener;
+import org.onosproject.net.config.NetworkConfigRegistryAdapter;
+import org.onosproject.net.device.DeviceEvent;
+import org.onosproject.net.device.DeviceListener;
+import org.onosproject.net.device.DeviceServiceAdapter;
+import org.onosproject.net.driver.Behaviour;
+import org.onosproject.net.driver.DriverData;
+import org.onosproject.net.driver.DriverHandler;
+import org.onosproject.net.host.HostDescription;
+import org.onosproject.net.host.HostProvider;
+import org.onosproject.net.host.HostProviderRegistry;
+import org.onosproject.net.host.HostProviderService;
+import org.onosproject.net.link.LinkServiceAdapter;
+import org.onosproject.net.pi.runtime.PiCounterCellData;
+import org.onosproject.net.provider.ProviderId;
+import org.opencord.bng.BngAttachment;
+import org.opencord.bng.PppoeBngAttachment;
+import org.opencord.bng.config.BngConfig;
+import org.osgi.service.component.ComponentConstants;
+import org.osgi.service.component.ComponentContext;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.opencord.bng.impl.OsgiPropertyConstants.ATTACHMENT_JOURNAL_ENABLED;
+import static org.opencord.bng.impl.OsgiPropertyConstants.PORT_DOWN_PADT;
+
+public class BngManagerTest {
+
+    private static final ApplicationId APP_ID = new DefaultApplicationId(1, BngManager.BNG_APP);
+    private static final ProviderId PROVIDER_ID = new ProviderId("of", "test");
+    private static final DeviceId BNGU_1 = DeviceId.deviceId("of:bngu1");
+    private static final DeviceId BNGU_2 = DeviceId.deviceId("of:bngu2");
+    private static final ConnectPoint OLT_1_CP = ConnectPoint.deviceConnectPoint("of:olt1/1");
+    private static final ConnectPoint OLT_2_CP = ConnectPoint.deviceConnectPoint("of:olt2/1");
+    private static final String SINGLE_BNGU_CONFIG = "{\"bnguDeviceIds\": [\"of:bngu1\"]}";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final long TIMEOUT_MS = 5000;
+    private static final String KARAF_DATA = "karaf.data";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private BngManager manager;
+    private final Map<DeviceId, RecordingBngProgrammable> bngus = Maps.newConcurrentMap();
+    private final Map<DeviceId, Device> devices = Maps.newConcurrentMap();
+    private final Set<DeviceId> unavailableDevices = Sets.newConcurrentHashSet();
+    // ASG device each OLT device is linked to
+    private final Map<DeviceId, DeviceId> oltLinks = Maps.newConcurrentMap();
+    private final RecordingHostProviderService hostProviderService = new RecordingHostProviderService();
+    private final RecordingPppoeHandler pppoeHandler = new RecordingPppoeHandler();
+    private BngConfig bngConfig;
+    private NetworkConfigListener cfgListener;
+    private DeviceListener deviceListener;
+    private String karafData;
+
+    @Before
+    public void setUp() throws Exception {
+        // Keeps the attachment journal in the test folder
+        karafData = System.getProperty(KARAF_DATA);
+        System.setProperty(KARAF_DATA, folder.newFolder().toString());
+        manager = new BngManager();
+        manager.coreService = new CoreServiceAdapter() {
+            @Override
+            public ApplicationId registerApplication(String name) {
+                return APP_ID;
+            }
+
+            @Override
+            public ApplicationId getAppId(String name) {
+                return APP_ID;
+            }
+        };
+        manager.componentConfigService = new ComponentConfigAdapter();
+        manager.cfgService = new NetworkConfigRegistryAdapter() {
+            @Override
+            public void addListener(NetworkConfigListener listener) {
+                cfgListener = listener;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public <S, C extends Config<S>> C getConfig(S subject, Class<C> configClass) {
+                return (C) bngConfig;
+            }
+        };
+        manager.deviceService = new DeviceServiceAdapter() {
+            @Override
+            public void addListener(DeviceListener listener) {
+                deviceListener = listener;
+            }
+
+            @Override
+            public Device getDevice(DeviceId deviceId) {
+                return devices.get(deviceId);
+            }
+
+            @Override
+            public boolean isAvailable(DeviceId deviceId) {
+                return devices.containsKey(deviceId) && !unavailableDevices.contains(deviceId);
+            }
+        };
+        manager.linkService = new LinkServiceAdapter() {
+            @Override
+            public Set<Link> getDeviceEgressLinks(DeviceId deviceId) {
+                DeviceId asgDeviceId = oltLinks.get(deviceId);
+                if (asgDeviceId == null) {
+                    return ImmutableSet.of();
+                }
+                return ImmutableSet.of(DefaultLink.builder()
+                                               .providerId(PROVIDER_ID)
+                                               .src(new ConnectPoint(deviceId, OLT_1_CP.port()))
+                                               .dst(ConnectPoint.deviceConnectPoint(asgDeviceId + "/10"))
+                                               .type(Link.Type.DIRECT)
+                                               .build());
+            }
+        };
+        manager.providerRegistry = new HostProviderRegistry() {
+            @Override
+            public HostProviderService register(HostProvider provider) {
+                return hostProviderService;
+            }
+
+            @Override
+            public void unregister(HostProvider provider) {
+            }
+
+            @Override
+            public Set<ProviderId> getProviders() {
+                return ImmutableSet.of();
+            }
+        };
+        manager.latencyService = new BngSessionLatencyServiceAdapter();
+        manager.pppoeHandler = pppoeHandler;
+    }
+
+    @After
+    public void tearDown() {
+        manager.deactivate(ComponentConstants.DEACTIVATION_REASON_DISABLED);
+        if (karafData == null) {
+            System.clearProperty(KARAF_DATA);
+        } else {
+            System.setProperty(KARAF_DATA, karafData);
+        }
+    }
+
+    /**
+     * Tests that with the topology placement each attachment is programmed
+     * on the BNG-U its OLT is linked to.
+     */
+    @Test
+    public void testTopologyPlacement() throws Exception {
+        addBngu(BNGU_1);
+        addBngu(BNGU_2);
+        oltLinks.put(OLT_1_CP.deviceId(), BNGU_1);
+        oltLinks.put(OLT_2_CP.deviceId(), BNGU_2);
+        activate("{\"bnguDeviceIds\": [\"of:bngu1\", \"of:bngu2\"]}");
+
+        BngAttachment attachment1 = attachment(1, OLT_1_CP);
+        BngAttachment attachment2 = attachment(2, OLT_2_CP);
+        manager.setupAttachment("1", attachment1);
+        manager.setupAttachment("2", attachment2);
+        assertEquals(BNGU_1, manager.getBngDeviceId("1"));
+        assertEquals(BNGU_2, manager.getBngDeviceId("2"));
+        assertEquals(List.of(attachment1), bngus.get(BNGU_1).programmed());
+        assertEquals(List.of(attachment2), bngus.get(BNGU_2).programmed());
+        assertEquals(2, hostProviderService.hosts.size());
+    }
+
+    /**
+     * Tests that the consistent hash placement spreads the attachments over
+     * the BNG-Us, and that removing a BNG-U from the config moves only the
+     * attachments assigned to it.
+     */
+    @Test
+    public void testConsistentHashRebalance() throws Exception {
+        addBngu(BNGU_1);
+        addBngu(BNGU_2);
+        oltLinks.put(OLT_1_CP.deviceId(), BNGU_1);
+        // Lower case, parsed the same whatever the default locale
+        activate("{\"bnguDeviceIds\": [\"of:bngu1\", \"of:bngu2\"], " +
+                         "\"attachmentPlacement\": \"consistent_hash\"}");
+
+        BngDeviceRing ring = new BngDeviceRing(List.of(BNGU_1, BNGU_2));
+        int attachments = 32;
+        for (int i = 1; i <= attachments; i++) {
+            manager.setupAttachment(Integer.toString(i), attachment(i, OLT_1_CP));
+        }
+        for (int i = 1; i <= attachments; i++) {
+            assertEquals(ring.lookup(Integer.toString(i)), manager.getBngDeviceId(Integer.toString(i)));
+        }
+        int onBngu1 = bngus.get(BNGU_1).programmed().size();
+        int onBngu2 = bngus.get(BNGU_2).programmed().size();
+        assertTrue(onBngu1 > 0 && onBngu2 > 0);
+        assertEquals(attachments, onBngu1 + onBngu2);
+        int bngu1Setups = bngus.get(BNGU_1).count("setup");
+
+        updateConfig("{\"bnguDeviceIds\": [\"of:bngu1\"], \"attachmentPlacement\": \"CONSISTENT_HASH\"}");
+        for (int i = 1; i <= attachments; i++) {
+            assertEquals(BNGU_1, manager.getBngDeviceId(Integer.toString(i)));
+        }
+        assertEquals(attachments, bngus.get(BNGU_1).programmed().size());
+        // The removed BNG-U is cleaned up, the attachments already on BNGU 1 are not set up again
+        assertTrue(bngus.get(BNGU_2).programmed().isEmpty());
+        assertEquals(bngu1Setups + onBngu2, bngus.get(BNGU_1).count("setup"));
+    }
+
+    /**
+     * Tests that an invalid placement policy keeps the previous config.
+     */
+    @Test
+    public void testInvalidPlacement() throws Exception {
+        addBngu(BNGU_1);
+        oltLinks.put(OLT_1_CP.deviceId(), BNGU_1);
+        activate("{\"bnguDeviceIds\": [\"of:bngu1\"]}");
+        updateConfig("{\"bnguDeviceIds\": [\"of:bngu2\"], \"attachmentPlacement\": \"random\"}");
+        assertEquals(Set.of(BNGU_1), manager.getBngDeviceIds());
+    }
+
+    /**
+     * Tests that each BNG-U is set up on its own: a BNG-U becoming available
+     * is set up with its attachments without touching the other BNG-U.
+     */
+    @Test
+    public void testPerDeviceSetup() throws Exception {
+        addBngu(BNGU_1);
+        addBngu(BNGU_2);
+        RecordingBngProgrammable bngu2 = bngus.get(BNGU_2);
+        unavailableDevices.add(BNGU_2);
+        oltLinks.put(OLT_1_CP.deviceId(), BNGU_1);
+        oltLinks.put(OLT_2_CP.deviceId(), BNGU_2);
+        activate("{\"bnguDeviceIds\": [\"of:bngu1\", \"of:bngu2\"]}");
+
+        BngAttachment attachment1 = attachment(1, OLT_1_CP);
+        BngAttachment attachment2 = attachment(2, OLT_2_CP);
+        manager.setupAttachment("1", attachment1);
+        // BNGU 2 is not available, the attachment is accepted but not programmed
+        manager.setupAttachment("2", attachment2);
+        assertEquals(attachment2, manager.getAttachment("2"));
+        assertTrue(bngu2.calls.isEmpty());
+
+        List<String> bngu1Calls = List.copyOf(bngus.get(BNGU_1).calls);
+        Device device = devices.get(BNGU_2);
+        unavailableDevices.remove(BNGU_2);
+        deviceListener.event(new DeviceEvent(DeviceEvent.Type.DEVICE_AVAILABILITY_CHANGED, device));
+        assertEquals(List.of("cleanUp", "init", "setup", "reset"), bngu2.calls);
+        assertEquals(List.of(attachment2), bngu2.programmed());
+        assertEquals(bngu1Calls, bngus.get(BNGU_1).calls);
+
+        deviceListener.event(new DeviceEvent(DeviceEvent.Type.DEVICE_REMOVED, device));
+        assertTrue(bngu2.programmed().isEmpty());
+        assertEquals(List.of(attachment1), bngus.get(BNGU_1).programmed());
+        // The attachments of a removed BNG-U stay registered
+        assertEquals(attachment2, manager.getAttachment("2"));
+        manager.removeAttachment("2");
+        assertNull(manager.getAttachment("2"));
+        assertFalse(hostProviderService.hosts.containsKey(HostId.hostId(attachment2.macAddress(),
+                                                                         attachment2.sTag())));
+    }
+
+    /**
+     * Tests that the attachments behind an OLT port going down are removed
+     * in batches, without touching the attachments of the other ports.
+     */
+    @Test
+    public void testPortDownTeardown() throws Exception {
+        addBngu(BNGU_1);
+        oltLinks.put(OLT_1_CP.deviceId(), BNGU_1);
+        oltLinks.put(OLT_2_CP.deviceId(), BNGU_1);
+        activate(SINGLE_BNGU_CONFIG);
+        int attachments = 100;
+        for (int i = 1; i <= attachments; i++) {
+            manager.setupAttachment(Integer.toString(i), attachment(i, OLT_1_CP));
+        }
+        BngAttachment otherPortAttachment = attachment(attachments + 1, OLT_2_CP);
+        manager.setupAttachment("other", otherPortAttachment);
+
+        // Ports without attachments are ignored
+        deviceListener.event(portEvent(DeviceEvent.Type.PORT_UPDATED,
+                                       ConnectPoint.deviceConnectPoint("of:olt1/2"), false));
+        deviceListener.event(portEvent(DeviceEvent.Type.PORT_UPDATED, OLT_1_CP, false));
+        awaitTrue(() -> manager.getAttachments().size() == 1);
+        assertEquals(otherPortAttachment, manager.getAttachment("other"));
+        assertEquals(List.of(otherPortAttachment), bngus.get(BNGU_1).programmed());
+        assertEquals(1, hostProviderService.hosts.size());
+        assertEquals(attachments, pppoeHandler.terminated.size());
+        // PADT not sent by default
+        assertFalse(pppoeHandler.terminated.containsValue(true));
+    }
+
+    /**
+     * Tests that the attachments are removed once when the port goes down,
+     * and again only after the port has been enabled.
+     */
+    @Test
+    public void testPortDownTransition() throws Exception {
+        addBngu(BNGU_1);
+        oltLinks.put(OLT_1_CP.deviceId(), BNGU_1);
+        activate(SINGLE_BNGU_CONFIG);
+        manager.setupAttachment("1", attachment(1, OLT_1_CP));
+        deviceListener.event(portEvent(DeviceEvent.Type.PORT_UPDATED, OLT_1_CP, false));
+        awaitTrue(() -> manager.getAttachments().isEmpty());
+
+        // Another update of the port still down does not remove the attachments
+        manager.setupAttachment("2", attachment(2, OLT_1_CP));
+        deviceListener.event(portEvent(DeviceEvent.Type.PORT_UPDATED, OLT_1_CP, false));
+        Thread.sleep(200);
+        assertEquals(1, manager.getAttachments().size());
+
+        deviceListener.event(portEvent(DeviceEvent.Type.PORT_UPDATED, OLT_1_CP, true));
+        deviceListener.event(portEvent(DeviceEvent.Type.PORT_UPDATED, OLT_1_CP, false));
+        awaitTrue(() -> manager.getAttachments().isEmpty());
+        manager.setupAttachment("3", attachment(3, OLT_1_CP));
+        deviceListener.event(portEvent(DeviceEvent.Type.PORT_REMOVED, OLT_1_CP, false));
+        awaitTrue(() -> manager.getAttachments().isEmpty());
+        assertEquals(3, pppoeHandler.terminated.size());
+    }
+
+    /**
+     * Tests that a PADT is sent for the removed attachments when enabled.
+     */
+    @Test
+    public void testPortDownPadt() throws Exception {
+        addBngu(BNGU_1);
+        oltLinks.put(OLT_1_CP.deviceId(), BNGU_1);
+        activate(SINGLE_BNGU_CONFIG, TestComponentContext.of(PORT_DOWN_PADT, true));
+        BngAttachment attachment = attachment(1, OLT_1_CP);
+        manager.setupAttachment("1", attachment);
+        deviceListener.event(portEvent(DeviceEvent.Type.PORT_REMOVED, OLT_1_CP, false));
+        awaitTrue(() -> manager.getAttachments().isEmpty());
+        assertEquals(Map.of(attachment, true), pppoeHandler.terminated);
+    }
+
+    /**
+     * Tests that the OLT port index follows the attachments moved to another
+     * port and the attachments removed.
+     */
+    @Test
+    public void testPortIndexCleanup() throws Exception {
+        addBngu(BNGU_1);
+        oltLinks.put(OLT_1_CP.deviceId(), BNGU_1);
+        oltLinks.put(OLT_2_CP.deviceId(), BNGU_1);
+        activate(SINGLE_BNGU_CONFIG);
+        manager.setupAttachment("1", attachment(1, OLT_1_CP));
+        BngAttachment moved = attachment(1, OLT_2_CP);
+        manager.setupAttachment("1", moved);
+        manager.setupAttachment("2", attachment(2, OLT_1_CP));
+        manager.removeAttachment("2");
+
+        deviceListener.event(portEvent(DeviceEvent.Type.PORT_REMOVED, OLT_1_CP, false));
+        Thread.sleep(200);
+        assertEquals(moved, manager.getAttachment("1"));
+        assertTrue(pppoeHandler.terminated.isEmpty());
+        deviceListener.event(portEvent(DeviceEvent.Type.PORT_REMOVED, OLT_2_CP, false));
+        awaitTrue(() -> manager.getAttachments().isEmpty());
+        assertEquals(Set.of(moved), pppoeHandler.terminated.keySet());
+    }
+
+    /**
+     * Tests the BNG-U operations applying each kind of attachment update.
+     */
+    @Test
+    public void testUpdateAttachment() throws Exception {
+        addBngu(BNGU_1);
+        oltLinks.put(OLT_1_CP.deviceId(), BNGU_1);
+        activate(SINGLE_BNGU_CONFIG);
+        RecordingBngProgrammable bngu = bngus.get(BNGU_1);
+        List<String> removeAndSetup = List.of("remove", "setup");
+        Map<BngAttachment, List<String>> updates = Map.of(
+                attachmentBuilder(1).withIpAddress(IpAddress.valueOf("10.0.0.2")).build(), removeAndSetup,
+                attachmentBuilder(2).build(), removeAndSetup,
+                attachmentBuilder(1).withIpv6Address(IpAddress.valueOf("2001:db8::1")).build(), removeAndSetup,
+                attachmentBuilder(1).withDelegatedPrefix(IpPrefix.valueOf("2001:db8:1::/56")).build(),
+                removeAndSetup,
+                attachmentBuilder(1).withMacAddress(MacAddress.valueOf("00:00:00:00:00:02")).build(),
+                removeAndSetup,
+                attachmentBuilder(1).withCTag(VlanId.vlanId((short) 200)).build(),
+                List.of("remove", "setup", "reset"),
+                attachmentBuilder(1).lineActivated(false).build(), List.of("setup"),
+                attachmentBuilder(1).withOnuSerial("ONU-2").build(), List.of("setup"));
+        for (var update : updates.entrySet()) {
+            BngAttachment attachment = attachmentBuilder(1).build();
+            manager.setupAttachment("1", attachment);
+            bngu.calls.clear();
+            manager.setupAttachment("1", update.getKey());
+            assertEquals(attachment.diff(update.getKey()).toString(), update.getValue(), bngu.calls);
+            assertEquals(List.of(update.getKey()), bngu.programmed());
+            assertTrue(hostProviderService.hosts.containsKey(HostId.hostId(update.getKey().macAddress(),
+                                                                            update.getKey().sTag())));
+            manager.removeAttachment("1");
+        }
+        assertTrue(hostProviderService.hosts.isEmpty());
+    }
+
+    /**
+     * Tests that with the attachment journal the BNG-U state is kept only
+     * when the application bundle is stopped, and that the BNG-Us are
+     * cleaned up when the journal has not been stopped cleanly.
+     */
+    @Test
+    public void testWarmRestart() throws Exception {
+        addBngu(BNGU_1);
+        oltLinks.put(OLT_1_CP.deviceId(), BNGU_1);
+        ComponentContext context = TestComponentContext.of(ATTACHMENT_JOURNAL_ENABLED, true);
+        RecordingBngProgrammable bngu = bngus.get(BNGU_1);
+        activate(SINGLE_BNGU_CONFIG, context);
+        BngAttachment attachment = attachment(1, OLT_1_CP);
+        manager.setupAttachment("1", attachment);
+
+        bngu.calls.clear();
+        manager.deactivate(ComponentConstants.DEACTIVATION_REASON_BUNDLE_STOPPED);
+        assertTrue(bngu.calls.isEmpty());
+        activate(SINGLE_BNGU_CONFIG, context);
+        assertEquals(attachment, manager.getAttachment("1"));
+        awaitTrue(() -> bngu.calls.contains("setup"));
+        assertFalse(bngu.calls.contains("cleanUp"));
+        assertEquals(List.of(attachment), bngu.programmed());
+
+        // Not a restart, the journal is kept without being stopped cleanly
+        manager.deactivate(ComponentConstants.DEACTIVATION_REASON_DISABLED);
+        assertTrue(bngu.calls.contains("cleanUp"));
+        bngu.calls.clear();
+        activate(SINGLE_BNGU_CONFIG, context);
+        assertEquals(attachment, manager.getAttachment("1"));
+        awaitTrue(() -> bngu.calls.contains("setup"));
+        assertEquals("cleanUp", bngu.calls.get(0));
+        assertEquals(List.of(attachment), bngu.programmed());
+    }
+
+    private void activate(String config) throws Exception {
+        activate(config, null);
+    }
+
+    private void activate(String config, ComponentContext context) throws Exception {
+        bngConfig = config(config);
+        manager.activate(context);
+        awaitTrue(() -> bngConfig.getBnguDeviceIds().stream()
+                .filter(bngus::containsKey)
+                .filter(manager.deviceService::isAvailable)
+                .allMatch(deviceId -> bngus.get(deviceId).calls.contains("init")));
+    }
+
+    private void updateConfig(String config) throws Exception {
+        BngConfig prevConfig = bngConfig;
+        bngConfig = config(config);
+        cfgListener.event(new NetworkConfigEvent(NetworkConfigEvent.Type.CONFIG_UPDATED, APP_ID,
+                                                 bngConfig, prevConfig, BngConfig.class));
+    }
+
+    private static BngConfig config(String json) throws Exception {
+        JsonNode node = MAPPER.readTree(json);
+        BngConfig config = new BngConfig();
+        config.init(APP_ID, BngConfig.KEY, node, MAPPER, c -> { });
+        return config;
+    }
+
+    private void addBngu(DeviceId deviceId) {
+        bngus.put(deviceId, new RecordingBngProgrammable());
+        addDevice(deviceId);
+    }
+
+    private void addDevice(DeviceId deviceId) {
+        Device device = new DefaultDevice(PROVIDER_ID, deviceId, Device.Type.SWITCH, "", "", "", "",
+                                          new ChassisId()) {
+            @Override
+            public <B extends Behaviour> boolean is(Class<B> projectionClass) {
+                return projectionClass == BngProgrammable.class && bngus.containsKey(deviceId);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public <B extends Behaviour> B as(Class<B> projectionClass) {
+                return (B) bngus.get(deviceId);
+            }
+        };
+        devices.put(deviceId, device);
+    }
+
+    private static DeviceEvent portEvent(DeviceEvent.Type type, ConnectPoint connectPoint, boolean enabled) {
+        Device device = new DefaultDevice(PROVIDER_ID, connectPoint.deviceId(), Device.Type.OLT,
+                                          "", "", "", "", new ChassisId());
+        return new DeviceEvent(type, device, new DefaultPort(device, connectPoint.port(), enabled));
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            assertTrue("Condition not met in time", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static BngAttachment.BngBuilder attachmentBuilder(int sessionId) {
+        return PppoeBngAttachment.builder()
+                .withPppoeSessionId((short) sessionId)
+                .withSTag(VlanId.vlanId((short) 10))
+                .withCTag(VlanId.vlanId((short) 100))
+                .withMacAddress(MacAddress.valueOf("00:00:00:00:00:01"))
+                .withIpAddress(IpAddress.valueOf("10.0.0.1"))
+                .withOltConnectPoint(OLT_1_CP)
+                .withOnuSerial("ONU-1")
+                .lineActivated(true);
+    }
+
+    static BngAttachment attachment(int id, ConnectPoint oltConnectPoint) {
+        return PppoeBngAttachment.builder()
+                .withPppoeSessionId((short) id)
+                .withSTag(VlanId.vlanId((short) 10))
+                .withCTag(VlanId.vlanId((short) id))
+                .withMacAddress(MacAddress.valueOf((long) id))
+                .withIpAddress(IpAddress.valueOf(id))
+                .withOltConnectPoint(oltConnectPoint)
+                .withOnuSerial("ONU-" + id)
+                .lineActivated(true)
+                .build();
+    }
+
+    /**
+     * BNG user plane recording the operations and the programmed attachments.
+     */
+    static class RecordingBngProgrammable implements BngProgrammable {
+        final List<String> calls = Collections.synchronizedList(Lists.newArrayList());
+        // Programmed attachments, by MAC address
+        private final Map<MacAddress, Attachment> attachments = Maps.newConcurrentMap();
+
+        List<Attachment> programmed() {
+            return List.copyOf(attachments.values());
+        }
+
+        int count(String call) {
+            synchronized (calls) {
+                return (int) calls.stream().filter(call::equals).count();
+            }
+        }
+
+        @Override
+        public boolean init(ApplicationId appId) {
+            calls.add("init");
+            return true;
+        }
+
+        @Override
+        public void cleanUp(ApplicationId appId) {
+            calls.add("cleanUp");
+            attachments.clear();
+        }
+
+        @Override
+        public void setupAttachment(Attachment attachmentInfo) {
+            calls.add("setup");
+            attachments.put(attachmentInfo.macAddress(), attachmentInfo);
+        }
+
+        @Override
+        public void removeAttachment(Attachment attachmentInfo) {
+            calls.add("remove");
+            attachments.remove(attachmentInfo.macAddress());
+        }
+
+        @Override
+        public Map<BngCounterType, PiCounterCellData> readCounters(Attachment attachmentInfo) {
+            return Map.of();
+        }
+
+        @Override
+        public PiCounterCellData readCounter(Attachment attachmentInfo, BngCounterType counter) {
+            return null;
+        }
+
+        @Override
+        public PiCounterCellData readControlTrafficCounter() {
+            return null;
+        }
+
+        @Override
+        public void resetCounter(Attachment attachmentInfo, BngCounterType counter) {
+        }
+
+        @Override
+        public void resetCounters(Attachment attachmentInfo) {
+            calls.add("reset");
+        }
+
+        @Override
+        public void resetControlTrafficCounter() {
+        }
+
+        @Override
+        public DriverHandler handler() {
+            return null;
+        }
+
+        @Override
+        public void setHandler(DriverHandler handler) {
+        }
+
+        @Override
+        public DriverData data() {
+            return null;
+        }
+
+        @Override
+        public void setData(DriverData data) {
+        }
+    }
+
+    /**
+     * Host provider service recording the hosts detected.
+     */
+    static class RecordingHostProviderService implements HostProviderService {
+        final Map<HostId, HostDescription> hosts = Maps.newConcurrentMap();
+
+        @Override
+        public void hostDetected(HostId hostId, HostDescription hostDescription, boolean replaceIps) {
+            hosts.put(hostId, hostDescription);
+        }
+
+        @Override
+        public void hostVanished(HostId hostId) {
+            hosts.remove(hostId);
+        }
+
+        @Override
+        public void removeIpFromHost(HostId hostId, IpAddress ipAddress) {
+        }
+
+        @Override
+        public void removeLocationFromHost(HostId hostId, org.onosproject.net.HostLocation location) {
+        }
+
+        @Override
+        public HostProvider provider() {
+            return null;
+        }
+    }
+
+    /**
+     * PPPoE handler recording the sessions terminated and whether a PADT has
+     * been requested.
+     */
+    private static class RecordingPppoeHandler extends PppoeBngControlHandlerAdapter {
+        final Map<BngAttachment, Boolean> terminated = Maps.newConcurrentMap();
+
+        @Override
+        public void terminateSession(BngAttachment attachment, boolean sendPadt) {
+            terminated.put(attachment, sendPadt);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.impl;
+
+import com.google.common.collect.ImmutableMap;
+import org.onosproject.net.DeviceId;
+import org.opencord.bng.BngLatencyStats;
+import org.opencord.bng.BngSessionLatencyService;
+
+import java.util.Map;
+
+/**
+ * Test adapter for the BNG session latency service.
+ */
+public class BngSessionLatencyServiceAdapter implements BngSessionLatencyService {
+
+    @Override
+    public void record(Phase phase, DeviceId oltDeviceId, long nanos) {
+    }
+
+    @Override
+    public void ipcpAcknowledged(String attachmentKey, DeviceId oltDeviceId) {
+    }
+
+    @Override
+    public void attachmentProgrammed(String attachmentKey) {
+    }
+
+    @Override
+    public Map<Phase, BngLatencyStats> getLatencies() {
+        return ImmutableMap.of();
+    }
+
+    @Override
+    public Map<DeviceId, Map<Phase, BngLatencyStats>> getLatenciesPerOlt() {
+        return ImmutableMap.of();
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.impl;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.onosproject.net.behaviour.BngProgrammable.BngCounterType;
+import org.onosproject.net.pi.runtime.PiCounterCellData;
+import org.opencord.bng.BngStatsSample;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BngStatsJournalTest {
+
+    private static final String KEY_1 = "ONU1/10/20/of:1/1/00:00:00:00:00:01";
+    private static final String KEY_2 = "ONU2/11/20/of:1/1/00:00:00:00:00:02";
+    // 2020-01-01T00:00:00Z
+    private static final long DAY_START = 1577836800000L;
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+    private BngStatsJournal journal;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = folder.getRoot().toPath();
+        journal = new BngStatsJournal(directory, BngStatsJournal.BLOCK_RECORDS, 2);
+    }
+
+    @After
+    public void tearDown() {
+        journal.stop();
+    }
+
+    @Test
+    public void testQueryByKeyAndTime() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            journal.write(DAY_START + i * 1000, ImmutableMap.of(KEY_1, stats(i), KEY_2, stats(100 + i)));
+        }
+        List<BngStatsSample> samples = journal.query(KEY_1, DAY_START + 2000, DAY_START + 5000);
+        assertEquals(4, samples.size());
+        assertEquals(DAY_START + 2000, samples.get(0).timestamp());
+        assertEquals(2, samples.get(0).stats().get(BngCounterType.UPSTREAM_TX).packets());
+        assertEquals(20, samples.get(0).stats().get(BngCounterType.UPSTREAM_TX).bytes());
+        assertFalse(samples.get(0).stats().containsKey(BngCounterType.DOWNSTREAM_TX));
+        assertEquals(DAY_START + 5000, samples.get(3).timestamp());
+        assertTrue(journal.query(KEY_1, DAY_START + 5000, DAY_START + 2000).isEmpty());
+    }
+
+    @Test
+    public void testRingOverwrite() throws Exception {
+        int samples = BngStatsJournal.BLOCK_RECORDS + 10;
+        for (int i = 0; i < samples; i++) {
+            journal.write(DAY_START + i, ImmutableMap.of(KEY_1, stats(i)));
+        }
+        List<BngStatsSample> history = journal.query(KEY_1, DAY_START, DAY_START + samples);
+        assertEquals(BngStatsJournal.BLOCK_RECORDS, history.size());
+        assertEquals(DAY_START + 10, history.get(0).timestamp());
+        assertEquals(DAY_START + samples - 1, history.get(history.size() - 1).timestamp());
+    }
+
+    @Test
+    public void testQueryPartiallyOverwrittenBlock() throws Exception {
+        journal.stop();
+        journal = new BngStatsJournal(directory, 2 * BngStatsJournal.BLOCK_RECORDS, 2);
+        int samples = 2 * BngStatsJournal.BLOCK_RECORDS + 10;
+        for (int i = 0; i < samples; i++) {
+            journal.write(DAY_START + i, ImmutableMap.of(KEY_1, stats(i)));
+        }
+        // The first block holds the newest 10 samples and old samples 10 to 1023
+        List<BngStatsSample> history = journal.query(KEY_1, DAY_START + 20, DAY_START + 30);
+        assertEquals(11, history.size());
+        assertEquals(DAY_START + 20, history.get(0).timestamp());
+        assertEquals(10, journal.query(KEY_1, DAY_START + samples - 10, DAY_START + samples).size());
+    }
+
+    @Test
+    public void testRolloverAndRetention() throws Exception {
+        journal.write(DAY_START, ImmutableMap.of(KEY_1, stats(1)));
+        journal.write(DAY_START + DAY, ImmutableMap.of(KEY_1, stats(2)));
+        assertEquals(2, journal.query(KEY_1, DAY_START, DAY_START + DAY).size());
+        journal.write(DAY_START + 2 * DAY, ImmutableMap.of(KEY_1, stats(3)));
+        try (var files = Files.list(directory)) {
+            assertEquals(2, files.count());
+        }
+        List<BngStatsSample> samples = journal.query(KEY_1, DAY_START, DAY_START + 2 * DAY);
+        assertEquals(2, samples.size());
+        assertEquals(DAY_START + DAY, samples.get(0).timestamp());
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        journal.write(DAY_START, ImmutableMap.of(KEY_1, stats(1)));
+        journal.stop();
+        journal = new BngStatsJournal(directory, BngStatsJournal.BLOCK_RECORDS, 2);
+        journal.write(DAY_START + 1000, ImmutableMap.of(KEY_1, stats(2)));
+        assertEquals(2, journal.query(KEY_1, DAY_START, DAY_START + 1000).size());
+    }
+
+    private static Map<BngCounterType, PiCounterCellData> stats(long value) {
+        return ImmutableMap.of(BngCounterType.UPSTREAM_TX, new PiCounterCellData(value, value * 10),
+                               BngCounterType.DOWNSTREAM_RX, new PiCounterCellData(value, value * 10));
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.impl;
+
+import org.junit.Test;
+import org.opencord.bng.BngLatencyStats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBuckets() {
+        for (long value : new long[]{0, 1, 7, 8, 15, 16, 1000, 123456789, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(value <= LatencyHistogram.bucketUpperBound(index));
+            if (index > 0) {
+                assertTrue(value > LatencyHistogram.bucketUpperBound(index - 1));
+            }
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000);
+        }
+        histogram.record(-1);
+        BngLatencyStats stats = histogram.stats();
+        assertEquals(1000, stats.count());
+        assertEquals(1_000_000, stats.maxNanos());
+        assertWithin(500_000, stats.p50Nanos());
+        assertWithin(900_000, stats.p90Nanos());
+        assertWithin(990_000, stats.p99Nanos());
+    }
+
+    @Test
+    public void testEmpty() {
+        BngLatencyStats stats = new LatencyHistogram().stats();
+        assertEquals(0, stats.count());
+        assertEquals(0, stats.p99Nanos());
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("expected ~" + expected + " but was " + actual,
+                   actual >= expected && actual <= expected * 1.125);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OpenMetricsWriterTest {
+
+    private static final String EXPECTED =
+            "# TYPE bng_attachments gauge\n" +
+            "# HELP bng_attachments Number of registered attachments\n" +
+            "bng_attachments 2\n" +
+            "# TYPE bng_pppoe_relay_packets counter\n" +
+            "# HELP bng_pppoe_relay_packets PPPoE packets relayed\n" +
+            "bng_pppoe_relay_packets_total{code=\"padi\"} 10\n" +
+            "bng_pppoe_relay_packets_total{code=\"pa\\\\d\\\"o\\n\",olt=\"of:1/2\"} 7\n" +
+            "# TYPE bng_cache_hit_ratio gauge\n" +
+            "# HELP bng_cache_hit_ratio Cache hit ratio\n" +
+            "bng_cache_hit_ratio{cache=\"olt\"} 0.5\n" +
+            "bng_cache_hit_ratio{cache=\"empty\"} NaN\n" +
+            "# EOF\n";
+
+    /**
+     * Local stand-in for a scraper, records how many times it received data.
+     */
+    private static class ScraperWriter extends StringWriter {
+        int writes;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            writes++;
+            super.write(cbuf, off, len);
+        }
+    }
+
+    private ScraperWriter scraper;
+
+    @Before
+    public void setUp() {
+        scraper = new ScraperWriter();
+    }
+
+    private void render(OpenMetricsWriter metrics) throws Exception {
+        metrics.start(scraper)
+                .family("bng_attachments", OpenMetricsWriter.GAUGE, "Number of registered attachments")
+                .gauge("bng_attachments").value(2)
+                .family("bng_pppoe_relay_packets", OpenMetricsWriter.COUNTER, "PPPoE packets relayed")
+                .counter("bng_pppoe_relay_packets").label("code", "padi").value(10L)
+                .counter("bng_pppoe_relay_packets").label("code", "pa\\d\"o\n")
+                .label("olt", "of:1/2").value(7L)
+                .family("bng_cache_hit_ratio", OpenMetricsWriter.GAUGE, "Cache hit ratio")
+                .gauge("bng_cache_hit_ratio").label("cache", "olt").value(0.5)
+                .gauge("bng_cache_hit_ratio").label("cache", "empty").value(Double.NaN)
+                .finish();
+    }
+
+    /**
+     * Tests the rendered exposition format.
+     */
+    @Test
+    public void testRender() throws Exception {
+        render(new OpenMetricsWriter());
+        assertEquals(EXPECTED, scraper.toString());
+        assertEquals(1, scraper.writes);
+    }
+
+    /**
+     * Tests that a small threshold produces the same output in many chunks.
+     */
+    @Test
+    public void testIncrementalFlush() throws Exception {
+        render(new OpenMetricsWriter(16));
+        assertEquals(EXPECTED, scraper.toString());
+        assertTrue(scraper.writes > 1);
+    }
+
+    /**
+     * Tests that the writer can be reused for consecutive scrapes.
+     */
+    @Test
+    public void testReuse() throws Exception {
+        OpenMetricsWriter metrics = new OpenMetricsWriter(32);
+        render(metrics);
+        scraper = new ScraperWriter();
+        render(metrics);
+        assertEquals(EXPECTED, scraper.toString());
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.impl;
+
+import org.junit.Test;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.opencord.bng.PppoePacketTrace;
+import org.opencord.bng.packets.PppProtocolType;
+import org.opencord.bng.packets.Pppoe;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PacketTraceBufferTest {
+
+    private static final MacAddress SRC_MAC = MacAddress.valueOf("00:00:00:00:00:01");
+    private static final MacAddress DST_MAC = MacAddress.valueOf("00:00:00:00:00:02");
+
+    @Test
+    public void testRecordAndWrap() {
+        PacketTraceBuffer buffer = new PacketTraceBuffer(4, 1);
+        assertTrue(buffer.dump().isEmpty());
+        for (short i = 0; i < 6; i++) {
+            buffer.record(i % 2 == 0, SRC_MAC, DST_MAC, (short) 10, (short) 20,
+                          Pppoe.PppoeType.SESSION, i, PppProtocolType.LCP.code());
+        }
+        List<PppoePacketTrace> traces = buffer.dump();
+        assertEquals(4, traces.size());
+        PppoePacketTrace oldest = traces.get(0);
+        assertEquals(2, oldest.sessionId());
+        assertTrue(oldest.upstream());
+        assertEquals(SRC_MAC, oldest.srcMac());
+        assertEquals(DST_MAC, oldest.dstMac());
+        assertEquals(VlanId.vlanId((short) 10), oldest.sTag());
+        assertEquals(VlanId.vlanId((short) 20), oldest.cTag());
+        assertEquals(Pppoe.PppoeType.SESSION.type(), oldest.code());
+        assertEquals(PppProtocolType.LCP.type(), oldest.pppProtocol());
+        assertEquals(5, traces.get(3).sessionId());
+        assertFalse(traces.get(3).upstream());
+    }
+
+    @Test
+    public void testSampling() {
+        PacketTraceBuffer buffer = new PacketTraceBuffer(16, 4);
+        for (short i = 0; i < 10; i++) {
+            buffer.record(true, SRC_MAC, DST_MAC, (short) 10, (short) 20,
+                          Pppoe.PppoeType.PADI, i, (short) 0);
+        }
+        List<PppoePacketTrace> traces = buffer.dump();
+        assertEquals(3, traces.size());
+        assertEquals(4, traces.get(1).sessionId());
+    }
+}
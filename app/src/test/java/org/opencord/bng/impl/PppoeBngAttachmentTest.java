@@ -0,0 +1,68 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.impl;
+
+import org.junit.Test;
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.onosproject.net.ConnectPoint;
+import org.opencord.bng.BngAttachment;
+import org.opencord.bng.PppoeBngAttachment;
+
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PppoeBngAttachmentTest {
+
+    private static final ConnectPoint OLT_CP = ConnectPoint.deviceConnectPoint("of:0000000000000001/1");
+
+    @Test
+    public void testEquality() {
+        BngAttachment attachment = attachment(IpAddress.valueOf("10.0.0.1"), true);
+        BngAttachment same = attachment(IpAddress.valueOf("10.0.0.1"), true);
+        assertEquals(attachment, same);
+        assertEquals(attachment.hashCode(), same.hashCode());
+        assertTrue(attachment.diff(same).isEmpty());
+        assertNotEquals(attachment, attachment(IpAddress.valueOf("10.0.0.2"), true));
+    }
+
+    @Test
+    public void testDiff() {
+        BngAttachment attachment = attachment(IpAddress.valueOf("10.0.0.1"), true);
+        assertEquals(Set.of(BngAttachment.Field.LINE_ACTIVE),
+                     attachment.diff(attachment(IpAddress.valueOf("10.0.0.1"), false)));
+        assertEquals(Set.of(BngAttachment.Field.IP_ADDRESS, BngAttachment.Field.LINE_ACTIVE),
+                     attachment.diff(attachment(IpAddress.valueOf("10.0.0.2"), false)));
+    }
+
+    private static BngAttachment attachment(IpAddress ipAddress, boolean lineActive) {
+        return PppoeBngAttachment.builder()
+                .withPppoeSessionId((short) 1)
+                .withSTag(VlanId.vlanId((short) 10))
+                .withCTag(VlanId.vlanId((short) 100))
+                .withMacAddress(MacAddress.valueOf("00:00:00:00:00:01"))
+                .withIpAddress(ipAddress)
+                .withOltConnectPoint(OLT_CP)
+                .withOnuSerial("ONU-1")
+                .lineActivated(lineActive)
+                .build();
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.bng.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.opencord.bng.BngAttachment;
+import org.opencord.bng.PppoeBngControlHandler;
+import org.opencord.bng.PppoeEvent;
+import org.opencord.bng.PppoeEventListener;
+import org.opencord.bng.PppoeEventListenerStats;
+import org.opencord.bng.PppoePacketTrace;
+import org.opencord.bng.PppoeRelayStageStats;
+import org.opencord.bng.PppoeServerStats;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Test adapter for the PPPoE BNG control handler.
+ */
+public class PppoeBngControlHandlerAdapter implements PppoeBngControlHandler {
+
+    @Override
+    public Map<String, Long> getPacketCounters() {
+        return ImmutableMap.of();
+    }
+
+    @Override
+    public Map<PppoeEvent.EventType, Long> getEventCounters() {
+        return ImmutableMap.of();
+    }
+
+    @Override
+    public Map<String, Double> getCacheHitRates() {
+        return ImmutableMap.of();
+    }
+
+    @Override
+    public Map<String, Long> getQueueDepths() {
+        return ImmutableMap.of();
+    }
+
+    @Override
+    public Map<String, Long> getOffloadCounters() {
+        return ImmutableMap.of();
+    }
+
+    @Override
+    public void terminateSession(BngAttachment attachment, boolean sendPadt) {
+    }
+
+    @Override
+    public long getConfigVersion() {
+        return 0;
+    }
+
+    @Override
+    public long getLastConfigReloadNanos() {
+        return 0;
+    }
+
+    @Override
+    public Map<String, PppoeServerStats> getPppoeServerStats() {
+        return ImmutableMap.of();
+    }
+
+    @Override
+    public Map<String, PppoeEventListenerStats> getEventListenerStats() {
+        return ImmutableMap.of();
+    }
+
+    @Override
+    public Map<String, PppoeRelayStageStats> getStageStats() {
+        return ImmutableMap.of();
+    }
+
+    @Override
+    public List<PppoePacketTrace> getPacketTrace() {
+        return ImmutableList.of();
+    }
+
+    @Override
+    public void addListener(PppoeEventListener listener) {
+    }
+
+    @Override
+    public void removeListener(PppoeEventListener listener) {
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.impl;
+
+import org.junit.Test;
+import org.opencord.bng.packets.Pppoe;
+import org.opencord.bng.packets.PppoeTlvTag;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class PppoeDiscoveryResponderTest {
+
+    private static final byte[] HOST_UNIQ = {0x01, 0x02, 0x03, 0x04};
+    private static final byte[] AC_COOKIE = {0x0a, 0x0b, 0x0c, 0x0d, 0x0e, 0x0f};
+
+    private final PppoeDiscoveryResponder responder = new PppoeDiscoveryResponder("bng", "internet");
+
+    @Test
+    public void testPado() throws Exception {
+        Pppoe padi = padi("", true);
+        Pppoe pado = responder.pado(padi, new PppoeDiscoveryResponder.ServerTags(new Pppoe()));
+        assertNotNull(pado);
+
+        byte[] bytes = pado.serialize();
+        Pppoe parsed = Pppoe.deserializer().deserialize(bytes, 0, bytes.length);
+        assertEquals(Pppoe.PppoeType.PADO, parsed.getPacketType());
+        assertEquals(0, parsed.getSessionId());
+        // AC-Name (4 + 3), Service-Name (4 + 8) and Host-Uniq (4 + 4)
+        assertEquals(27, parsed.getPayloadLength());
+        assertArrayEquals("bng".getBytes(StandardCharsets.UTF_8), parsed.getAcName().getValue());
+        assertArrayEquals("internet".getBytes(StandardCharsets.UTF_8), parsed.getServiceName().getValue());
+        assertArrayEquals(HOST_UNIQ, parsed.getTag(PppoeTlvTag.PPPOED_TAGTYPE_HOSTUNIQ).getValue());
+    }
+
+    @Test
+    public void testServerTags() throws Exception {
+        Pppoe serverPado = new Pppoe()
+                .setPacketType(Pppoe.PppoeType.PADO)
+                .setAcName(tag(PppoeTlvTag.PPPOED_TAGTYPE_ACNAME, "server".getBytes(StandardCharsets.UTF_8)))
+                .addTag(tag(PppoeTlvTag.PPPOED_TAGTYPE_ACCOOKIE, AC_COOKIE));
+        Pppoe pado = responder.pado(padi("", true), new PppoeDiscoveryResponder.ServerTags(serverPado));
+        assertNotNull(pado);
+
+        byte[] bytes = pado.serialize();
+        Pppoe parsed = Pppoe.deserializer().deserialize(bytes, 0, bytes.length);
+        // AC-Name (4 + 6), Service-Name (4 + 8), AC-Cookie (4 + 6) and Host-Uniq (4 + 4)
+        assertEquals(40, parsed.getPayloadLength());
+        assertArrayEquals("server".getBytes(StandardCharsets.UTF_8), parsed.getAcName().getValue());
+        assertArrayEquals(AC_COOKIE, parsed.getTag(PppoeTlvTag.PPPOED_TAGTYPE_ACCOOKIE).getValue());
+        assertArrayEquals(HOST_UNIQ, parsed.getTag(PppoeTlvTag.PPPOED_TAGTYPE_HOSTUNIQ).getValue());
+    }
+
+    @Test
+    public void testServiceName() {
+        PppoeDiscoveryResponder.ServerTags serverTags = new PppoeDiscoveryResponder.ServerTags(new Pppoe());
+        assertNotNull(responder.pado(padi("internet", false), serverTags));
+        assertNull(responder.pado(padi("voice", false), serverTags));
+    }
+
+    private static PppoeTlvTag tag(short type, byte[] value) {
+        return new PppoeTlvTag()
+                .setTagType(type)
+                .setLength((short) value.length)
+                .setValue(value);
+    }
+
+    private static Pppoe padi(String serviceName, boolean hostUniq) {
+        byte[] service = serviceName.getBytes(StandardCharsets.UTF_8);
+        Pppoe padi = new Pppoe()
+                .setVersion((byte) 1)
+                .setTypeId((byte) 1)
+                .setPacketType(Pppoe.PppoeType.PADI)
+                .setServiceName(new PppoeTlvTag()
+                                        .setTagType(PppoeTlvTag.PPPOED_TAGTYPE_SERVICENAME)
+                                        .setLength((short) service.length)
+                                        .setValue(service));
+        if (hostUniq) {
+            padi.addTag(new PppoeTlvTag()
+                                .setTagType(PppoeTlvTag.PPPOED_TAGTYPE_HOSTUNIQ)
+                                .setLength((short) HOST_UNIQ.length)
+                                .setValue(HOST_UNIQ));
+        }
+        return padi;
+    }
+}
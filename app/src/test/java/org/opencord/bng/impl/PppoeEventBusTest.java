@@ -0,0 +1,171 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.impl;
+
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Test;
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.onosproject.net.ConnectPoint;
+import org.opencord.bng.PppoeEvent;
+import org.opencord.bng.PppoeEventListener;
+import org.opencord.bng.PppoeEventListenerStats;
+import org.opencord.bng.PppoeEventSubject;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PppoeEventBusTest {
+
+    private static final ConnectPoint OLT_CP = ConnectPoint.deviceConnectPoint("of:1/1");
+
+    private PppoeEventBus eventBus;
+
+    @After
+    public void tearDown() {
+        eventBus.stop();
+    }
+
+    @Test
+    public void testOrderedDelivery() throws Exception {
+        eventBus = new PppoeEventBus(1024, 8);
+        eventBus.start();
+        int events = 100;
+        RecordingListener listener = new RecordingListener(events);
+        eventBus.addListener(listener);
+        for (short i = 0; i < events; i++) {
+            eventBus.post(event(PppoeEvent.EventType.SESSION_INIT, i));
+        }
+        assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+        for (short i = 0; i < events; i++) {
+            assertEquals(i, listener.events.get(i).subject().getSessionId());
+        }
+        assertTrue(listener.maxBatch <= 8);
+        assertEquals(events, eventBus.stats().get(RecordingListener.class.getName()).delivered());
+    }
+
+    @Test
+    public void testSlowListenerDropsEvents() throws Exception {
+        eventBus = new PppoeEventBus(2, 1);
+        eventBus.start();
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PppoeEventListener slowListener = new PppoeEventListener() {
+            @Override
+            public void event(PppoeEvent event) {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        RecordingListener fastListener = new RecordingListener(4);
+        eventBus.addListener(slowListener);
+        eventBus.addListener(fastListener);
+
+        eventBus.post(event(PppoeEvent.EventType.SESSION_INIT, (short) 0));
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        // The slow listener does not prevent the delivery to the others
+        for (short i = 1; i < 4; i++) {
+            eventBus.post(event(PppoeEvent.EventType.SESSION_INIT, i));
+            assertTrue(fastListener.await(i + 1));
+        }
+        PppoeEventListenerStats stats = eventBus.stats().get(slowListener.getClass().getName());
+        assertEquals(1, stats.dropped());
+        assertEquals(2, stats.queued());
+        release.countDown();
+    }
+
+    @Test
+    public void testIrrelevantEventsFiltered() throws Exception {
+        eventBus = new PppoeEventBus();
+        eventBus.start();
+        RecordingListener listener = new RecordingListener(1) {
+            @Override
+            public boolean isRelevant(PppoeEvent event) {
+                return event.type() == PppoeEvent.EventType.IPCP_CONF_ACK;
+            }
+        };
+        eventBus.addListener(listener);
+        eventBus.post(event(PppoeEvent.EventType.SESSION_INIT, (short) 1));
+        eventBus.post(event(PppoeEvent.EventType.IPCP_CONF_ACK, (short) 2));
+        assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, listener.events.size());
+        assertEquals(PppoeEvent.EventType.IPCP_CONF_ACK, listener.events.get(0).type());
+        // Only the events actually delivered to the listener are counted
+        assertEquals(1, eventBus.stats().get(listener.getClass().getName()).delivered());
+    }
+
+    @Test
+    public void testRestart() throws Exception {
+        eventBus = new PppoeEventBus();
+        eventBus.start();
+        eventBus.stop();
+        eventBus.start();
+        RecordingListener listener = new RecordingListener(1);
+        eventBus.addListener(listener);
+        eventBus.post(event(PppoeEvent.EventType.SESSION_INIT, (short) 1));
+        assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+    }
+
+    private static PppoeEvent event(PppoeEvent.EventType type, short sessionId) {
+        return new PppoeEvent(type, new PppoeEventSubject(OLT_CP, IpAddress.valueOf(0),
+                                                          MacAddress.valueOf("00:00:00:00:00:01"),
+                                                          "ONU1", sessionId,
+                                                          VlanId.vlanId((short) 10),
+                                                          VlanId.vlanId((short) 20)));
+    }
+
+    private static class RecordingListener implements PppoeEventListener {
+        final List<PppoeEvent> events = Collections.synchronizedList(Lists.newArrayList());
+        final CountDownLatch done;
+        volatile int maxBatch;
+
+        RecordingListener(int expectedEvents) {
+            done = new CountDownLatch(expectedEvents);
+        }
+
+        boolean await(int expectedEvents) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+            while (events.size() < expectedEvents && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            return events.size() >= expectedEvents;
+        }
+
+        @Override
+        public void eventBatch(List<PppoeEvent> batch) {
+            maxBatch = Math.max(maxBatch, batch.size());
+            PppoeEventListener.super.eventBatch(batch);
+        }
+
+        @Override
+        public void event(PppoeEvent event) {
+            events.add(event);
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,406 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.packet.ChassisId;
+import org.onlab.packet.Data;
+import org.onlab.packet.Ethernet;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.onosproject.cfg.ComponentConfigAdapter;
+import org.onosproject.core.ApplicationId;
+import org.onosproject.core.CoreServiceAdapter;
+import org.onosproject.core.DefaultApplicationId;
+import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.DefaultAnnotations;
+import org.onosproject.net.DefaultDevice;
+import org.onosproject.net.DefaultLink;
+import org.onosproject.net.DefaultPort;
+import org.onosproject.net.Device;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.Link;
+import org.onosproject.net.Port;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.config.Config;
+import org.onosproject.net.config.NetworkConfigRegistryAdapter;
+import org.onosproject.net.device.DeviceServiceAdapter;
+import org.onosproject.net.driver.Driver;
+import org.onosproject.net.driver.DriverAdapter;
+import org.onosproject.net.driver.DriverServiceAdapter;
+import org.onosproject.net.flow.instructions.Instruction;
+import org.onosproject.net.flow.instructions.Instructions;
+import org.onosproject.net.intf.Interface;
+import org.onosproject.net.intf.InterfaceServiceAdapter;
+import org.onosproject.net.link.LinkServiceAdapter;
+import org.onosproject.net.packet.DefaultInboundPacket;
+import org.onosproject.net.packet.OutboundPacket;
+import org.onosproject.net.packet.PacketContextAdapter;
+import org.onosproject.net.packet.PacketProcessor;
+import org.onosproject.net.packet.PacketServiceAdapter;
+import org.onosproject.net.provider.ProviderId;
+import org.opencord.bng.config.PppoeRelayConfig;
+import org.opencord.bng.packets.Lcp;
+import org.opencord.bng.packets.Pppoe;
+import org.opencord.bng.packets.PppProtocolType;
+import org.opencord.sadis.BandwidthProfileInformation;
+import org.opencord.sadis.BaseInformationService;
+import org.opencord.sadis.SadisService;
+import org.opencord.sadis.SubscriberAndDeviceInformation;
+import org.opencord.sadis.UniTagInformation;
+import org.osgi.service.component.ComponentContext;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.opencord.bng.impl.OsgiPropertyConstants.LCP_ECHO_OFFLOAD;
+import static org.opencord.bng.impl.OsgiPropertyConstants.PADI_FAN_OUT;
+
+public class PppoeHandlerRelayTest {
+
+    private static final ApplicationId APP_ID = new DefaultApplicationId(1, BngManager.BNG_APP);
+    private static final ProviderId PROVIDER_ID = new ProviderId("of", "test");
+    private static final ConnectPoint OLT_CP_1 = ConnectPoint.deviceConnectPoint("of:asg/1");
+    private static final ConnectPoint OLT_CP_2 = ConnectPoint.deviceConnectPoint("of:asg/2");
+    private static final ConnectPoint SERVER_CP_1 = ConnectPoint.deviceConnectPoint("of:asg/10");
+    private static final ConnectPoint SERVER_CP_2 = ConnectPoint.deviceConnectPoint("of:asg/11");
+    private static final DeviceId OLT_DEVICE = DeviceId.deviceId("of:olt");
+    private static final MacAddress BNG_MAC = MacAddress.valueOf("00:00:00:00:aa:aa");
+    private static final MacAddress SERVER_MAC_1 = MacAddress.valueOf("00:00:00:00:bb:01");
+    private static final MacAddress SERVER_MAC_2 = MacAddress.valueOf("00:00:00:00:bb:02");
+    private static final VlanId S_TAG = VlanId.vlanId((short) 10);
+    private static final short SESSION_ID = 0x10;
+    private static final byte CODE_PADI = 0x09;
+    private static final byte CODE_PADO = 0x07;
+    private static final byte CODE_PADS = 0x65;
+    private static final byte CODE_SESSION = 0x00;
+    // Empty Service-Name TAG
+    private static final byte[] ANY_SERVICE = {0x01, 0x01, 0x00, 0x00};
+    private static final long SERVER_MAGIC_NUMBER = 0x12345678L;
+    private static final long TIMEOUT_MS = 5000;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private PppoeHandlerRelay relay;
+    private PacketProcessor processor;
+    private PppoeRelayConfig relayConfig;
+    private final List<OutboundPacket> emitted = Collections.synchronizedList(Lists.newArrayList());
+    // UNI ports of the OLT, one for each subscriber C-Tag
+    private final Map<PortNumber, Port> oltPorts = Maps.newConcurrentMap();
+    private final Map<String, SubscriberAndDeviceInformation> subscribers = Maps.newConcurrentMap();
+    private final Device oltDevice = new DefaultDevice(PROVIDER_ID, OLT_DEVICE, Device.Type.OLT,
+                                                       "", "", "", "", new ChassisId());
+
+    @Before
+    public void setUp() {
+        relay = new PppoeHandlerRelay();
+        relay.coreService = new CoreServiceAdapter() {
+            @Override
+            public ApplicationId getAppId(String name) {
+                return APP_ID;
+            }
+        };
+        relay.componentConfigService = new ComponentConfigAdapter();
+        relay.cfgService = new NetworkConfigRegistryAdapter() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <S, C extends Config<S>> C getConfig(S subject, Class<C> configClass) {
+                return (C) relayConfig;
+            }
+        };
+        relay.interfaceService = new InterfaceServiceAdapter() {
+            @Override
+            public Set<Interface> getInterfacesByPort(ConnectPoint port) {
+                return ImmutableSet.of(new Interface("bng", port, ImmutableList.of(), BNG_MAC, VlanId.NONE));
+            }
+        };
+        relay.packetService = new PacketServiceAdapter() {
+            @Override
+            public void addProcessor(PacketProcessor packetProcessor, int priority) {
+                processor = packetProcessor;
+            }
+
+            @Override
+            public void emit(OutboundPacket packet) {
+                emitted.add(packet);
+            }
+        };
+        relay.sadisService = new TestSadisService();
+        relay.deviceService = new DeviceServiceAdapter() {
+            @Override
+            public List<Port> getPorts(DeviceId deviceId) {
+                return OLT_DEVICE.equals(deviceId) ? ImmutableList.copyOf(oltPorts.values()) : ImmutableList.of();
+            }
+
+            @Override
+            public Port getPort(DeviceId deviceId, PortNumber portNumber) {
+                return oltPorts.get(portNumber);
+            }
+        };
+        // All the relay ports are linked to the same OLT
+        relay.linkService = new LinkServiceAdapter() {
+            @Override
+            public Set<Link> getIngressLinks(ConnectPoint connectPoint) {
+                return ImmutableSet.of(DefaultLink.builder()
+                                               .providerId(PROVIDER_ID)
+                                               .src(new ConnectPoint(OLT_DEVICE, PortNumber.portNumber(100)))
+                                               .dst(connectPoint)
+                                               .type(Link.Type.DIRECT)
+                                               .build());
+            }
+        };
+        relay.driverService = new DriverServiceAdapter() {
+            @Override
+            public Driver getDriver(DeviceId deviceId) {
+                return new DriverAdapter() {
+                    @Override
+                    public String name() {
+                        return "voltha";
+                    }
+                };
+            }
+        };
+        relay.latencyService = new BngSessionLatencyServiceAdapter();
+    }
+
+    @After
+    public void tearDown() {
+        relay.deactivate();
+    }
+
+    /**
+     * Tests that with the PADI fan-out the PADI is relayed once to each server
+     * of the pool, and that only the first PADO is forwarded to the
+     * attachment.
+     */
+    @Test
+    public void testPadiFanOut() throws Exception {
+        activate("{\"relayPorts\": [{\"oltConnectPoint\": \"of:asg/1\", " +
+                         "\"pppoeServerConnectPoints\": [\"of:asg/10\", \"of:asg/11\"]}]}",
+                 TestComponentContext.of(PADI_FAN_OUT, true));
+        MacAddress mac = subscriber(1);
+
+        process(OLT_CP_1, upstream(mac, MacAddress.BROADCAST, 1, pppoe(CODE_PADI, (short) 0, ANY_SERVICE)));
+        assertEquals(2, emitted.size());
+        assertEquals(Set.of(SERVER_CP_1, SERVER_CP_2), Set.of(output(0), output(1)));
+
+        process(SERVER_CP_2, downstream(SERVER_MAC_2, mac, pppoe(CODE_PADO, (short) 0, ANY_SERVICE)));
+        assertEquals(3, emitted.size());
+        assertEquals(OLT_CP_1, output(2));
+        assertEquals(mac, packet(2).getDestinationMAC());
+        // Later offers are suppressed
+        process(SERVER_CP_1, downstream(SERVER_MAC_1, mac, pppoe(CODE_PADO, (short) 0, ANY_SERVICE)));
+        assertEquals(3, emitted.size());
+        assertEquals(Long.valueOf(1), relay.getOffloadCounters().get("padoSuppressed"));
+    }
+
+    /**
+     * Tests that with the LCP echo offload the echo requests of an
+     * established session are answered toward the attachment, without
+     * relaying them to the server.
+     */
+    @Test
+    public void testLcpEchoOffload() throws Exception {
+        activate("{\"oltConnectPoint\": \"of:asg/1\", \"pppoeServerConnectPoint\": \"of:asg/10\"}",
+                 TestComponentContext.of(LCP_ECHO_OFFLOAD, true));
+        MacAddress mac = subscriber(1);
+
+        process(OLT_CP_1, upstream(mac, MacAddress.BROADCAST, 1, pppoe(CODE_PADI, (short) 0, ANY_SERVICE)));
+        process(SERVER_CP_1, downstream(SERVER_MAC_1, mac, pppoe(CODE_PADS, SESSION_ID, ANY_SERVICE)));
+        // The attachment acknowledges the magic number of the server
+        process(OLT_CP_1, upstream(mac, BNG_MAC, 1, ppp(PppProtocolType.LCP, new byte[]{
+                Lcp.CONF_ACK, 1, 0, 10, Lcp.OPTION_MAGIC_NUMBER, 6, 0x12, 0x34, 0x56, 0x78})));
+        process(SERVER_CP_1, downstream(SERVER_MAC_1, mac, ppp(PppProtocolType.IPCP, new byte[]{
+                0x02, 1, 0, 10, 0x03, 6, 10, 0, 0, 1})));
+        assertEquals(4, emitted.size());
+
+        process(OLT_CP_1, upstream(mac, BNG_MAC, 1, ppp(PppProtocolType.LCP, new byte[]{
+                Lcp.ECHO_REQ, 2, 0, 8, 0x0b, 0x0a, 0x0c, 0x0d})));
+        assertEquals(5, emitted.size());
+        assertEquals(OLT_CP_1, output(4));
+        Ethernet reply = packet(4);
+        assertEquals(mac, reply.getDestinationMAC());
+        assertEquals(BNG_MAC, reply.getSourceMAC());
+        byte[] replyPppoe = ((Data) reply.getPayload()).getData();
+        Lcp echoReply = (Lcp) Pppoe.deserializer().deserialize(replyPppoe, 0, replyPppoe.length).getPayload();
+        assertTrue(echoReply.isEchoReply());
+        assertEquals(SERVER_MAGIC_NUMBER, echoReply.getMagicNumber());
+        assertEquals(Long.valueOf(1), relay.getOffloadCounters().get("lcpEchoReplies"));
+    }
+
+    /**
+     * Tests that with several relay ports the packets of the server go out of
+     * the OLT connect point each attachment has been heard on.
+     */
+    @Test
+    public void testRelayPorts() throws Exception {
+        activate("{\"relayPorts\": [" +
+                         "{\"oltConnectPoint\": \"of:asg/1\", \"pppoeServerConnectPoint\": \"of:asg/10\"}, " +
+                         "{\"oltConnectPoint\": \"of:asg/2\", \"pppoeServerConnectPoint\": \"of:asg/10\"}]}",
+                 null);
+        MacAddress mac1 = subscriber(1);
+        MacAddress mac2 = subscriber(2);
+
+        process(OLT_CP_2, upstream(mac2, MacAddress.BROADCAST, 2, pppoe(CODE_PADI, (short) 0, ANY_SERVICE)));
+        process(OLT_CP_1, upstream(mac1, MacAddress.BROADCAST, 1, pppoe(CODE_PADI, (short) 0, ANY_SERVICE)));
+        assertEquals(SERVER_CP_1, output(0));
+        assertEquals(SERVER_CP_1, output(1));
+
+        process(SERVER_CP_1, downstream(SERVER_MAC_1, mac2, pppoe(CODE_PADO, (short) 0, ANY_SERVICE)));
+        process(SERVER_CP_1, downstream(SERVER_MAC_1, mac1, pppoe(CODE_PADO, (short) 0, ANY_SERVICE)));
+        assertEquals(4, emitted.size());
+        assertEquals(OLT_CP_2, output(2));
+        assertEquals(mac2, packet(2).getDestinationMAC());
+        assertEquals(VlanId.vlanId((short) 2), VlanId.vlanId(packet(2).getVlanID()));
+        assertEquals(OLT_CP_1, output(3));
+        assertEquals(mac1, packet(3).getDestinationMAC());
+    }
+
+    private void activate(String config, ComponentContext context) throws Exception {
+        relayConfig = new PppoeRelayConfig();
+        relayConfig.init(APP_ID, PppoeRelayConfig.KEY, MAPPER.readTree(config), MAPPER, c -> { });
+        relay.activate(context);
+    }
+
+    /**
+     * Registers in SADIS a subscriber behind its own OLT UNI port.
+     *
+     * @param id The subscriber ID, also used as C-Tag
+     * @return The MAC address of the subscriber
+     */
+    private MacAddress subscriber(int id) {
+        String portName = "BBSM" + id + "-1";
+        oltPorts.put(PortNumber.portNumber(id), new DefaultPort(
+                oltDevice, PortNumber.portNumber(id), true,
+                DefaultAnnotations.builder().set("portName", portName).build()));
+        SubscriberAndDeviceInformation info = new SubscriberAndDeviceInformation();
+        info.setUniTagList(List.of(new UniTagInformation.Builder()
+                                           .setPonSTag(S_TAG)
+                                           .setPonCTag(VlanId.vlanId((short) id))
+                                           .build()));
+        subscribers.put(portName, info);
+        return MacAddress.valueOf(id);
+    }
+
+    /**
+     * Processes a packet, waiting for the relay to complete its processing.
+     */
+    private void process(ConnectPoint receivedFrom, Ethernet eth) throws InterruptedException {
+        byte[] data = eth.serialize();
+        processor.process(new PacketContextAdapter(0, new DefaultInboundPacket(
+                receivedFrom, eth, ByteBuffer.wrap(data)), null, false));
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (relay.getQueueDepths().get("packetProcessing") > 0) {
+            assertTrue("Packet not processed in time", System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private ConnectPoint output(int index) {
+        OutboundPacket packet = emitted.get(index);
+        for (Instruction instruction : packet.treatment().allInstructions()) {
+            if (instruction instanceof Instructions.OutputInstruction) {
+                return new ConnectPoint(packet.sendThrough(), ((Instructions.OutputInstruction) instruction).port());
+            }
+        }
+        throw new AssertionError("No output port");
+    }
+
+    private Ethernet packet(int index) throws Exception {
+        byte[] data = emitted.get(index).data().array();
+        return Ethernet.deserializer().deserialize(data, 0, data.length);
+    }
+
+    private static Ethernet upstream(MacAddress src, MacAddress dst, int cTag, byte[] pppoe) {
+        Ethernet eth = downstream(src, dst, pppoe);
+        eth.setQinQTPID(Ethernet.TYPE_VLAN);
+        eth.setQinQVID(S_TAG.toShort());
+        eth.setVlanID((short) cTag);
+        return eth;
+    }
+
+    private static Ethernet downstream(MacAddress src, MacAddress dst, byte[] pppoe) {
+        Ethernet eth = new Ethernet();
+        eth.setSourceMACAddress(src);
+        eth.setDestinationMACAddress(dst);
+        eth.setEtherType(pppoe[1] == CODE_SESSION ? Pppoe.TYPE_PPPOES : Pppoe.TYPE_PPPOED);
+        eth.setPayload(new Data(pppoe));
+        return eth;
+    }
+
+    private static byte[] ppp(PppProtocolType protocol, byte[] ppp) {
+        return pppoe(CODE_SESSION, SESSION_ID, ByteBuffer.allocate(2 + ppp.length)
+                .putShort(protocol.code())
+                .put(ppp)
+                .array());
+    }
+
+    private static byte[] pppoe(byte code, short sessionId, byte[] payload) {
+        return ByteBuffer.allocate(6 + payload.length)
+                .put((byte) 0x11)
+                .put(code)
+                .putShort(sessionId)
+                .putShort((short) payload.length)
+                .put(payload)
+                .array();
+    }
+
+    private class TestSadisService implements SadisService {
+        @Override
+        public BaseInformationService<SubscriberAndDeviceInformation> getSubscriberInfoService() {
+            return new BaseInformationService<>() {
+                @Override
+                public void clearLocalData() {
+                }
+
+                @Override
+                public void invalidateAll() {
+                }
+
+                @Override
+                public void invalidateId(String id) {
+                }
+
+                @Override
+                public SubscriberAndDeviceInformation get(String id) {
+                    return subscribers.get(id);
+                }
+
+                @Override
+                public SubscriberAndDeviceInformation getfromCache(String id) {
+                    return subscribers.get(id);
+                }
+            };
+        }
+
+        @Override
+        public BaseInformationService<BandwidthProfileInformation> getBandwidthProfileService() {
+            return null;
+        }
+    }
+}
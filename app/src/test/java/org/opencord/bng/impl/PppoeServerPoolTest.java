@@ -0,0 +1,113 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.impl;
+
+import org.junit.Test;
+import org.onlab.packet.MacAddress;
+import org.onosproject.net.ConnectPoint;
+import org.opencord.bng.packets.Pppoe;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PppoeServerPoolTest {
+
+    private static final ConnectPoint SERVER_1 = ConnectPoint.deviceConnectPoint("of:0000000000000001/1");
+    private static final ConnectPoint SERVER_2 = ConnectPoint.deviceConnectPoint("of:0000000000000001/2");
+    private static final ConnectPoint SERVER_3 = ConnectPoint.deviceConnectPoint("of:0000000000000001/3");
+    private static final List<ConnectPoint> POOL = List.of(SERVER_1, SERVER_2, SERVER_3);
+    private static final MacAddress MAC = MacAddress.valueOf("00:00:00:00:00:01");
+    private static final MacAddress SERVER_MAC = MacAddress.valueOf("00:00:00:00:01:01");
+    private static final long RETRY_MS = 1000;
+
+    private final PppoeServerPool pool = new PppoeServerPool(2, RETRY_MS);
+
+    @Test
+    public void testStickySelection() {
+        ConnectPoint server = pool.select(POOL, MAC, 0);
+        assertEquals(server, pool.select(POOL, MAC, 10));
+        assertEquals(server, pool.select(List.of(SERVER_3, SERVER_2, SERVER_1), MAC, 20));
+        int[] counts = new int[POOL.size()];
+        for (int i = 0; i < 300; i++) {
+            counts[POOL.indexOf(pool.select(POOL, MacAddress.valueOf(0x100000L + i), 0))]++;
+        }
+        for (int count : counts) {
+            assertTrue(count > 50);
+        }
+    }
+
+    @Test
+    public void testFailover() {
+        ConnectPoint server = pool.select(POOL, MAC, 0);
+        pool.timedOut(server, 100);
+        // A single timeout does not take the server down
+        assertEquals(server, pool.select(POOL, MAC, 200));
+        pool.timedOut(server, 300);
+        ConnectPoint failover = pool.select(POOL, MAC, 400);
+        assertNotEquals(server, failover);
+        assertFalse(pool.stats(400).get(server.toString()).available());
+        // After the retry interval the server gets a single probe
+        assertEquals(server, pool.select(POOL, MAC, 300 + RETRY_MS));
+        assertEquals(failover, pool.select(POOL, MAC, 400 + RETRY_MS));
+        // Answering brings it back
+        pool.offered(server, 1_000_000);
+        assertEquals(server, pool.select(POOL, MAC, 500 + RETRY_MS));
+        assertEquals(1, pool.stats(0).get(server.toString()).offers());
+        assertEquals(2, pool.stats(0).get(server.toString()).timeouts());
+        assertEquals(1000, pool.stats(0).get(server.toString()).padoLatencyMicros());
+    }
+
+    @Test
+    public void testLatencyWeighting() {
+        pool.offered(SERVER_1, 1_000_000);
+        pool.offered(SERVER_2, 1_000_000);
+        pool.offered(SERVER_3, 4_000_000);
+        int[] counts = new int[POOL.size()];
+        for (int i = 0; i < 3000; i++) {
+            counts[POOL.indexOf(pool.select(POOL, MacAddress.valueOf(0x100000L + i), 0))]++;
+        }
+        // Weights 4:4:1, the slow server gets about 1/9 of the discoveries
+        assertTrue(counts[2] > 150 && counts[2] < 550);
+        assertTrue(counts[0] > 1000 && counts[1] > 1000);
+    }
+
+    @Test
+    public void testLearn() {
+        assertNull(pool.macAddress(SERVER_1));
+        pool.learn(SERVER_1, SERVER_MAC);
+        assertEquals(SERVER_MAC, pool.macAddress(SERVER_1));
+        assertNull(pool.macAddress(SERVER_2));
+        pool.retain(List.of(SERVER_2));
+        assertNull(pool.macAddress(SERVER_1));
+    }
+
+    @Test
+    public void testLearnOffer() {
+        assertNull(pool.offerTags(SERVER_1));
+        pool.learnOffer(SERVER_1, new Pppoe().setPacketType(Pppoe.PppoeType.PADO));
+        assertNotNull(pool.offerTags(SERVER_1));
+        assertNull(pool.offerTags(SERVER_2));
+        pool.retain(List.of(SERVER_2));
+        assertNull(pool.offerTags(SERVER_1));
+    }
+}
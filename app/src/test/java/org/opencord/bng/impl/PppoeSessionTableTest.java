@@ -0,0 +1,168 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.impl;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.onosproject.net.ConnectPoint;
+import org.opencord.bng.PppoeEvent;
+import org.opencord.bng.impl.PppoeSessionTable.PppoeSession;
+import org.opencord.bng.impl.PppoeSessionTable.State;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PppoeSessionTableTest {
+
+    private static final MacAddress MAC = MacAddress.valueOf("00:00:00:00:00:01");
+    private static final VlanId S_TAG = VlanId.vlanId((short) 10);
+    private static final VlanId C_TAG = VlanId.vlanId((short) 20);
+
+    private final PppoeSessionTable table = new PppoeSessionTable();
+
+    @Test
+    public void testDuplicateTransitions() {
+        PppoeSession session = table.session(MAC, S_TAG, C_TAG);
+        assertSame(session, table.session(MAC, S_TAG, C_TAG));
+        assertTrue(session.transition(State.INIT, 100));
+        assertFalse(session.transition(State.INIT, 110));
+        assertTrue(session.transition(State.SESSION, 200));
+        // Retransmissions of earlier phases are ignored
+        assertFalse(session.transition(State.SESSION, 210));
+        assertFalse(session.transition(State.OFFERED, 220));
+        assertTrue(session.transition(State.AUTH_OK, 300));
+        assertEquals(State.AUTH_OK, session.state());
+        assertEquals(100, session.elapsedNanos(State.SESSION, State.AUTH_OK));
+        assertEquals(-1, session.elapsedNanos(State.OFFERED, State.AUTH_OK));
+    }
+
+    @Test
+    public void testIpcpRenegotiation() {
+        PppoeSession session = table.session(MAC, S_TAG, C_TAG);
+        assertFalse(session.updateIpAddress(1));
+        assertTrue(session.transition(State.IPCP_UP, 100));
+        assertTrue(session.updateIpAddress(1));
+        assertFalse(session.transition(State.IPCP_UP, 110));
+        assertFalse(session.updateIpAddress(1));
+        assertTrue(session.updateIpAddress(2));
+        assertTrue(session.transition(State.TERMINATED, 130));
+        assertFalse(session.transition(State.IPCP_UP, 140));
+        assertFalse(session.updateIpAddress(3));
+    }
+
+    @Test
+    public void testNewDiscoveryRestartsSession() {
+        PppoeSession session = table.session(MAC, S_TAG, C_TAG);
+        session.transition(State.INIT, 100);
+        assertTrue(session.firstEvent(PppoeEvent.EventType.AUTH_FAILURE));
+        assertFalse(session.firstEvent(PppoeEvent.EventType.AUTH_FAILURE));
+        assertTrue(session.transition(State.TERMINATED, 200));
+        assertTrue(session.transition(State.INIT, 300));
+        assertEquals(State.INIT, session.state());
+        assertTrue(session.firstEvent(PppoeEvent.EventType.AUTH_FAILURE));
+        assertEquals(-1, session.elapsedNanos(State.INIT, State.TERMINATED));
+    }
+
+    @Test
+    public void testEviction() {
+        table.session(MAC, S_TAG, C_TAG).transition(State.INIT, 100);
+        MacAddress establishedMac = MacAddress.valueOf("00:00:00:00:00:02");
+        table.session(establishedMac, S_TAG, C_TAG).transition(State.IPCP_UP, 100);
+        List<MacAddress> evicted = Lists.newArrayList();
+        assertEquals(0, table.evict(System.currentTimeMillis() - 60000, evicted::add));
+        // Established sessions are never evicted
+        assertEquals(1, table.evict(System.currentTimeMillis() + 1, evicted::add));
+        assertEquals(List.of(MAC), evicted);
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    public void testDeadPeers() {
+        PppoeSession session = table.session(MAC, S_TAG, C_TAG);
+        session.transition(State.IPCP_UP, 100);
+        MacAddress silentMac = MacAddress.valueOf("00:00:00:00:00:02");
+        table.session(silentMac, S_TAG, C_TAG).transition(State.IPCP_UP, 100);
+        session.echoAnswered((short) 0x10, 1000);
+        List<MacAddress> deadPeers = Lists.newArrayList();
+        assertEquals(0, table.terminateDeadPeers(1000, (mac, s) -> deadPeers.add(mac)));
+        // Sessions without answered echoes are never terminated
+        assertEquals(1, table.terminateDeadPeers(2000, (mac, s) -> deadPeers.add(mac)));
+        assertEquals(List.of(MAC), deadPeers);
+        assertEquals(State.TERMINATED, session.state());
+        assertEquals(0x10, session.pppoeSessionId());
+        assertFalse(session.isEstablished());
+    }
+
+    @Test
+    public void testSessionId() {
+        PppoeSession session = table.session(MAC, S_TAG, C_TAG);
+        session.transition(State.SESSION, 100);
+        session.sessionConfirmed((short) 0x10);
+        session.transition(State.IPCP_UP, 200);
+        assertEquals(0x10, session.pppoeSessionId());
+        // A new discovery forgets about the previous session
+        session.transition(State.INIT, 300);
+        assertEquals(0, session.pppoeSessionId());
+    }
+
+    @Test
+    public void testDiscovery() {
+        ConnectPoint server1 = ConnectPoint.deviceConnectPoint("of:0000000000000001/1");
+        ConnectPoint server2 = ConnectPoint.deviceConnectPoint("of:0000000000000001/2");
+        PppoeSession session = table.session(MAC, S_TAG, C_TAG);
+        session.discovering(server1, 100);
+        // Retransmissions do not restart the wait
+        session.discovering(server1, 150);
+        assertNull(session.padiTimedOut(100, 180));
+        assertEquals(server1, session.padiTimedOut(100, 200));
+        // Reported once
+        assertNull(session.padiTimedOut(100, 400));
+        session.discovering(server2, 500);
+        assertEquals(30, session.offered(server2, 530));
+        assertEquals(server2, session.pppoeServer());
+        // Duplicate offers carry no latency
+        assertEquals(0, session.offered(server2, 540));
+        // Offers of the other servers are rejected
+        assertEquals(PppoeSessionTable.OFFER_REJECTED, session.offered(server1, 550));
+    }
+
+    @Test
+    public void testFanOut() {
+        ConnectPoint server1 = ConnectPoint.deviceConnectPoint("of:0000000000000001/1");
+        ConnectPoint server2 = ConnectPoint.deviceConnectPoint("of:0000000000000001/2");
+        PppoeSession session = table.session(MAC, S_TAG, C_TAG);
+        session.fanningOut(100);
+        session.fanningOut(120);
+        assertNull(session.pppoeServer());
+        // First offer wins
+        assertEquals(40, session.offered(server2, 140));
+        assertEquals(PppoeSessionTable.OFFER_REJECTED, session.offered(server1, 150));
+        assertEquals(server2, session.pppoeServer());
+        // A new discovery selects again
+        session.fanningOut(200);
+        assertEquals(10, session.offered(server1, 210));
+        session.confirmed(server1);
+        assertEquals(server1, session.pppoeServer());
+    }
+}
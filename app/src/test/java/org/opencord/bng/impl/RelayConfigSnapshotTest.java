@@ -0,0 +1,97 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.impl;
+
+import org.junit.Test;
+import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RelayConfigSnapshotTest {
+
+    private static final ConnectPoint SERVER_CP = ConnectPoint.deviceConnectPoint("of:0000000000000001/1");
+    private static final ConnectPoint OLT_CP = ConnectPoint.deviceConnectPoint("of:0000000000000001/2");
+    private static final ConnectPoint OTHER_CP = ConnectPoint.deviceConnectPoint("of:0000000000000001/3");
+    private static final ConnectPoint SERVER_CP_2 = ConnectPoint.deviceConnectPoint("of:0000000000000002/1");
+    private static final ConnectPoint OLT_CP_2 = ConnectPoint.deviceConnectPoint("of:0000000000000002/2");
+    private static final ConnectPoint OLT_CP_3 = ConnectPoint.deviceConnectPoint("of:0000000000000002/3");
+
+    @Test
+    public void testLookups() {
+        RelayConfigSnapshot config = new RelayConfigSnapshot(Map.of(OLT_CP, List.of(SERVER_CP)), 3);
+        assertEquals(3, config.version());
+        assertTrue(config.isRelayConnectPoint(SERVER_CP));
+        assertTrue(config.isRelayConnectPoint(OLT_CP));
+        assertFalse(config.isRelayConnectPoint(OTHER_CP));
+        assertTrue(config.isPppoeServerConnectPoint(SERVER_CP));
+        assertFalse(config.isPppoeServerConnectPoint(OLT_CP));
+        assertEquals(List.of(SERVER_CP), config.pppoeServerPool(OLT_CP));
+        assertNull(config.pppoeServerPool(SERVER_CP));
+        assertEquals(OLT_CP, config.defaultOltConnectPoint());
+        assertEquals(DefaultTrafficTreatment.builder().setOutput(SERVER_CP.port()).build(),
+                     config.treatment(SERVER_CP));
+        assertEquals(DefaultTrafficTreatment.builder().setOutput(OLT_CP.port()).build(),
+                     config.treatment(OLT_CP));
+        assertNull(config.treatment(OTHER_CP));
+    }
+
+    @Test
+    public void testMultiplePorts() {
+        RelayConfigSnapshot config = new RelayConfigSnapshot(
+                Map.of(OLT_CP, List.of(SERVER_CP), OLT_CP_2, List.of(SERVER_CP_2),
+                       OLT_CP_3, List.of(SERVER_CP, SERVER_CP_2)), 1);
+        assertEquals(List.of(SERVER_CP), config.pppoeServerPool(OLT_CP));
+        assertEquals(List.of(SERVER_CP_2), config.pppoeServerPool(OLT_CP_2));
+        assertEquals(List.of(SERVER_CP, SERVER_CP_2), config.pppoeServerPool(OLT_CP_3));
+        assertEquals(Set.of(SERVER_CP, SERVER_CP_2), config.pppoeServerConnectPoints());
+        assertTrue(config.isPppoeServerConnectPoint(SERVER_CP_2));
+        assertTrue(config.isRelayConnectPoint(OLT_CP_3));
+        // The OLT connect point of the attachments must be learned
+        assertNull(config.defaultOltConnectPoint());
+        assertEquals(DefaultTrafficTreatment.builder().setOutput(OLT_CP_3.port()).build(),
+                     config.treatment(OLT_CP_3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOverlappingPorts() {
+        new RelayConfigSnapshot(Map.of(OLT_CP, List.of(SERVER_CP), SERVER_CP, List.of(SERVER_CP_2)), 1);
+    }
+
+    @Test
+    public void testDrain() throws InterruptedException {
+        RelayConfigSnapshot config = new RelayConfigSnapshot(Map.of(OLT_CP, List.of(SERVER_CP)), 1);
+        assertTrue(config.awaitDrained(0));
+        config.enter();
+        config.enter();
+        assertEquals(2, config.inFlight());
+        assertFalse(config.awaitDrained(5));
+        config.exit();
+        Thread exiting = new Thread(config::exit);
+        exiting.start();
+        assertTrue(config.awaitDrained(5000));
+        exiting.join();
+        assertEquals(0, config.inFlight());
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.bng.impl;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+import org.opencord.bng.PppoeRelayStageStats;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RelayStageStatsTest {
+
+    @Test
+    public void testTiming() {
+        RelayStageStats stageStats = new RelayStageStats();
+        stageStats.stop(RelayStageStats.Stage.PARSE, System.nanoTime() - 1000);
+        stageStats.stop(RelayStageStats.Stage.PARSE, System.nanoTime() - 3000);
+        stageStats.stop(RelayStageStats.Stage.PARSE, RelayStageStats.NOT_SAMPLED);
+        PppoeRelayStageStats stats = stageStats.stats().get("parse");
+        assertEquals(3, stats.count());
+        assertEquals(2, stats.samples());
+        assertTrue(stats.sampledNanos() >= 4000);
+        assertTrue(stats.meanNanos() >= 2000);
+        assertEquals(stats.meanNanos() * 3, stats.estimatedTotalNanos());
+    }
+
+    @Test
+    public void testSampling() {
+        RelayStageStats stageStats = new RelayStageStats();
+        int executions = RelayStageStats.SAMPLING_RATE * 1000;
+        for (int i = 0; i < executions; i++) {
+            stageStats.stop(RelayStageStats.Stage.EMIT, stageStats.start());
+        }
+        PppoeRelayStageStats stats = stageStats.stats().get("emit");
+        assertEquals(executions, stats.count());
+        // 1000 samples expected, far enough from the bounds to never fail
+        assertTrue(stats.samples() > 500 && stats.samples() < 2000);
+    }
+
+    @Test
+    public void testAggregation() throws Exception {
+        RelayStageStats stageStats = new RelayStageStats();
+        int threads = 4;
+        int executions = 10000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < executions; i++) {
+                    stageStats.stop(RelayStageStats.Stage.VALIDATION, stageStats.start());
+                    stageStats.stop(RelayStageStats.Stage.REWRITE, RelayStageStats.NOT_SAMPLED);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Map<String, PppoeRelayStageStats> stats = stageStats.stats();
+        assertEquals(threads * executions, stats.get("validation").count());
+        assertEquals(threads * executions, stats.get("rewrite").count());
+        assertEquals(0, stats.get("rewrite").samples());
+        assertEquals(0, stats.get("parse").count());
+        assertEquals(0, stats.get("parse").meanNanos());
+        // Stages are reported in processing order
+        assertEquals(Arrays.stream(RelayStageStats.Stage.values())
+                             .map(stage -> stage.name().toLowerCase(Locale.ROOT))
+                             .collect(Collectors.toList()),
+                     Lists.newArrayList(stats.keySet()));
+    }
+
+    @Test
+    public void testStageNamesLocale() {
+        Locale defaultLocale = Locale.getDefault();
+        // Lower-cases 'I' to a dotless i
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            RelayStageStats stageStats = new RelayStageStats();
+            stageStats.stop(RelayStageStats.Stage.VALIDATION, RelayStageStats.NOT_SAMPLED);
+            assertEquals(1, stageStats.stats().get("validation").count());
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.bng.impl;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.onosproject.cfg.ComponentConfigAdapter;
+import org.onosproject.core.ApplicationId;
+import org.onosproject.core.CoreServiceAdapter;
+import org.onosproject.core.DefaultApplicationId;
+import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.DeviceId;
+import org.onosproject.store.service.AsyncDistributedSet;
+import org.onosproject.store.service.DistributedSetBuilder;
+import org.onosproject.store.service.TestDistributedSet;
+import org.onosproject.store.service.TestStorageService;
+import org.opencord.bng.BngAttachment;
+import org.opencord.bng.BngService;
+import org.opencord.bng.PppoeBngAttachment;
+import org.opencord.bng.PppoeEvent;
+import org.opencord.bng.PppoeEventListener;
+import org.opencord.bng.PppoeEventSubject;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.opencord.bng.impl.OsgiPropertyConstants.ATTACHMENT_COALESCING_WINDOW;
+
+public class SimpleAttachmentEventHandlerTest {
+
+    private static final ApplicationId APP_ID = new DefaultApplicationId(1, BngManager.BNG_APP);
+    private static final ConnectPoint OLT_CP = ConnectPoint.deviceConnectPoint("of:1/1");
+    private static final long WINDOW_MS = 100;
+
+    private final TestDistributedSet<String> storedKeys = new TestDistributedSet<>("keys");
+    private SimpleAttachmentEventHandler handler;
+    private RecordingBngService bngService;
+    private ListenerCapturingHandler pppoeHandler;
+
+    @Before
+    public void setUp() {
+        bngService = new RecordingBngService();
+        pppoeHandler = new ListenerCapturingHandler();
+        handler = new SimpleAttachmentEventHandler();
+        handler.componentConfigService = new ComponentConfigAdapter();
+        handler.coreService = new CoreServiceAdapter() {
+            @Override
+            public ApplicationId getAppId(String name) {
+                return APP_ID;
+            }
+        };
+        handler.storageService = new TestStorageService() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <E> DistributedSetBuilder<E> setBuilder() {
+                // The attachment keys survive the component
+                return new TestDistributedSet.Builder<E>() {
+                    @Override
+                    public AsyncDistributedSet<E> build() {
+                        return (AsyncDistributedSet<E>) storedKeys;
+                    }
+                };
+            }
+        };
+        handler.bngService = bngService;
+        handler.pppoEHandlerRelay = pppoeHandler;
+    }
+
+    @After
+    public void tearDown() {
+        if (pppoeHandler.listener != null) {
+            handler.deactivate();
+        }
+    }
+
+    /**
+     * Tests that several events for the same attachment within the window
+     * result in a single setup, carrying the last event information.
+     */
+    @Test
+    public void testCoalescedSetup() throws Exception {
+        handler.activate(TestComponentContext.of(ATTACHMENT_COALESCING_WINDOW, WINDOW_MS));
+        for (int i = 1; i <= 3; i++) {
+            pppoeHandler.listener.event(event(PppoeEvent.EventType.IPCP_CONF_ACK, i));
+        }
+        assertTrue(bngService.setups.isEmpty());
+        Thread.sleep(WINDOW_MS * 3);
+        assertEquals(1, bngService.setups.size());
+        assertEquals(IpAddress.valueOf(3), bngService.setups.get(0).ipAddress());
+    }
+
+    /**
+     * Tests that a session termination received after the setup, within the
+     * same window, cancels the setup.
+     */
+    @Test
+    public void testRemoveCancelsAdd() throws Exception {
+        handler.activate(TestComponentContext.of(ATTACHMENT_COALESCING_WINDOW, WINDOW_MS));
+        pppoeHandler.listener.event(event(PppoeEvent.EventType.IPCP_CONF_ACK, 1));
+        pppoeHandler.listener.event(event(PppoeEvent.EventType.SESSION_TERMINATION, 1));
+        Thread.sleep(WINDOW_MS * 3);
+        assertTrue(bngService.setups.isEmpty());
+        assertTrue(bngService.removals.isEmpty());
+    }
+
+    /**
+     * Tests that a window of 0 applies every event as soon as it is received.
+     */
+    @Test
+    public void testNoCoalescing() {
+        handler.activate(TestComponentContext.of(ATTACHMENT_COALESCING_WINDOW, 0));
+        pppoeHandler.listener.event(event(PppoeEvent.EventType.IPCP_CONF_ACK, 1));
+        pppoeHandler.listener.event(event(PppoeEvent.EventType.IPCP_CONF_ACK, 2));
+        assertEquals(2, bngService.setups.size());
+        pppoeHandler.listener.event(event(PppoeEvent.EventType.SESSION_TERMINATION, 2));
+        assertEquals(1, bngService.removals.size());
+    }
+
+    /**
+     * Tests that a window expiring after the deactivation of the component
+     * does not update the BNG service.
+     */
+    @Test
+    public void testTimerAfterDeactivate() throws Exception {
+        handler.activate(TestComponentContext.of(ATTACHMENT_COALESCING_WINDOW, WINDOW_MS));
+        PppoeEventListener listener = pppoeHandler.listener;
+        listener.event(event(PppoeEvent.EventType.IPCP_CONF_ACK, 1));
+        handler.deactivate();
+        assertNull(pppoeHandler.listener);
+        Thread.sleep(WINDOW_MS * 3);
+        assertTrue(bngService.setups.isEmpty());
+    }
+
+    /**
+     * Tests that the keys of the attachments submitted before a restart are
+     * restored from the store and from the attachments of the BNG app.
+     */
+    @Test
+    public void testRestore() {
+        String storedKey = key(event(PppoeEvent.EventType.IPCP_CONF_ACK, 1, 1));
+        String registeredKey = key(event(PppoeEvent.EventType.IPCP_CONF_ACK, 2, 2));
+        String otherAppKey = key(event(PppoeEvent.EventType.IPCP_CONF_ACK, 3, 3));
+        storedKeys.add(storedKey);
+        bngService.attachments.put(registeredKey, attachment(APP_ID));
+        bngService.attachments.put(otherAppKey, attachment(new DefaultApplicationId(2, "other")));
+        handler.activate(TestComponentContext.of(ATTACHMENT_COALESCING_WINDOW, 0));
+        assertEquals(Set.of(storedKey, registeredKey), storedKeys.asDistributedSet());
+
+        for (int i = 1; i <= 3; i++) {
+            pppoeHandler.listener.event(event(PppoeEvent.EventType.SESSION_TERMINATION, i, i));
+        }
+        // Attachments of other applications are left untouched
+        assertEquals(List.of(storedKey, registeredKey), bngService.removals);
+        assertTrue(storedKeys.asDistributedSet().isEmpty());
+    }
+
+    /**
+     * Tests that the key of an attachment is removed from the store when its
+     * session is terminated, e.g. after a teardown of the BNG app.
+     */
+    @Test
+    public void testTerminationRemovesStoredKey() {
+        handler.activate(TestComponentContext.of(ATTACHMENT_COALESCING_WINDOW, 0));
+        PppoeEvent setup = event(PppoeEvent.EventType.IPCP_CONF_ACK, 1);
+        pppoeHandler.listener.event(setup);
+        assertEquals(Set.of(key(setup)), storedKeys.asDistributedSet());
+        pppoeHandler.listener.event(event(PppoeEvent.EventType.SESSION_TERMINATION, 1));
+        assertTrue(storedKeys.asDistributedSet().isEmpty());
+        // Not submitted again on the next restart
+        handler.deactivate();
+        handler.activate(TestComponentContext.of(ATTACHMENT_COALESCING_WINDOW, 0));
+        pppoeHandler.listener.event(event(PppoeEvent.EventType.SESSION_TERMINATION, 1));
+        assertEquals(1, bngService.removals.size());
+    }
+
+    private static String key(PppoeEvent event) {
+        return BngUtils.calculateBngAttachmentKey(event.subject());
+    }
+
+    private static BngAttachment attachment(ApplicationId appId) {
+        return PppoeBngAttachment.builder()
+                .withPppoeSessionId((short) 1)
+                .withApplicationId(appId)
+                .withSTag(VlanId.vlanId((short) 10))
+                .withCTag(VlanId.vlanId((short) 20))
+                .withMacAddress(MacAddress.valueOf("00:00:00:00:00:01"))
+                .withOltConnectPoint(OLT_CP)
+                .withOnuSerial("ONU1")
+                .lineActivated(true)
+                .build();
+    }
+
+    private static PppoeEvent event(PppoeEvent.EventType type, int ipAddress) {
+        return event(type, ipAddress, 1);
+    }
+
+    private static PppoeEvent event(PppoeEvent.EventType type, int ipAddress, long mac) {
+        return new PppoeEvent(type, new PppoeEventSubject(OLT_CP, IpAddress.valueOf(ipAddress),
+                                                          MacAddress.valueOf(mac),
+                                                          "ONU1", (short) 1,
+                                                          VlanId.vlanId((short) 10),
+                                                          VlanId.vlanId((short) 20)));
+    }
+
+    /**
+     * PPPoE handler keeping track of the registered listener.
+     */
+    private static class ListenerCapturingHandler extends PppoeBngControlHandlerAdapter {
+        PppoeEventListener listener;
+
+        @Override
+        public void addListener(PppoeEventListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void removeListener(PppoeEventListener listener) {
+            this.listener = null;
+        }
+    }
+
+    /**
+     * BNG service recording the attachments set up and removed.
+     */
+    static class RecordingBngService implements BngService {
+        final Map<String, BngAttachment> attachments = Maps.newConcurrentMap();
+        final List<BngAttachment> setups = Collections.synchronizedList(Lists.newArrayList());
+        final List<String> removals = Collections.synchronizedList(Lists.newArrayList());
+
+        @Override
+        public void setupAttachment(String attachmentKey, BngAttachment attachment) {
+            attachments.put(attachmentKey, attachment);
+            setups.add(attachment);
+        }
+
+        @Override
+        public void removeAttachment(String attachmentKey) {
+            attachments.remove(attachmentKey);
+            removals.add(attachmentKey);
+        }
+
+        @Override
+        public Map<String, BngAttachment> getAttachments() {
+            return attachments;
+        }
+
+        @Override
+        public BngAttachment getAttachment(String attachmentKey) {
+            return attachments.get(attachmentKey);
+        }
+
+        @Override
+        public DeviceId getBngDeviceId() {
+            return null;
+        }
+
+        @Override
+        public Set<DeviceId> getBngDeviceIds() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public DeviceId getBngDeviceId(String attachmentKey) {
+            return null;
+        }
+    }
+}
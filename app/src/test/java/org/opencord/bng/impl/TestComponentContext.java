@@ -0,0 +1,49 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.bng.impl;
+
+import org.osgi.service.component.ComponentContext;
+
+import java.lang.reflect.Proxy;
+import java.util.Dictionary;
+import java.util.Hashtable;
+
+/**
+ * Builds component contexts carrying the given configuration properties.
+ */
+final class TestComponentContext {
+
+    private TestComponentContext() {
+    }
+
+    /**
+     * Returns a component context whose properties are the given key-value
+     * pairs. All the other methods of the context return null.
+     *
+     * @param keyValues property names, each followed by its value
+     * @return the component context
+     */
+    static ComponentContext of(Object... keyValues) {
+        Dictionary<String, Object> properties = new Hashtable<>();
+        for (int i = 0; i + 1 < keyValues.length; i += 2) {
+            properties.put(keyValues[i].toString(), keyValues[i + 1].toString());
+        }
+        return (ComponentContext) Proxy.newProxyInstance(
+                ComponentContext.class.getClassLoader(),
+                new Class<?>[]{ComponentContext.class},
+                (proxy, method, args) -> "getProperties".equals(method.getName()) ? properties : null);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.packets;
+
+import org.junit.Test;
+import org.onlab.packet.DeserializationException;
+import org.onlab.packet.Deserializer;
+import org.onlab.packet.PacketTestUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChapTest {
+
+    private static final byte[] VALUE = {0x1, 0x2, 0x3, 0x4};
+    private static final String NAME = "user@isp";
+
+    private final Deserializer<Chap> deserializer = Chap.deserializer();
+
+    private byte[] response() {
+        byte[] name = NAME.getBytes(StandardCharsets.UTF_8);
+        short length = (short) (4 + 1 + VALUE.length + name.length);
+        return ByteBuffer.allocate(length + 2)
+                .put(Chap.RESPONSE).put((byte) 0x1).putShort(length)
+                .put((byte) VALUE.length).put(VALUE).put(name)
+                .array();
+    }
+
+    @Test
+    public void testDeserializeBadInput() throws Exception {
+        PacketTestUtils.testDeserializeBadInput(deserializer);
+    }
+
+    @Test
+    public void testDeserializeResponse() throws Exception {
+        byte[] bytes = response();
+        Chap chap = deserializer.deserialize(bytes, 0, bytes.length);
+
+        assertTrue(chap.hasValue());
+        assertEquals(VALUE.length, chap.getValueSize());
+        byte[] value = new byte[VALUE.length];
+        chap.getValue().get(value);
+        assertArrayEquals(VALUE, value);
+        assertEquals(NAME, chap.getName());
+        assertEquals(0, chap.getMessageBytes().remaining());
+        // Padding is not part of the packet
+        assertEquals(bytes.length - 2, chap.serialize().length);
+    }
+
+    @Test
+    public void testDeserializeFailure() throws Exception {
+        byte[] bytes = {Chap.FAILURE, 0x1, 0x0, 0x8, 'n', 'o', 'p', 'e'};
+        Chap chap = deserializer.deserialize(bytes, 0, bytes.length);
+
+        assertEquals(0, chap.getValueSize());
+        assertEquals("nope", chap.getMessage());
+        assertArrayEquals(bytes, chap.serialize());
+    }
+
+    @Test(expected = DeserializationException.class)
+    public void testDeserializeValueOverflow() throws Exception {
+        byte[] bytes = {Chap.CHALLENGE, 0x1, 0x0, 0x6, 0x10, 0x1};
+        deserializer.deserialize(bytes, 0, bytes.length);
+    }
+}
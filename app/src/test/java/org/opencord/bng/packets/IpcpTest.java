@@ -97,4 +97,28 @@ public class IpcpTest {
                                                   ipcp.getIpAddressTlv().getValue()));
         assertEquals(ipAddress, ipcp.getIpAddress());
     }
+
+    /**
+     * Tests the integer accessors of the address options.
+     */
+    @Test
+    public void testAddressOptions() throws Exception {
+        byte[] options = ByteBuffer.allocate(Ipcp.MIN_HEADER_LENGTH + 18)
+                .put(Ipcp.ACK).put(identifier).putShort((short) (Ipcp.MIN_HEADER_LENGTH + 18))
+                .put(Ipcp.OPTION_IP_ADDRESS).put((byte) 6).putInt(0x0a000001)
+                .put(Ipcp.OPTION_PRIMARY_DNS).put((byte) 6).putInt(0x08080808)
+                .put(Ipcp.OPTION_SECONDARY_DNS).put((byte) 6).putInt(0x08080404)
+                .array();
+        Ipcp ipcp = deserializer.deserialize(options, 0, options.length);
+
+        assertEquals(0x0a000001, ipcp.getIpAddressAsInt());
+        assertEquals(0x08080808, ipcp.getPrimaryDnsAsInt());
+        assertEquals(0x08080404, ipcp.getSecondaryDnsAsInt());
+        assertEquals(0, ipcp.getPrimaryNbnsAsInt());
+        assertArrayEquals(options, ipcp.serialize());
+        // Building the TLV objects does not change the packet
+        assertEquals(2, ipcp.getIpcpTlvList().size());
+        assertEquals(0x08080404, ipcp.getSecondaryDnsAsInt());
+        assertArrayEquals(options, ipcp.serialize());
+    }
 }
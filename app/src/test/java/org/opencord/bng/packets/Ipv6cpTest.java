@@ -0,0 +1,71 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.packets;
+
+import org.junit.Test;
+import org.onlab.packet.Deserializer;
+import org.onlab.packet.Ip6Address;
+import org.onlab.packet.PacketTestUtils;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class Ipv6cpTest {
+
+    private final Deserializer<Ipv6cp> deserializer = Ipv6cp.deserializer();
+
+    private final byte[] interfaceId = {0x2, 0x11, 0x22, (byte) 0xff, (byte) 0xfe, 0x33, 0x44, 0x55};
+
+    private byte[] confAck() {
+        return ByteBuffer.allocate(Ppp.MIN_HEADER_LENGTH + 10)
+                .put(Ipv6cp.ACK).put((byte) 0x1).putShort((short) (Ppp.MIN_HEADER_LENGTH + 10))
+                .put(PppTlv.IPV6CPTLV_INTERFACE_ID).put((byte) 10).put(interfaceId)
+                .array();
+    }
+
+    @Test
+    public void testDeserializeBadInput() throws Exception {
+        PacketTestUtils.testDeserializeBadInput(deserializer);
+    }
+
+    @Test
+    public void testDeserializeTruncated() throws Exception {
+        PacketTestUtils.testDeserializeTruncated(deserializer, confAck());
+    }
+
+    @Test
+    public void testDeserialize() throws Exception {
+        byte[] bytes = confAck();
+        Ipv6cp ipv6cp = deserializer.deserialize(bytes, 0, bytes.length);
+
+        assertEquals(Ipv6cp.ACK, ipv6cp.getCode());
+        assertArrayEquals(interfaceId, ipv6cp.getInterfaceIdTlv().getValue());
+        assertEquals(Ip6Address.valueOf("fe80::211:22ff:fe33:4455"), ipv6cp.getLinkLocalAddress());
+        assertArrayEquals(bytes, ipv6cp.serialize());
+    }
+
+    @Test
+    public void testNoInterfaceId() throws Exception {
+        byte[] bytes = {Ipv6cp.CONF_REQ, 0x1, 0x0, 0x4};
+        Ipv6cp ipv6cp = deserializer.deserialize(bytes, 0, bytes.length);
+
+        assertNull(ipv6cp.getLinkLocalAddress());
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.packets;
+
+import org.junit.Test;
+import org.onlab.packet.Deserializer;
+import org.onlab.packet.PacketTestUtils;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LcpTest {
+
+    private static final int MAGIC_NUMBER = 0xcafe0001;
+
+    private final Deserializer<Lcp> deserializer = Lcp.deserializer();
+
+    private byte[] confRequest() {
+        ByteBuffer bb = ByteBuffer.allocate(19 + 3);
+        bb.put(Lcp.CONF_REQ);
+        bb.put((byte) 0x7);
+        bb.putShort((short) 19);
+        // MRU
+        bb.put(Lcp.OPTION_MRU).put((byte) 4).putShort((short) 1492);
+        // CHAP with MD5
+        bb.put(Lcp.OPTION_AUTH_PROTOCOL).put((byte) 5).putShort(PppProtocolType.CHAP.code()).put((byte) 5);
+        // Magic number
+        bb.put(Lcp.OPTION_MAGIC_NUMBER).put((byte) 6).putInt(MAGIC_NUMBER);
+        // Padding
+        bb.put(new byte[3]);
+        return bb.array();
+    }
+
+    private byte[] echoRequest() {
+        ByteBuffer bb = ByteBuffer.allocate(12);
+        bb.put(Lcp.ECHO_REQ);
+        bb.put((byte) 0x2);
+        bb.putShort((short) 12);
+        bb.putInt(0x12345678);
+        bb.putInt(0xdeadbeef);
+        return bb.array();
+    }
+
+    @Test
+    public void testDeserializeBadInput() throws Exception {
+        PacketTestUtils.testDeserializeBadInput(deserializer);
+    }
+
+    @Test
+    public void testDeserializeOptions() throws Exception {
+        byte[] bytes = confRequest();
+        Lcp lcp = deserializer.deserialize(bytes, 0, bytes.length);
+
+        assertTrue(lcp.isConfiguration());
+        assertEquals(0x7, lcp.getIdentifier());
+        assertEquals(3, lcp.getOptionCount());
+        assertEquals(Lcp.OPTION_AUTH_PROTOCOL, lcp.getOptionType(1));
+        assertArrayEquals(new byte[]{(byte) 0xc2, 0x23, 0x5}, lcp.getOptionValue(1));
+        assertEquals(1492, lcp.getMru());
+        assertEquals(PppProtocolType.CHAP, lcp.getAuthProtocol());
+        assertEquals(MAGIC_NUMBER & 0xFFFFFFFFL, lcp.getMagicNumber());
+        // Padding is not part of the packet
+        assertEquals(19, lcp.serialize().length);
+    }
+
+    @Test
+    public void testMissingAndMalformedOptions() throws Exception {
+        byte[] bytes = {Lcp.CONF_ACK, 0x1, 0x0, 0xa,
+                Lcp.OPTION_PFC, 0x2,
+                // Option length exceeding the packet
+                Lcp.OPTION_MRU, 0x8, 0x5, (byte) 0xd4};
+        Lcp lcp = deserializer.deserialize(bytes, 0, bytes.length);
+
+        assertEquals(1, lcp.getOptionCount());
+        assertEquals(Lcp.NO_OPTION, lcp.getMru());
+        assertEquals(PppProtocolType.NO_PROTOCOL, lcp.getAuthProtocol());
+        assertEquals(Lcp.NO_OPTION, lcp.getMagicNumber());
+    }
+
+    @Test
+    public void testEchoReply() throws Exception {
+        byte[] bytes = echoRequest();
+        Lcp request = deserializer.deserialize(bytes, 0, bytes.length);
+
+        assertTrue(request.isEchoRequest());
+        assertFalse(request.isTerminate());
+        assertEquals(0, request.getOptionCount());
+        assertEquals(0x12345678L, request.getMagicNumber());
+
+        Lcp reply = request.echoReply(MAGIC_NUMBER & 0xFFFFFFFFL);
+        assertTrue(reply.isEchoReply());
+        assertEquals(request.getIdentifier(), reply.getIdentifier());
+        assertEquals(MAGIC_NUMBER & 0xFFFFFFFFL, reply.getMagicNumber());
+
+        byte[] expected = bytes.clone();
+        expected[0] = Lcp.ECHO_REPLY;
+        ByteBuffer.wrap(expected, 4, 4).putInt(MAGIC_NUMBER);
+        assertArrayEquals(expected, reply.serialize());
+    }
+
+    @Test
+    public void testTerminate() throws Exception {
+        byte[] bytes = {Lcp.TERM_REQ, 0x3, 0x0, 0x4};
+        Lcp lcp = deserializer.deserialize(bytes, 0, bytes.length);
+
+        assertTrue(lcp.isTerminate());
+        assertEquals(0, lcp.getData().length);
+    }
+}
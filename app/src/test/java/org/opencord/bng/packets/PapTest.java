@@ -0,0 +1,64 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.packets;
+
+import org.junit.Test;
+import org.onlab.packet.DeserializationException;
+import org.onlab.packet.Deserializer;
+import org.onlab.packet.PacketTestUtils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PapTest {
+
+    private final Deserializer<Pap> deserializer = Pap.deserializer();
+
+    @Test
+    public void testDeserializeBadInput() throws Exception {
+        PacketTestUtils.testDeserializeBadInput(deserializer);
+    }
+
+    @Test
+    public void testDeserializeAuthRequest() throws Exception {
+        byte[] bytes = {Pap.AUTH_REQ, 0x1, 0x0, 0xb,
+                0x4, 'u', 's', 'e', 'r',
+                0x1, 'x'};
+        Pap pap = deserializer.deserialize(bytes, 0, bytes.length);
+
+        assertTrue(pap.isAuthRequest());
+        assertEquals("user", pap.getPeerId());
+        assertEquals(0, pap.getMessageBytes().remaining());
+        assertArrayEquals(bytes, pap.serialize());
+    }
+
+    @Test
+    public void testDeserializeAuthAck() throws Exception {
+        byte[] bytes = {Pap.AUTH_ACK, 0x1, 0x0, 0x7, 0x2, 'o', 'k'};
+        Pap pap = deserializer.deserialize(bytes, 0, bytes.length);
+
+        assertEquals("ok", pap.getMessage());
+        assertEquals(0, pap.getPeerIdBytes().remaining());
+    }
+
+    @Test(expected = DeserializationException.class)
+    public void testDeserializeMissingPassword() throws Exception {
+        byte[] bytes = {Pap.AUTH_REQ, 0x1, 0x0, 0x9, 0x4, 'u', 's', 'e', 'r'};
+        deserializer.deserialize(bytes, 0, bytes.length);
+    }
+}
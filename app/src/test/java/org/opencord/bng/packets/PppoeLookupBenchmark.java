@@ -0,0 +1,99 @@
+/*
+ * Copyright 2019-2024 Open Networking Foundation (ONF) and the ONF Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencord.bng.packets;
+
+import org.onlab.packet.Data;
+import org.onlab.packet.Deserializer;
+import org.onlab.packet.IPacket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micro-benchmark of the PPPoE code and PPP protocol lookups done for each
+ * parsed packet, comparing the table based lookups with the previous
+ * scan of the enum values. Run with: mvn -Pbenchmark test-compile exec:exec
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PppoeLookupBenchmark {
+
+    // Mix of the codes seen during a session setup
+    private final byte[] pppoeCodes = {0x9, 0x7, 0x19, 0x65, 0x0, 0x0, 0x0, (byte) 0xa7};
+    private final short[] pppProtocols = {(short) 0xc021, (short) 0xc223, (short) 0x8021, 0x0021};
+    private int index;
+
+    @Benchmark
+    public Pppoe.PppoeType pppoeTypeScan() {
+        byte code = pppoeCodes[index++ & 7];
+        for (Pppoe.PppoeType type : Pppoe.PppoeType.values()) {
+            if (code == type.code()) {
+                return type;
+            }
+        }
+        return Pppoe.PppoeType.UNKNOWN;
+    }
+
+    @Benchmark
+    public Pppoe.PppoeType pppoeTypeTable() {
+        return Pppoe.PppoeType.lookup(pppoeCodes[index++ & 7]);
+    }
+
+    @Benchmark
+    public void pppProtocolScanAndMap(Blackhole blackhole) {
+        short code = pppProtocols[index++ & 3];
+        // Previous parsing path, followed by the type lookup of the relay
+        Deserializer<? extends IPacket> deserializer;
+        if (Pppoe.PROTOCOL_DESERIALIZER_MAP.containsKey(code)) {
+            deserializer = Pppoe.PROTOCOL_DESERIALIZER_MAP.get(code);
+        } else {
+            deserializer = Data.deserializer();
+        }
+        blackhole.consume(deserializer);
+        blackhole.consume(scanPppProtocolType(code));
+    }
+
+    @Benchmark
+    public void pppProtocolTable(Blackhole blackhole) {
+        Pppoe.PppProtocolEntry protocol = Pppoe.PPP_PROTOCOLS[pppProtocols[index++ & 3] & 0xFFFF];
+        blackhole.consume(protocol.deserializer);
+        blackhole.consume(protocol.type);
+    }
+
+    // Previous PppProtocolType.lookup
+    private static PppProtocolType scanPppProtocolType(short code) {
+        for (PppProtocolType type : PppProtocolType.values()) {
+            if (code == type.code()) {
+                return type;
+            }
+        }
+        return PppProtocolType.NO_PROTOCOL;
+    }
+}
@@ -24,6 +24,7 @@ import org.onlab.packet.PacketTestUtils;
 import java.nio.ByteBuffer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 public class PppoeTest {
     private Deserializer<Pppoe> deserializer;
@@ -121,4 +122,23 @@ public class PppoeTest {
         assertEquals(payloadLength + 2, pppoe.getPayloadLength());
         assertEquals(PppProtocolType.LCP.code(), pppoe.getPppProtocol());
     }
+
+    @Test
+    public void testPppoeTypeLookup() {
+        for (Pppoe.PppoeType type : Pppoe.PppoeType.values()) {
+            assertEquals(type, Pppoe.PppoeType.lookup(type.code()));
+        }
+        assertEquals(Pppoe.PppoeType.UNKNOWN, Pppoe.PppoeType.lookup((byte) 0x42));
+    }
+
+    @Test
+    public void testPppProtocolTypeLookup() {
+        for (PppProtocolType type : PppProtocolType.values()) {
+            assertEquals(type, PppProtocolType.lookup(type.code()));
+        }
+        assertEquals(PppProtocolType.NO_PROTOCOL, PppProtocolType.lookup((short) 0x1234));
+        for (var protocol : Pppoe.PROTOCOL_DESERIALIZER_MAP.entrySet()) {
+            assertSame(protocol.getValue(), Pppoe.PPP_PROTOCOLS[protocol.getKey() & 0xFFFF].deserializer);
+        }
+    }
 }